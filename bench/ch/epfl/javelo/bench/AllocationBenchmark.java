@@ -0,0 +1,86 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.RouteComputer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Mesure, au moyen de ThreadMXBean, le nombre d'octets alloués par opération sur les chemins critiques du calcul
+ * d'itinéraire et de la recherche du nœud le plus proche, avec les accesseurs créant des instances de PointCh
+ * et avec les accesseurs primitifs de Graph.
+ * <p>
+ * L'analyse d'échappement du compilateur JIT supprime parfois les instances de PointCh dans une boucle aussi
+ * simple que celle du banc d'essai; l'option -XX:-DoEscapeAnalysis montre les allocations intrinsèques de chaque
+ * variante (p. ex. 64 octets par appel pour la distance via nodePoint, aucun via les accesseurs primitifs).
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.AllocationBenchmark [répertoire des données]
+ */
+public final class AllocationBenchmark {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static int WARMUP_ROUNDS = 5;
+    private final static int OPERATIONS = 1_000_000;
+    private final static int QUERIES = 200;
+    private final static double SEARCH_DISTANCE = 500;
+    private final static com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /* empêche le compilateur JIT d'éliminer les calculs mesurés */
+    private static double sink;
+
+    private AllocationBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        Graph graph = Graph.loadFrom(Path.of(args.length > 0 ? args[0] : DATA_REP));
+        int nodeCount = graph.nodeCount();
+        int target = nodeCount / 2;
+        double targetE = graph.nodeE(target);
+        double targetN = graph.nodeN(target);
+
+        report("distance à vol d'oiseau (nodePoint)", OPERATIONS,
+                i -> graph.nodePoint(i % nodeCount).distanceTo(graph.nodePoint(target)));
+        report("distance à vol d'oiseau (primitive)", OPERATIONS,
+                i -> Math.sqrt(graph.nodeSquaredDistanceTo(i % nodeCount, targetE, targetN)));
+
+        PointCh[] points = new PointCh[QUERIES];
+        SplittableRandom random = new SplittableRandom(2022);
+        for (int i = 0; i < QUERIES; i++) points[i] = graph.nodePoint(random.nextInt(nodeCount));
+        report("nodeClosestTo", QUERIES * 100,
+                i -> graph.nodeClosestTo(points[i % QUERIES], SEARCH_DISTANCE));
+
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int[] starts = random.ints(QUERIES, 0, nodeCount).toArray();
+        int[] ends = random.ints(QUERIES, 0, nodeCount).toArray();
+        report("bestRouteBetween", QUERIES, i -> {
+            if (starts[i] == ends[i]) return 0;
+            return routeComputer.bestRouteBetween(starts[i], ends[i]) == null ? 0 : 1;
+        });
+    }
+
+    //==================================//
+
+    /* Exécute l'opération donnée après l'avoir préchauffée et affiche les octets alloués par opération */
+    private static void report(String name, int operations, IntToDoubleFunction operation) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) run(operations, operation);
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run(operations, operation);
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf("%-40s %12.1f o/op %12.1f ns/op%n",
+                name, (double) allocated / operations, (double) elapsed / operations);
+    }
+
+    private static void run(int operations, IntToDoubleFunction operation) {
+        double sum = 0;
+        for (int i = 0; i < operations; i++) sum += operation.applyAsDouble(i);
+        sink += sum;
+    }
+}
@@ -0,0 +1,75 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.ContractionHierarchy;
+import ch.epfl.javelo.routing.CostFunction;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.javelo.routing.SearchContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Vérifie que les hiérarchies de contraction construites séquentiellement et par rondes parallèles donnent des
+ * chemins de coût minimal sur un graphe où les chemins de même coût abondent : toutes les arêtes d'un graphe
+ * synthétique (voir SyntheticGraphGenerator) y ont le même coût, de sorte que le coût d'un chemin est son nombre
+ * d'arêtes. Pour chaque requête, ce nombre est comparé à celui de l'itinéraire obtenu par A* sans hiérarchie, et
+ * le nombre de requêtes dont le chemin est plus coûteux est affiché pour chacune des deux constructions.
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.HierarchyCheck [nombre de nœuds] [nombre de requêtes] [graine]
+ */
+public final class HierarchyCheck {
+
+    private final static int DEFAULT_NODE_COUNT = 5_000;
+    private final static int DEFAULT_QUERIES = 1_000;
+    private final static long DEFAULT_SEED = 2022;
+    /* coût de chaque arête, puissance de deux pour que les sommes de coûts soient exactes */
+    private final static double EDGE_COST = 1 << 14;
+
+    private HierarchyCheck() {}
+
+    public static void main(String[] args) throws IOException {
+        int nodeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_NODE_COUNT;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+
+        Path directory = Files.createTempDirectory("javelo-hierarchy-check");
+        SyntheticGraphGenerator.generate(directory, nodeCount, seed);
+        Graph graph = Graph.loadFrom(directory);
+        /* le facteur est au moins 1, les arêtes étant plus courtes que EDGE_COST, ce qui garde A* admissible */
+        CostFunction uniform = (nodeId, edgeId) -> EDGE_COST / graph.edgeLength(edgeId);
+
+        ContractionHierarchy sequential = ContractionHierarchy.build(graph, uniform);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        ContractionHierarchy parallel = ContractionHierarchy.buildInParallel(graph, uniform, pool, round -> {});
+        pool.shutdown();
+
+        RouteComputer routeComputer = new RouteComputer(graph, uniform);
+        SearchContext forward = new SearchContext(graph.nodeCount());
+        SearchContext backward = new SearchContext(graph.nodeCount());
+        SplittableRandom random = new SplittableRandom(seed);
+        int sequentialWorse = 0;
+        int parallelWorse = 0;
+        for (int i = 0; i < queries; i++) {
+            int start = random.nextInt(graph.nodeCount());
+            int end = random.nextInt(graph.nodeCount());
+            if (start == end) continue;
+            Route route = routeComputer.bestRouteBetween(start, end);
+            int best = route == null ? -1 : route.edges().size();
+            if (edgeCount(sequential.bestPathBetween(start, end, forward, backward)) != best) sequentialWorse++;
+            if (edgeCount(parallel.bestPathBetween(start, end, forward, backward)) != best) parallelWorse++;
+        }
+        System.out.printf("%d requêtes : %d chemins plus coûteux que A* (séquentielle), %d (parallèle)%n",
+                queries, sequentialWorse, parallelWorse);
+    }
+
+    //==================================//
+
+    private static int edgeCount(int[] edgeIds) {
+        return edgeIds == null ? -1 : edgeIds.length;
+    }
+}
@@ -0,0 +1,125 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.LoadMode;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.RouteComputer;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compare les modes de chargement du graphe (voir LoadMode) : pour chacun, la durée de Graph.loadFrom, celle
+ * des premières recherches d'itinéraire qui le suivent, et la mémoire occupée après celles-ci, soit la mémoire
+ * résidente du processus (VmRSS, sous Linux), la mémoire occupée dans le tas et celle des mémoires tampons
+ * allouées hors du tas et projetées en mémoire. Le mode PREFETCHED projette les fichiers en mémoire, puis lit
+ * les données des régions entourant les extrémités des requêtes au moyen de Graph.prefetchRegion.
+ * <p>
+ * Chaque mode est mesuré dans un processus distinct, lancé avec les mêmes options de la machine virtuelle, pour
+ * que ni le tas ni les projections d'un mode n'affectent les mesures du suivant. Le cache de pages du système
+ * est en revanche partagé : pour mesurer un démarrage à froid, il doit être vidé avant chaque mode (sous Linux,
+ * echo 3 > /proc/sys/vm/drop_caches), auquel cas un seul mode doit être donné.
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.LoadBenchmark [répertoire des données] [mode | all] [nombre de
+ * requêtes]
+ */
+public final class LoadBenchmark {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static String ALL = "all";
+    private final static String PREFETCHED = "PREFETCHED";
+    private final static int DEFAULT_QUERIES = 20;
+    /* distance (en m) autour des extrémités des requêtes dont les données sont lues en mode PREFETCHED */
+    private final static double PREFETCH_DISTANCE = 5_000;
+    private final static Path PROCESS_STATUS = Path.of("/proc/self/status");
+
+    private LoadBenchmark() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dataPath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        String mode = args.length > 1 ? args[1] : ALL;
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_QUERIES;
+
+        if (!mode.equals(ALL)) {
+            measure(dataPath, mode, queries);
+            return;
+        }
+        System.out.printf("%-11s %10s %10s %12s %12s %10s %10s %10s %10s%n", "mode", "chargement", "prefetch",
+                "1re requête", "requêtes", "résidente", "tas", "hors tas", "projetée");
+        List<String> modes = new ArrayList<>();
+        for (LoadMode loadMode : LoadMode.values()) modes.add(loadMode.name());
+        modes.add(PREFETCHED);
+        for (String m : modes) {
+            List<String> command = new ArrayList<>();
+            command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), LoadBenchmark.class.getName(),
+                    dataPath.toString(), m, Integer.toString(queries)));
+            new ProcessBuilder(command).inheritIO().start().waitFor();
+        }
+    }
+
+    //==================================//
+
+    /* Charge le graphe dans le mode donné, effectue les requêtes et affiche une ligne de mesures */
+    private static void measure(Path dataPath, String mode, int queries) throws IOException {
+        boolean prefetch = mode.equals(PREFETCHED);
+        long start = System.nanoTime();
+        Graph graph = Graph.loadFrom(dataPath, prefetch ? LoadMode.MAPPED : LoadMode.valueOf(mode));
+        long loadNanos = System.nanoTime() - start;
+
+        QuerySet querySet = new QuerySet(graph, QuerySet.Range.MEDIUM, queries, 2022);
+        long prefetchNanos = 0;
+        if (prefetch) {
+            List<PointCh> points = new ArrayList<>();
+            for (int i = 0; i < querySet.size(); i++) {
+                points.add(graph.nodePoint(querySet.startNodeId(i)));
+                points.add(graph.nodePoint(querySet.endNodeId(i)));
+            }
+            start = System.nanoTime();
+            graph.prefetchRegion(points, PREFETCH_DISTANCE);
+            prefetchNanos = System.nanoTime() - start;
+        }
+
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        long firstNanos = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < querySet.size(); i++) {
+            start = System.nanoTime();
+            routeComputer.bestRouteBetween(querySet.startNodeId(i), querySet.endNodeId(i));
+            long nanos = System.nanoTime() - start;
+            if (i == 0) firstNanos = nanos;
+            totalNanos += nanos;
+        }
+
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("%-11s %7.0f ms %7.0f ms %9.1f ms %9.1f ms %7s Mo %7d Mo %7d Mo %7d Mo%n", mode,
+                loadNanos / 1e6, prefetchNanos / 1e6, firstNanos / 1e6, totalNanos / 1e6, residentMegabytes(),
+                (runtime.totalMemory() - runtime.freeMemory()) >> 20, bufferPoolMegabytes("direct"),
+                bufferPoolMegabytes("mapped"));
+    }
+
+    /* Mémoire résidente du processus, en mégaoctets, ou « - » si elle n'est pas disponible */
+    private static String residentMegabytes() throws IOException {
+        if (!Files.isReadable(PROCESS_STATUS)) return "-";
+        for (String line : Files.readAllLines(PROCESS_STATUS)) {
+            if (line.startsWith("VmRSS:"))
+                return Long.toString(Long.parseLong(line.replaceAll("\\D", "")) >> 10);
+        }
+        return "-";
+    }
+
+    private static long bufferPoolMegabytes(String name) {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals(name)) return pool.getMemoryUsed() >> 20;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,155 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.javelo.server.RoutingServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Génère une charge sur le serveur d'itinéraires (RoutingServer) : un nombre donné de clients, chacun sur son
+ * propre fil d'exécution virtuel, envoient à tour de rôle des requêtes entre des nœuds tirés au hasard dans le
+ * graphe, puis le débit, la distribution des latences et les codes de statut obtenus sont affichés.
+ * <p>
+ * Si l'adresse du serveur vaut « local », un serveur est démarré dans le même processus, sur un port libre de
+ * localhost, sans hiérarchie ni points de repère.
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.LoadGenerator [répertoire des données] [adresse du serveur | local]
+ * [nombre de clients] [nombre de requêtes] [route | profile | gpx | nearest]
+ */
+public final class LoadGenerator {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static String DEFAULT_SERVER = "http://localhost:8080";
+    private final static String LOCAL = "local";
+    private final static int DEFAULT_CLIENTS = 32;
+    private final static int DEFAULT_REQUESTS = 2_000;
+    private final static String DEFAULT_ENDPOINT = "route";
+    /* requêtes envoyées avant la mesure, pour que le serveur et le client soient compilés par le JIT */
+    private final static int WARMUP_REQUESTS = 200;
+
+    private LoadGenerator() {}
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dataPath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        String server = args.length > 1 ? args[1] : DEFAULT_SERVER;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CLIENTS;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_REQUESTS;
+        String endpoint = args.length > 4 ? args[4] : DEFAULT_ENDPOINT;
+        Graph graph = Graph.loadFrom(dataPath);
+
+        RoutingServer localServer = null;
+        if (server.equals(LOCAL)) {
+            RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+            localServer = new RoutingServer(graph, routeComputer, new InetSocketAddress("localhost", 0),
+                    Runtime.getRuntime().availableProcessors());
+            localServer.start();
+            server = "http://localhost:" + localServer.address().getPort();
+        }
+
+        URI uri = URI.create(server + "/" + endpoint);
+        String[] bodies = bodies(graph, endpoint, WARMUP_REQUESTS + requests);
+        try (HttpClient client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build()) {
+            run(client, uri, bodies, 0, WARMUP_REQUESTS, clients, new long[WARMUP_REQUESTS]);
+
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            Results results = run(client, uri, bodies, WARMUP_REQUESTS, requests, clients, latencies);
+            long elapsed = System.nanoTime() - start;
+
+            Arrays.sort(latencies);
+            System.out.printf(Locale.ROOT, "%s : %d requêtes, %d clients, %.1f requêtes/s, %.1f Mo reçus%n",
+                    uri, requests, clients, requests / (elapsed / 1e9), results.bytes.get() / 1e6);
+            System.out.printf(Locale.ROOT, "latence (ms) : p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                    latencies[latencies.length - 1] / 1e6);
+            System.out.println("statuts : " + results.statuses);
+        } finally {
+            if (localServer != null) localServer.stop();
+        }
+    }
+
+    //==================================//
+
+    /* compteurs partagés par les clients */
+    private record Results(ConcurrentHashMap<Integer, AtomicInteger> statuses, AtomicLong bytes) {}
+
+    /* Envoie les requêtes d'index first à first + count (exclu), réparties entre les clients */
+    private static Results run(HttpClient client, URI uri, String[] bodies, int first, int count, int clients,
+                               long[] latencies) throws InterruptedException {
+        Results results = new Results(new ConcurrentHashMap<>(), new AtomicLong());
+        AtomicInteger next = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                executor.submit(() -> {
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(bodies[first + i]))
+                                .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            HttpResponse<InputStream> response =
+                                    client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                            try (InputStream body = response.body()) {
+                                results.bytes.addAndGet(body.transferTo(OutputStream.nullOutputStream()));
+                            }
+                            status = response.statusCode();
+                        } catch (IOException e) {
+                            status = -1;
+                        }
+                        latencies[i] = System.nanoTime() - start;
+                        results.statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        return results;
+    }
+
+    /* Corps JSON des requêtes, entre des nœuds tirés au hasard */
+    private static String[] bodies(Graph graph, String endpoint, int count) {
+        SplittableRandom random = new SplittableRandom(2022);
+        String[] bodies = new String[count];
+        for (int i = 0; i < count; i++) {
+            PointCh from = graph.nodePoint(random.nextInt(graph.nodeCount()));
+            PointCh to = graph.nodePoint(random.nextInt(graph.nodeCount()));
+            bodies[i] = endpoint.equals("nearest")
+                    ? point(from)
+                    : "{\"waypoints\":[" + point(from) + "," + point(to) + "]}";
+        }
+        return bodies;
+    }
+
+    private static String point(PointCh point) {
+        return String.format(Locale.ROOT, "{\"lon\":%.7f,\"lat\":%.7f}",
+                Math.toDegrees(point.lon()), Math.toDegrees(point.lat()));
+    }
+
+    private static double percentile(long[] sortedLatencies, double fraction) {
+        int index = (int) Math.min(sortedLatencies.length - 1, Math.floor(fraction * sortedLatencies.length));
+        return sortedLatencies[index] / 1e6;
+    }
+
+}
@@ -0,0 +1,114 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.HilbertRenumbering;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Compare la durée de bestRouteBetween et de nodeClosestTo sur le graphe original et sur le même graphe
+ * renuméroté le long d'une courbe de Hilbert (voir HilbertRenumbering), pour les mêmes requêtes : les nœuds des
+ * requêtes sur le graphe renuméroté sont les images de ceux du graphe original, et les points sont identiques.
+ * Les mesures des deux graphes alternent, pour que le préchauffage et l'état de la machine les affectent de la
+ * même manière, et les itinéraires obtenus sont comparés.
+ * <p>
+ * Le graphe renuméroté est écrit (ou récrit) dans le répertoire donné avant les mesures.
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.LocalityBenchmark [répertoire des données] [répertoire du graphe
+ * renuméroté] [nombre de requêtes]
+ */
+public final class LocalityBenchmark {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static int DEFAULT_QUERIES = 200;
+    private final static int WARMUP_ROUNDS = 3;
+    private final static int ROUNDS = 5;
+    private final static int CLOSEST_REPETITIONS = 100;
+    private final static double SEARCH_DISTANCE = 500;
+    /* décalage maximal (en m) des points de recherche par rapport aux nœuds dont ils sont tirés */
+    private final static double POINT_OFFSET = 200;
+
+    /* empêche le compilateur JIT d'éliminer les calculs mesurés */
+    private static double sink;
+
+    private LocalityBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        Path source = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Path destination = args.length > 1 ? Path.of(args[1]) : Path.of(source + "-hilbert");
+        int queries = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_QUERIES;
+        int[] newNode = HilbertRenumbering.renumber(source, destination);
+
+        Graph original = Graph.loadFrom(source);
+        Graph renumbered = Graph.loadFrom(destination);
+        RouteComputer originalComputer = new RouteComputer(original, new CityBikeCF(original));
+        RouteComputer renumberedComputer = new RouteComputer(renumbered, new CityBikeCF(renumbered));
+
+        SplittableRandom random = new SplittableRandom(2022);
+        int[] starts = new int[queries];
+        int[] ends = new int[queries];
+        PointCh[] points = new PointCh[queries];
+        for (int i = 0; i < queries; i++) {
+            starts[i] = random.nextInt(original.nodeCount());
+            do ends[i] = random.nextInt(original.nodeCount()); while (ends[i] == starts[i]);
+            PointCh node = original.nodePoint(starts[i]);
+            points[i] = new PointCh(node.e() + random.nextDouble(-POINT_OFFSET, POINT_OFFSET),
+                    node.n() + random.nextDouble(-POINT_OFFSET, POINT_OFFSET));
+        }
+
+        int different = 0;
+        for (int i = 0; i < queries; i++) {
+            Route a = originalComputer.bestRouteBetween(starts[i], ends[i]);
+            Route b = renumberedComputer.bestRouteBetween(newNode[starts[i]], newNode[ends[i]]);
+            if ((a == null) != (b == null) || a != null && Math.abs(a.length() - b.length()) > 1e-6) different++;
+        }
+        System.out.printf("%d requêtes, %d itinéraires différents%n", queries, different);
+
+        compare("bestRouteBetween", queries,
+                i -> length(originalComputer.bestRouteBetween(starts[i], ends[i])),
+                i -> length(renumberedComputer.bestRouteBetween(newNode[starts[i]], newNode[ends[i]])));
+        compare("nodeClosestTo", queries * CLOSEST_REPETITIONS,
+                i -> original.nodeClosestTo(points[i % queries], SEARCH_DISTANCE),
+                i -> renumbered.nodeClosestTo(points[i % queries], SEARCH_DISTANCE));
+    }
+
+    //==================================//
+
+    /* Mesure les deux variantes d'une opération en alternance et affiche leur durée moyenne par opération */
+    private static void compare(String name, int operations, IntToDoubleFunction original,
+                                IntToDoubleFunction renumbered) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            run(operations, original);
+            run(operations, renumbered);
+        }
+        long originalNanos = 0;
+        long renumberedNanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            originalNanos += run(operations, original);
+            renumberedNanos += run(operations, renumbered);
+        }
+        double before = (double) originalNanos / ROUNDS / operations;
+        double after = (double) renumberedNanos / ROUNDS / operations;
+        System.out.printf("%-20s original %12.1f ns/op, renuméroté %12.1f ns/op (%+.1f %%)%n",
+                name, before, after, 100 * (after - before) / before);
+    }
+
+    private static long run(int operations, IntToDoubleFunction operation) {
+        long start = System.nanoTime();
+        double sum = 0;
+        for (int i = 0; i < operations; i++) sum += operation.applyAsDouble(i);
+        sink += sum;
+        return System.nanoTime() - start;
+    }
+
+    private static double length(Route route) {
+        return route == null ? 0 : route.length();
+    }
+}
@@ -0,0 +1,107 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.SplittableRandom;
+
+/**
+ * Ensemble reproductible de requêtes d'itinéraire : des paires de nœuds distincts, tirées au hasard à partir d'une
+ * graine, dont la distance à vol d'oiseau appartient à une classe donnée. Pour une même graine et un même graphe,
+ * les paires sont toujours les mêmes, ce qui permet de comparer des mesures effectuées sur différentes versions
+ * du calcul d'itinéraire.
+ * <p>
+ * Les paires ne sont pas filtrées selon l'existence d'un itinéraire : comme pour les requêtes réelles, une petite
+ * partie d'entre elles relie des composantes disjointes du graphe.
+ */
+public final class QuerySet {
+
+    /* nombre maximal de tirages par paire, au-delà duquel la classe est jugée absente du graphe */
+    private final static int MAX_ATTEMPTS_PER_PAIR = 10_000;
+
+    /**
+     * Classe de distance à vol d'oiseau des paires de nœuds
+     */
+    public enum Range {
+        SHORT(500, 5_000),
+        MEDIUM(5_000, 50_000),
+        CROSS_COUNTRY(100_000, Double.POSITIVE_INFINITY);
+
+        private final double minDistance;
+        private final double maxDistance;
+
+        Range(double minDistance, double maxDistance) {
+            this.minDistance = minDistance;
+            this.maxDistance = maxDistance;
+        }
+
+        /**
+         * Retourne vrai ssi la distance donnée appartient à cette classe
+         * @param distance la distance à vol d'oiseau, en mètres
+         * @return vrai ssi minDistance ≤ distance < maxDistance
+         */
+        public boolean contains(double distance) {
+            return minDistance <= distance && distance < maxDistance;
+        }
+    }
+
+    private final int[] startNodeIds;
+    private final int[] endNodeIds;
+
+    /**
+     * Tire count paires de nœuds de la classe de distance donnée
+     * @param graph le graphe
+     * @param range la classe de distance des paires
+     * @param count le nombre de paires
+     * @param seed la graine du générateur aléatoire
+     * @throws IllegalArgumentException si count n'est pas strictement positif
+     * @throws IllegalStateException si le graphe ne contient (presque) aucune paire de la classe donnée, p. ex.
+     * aucune paire de la classe CROSS_COUNTRY dans un petit extrait
+     */
+    public QuerySet(Graph graph, Range range, int count, long seed) {
+        Preconditions.checkArgument(count > 0);
+        SplittableRandom random = new SplittableRandom(seed);
+        int nodeCount = graph.nodeCount();
+        startNodeIds = new int[count];
+        endNodeIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            int attempts = 0;
+            int start, end;
+            do {
+                if (++attempts > MAX_ATTEMPTS_PER_PAIR)
+                    throw new IllegalStateException("aucune paire de la classe " + range + " trouvée");
+                start = random.nextInt(nodeCount);
+                end = random.nextInt(nodeCount);
+            } while (start == end || !range.contains(Math.sqrt(
+                    graph.nodeSquaredDistanceTo(start, graph.nodeE(end), graph.nodeN(end)))));
+            startNodeIds[i] = start;
+            endNodeIds[i] = end;
+        }
+    }
+
+    /**
+     * Retourne le nombre de paires
+     * @return le nombre de paires
+     */
+    public int size() {
+        return startNodeIds.length;
+    }
+
+    /**
+     * Retourne le nœud de départ de la paire d'index donné
+     * @param index l'index de la paire
+     * @return le nœud de départ
+     */
+    public int startNodeId(int index) {
+        return startNodeIds[index];
+    }
+
+    /**
+     * Retourne le nœud d'arrivée de la paire d'index donné
+     * @param index l'index de la paire
+     * @return le nœud d'arrivée
+     */
+    public int endNodeId(int index) {
+        return endNodeIds[index];
+    }
+}
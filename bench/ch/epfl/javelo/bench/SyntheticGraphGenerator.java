@@ -0,0 +1,433 @@
+package ch.epfl.javelo.bench;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.AttributeSet;
+import ch.epfl.javelo.data.GraphFormatV2;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static ch.epfl.javelo.data.Attribute.*;
+
+/**
+ * Génère un graphe JaVelo synthétique, semblable à un réseau routier, et écrit la totalité de ses fichiers
+ * (nodes.bin, edges.bin, profile_ids.bin, elevations.bin, sectors.bin et attributes.bin), de sorte que le
+ * chargement du graphe et le calcul d'itinéraire puissent être mesurés sans les données suisses.
+ * <p>
+ * Les nœuds sont placés sur une grille régulière légèrement perturbée, centrée sur la Suisse, dont le pas est
+ * d'environ 120 m, ou moins si la Suisse ne suffit pas à contenir tous les nœuds. Chaque nœud est relié à ses
+ * voisins de grille avec une probabilité donnée, sauf le long d'axes principaux réguliers, toujours continus,
+ * auxquels sont attachés des attributs de routes importantes; quelques diagonales figurent des chemins. Chaque
+ * nœud a ainsi entre un et six voisins, deux ou trois le plus souvent. Le relief combine une montée vers les
+ * Alpes, au sud, et des ondulations de différentes échelles; les profils des arêtes sont stockés sous la plus
+ * compacte des trois formes possibles, sauf une petite partie, stockée sans compression pour que les trois
+ * formes soient représentées, et une autre, dépourvue de profil.
+ * <p>
+ * Le graphe ne dépend que du nombre de nœuds et de la graine. Tout ce qui concerne une route est déterminé par
+ * un hachage de son nœud d'origine, ce qui permet d'écrire les fichiers au fil de l'eau : seules deux tables
+ * d'entiers, de la taille du nombre de nœuds, sont gardées en mémoire (160 Mo pour 20 millions de nœuds,
+ * générés en une trentaine de secondes). Les deux arêtes issues d'une même route ont chacune leur copie du
+ * profil, ce qui limite le graphe à une quarantaine de millions de nœuds, l'index des échantillons des profils
+ * ne comptant que 30 bits.
+ * <p>
+ * Utilisation : java ch.epfl.javelo.bench.SyntheticGraphGenerator [répertoire de destination] [nombre de nœuds]
+ * [graine]
+ */
+public final class SyntheticGraphGenerator {
+
+    private final static String DEFAULT_DIRECTORY = "javelo-synthetic";
+    private final static int DEFAULT_NODE_COUNT = 100_000;
+    private final static long DEFAULT_SEED = 2022;
+
+    /* placement des nœuds */
+    private final static double MAX_SPACING = 120;
+    private final static double MARGIN = 1_000;
+    private final static double JITTER = 0.3;
+    private final static int SECTORS_PER_SIDE = 128;
+    private final static double SECTOR_WIDTH = SwissBounds.WIDTH / SECTORS_PER_SIDE;
+    private final static double SECTOR_HEIGHT = SwissBounds.HEIGHT / SECTORS_PER_SIDE;
+
+    /* routes : directions des voisins et type de la route qui y mène */
+    private final static int RIGHT = 0;
+    private final static int UP = 1;
+    private final static int DIAGONAL = 2;
+    private final static int[] NEIGHBOR_DX = {1, -1, 0, 0, 1, -1};
+    private final static int[] NEIGHBOR_DY = {0, 0, 1, -1, 1, -1};
+    private final static int[] NEIGHBOR_ROAD = {RIGHT, RIGHT, UP, UP, DIAGONAL, DIAGONAL};
+    private final static int ARTERIAL_PERIOD = 16;
+    private final static double LOCAL_ROAD_PROBABILITY = 0.55;
+    private final static double DIAGONAL_ROAD_PROBABILITY = 0.08;
+    private final static double MAX_DETOUR = 0.25;
+
+    /* relief : altitude de base, montée vers les Alpes, puis longueurs d'onde (en m) et amplitudes des ondulations */
+    private final static double BASE_ELEVATION = 450;
+    private final static double ALPS_ELEVATION = 1_800;
+    private final static double ALPS_NORTH = 1_200_000;
+    private final static double ALPS_DEPTH = 80_000;
+    private final static double[] WAVELENGTHS = {12_000, 4_000, 1_500, 600};
+    private final static double[] AMPLITUDES = {120, 50, 20, 6};
+    private final static double SAMPLE_NOISE = 0.1;
+
+    /* profils */
+    private final static double NO_PROFILE_FRACTION = 0.01;
+    private final static double UNCOMPRESSED_FRACTION = 0.03;
+    private final static int SAMPLE_SPACING_Q28_4 = 2 << 4;
+    private final static int MAX_UNSIGNED_SHORT = (1 << 16) - 1;
+    private final static int PROFILE_INDEX_BITS = 30;
+    private final static int FIRST_EDGE_BITS = 28;
+    private final static int DEGREE_SHIFT = 28;
+
+    /* ensembles d'attributs des axes principaux, des routes locales et des chemins */
+    private final static List<AttributeSet> ARTERIAL_ATTRIBUTES = List.of(
+            AttributeSet.of(HIGHWAY_PRIMARY, SURFACE_ASPHALT),
+            AttributeSet.of(HIGHWAY_SECONDARY, SURFACE_ASPHALT),
+            AttributeSet.of(HIGHWAY_SECONDARY, SURFACE_ASPHALT, NCN_YES),
+            AttributeSet.of(HIGHWAY_TERTIARY),
+            AttributeSet.of(HIGHWAY_TERTIARY, RCN_YES));
+    private final static List<AttributeSet> LOCAL_ATTRIBUTES = List.of(
+            AttributeSet.of(HIGHWAY_RESIDENTIAL),
+            AttributeSet.of(HIGHWAY_RESIDENTIAL, SURFACE_ASPHALT),
+            AttributeSet.of(HIGHWAY_UNCLASSIFIED),
+            AttributeSet.of(HIGHWAY_LIVING_STREET),
+            AttributeSet.of(HIGHWAY_SERVICE),
+            AttributeSet.of(HIGHWAY_SERVICE, ACCESS_PRIVATE),
+            AttributeSet.of(HIGHWAY_TRACK, TRACKTYPE_GRADE1),
+            AttributeSet.of(HIGHWAY_TRACK, TRACKTYPE_GRADE2, SURFACE_GRAVEL),
+            AttributeSet.of(HIGHWAY_TRACK, TRACKTYPE_GRADE3, SURFACE_GROUND),
+            AttributeSet.of(HIGHWAY_CYCLEWAY, SURFACE_ASPHALT, LCN_YES));
+    private final static List<AttributeSet> PATH_ATTRIBUTES = List.of(
+            AttributeSet.of(HIGHWAY_PATH),
+            AttributeSet.of(HIGHWAY_PATH, BICYCLE_YES, SURFACE_COMPACTED),
+            AttributeSet.of(HIGHWAY_FOOTWAY),
+            AttributeSet.of(HIGHWAY_FOOTWAY, BICYCLE_DISMOUNT),
+            AttributeSet.of(HIGHWAY_STEPS));
+
+    /* sels distinguant les différentes valeurs aléatoires tirées pour un même objet */
+    private final static int SALT_JITTER_E = 1;
+    private final static int SALT_JITTER_N = 2;
+    private final static int SALT_RIGHT = 3;
+    private final static int SALT_UP = 4;
+    private final static int SALT_FORCED = 5;
+    private final static int SALT_DIAGONAL = 6;
+    private final static int SALT_DETOUR = 7;
+    private final static int SALT_ATTRIBUTES = 8;
+    private final static int SALT_PROFILE = 9;
+    private final static int SALT_SAMPLE = 10;
+    private final static int SALT_PHASES = 11;
+
+    private final int nodeCount;
+    private final long seed;
+    private final int columns;
+    private final int rows;
+    private final double spacing;
+    private final double originE;
+    private final double originN;
+    private final double[] phases;
+
+    private SyntheticGraphGenerator(int nodeCount, long seed) {
+        this.nodeCount = nodeCount;
+        this.seed = seed;
+        double usableWidth = SwissBounds.WIDTH - 2 * MARGIN;
+        double usableHeight = SwissBounds.HEIGHT - 2 * MARGIN;
+        this.spacing = Math.min(MAX_SPACING, Math.sqrt(usableWidth * usableHeight / nodeCount));
+        this.columns = Math.min(nodeCount, (int) Math.ceil(Math.sqrt(nodeCount * usableWidth / usableHeight)));
+        this.rows = Math2.ceilDiv(nodeCount, columns);
+        this.originE = (SwissBounds.MIN_E + SwissBounds.MAX_E) / 2 - (columns - 1) * spacing / 2;
+        this.originN = (SwissBounds.MIN_N + SwissBounds.MAX_N) / 2 - (rows - 1) * spacing / 2;
+        this.phases = new double[2 * WAVELENGTHS.length];
+        for (int i = 0; i < phases.length; i++) phases[i] = 2 * Math.PI * random(i, SALT_PHASES);
+    }
+
+    /**
+     * Génère le graphe synthétique de nodeCount nœuds déterminé par la graine donnée et écrit ses fichiers dans le
+     * répertoire donné, créé au besoin
+     * @param directory le répertoire de destination
+     * @param nodeCount le nombre de nœuds
+     * @param seed la graine
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si le nombre de nœuds n'est pas strictement positif
+     * @throws IllegalStateException si le graphe dépasse les capacités du format des fichiers (nombre d'arêtes,
+     * d'échantillons de profils ou de nœuds par secteur)
+     */
+    public static void generate(Path directory, int nodeCount, long seed) throws IOException {
+        Preconditions.checkArgument(nodeCount > 0);
+        Files.createDirectories(directory);
+        new SyntheticGraphGenerator(nodeCount, seed).writeTo(directory);
+        /* un fichier au format 2 ou un index inverse resté dans le répertoire ne correspondrait plus au graphe
+           généré */
+        Files.deleteIfExists(GraphFormatV2.fileIn(directory));
+        Files.deleteIfExists(directory.resolve("in_edges.bin"));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Path.of(args.length > 0 ? args[0] : DEFAULT_DIRECTORY);
+        int nodeCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_NODE_COUNT;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        long start = System.nanoTime();
+        generate(directory, nodeCount, seed);
+        System.out.printf("%d nœuds générés dans %s en %.1f s%n", nodeCount, directory,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    //==================================//
+
+    /* Écrit les fichiers du graphe : les nœuds sont d'abord numérotés secteur par secteur, puis les nœuds, leurs
+       arêtes et les profils de celles-ci sont écrits dans l'ordre des nœuds */
+    private void writeTo(Path directory) throws IOException {
+        int[] cellOfNode = new int[nodeCount];
+        int[] nodeOfCell = new int[nodeCount];
+        writeSectors(directory.resolve("sectors.bin"), cellOfNode, nodeOfCell);
+
+        List<AttributeSet> attributeSets = attributeSets();
+        try (DataOutputStream attributes = output(directory.resolve("attributes.bin"))) {
+            for (AttributeSet set : attributeSets) attributes.writeLong(set.bits());
+        }
+
+        try (DataOutputStream nodes = output(directory.resolve("nodes.bin"));
+             DataOutputStream edges = output(directory.resolve("edges.bin"));
+             DataOutputStream profileIds = output(directory.resolve("profile_ids.bin"));
+             DataOutputStream elevations = output(directory.resolve("elevations.bin"))) {
+            int[] samples = new int[1 + Math2.ceilDiv(MAX_UNSIGNED_SHORT, SAMPLE_SPACING_Q28_4)];
+            int edgeCount = 0;
+            long sampleIndex = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                int cell = cellOfNode[node];
+                int column = cell % columns;
+                int row = cell / columns;
+                int degree = 0;
+                for (int k = 0; k < NEIGHBOR_DX.length; k++) {
+                    int neighborCell = neighborCell(column + NEIGHBOR_DX[k], row + NEIGHBOR_DY[k]);
+                    /* la route est identifiée par son nœud d'origine, celui des deux qui est en bas à gauche */
+                    boolean inverted = NEIGHBOR_DX[k] + NEIGHBOR_DY[k] < 0;
+                    int origin = inverted ? neighborCell : cell;
+                    if (neighborCell < 0 || !hasRoad(origin, NEIGHBOR_ROAD[k])) continue;
+
+                    int from = inverted ? neighborCell : cell;
+                    int to = inverted ? cell : neighborCell;
+                    long roadKey = (long) origin * 3 + NEIGHBOR_ROAD[k];
+                    double distance = Math.hypot(cellE(to) - cellE(from), cellN(to) - cellN(from));
+                    int lengthQ28_4 = Math2.clamp(1,
+                            (int) Math.round(distance * (1 + MAX_DETOUR * random(roadKey, SALT_DETOUR)) * 16),
+                            MAX_UNSIGNED_SHORT);
+                    int sampleCount = 1 + Math2.ceilDiv(lengthQ28_4, SAMPLE_SPACING_Q28_4);
+                    double profileKind = random(roadKey, SALT_PROFILE);
+                    int gain = 0;
+                    int profileId = 0;
+                    if (profileKind >= NO_PROFILE_FRACTION) {
+                        fillSamples(from, to, roadKey, samples, sampleCount);
+                        gain = Math.min(MAX_UNSIGNED_SHORT, elevationGain(samples, sampleCount, inverted));
+                        int type = profileKind < NO_PROFILE_FRACTION + UNCOMPRESSED_FRACTION
+                                ? 1
+                                : compressionType(samples, sampleCount);
+                        if (sampleIndex >= 1L << PROFILE_INDEX_BITS)
+                            throw new IllegalStateException("trop d'échantillons de profils");
+                        profileId = type << PROFILE_INDEX_BITS | (int) sampleIndex;
+                        sampleIndex += writeSamples(elevations, samples, sampleCount, type);
+                    }
+
+                    edges.writeInt(inverted ? ~nodeOfCell[neighborCell] : nodeOfCell[neighborCell]);
+                    edges.writeShort(lengthQ28_4);
+                    edges.writeShort(gain);
+                    edges.writeShort(attributesIndex(roadKey, origin, NEIGHBOR_ROAD[k]));
+                    profileIds.writeInt(profileId);
+                    degree++;
+                }
+
+                nodes.writeInt((int) Math.round(cellE(cell) * 16));
+                nodes.writeInt((int) Math.round(cellN(cell) * 16));
+                nodes.writeInt(degree << DEGREE_SHIFT | edgeCount);
+                edgeCount += degree;
+                if (edgeCount >= 1 << FIRST_EDGE_BITS) throw new IllegalStateException("trop d'arêtes");
+            }
+        }
+    }
+
+    /* Numérote les nœuds secteur par secteur et écrit le fichier des secteurs */
+    private void writeSectors(Path file, int[] cellOfNode, int[] nodeOfCell) throws IOException {
+        try (DataOutputStream sectors = output(file)) {
+            int node = 0;
+            for (int sectorY = 0; sectorY < SECTORS_PER_SIDE; sectorY++) {
+                for (int sectorX = 0; sectorX < SECTORS_PER_SIDE; sectorX++) {
+                    int first = node;
+                    /* cellules dont le nœud, déplacé d'au plus une demi-maille, peut appartenir au secteur */
+                    double minE = SwissBounds.MIN_E + sectorX * SECTOR_WIDTH;
+                    double minN = SwissBounds.MIN_N + sectorY * SECTOR_HEIGHT;
+                    int minColumn = Math.max(0, (int) Math.floor((minE - originE) / spacing) - 1);
+                    int maxColumn =
+                            Math.min(columns - 1, (int) Math.ceil((minE + SECTOR_WIDTH - originE) / spacing) + 1);
+                    int minRow = Math.max(0, (int) Math.floor((minN - originN) / spacing) - 1);
+                    int maxRow =
+                            Math.min(rows - 1, (int) Math.ceil((minN + SECTOR_HEIGHT - originN) / spacing) + 1);
+                    for (int row = minRow; row <= maxRow; row++) {
+                        for (int column = minColumn; column <= maxColumn; column++) {
+                            int cell = neighborCell(column, row);
+                            if (cell < 0 || sectorX(cell) != sectorX || sectorY(cell) != sectorY) continue;
+                            cellOfNode[node] = cell;
+                            nodeOfCell[cell] = node++;
+                        }
+                    }
+                    if (node - first > MAX_UNSIGNED_SHORT) throw new IllegalStateException("trop de nœuds par secteur");
+                    sectors.writeInt(first);
+                    sectors.writeShort(node - first);
+                }
+            }
+        }
+    }
+
+    /* Cellule de la grille à la colonne et à la ligne données, ou -1 si elle n'existe pas */
+    private int neighborCell(int column, int row) {
+        if (column < 0 || column >= columns || row < 0 || row >= rows) return -1;
+        int cell = row * columns + column;
+        return cell < nodeCount ? cell : -1;
+    }
+
+    /* Coordonnées du nœud de la cellule donnée, arrondies à la précision des fichiers (1/16 de mètre) */
+    private double cellE(int cell) {
+        double e = originE + (cell % columns + JITTER * (2 * random(cell, SALT_JITTER_E) - 1)) * spacing;
+        return Math.round(e * 16) / 16d;
+    }
+
+    private double cellN(int cell) {
+        double n = originN + (cell / columns + JITTER * (2 * random(cell, SALT_JITTER_N) - 1)) * spacing;
+        return Math.round(n * 16) / 16d;
+    }
+
+    private int sectorX(int cell) {
+        return Math2.clamp(0, (int) ((cellE(cell) - SwissBounds.MIN_E) / SECTOR_WIDTH), SECTORS_PER_SIDE - 1);
+    }
+
+    private int sectorY(int cell) {
+        return Math2.clamp(0, (int) ((cellN(cell) - SwissBounds.MIN_N) / SECTOR_HEIGHT), SECTORS_PER_SIDE - 1);
+    }
+
+    /* Vrai ssi la route du type donné partant de la cellule donnée existe; une cellule hors des axes principaux
+       a toujours au moins une route horizontale ou verticale, pour qu'aucun nœud ne soit isolé */
+    private boolean hasRoad(int cell, int road) {
+        if (road == DIAGONAL) return random(cell, SALT_DIAGONAL) < DIAGONAL_ROAD_PROBABILITY;
+        if (isArterial(cell, road)) return true;
+        boolean right = random(cell, SALT_RIGHT) < LOCAL_ROAD_PROBABILITY;
+        boolean up = random(cell, SALT_UP) < LOCAL_ROAD_PROBABILITY;
+        if (!right && !up) {
+            right = random(cell, SALT_FORCED) < 0.5;
+            up = !right;
+        }
+        return road == RIGHT ? right : up;
+    }
+
+    private boolean isArterial(int cell, int road) {
+        return road == RIGHT && (cell / columns) % ARTERIAL_PERIOD == 0
+                || road == UP && (cell % columns) % ARTERIAL_PERIOD == 0;
+    }
+
+    /* Index, dans attributes.bin, de l'ensemble d'attributs de la route donnée */
+    private int attributesIndex(long roadKey, int origin, int road) {
+        List<AttributeSet> choices = road == DIAGONAL
+                ? PATH_ATTRIBUTES
+                : isArterial(origin, road) ? ARTERIAL_ATTRIBUTES : LOCAL_ATTRIBUTES;
+        int offset = road == DIAGONAL
+                ? ARTERIAL_ATTRIBUTES.size() + LOCAL_ATTRIBUTES.size()
+                : isArterial(origin, road) ? 0 : ARTERIAL_ATTRIBUTES.size();
+        return offset + (int) (random(roadKey, SALT_ATTRIBUTES) * choices.size());
+    }
+
+    private static List<AttributeSet> attributeSets() {
+        return Stream.of(ARTERIAL_ATTRIBUTES, LOCAL_ATTRIBUTES, PATH_ATTRIBUTES)
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    /* Altitude (en m) du relief au point donné : montée vers les Alpes et ondulations, d'autant plus marquées que
+       le point est au sud */
+    private double elevation(double e, double n) {
+        double alps = Math2.clamp(0d, (ALPS_NORTH - n) / ALPS_DEPTH, 1d);
+        alps = alps * alps * (3 - 2 * alps);
+        double relief = 0;
+        for (int i = 0; i < WAVELENGTHS.length; i++) {
+            double frequency = 2 * Math.PI / WAVELENGTHS[i];
+            relief += AMPLITUDES[i]
+                    * Math.sin(e * frequency + phases[2 * i]) * Math.sin(n * frequency + phases[2 * i + 1]);
+        }
+        return BASE_ELEVATION + ALPS_ELEVATION * alps + (1 + 1.5 * alps) * relief;
+    }
+
+    /* Remplit samples avec les échantillons (en UQ12.4) du profil de la route allant de from à to : parabole
+       passant par l'altitude du relief aux deux extrémités et au milieu, plus un léger bruit */
+    private void fillSamples(int from, int to, long roadKey, int[] samples, int sampleCount) {
+        double fromE = cellE(from), fromN = cellN(from), toE = cellE(to), toN = cellN(to);
+        double start = elevation(fromE, fromN);
+        double end = elevation(toE, toN);
+        double middle = elevation((fromE + toE) / 2, (fromN + toN) / 2) - (start + end) / 2;
+        for (int i = 0; i < sampleCount; i++) {
+            double t = (double) i / (sampleCount - 1);
+            double noise = SAMPLE_NOISE * (2 * random(roadKey * 4096 + i, SALT_SAMPLE) - 1);
+            double elevation = start + (end - start) * t + 4 * middle * t * (1 - t) + noise;
+            samples[i] = Math2.clamp(0, (int) Math.round(elevation * 16), MAX_UNSIGNED_SHORT);
+        }
+    }
+
+    /* Dénivelé positif (en UQ12.4) des échantillons, parcourus à l'envers si inverted */
+    private static int elevationGain(int[] samples, int sampleCount, boolean inverted) {
+        int gain = 0;
+        for (int i = 1; i < sampleCount; i++) {
+            int difference = samples[i] - samples[i - 1];
+            gain += Math.max(0, inverted ? -difference : difference);
+        }
+        return gain;
+    }
+
+    /* Type de profil le plus compact pouvant représenter les échantillons exactement : 3 si toutes les différences
+       tiennent sur 4 bits (Q0.4), 2 si elles tiennent sur 8 bits (Q4.4), 1 sinon */
+    private static int compressionType(int[] samples, int sampleCount) {
+        int type = 3;
+        for (int i = 1; i < sampleCount; i++) {
+            int difference = samples[i] - samples[i - 1];
+            if (difference < Byte.MIN_VALUE || difference > Byte.MAX_VALUE) return 1;
+            if (difference < -8 || difference > 7) type = 2;
+        }
+        return type;
+    }
+
+    /* Écrit les échantillons sous la forme du type donné et retourne le nombre de valeurs de type short écrites */
+    private static int writeSamples(DataOutputStream elevations, int[] samples, int sampleCount, int type)
+            throws IOException {
+        elevations.writeShort(samples[0]);
+        if (type == 1) {
+            for (int i = 1; i < sampleCount; i++) elevations.writeShort(samples[i]);
+            return sampleCount;
+        }
+        int bits = type == 2 ? Byte.SIZE : Byte.SIZE / 2;
+        int perShort = Short.SIZE / bits;
+        int mask = (1 << bits) - 1;
+        int written = 1;
+        for (int i = 1; i < sampleCount; i += perShort) {
+            int packed = 0;
+            for (int j = 0; j < perShort; j++) {
+                int difference = i + j < sampleCount ? samples[i + j] - samples[i + j - 1] : 0;
+                packed = packed << bits | difference & mask;
+            }
+            elevations.writeShort(packed);
+            written++;
+        }
+        return written;
+    }
+
+    /* Nombre pseudo-aléatoire de [0, 1[ déterminé par la graine, la clé et le sel donnés */
+    private double random(long key, int salt) {
+        long h = seed * 0x9E3779B97F4A7C15L + key * 0xC2B2AE3D27D4EB4FL + salt * 0x165667B19E3779F9L;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return (h >>> 11) * 0x1.0p-53;
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+}
@@ -0,0 +1,152 @@
+package ch.epfl.javelo.bench.jmh;
+
+import ch.epfl.javelo.bench.QuerySet;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Banc d'essai JMH du calcul d'itinéraire : débit et distribution des latences de RouteComputer.bestRouteBetween
+ * avec la fonction de coût CityBikeCF, pour des requêtes courtes, moyennes et traversant le pays (voir
+ * QuerySet). Les paires de nœuds sont tirées à partir d'une graine fixe, de sorte que des résultats obtenus sur
+ * différentes versions du calcul d'itinéraire portent sur les mêmes requêtes.
+ * <p>
+ * Le programme principal exécute le banc d'essai avec le profileur d'allocations de JMH (équivalent de -prof gc)
+ * et écrit les résultats au format JSON, dans routing-benchmark.json par défaut, pour pouvoir suivre l'évolution
+ * des performances d'une version à l'autre. Les options de la ligne de commande de JMH sont acceptées, p. ex. :
+ * <pre>
+ * java ch.epfl.javelo.bench.jmh.RoutingBenchmark -p dataPath=javelo-data -p range=SHORT -rff short.json
+ * </pre>
+ * Les classes de ce paquetage doivent être compilées avec jmh-core et son processeur d'annotations
+ * (jmh-generator-annprocess) dans le chemin de classes.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class RoutingBenchmark {
+
+    private final static String DEFAULT_RESULT_FILE = "routing-benchmark.json";
+
+    /**
+     * Le répertoire des données du graphe
+     */
+    @Param("javelo-data")
+    public String dataPath;
+
+    /**
+     * La classe de distance des requêtes
+     */
+    @Param({"SHORT", "MEDIUM", "CROSS_COUNTRY"})
+    public QuerySet.Range range;
+
+    /**
+     * Le nombre de paires de nœuds parcourues cycliquement par chaque fil d'exécution
+     */
+    @Param("100")
+    public int queryCount;
+
+    /**
+     * La graine du tirage des paires de nœuds
+     */
+    @Param("2022")
+    public long seed;
+
+    private RouteComputer routeComputer;
+    private QuerySet queries;
+
+    /**
+     * Position de chaque fil d'exécution dans l'ensemble des requêtes
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    /**
+     * Charge le graphe et tire les paires de nœuds
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Graph graph = Graph.loadFrom(Path.of(dataPath));
+        routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        queries = new QuerySet(graph, range, queryCount, seed);
+    }
+
+    /**
+     * Mesure le nombre de requêtes traitées par seconde
+     * @param cursor la position du fil d'exécution dans l'ensemble des requêtes
+     * @return l'itinéraire calculé, consommé par JMH
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Route throughput(Cursor cursor) {
+        return nextRoute(cursor);
+    }
+
+    /**
+     * Mesure la distribution de la durée des requêtes (centiles compris)
+     * @param cursor la position du fil d'exécution dans l'ensemble des requêtes
+     * @return l'itinéraire calculé, consommé par JMH
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Route latency(Cursor cursor) {
+        return nextRoute(cursor);
+    }
+
+    /**
+     * Exécute le banc d'essai avec le profileur d'allocations et écrit les résultats au format JSON
+     * @param args les options de la ligne de commande de JMH
+     * @throws RunnerException en cas d'erreur lors de l'exécution
+     * @throws CommandLineOptionException si les options sont invalides
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        /* les valeurs données au constructeur d'options ont priorité sur celles de la ligne de commande : les
+           valeurs par défaut ne sont donc données que si la ligne de commande n'en précise pas */
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) options.include(RoutingBenchmark.class.getName());
+        if (!commandLine.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!commandLine.getResult().hasValue()) options.result(DEFAULT_RESULT_FILE);
+        new Runner(options.build()).run();
+    }
+
+    //==================================//
+
+    private Route nextRoute(Cursor cursor) {
+        int index = cursor.next;
+        cursor.next = index + 1 == queries.size() ? 0 : index + 1;
+        return routeComputer.bestRouteBetween(queries.startNodeId(index), queries.endNodeId(index));
+    }
+}
@@ -0,0 +1,66 @@
+# Vélo de ville : traduction exacte de CityBikeCF, elle-même inspirée du profil « trekking » de brouter
+# (https://github.com/abrensch/brouter/blob/master/misc/profiles2/trekking.brf)
+
+# itinéraire cyclable balisé (international, national, régional ou local)
+assign cycleroute = icn=yes or ncn=yes or rcn=yes or lcn=yes
+assign bike = bicycle=yes|designated|permissive
+
+# sens interdit, sauf pour les cyclistes
+assign wrongoneway = if reversed then oneway=yes or oneway:bicycle=yes else oneway=-1
+assign onewayforbidden = wrongoneway
+    and not (oneway:bicycle=no or cycleway=opposite|opposite_lane|opposite_track)
+
+# accès : le premier indice connu l'emporte (vélo, puis véhicules, puis public), autorisé par défaut
+assign accessible =
+    if cycleroute then true
+    else if bicycle=yes|designated|permissive|dismount then true
+    else if bicycle=no|use_sidepath|private then false
+    else if vehicle=no|private then false
+    else if access=yes|permissive then true
+    else if access=no|private then false
+    else if motorroad=yes then false
+    else true
+
+assign paved = surface=paved|asphalt|concrete|paving_stones|sett
+assign unpaved = surface=unpaved|gravel|ground|compacted|grass|dirt|fine_gravel|pebblestone|wood|sand|cobblestone
+# chemin probablement praticable
+assign probablygood = paved or (not unpaved and (bike or highway=footway))
+
+assign tracklikefactor =
+    if tracktype=grade1 then (if probablygood then 1.0 else 1.3)
+    else if tracktype=grade2 then (if probablygood then 1.1 else 2.0)
+    else if tracktype=grade3 then (if probablygood then 1.5 else 3.0)
+    else if tracktype=grade4 then (if probablygood then 2.0 else 5.0)
+    else if tracktype=grade5 then (if probablygood then 3.0 else 5.0)
+    else if probablygood then 1.0 else 5.0
+
+assign roadfactor =
+    if highway=pedestrian then 3
+    else if highway=cycleway then 1
+    else if highway=residential|living_street then (if unpaved then 1.5 else 1.1)
+    else if highway=service then (if unpaved then 1.6 else 1.3)
+    else if highway=trunk then (if bike then 1.5 else 10)
+    else if highway=primary then (if bike then 1.2 else 3)
+    else if highway=secondary then (if bike then 1.1 else 1.6)
+    else if highway=tertiary then (if bike then 1.0 else 1.4)
+    else if highway=unclassified then (if bike then 1.0 else 1.3)
+    else if highway=track|road|path|footway then tracklikefactor
+    else 2
+
+# les itinéraires balisés sont parfaits, tout le reste est moins bon
+assign flatfactor = if cycleroute then 1 else 0.05 + roadfactor
+
+assign slopefactor =
+    if slope < 0.01 then 1
+    else if slope < 0.03 then 1.2
+    else if slope < 0.05 then 1.4
+    else if slope < 0.10 then 1.8
+    else 2.6
+
+assign costfactor =
+    if highway=motorway then infinity
+    else if onewayforbidden then infinity
+    # escaliers : le vélo doit être porté
+    else if highway=steps then 40
+    else if not accessible then infinity
+    else flatfactor * slopefactor
@@ -0,0 +1,49 @@
+# Vélo électrique : comme le vélo de ville, mais l'assistance rend les montées presque indolores,
+# ce qui permet de préférer des itinéraires plus directs
+
+assign cycleroute = icn=yes or ncn=yes or rcn=yes or lcn=yes
+assign bike = bicycle=yes|designated|permissive
+
+assign wrongoneway = if reversed then oneway=yes or oneway:bicycle=yes else oneway=-1
+assign onewayforbidden = wrongoneway
+    and not (oneway:bicycle=no or cycleway=opposite|opposite_lane|opposite_track)
+
+assign accessible =
+    if cycleroute then true
+    else if bicycle=yes|designated|permissive|dismount then true
+    else if bicycle=no|use_sidepath|private then false
+    else if vehicle=no|private then false
+    else if access=yes|permissive then true
+    else if access=no|private then false
+    else if motorroad=yes then false
+    else true
+
+assign paved = surface=paved|asphalt|concrete|paving_stones|sett
+assign unpaved = surface=unpaved|gravel|ground|compacted|grass|dirt|fine_gravel|pebblestone|wood|sand|cobblestone
+assign probablygood = paved or (not unpaved and (bike or highway=footway))
+
+assign roadfactor =
+    if highway=pedestrian then 3
+    else if highway=cycleway then 1
+    else if highway=residential|living_street then (if unpaved then 1.4 else 1.05)
+    else if highway=service then (if unpaved then 1.5 else 1.2)
+    else if highway=trunk then (if bike then 1.4 else 10)
+    else if highway=primary then (if bike then 1.1 else 2.5)
+    else if highway=secondary then (if bike then 1.05 else 1.4)
+    else if highway=tertiary|unclassified then (if bike then 1.0 else 1.2)
+    else if highway=track|road|path|footway then (if probablygood then 1.1 else 4)
+    else 2
+
+assign flatfactor = if cycleroute then 1 else 0.05 + roadfactor
+
+assign slopefactor =
+    if slope < 0.05 then 1
+    else if slope < 0.10 then 1.1
+    else 1.3
+
+assign costfactor =
+    if highway=motorway then infinity
+    else if onewayforbidden then infinity
+    else if highway=steps then 40
+    else if not accessible then infinity
+    else flatfactor * slopefactor
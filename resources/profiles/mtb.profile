@@ -0,0 +1,51 @@
+# VTT : sentiers et chemins non revêtus recherchés, grandes routes évitées, pentes peu pénalisées
+
+assign cycleroute = icn=yes or ncn=yes or rcn=yes or lcn=yes
+assign bikeforbidden = bicycle=no|use_sidepath|private
+
+assign wrongoneway = if reversed then oneway=yes or oneway:bicycle=yes else oneway=-1
+assign onewayforbidden = wrongoneway
+    and not (oneway:bicycle=no or cycleway=opposite|opposite_lane|opposite_track)
+
+assign accessible =
+    if cycleroute then true
+    else if bicycle=yes|designated|permissive|dismount then true
+    else if bikeforbidden then false
+    else if vehicle=no|private then false
+    else if access=yes|permissive then true
+    else if access=no|private then false
+    else if motorroad=yes then false
+    else true
+
+assign unpaved = surface=unpaved|gravel|ground|compacted|grass|dirt|fine_gravel|pebblestone|sand
+
+assign roadfactor =
+    if highway=path|track then
+        (if tracktype=grade1 then 1.2
+         else if tracktype=grade5 then 1.3
+         else 1)
+    else if highway=footway then 1.4
+    else if highway=cycleway then 1.2
+    else if highway=road|unclassified|service then (if unpaved then 1.1 else 1.4)
+    else if highway=residential|living_street then 1.5
+    else if highway=tertiary then 1.8
+    else if highway=secondary then 2.5
+    else if highway=primary then 4
+    else if highway=trunk then 12
+    else if highway=pedestrian then 3
+    else 2
+
+assign flatfactor = if cycleroute then min(roadfactor, 1.2) else roadfactor
+
+assign slopefactor =
+    if slope < 0.03 then 1
+    else if slope < 0.06 then 1.1
+    else if slope < 0.10 then 1.3
+    else 1.6
+
+assign costfactor =
+    if highway=motorway then infinity
+    else if onewayforbidden then infinity
+    else if highway=steps then 15
+    else if not accessible then infinity
+    else flatfactor * slopefactor
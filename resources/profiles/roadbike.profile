@@ -0,0 +1,54 @@
+# Vélo de route : revêtement obligatoire, routes principales tolérées, pentes moins pénalisées
+# qu'en vélo de ville, chemins non revêtus à éviter à tout prix
+
+assign cycleroute = icn=yes or ncn=yes or rcn=yes or lcn=yes
+assign bike = bicycle=yes|designated|permissive
+
+assign wrongoneway = if reversed then oneway=yes or oneway:bicycle=yes else oneway=-1
+assign onewayforbidden = wrongoneway
+    and not (oneway:bicycle=no or cycleway=opposite|opposite_lane|opposite_track)
+
+assign accessible =
+    if cycleroute then true
+    else if bicycle=yes|designated|permissive|dismount then true
+    else if bicycle=no|use_sidepath|private then false
+    else if vehicle=no|private then false
+    else if access=yes|permissive then true
+    else if access=no|private then false
+    else if motorroad=yes then false
+    else true
+
+assign paved = surface=paved|asphalt|concrete
+assign rough = surface=paving_stones|sett|cobblestone|pebblestone|wood
+assign unpaved = surface=unpaved|gravel|ground|compacted|grass|dirt|fine_gravel|sand
+
+assign roadfactor =
+    if highway=cycleway then (if unpaved then 4 else 1)
+    else if highway=trunk then (if bike then 1.3 else 5)
+    else if highway=primary then (if bike then 1.1 else 1.6)
+    else if highway=secondary|tertiary|unclassified then 1
+    else if highway=residential|living_street then 1.2
+    else if highway=service then 1.4
+    else if highway=pedestrian then 4
+    else if highway=track|road|path|footway then
+        (if paved or tracktype=grade1 then 1.5 else 8)
+    else 2
+
+# les pavés secouent, le gravier est à éviter
+assign surfacefactor = if unpaved then 3 else if rough then 1.8 else 1
+
+assign flatfactor = if cycleroute and not unpaved then 1 else roadfactor * surfacefactor
+
+assign slopefactor =
+    if slope < 0.02 then 1
+    else if slope < 0.04 then 1.1
+    else if slope < 0.07 then 1.3
+    else if slope < 0.12 then 1.7
+    else 2.4
+
+assign costfactor =
+    if highway=motorway then infinity
+    else if onewayforbidden then infinity
+    else if highway=steps then 60
+    else if not accessible then infinity
+    else flatfactor * slopefactor
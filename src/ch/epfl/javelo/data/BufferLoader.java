@@ -0,0 +1,172 @@
+package ch.epfl.javelo.data;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Charge les fichiers du graphe JaVelo dans des mémoires tampons, selon un mode de chargement donné (voir
+ * LoadMode). En mode HEAP, les fichiers sont copiés par tranches dans des tableaux du type de leurs valeurs, que
+ * les mémoires tampons retournées enveloppent; en mode PRELOADED, les projections sont lues par preload, une fois
+ * tous les fichiers projetés. Un chargeur peut être utilisé par plusieurs fils d'exécution à la fois.
+ */
+final class BufferLoader {
+
+    /* taille des tranches lues pour remplir un tableau, multiple de la taille de tous les types primitifs */
+    private final static int CHUNK_BYTES = 1 << 20;
+
+    private final LoadMode mode;
+    /* projections à lire par preload */
+    private final Queue<MappedByteBuffer> mappedBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Construit un chargeur de fichiers selon le mode donné
+     * @param mode le mode de chargement
+     */
+    BufferLoader(LoadMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Retourne le contenu du fichier donné sous la forme d'une mémoire tampon d'octets
+     * @param file le fichier
+     * @return son contenu
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    ByteBuffer bytes(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return bytes(channel, 0, channel.size());
+        }
+    }
+
+    /**
+     * Retourne la partie donnée d'un fichier ouvert sous la forme d'une mémoire tampon d'octets
+     * @param channel le fichier
+     * @param position la position de la partie dans le fichier
+     * @param size la taille de la partie, en octets
+     * @return le contenu de cette partie
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si la partie ne tient pas dans une mémoire tampon
+     */
+    ByteBuffer bytes(FileChannel channel, long position, long size) throws IOException {
+        switch (mode) {
+            case MAPPED, PRELOADED -> {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                if (mode == LoadMode.PRELOADED) mappedBuffers.add(buffer);
+                return buffer;
+            }
+            case HEAP -> {
+                /* une lecture directe dans le tableau passerait par une copie temporaire hors du tas, de même
+                   taille, que la machine virtuelle garderait ensuite */
+                byte[] values = new byte[length(size, Byte.BYTES)];
+                copy(channel, position, size, (chunk, offset) -> chunk.get(values, (int) offset, chunk.remaining()));
+                return ByteBuffer.wrap(values);
+            }
+            default -> {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(length(size, Byte.BYTES));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+                }
+                return buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Retourne le contenu du fichier donné sous la forme d'une mémoire tampon d'entiers
+     * @param file le fichier
+     * @return son contenu
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    IntBuffer ints(Path file) throws IOException {
+        if (mode != LoadMode.HEAP) return bytes(file).asIntBuffer();
+        try (FileChannel channel = FileChannel.open(file)) {
+            int[] values = new int[length(channel.size(), Integer.BYTES)];
+            copy(channel, 0, channel.size(), (chunk, offset) -> chunk.asIntBuffer()
+                    .get(values, (int) (offset / Integer.BYTES), chunk.remaining() / Integer.BYTES));
+            return IntBuffer.wrap(values);
+        }
+    }
+
+    /**
+     * Retourne le contenu du fichier donné sous la forme d'une mémoire tampon de valeurs de type short
+     * @param file le fichier
+     * @return son contenu
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    ShortBuffer shorts(Path file) throws IOException {
+        if (mode != LoadMode.HEAP) return bytes(file).asShortBuffer();
+        try (FileChannel channel = FileChannel.open(file)) {
+            short[] values = new short[length(channel.size(), Short.BYTES)];
+            copy(channel, 0, channel.size(), (chunk, offset) -> chunk.asShortBuffer()
+                    .get(values, (int) (offset / Short.BYTES), chunk.remaining() / Short.BYTES));
+            return ShortBuffer.wrap(values);
+        }
+    }
+
+    /**
+     * Retourne le contenu du fichier donné sous la forme d'une mémoire tampon de valeurs de type long
+     * @param file le fichier
+     * @return son contenu
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    LongBuffer longs(Path file) throws IOException {
+        if (mode != LoadMode.HEAP) return bytes(file).asLongBuffer();
+        try (FileChannel channel = FileChannel.open(file)) {
+            long[] values = new long[length(channel.size(), Long.BYTES)];
+            copy(channel, 0, channel.size(), (chunk, offset) -> chunk.asLongBuffer()
+                    .get(values, (int) (offset / Long.BYTES), chunk.remaining() / Long.BYTES));
+            return LongBuffer.wrap(values);
+        }
+    }
+
+    /**
+     * Lit les projections créées depuis le dernier appel en mode PRELOADED, chacune par un fil d'exécution, et
+     * attend la fin de leur lecture; ne fait rien dans les autres modes
+     */
+    void preload() {
+        if (mappedBuffers.isEmpty()) return;
+        try (ExecutorService executor = Executors.newFixedThreadPool(mappedBuffers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "javelo-preload");
+            thread.setDaemon(true);
+            return thread;
+        })) {
+            for (MappedByteBuffer buffer : mappedBuffers) executor.execute(buffer::load);
+        }
+        mappedBuffers.clear();
+    }
+
+    //==================================//
+
+    /* Nombre de valeurs de la taille donnée contenues dans un fichier de la taille donnée */
+    private static int length(long size, int valueBytes) throws IOException {
+        long length = size / valueBytes;
+        if (length > Integer.MAX_VALUE - Long.BYTES)
+            throw new IOException("fichier trop grand pour être chargé en mémoire : " + size + " octets");
+        return (int) length;
+    }
+
+    /* Lit la partie donnée du fichier par tranches, passées avec leur position dans la partie à la fonction
+       donnée */
+    private static void copy(FileChannel channel, long position, long size, ObjLongConsumer<ByteBuffer> sink)
+            throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        for (long offset = 0; offset < size; offset += chunk.limit()) {
+            chunk.clear().limit((int) Math.min(CHUNK_BYTES, size - offset));
+            while (chunk.hasRemaining()) {
+                if (channel.read(chunk, position + offset + chunk.position()) < 0) throw new EOFException();
+            }
+            sink.accept(chunk.flip(), offset);
+        }
+    }
+}
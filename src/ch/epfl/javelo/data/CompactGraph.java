@@ -0,0 +1,335 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Bits;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Q28_4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static ch.epfl.javelo.data.GraphFormatV2.*;
+
+/**
+ * Graphe JaVelo stocké dans un fichier au format 2 (voir GraphFormatV2).
+ * <p>
+ * Toutes les données sont lues directement dans le fichier : chaque champ d'une arête occupant une position fixe
+ * dans son bloc d'adjacence, il est extrait des 8 octets commençant à son premier octet, sans décoder les autres.
+ * Seul l'index des blocs est chargé dans le tas, avec une table donnant le bloc de chaque tranche de 64 arêtes,
+ * qui permet de trouver le bloc d'une arête sans recherche dichotomique.
+ */
+final class CompactGraph {
+
+    private final static long SEGMENT_MASK = SEGMENT_BYTES - 1;
+    private final static int EDGE_CHUNK_SHIFT = 6;
+
+    private final int nodeCount;
+    private final int edgeCount;
+    private final int attributeSetCount;
+    private final int blockShift;
+    private final Section sectors;
+    private final Section attributes;
+    private final Section nodes;
+    private final Section adjacency;
+    private final Section elevations;
+    /* pour chaque bloc, et un de plus, sa position dans la section d'adjacence et sa première arête */
+    private final long[] blockPositions;
+    private final int[] blockFirstEdges;
+    /* pour chaque tranche de 64 arêtes, le bloc contenant sa première arête */
+    private final int[] chunkBlocks;
+
+    private CompactGraph(ByteBuffer header, Section[] sections) {
+        this.nodeCount = header.getInt(OFFSET_NODE_COUNT);
+        this.edgeCount = header.getInt(OFFSET_EDGE_COUNT);
+        this.attributeSetCount = header.getInt(OFFSET_ATTRIBUTE_SET_COUNT);
+        this.blockShift = header.getInt(OFFSET_BLOCK_SHIFT);
+        this.sectors = sections[SECTION_SECTORS];
+        this.attributes = sections[SECTION_ATTRIBUTES];
+        this.nodes = sections[SECTION_NODES];
+        this.adjacency = sections[SECTION_ADJACENCY];
+        this.elevations = sections[SECTION_ELEVATIONS];
+
+        int blockCount = Math2.ceilDiv(nodeCount, 1 << blockShift);
+        Section blockIndex = sections[SECTION_BLOCK_INDEX];
+        this.blockPositions = new long[blockCount + 1];
+        this.blockFirstEdges = new int[blockCount + 1];
+        for (int b = 0; b <= blockCount; b++) {
+            blockPositions[b] = blockIndex.getLong((long) b * INDEX_ENTRY_BYTES);
+            blockFirstEdges[b] = blockIndex.getInt((long) b * INDEX_ENTRY_BYTES + Long.BYTES);
+        }
+
+        this.chunkBlocks = new int[Math2.ceilDiv(edgeCount, 1 << EDGE_CHUNK_SHIFT)];
+        int block = 0;
+        for (int chunk = 0; chunk < chunkBlocks.length; chunk++) {
+            while (blockFirstEdges[block + 1] <= chunk << EDGE_CHUNK_SHIFT) block++;
+            chunkBlocks[chunk] = block;
+        }
+    }
+
+    /**
+     * Charge le fichier au format 2 donné
+     * @param file le fichier
+     * @param loader le chargeur des sections du fichier
+     * @return le graphe qu'il contient
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas au format 2
+     */
+    static CompactGraph open(Path file, BufferLoader loader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {}
+            if (header.hasRemaining() || header.getInt(OFFSET_MAGIC) != MAGIC)
+                throw new IOException(file + " n'est pas un graphe JaVelo au format 2");
+            if (header.getInt(OFFSET_VERSION) != VERSION)
+                throw new IOException(file + " : version " + header.getInt(OFFSET_VERSION) + " non gérée");
+            Section[] sections = new Section[SECTION_COUNT];
+            for (int s = 0; s < SECTION_COUNT; s++) {
+                sections[s] = new Section(channel, loader, header.getLong(OFFSET_SECTIONS + s * Long.BYTES),
+                        header.getLong(OFFSET_SECTIONS + (s + 1) * Long.BYTES));
+            }
+            return new CompactGraph(header, sections);
+        }
+    }
+
+    /**
+     * Retourne les nœuds du graphe
+     * @return les nœuds du graphe
+     */
+    GraphStorage.Nodes nodes() {
+        return new Nodes();
+    }
+
+    /**
+     * Retourne les secteurs du graphe
+     * @return les secteurs du graphe
+     */
+    GraphStorage.Sectors sectors() {
+        return (center, distance) -> GraphSectors.sectorsInArea(center, distance, index -> {
+            int startNodeId = sectors.getInt((long) index * SECTOR_BYTES);
+            return new GraphSectors.Sector(startNodeId,
+                    startNodeId + sectors.getInt((long) index * SECTOR_BYTES + Integer.BYTES));
+        });
+    }
+
+    /**
+     * Retourne les arêtes du graphe
+     * @return les arêtes du graphe
+     */
+    GraphStorage.Edges edges() {
+        return new Edges();
+    }
+
+    /**
+     * Retourne le nombre d'ensembles d'attributs du graphe
+     * @return le nombre d'ensembles d'attributs
+     */
+    int attributeSetCount() {
+        return attributeSetCount;
+    }
+
+    /**
+     * Retourne les bits de l'ensemble d'attributs d'index donné
+     * @param index l'index de l'ensemble
+     * @return les bits de l'ensemble d'attributs
+     */
+    long attributeSetBits(int index) {
+        return attributes.getLong((long) index * Long.BYTES);
+    }
+
+    //==================================//
+
+    /* Nœuds, dont les coordonnées sont lues dans la section des nœuds et l'adjacence dans leur bloc */
+    private final class Nodes implements GraphStorage.Nodes {
+        @Override
+        public int count() {
+            return nodeCount;
+        }
+
+        @Override
+        public double nodeE(int nodeId) {
+            return Q28_4.asDouble(nodes.getInt((long) nodeId * NODE_BYTES));
+        }
+
+        @Override
+        public double nodeN(int nodeId) {
+            return Q28_4.asDouble(nodes.getInt((long) nodeId * NODE_BYTES + Integer.BYTES));
+        }
+
+        @Override
+        public double squaredDistanceTo(int nodeId, double e, double n) {
+            double dE = nodeE(nodeId) - e;
+            double dN = nodeN(nodeId) - n;
+            return dE * dE + dN * dN;
+        }
+
+        @Override
+        public int outDegree(int nodeId) {
+            int block = nodeId >>> blockShift;
+            int i = nodeId & (1 << blockShift) - 1;
+            return (int) (field(block, i + 1, FIELD_EDGE_START) - field(block, i, FIELD_EDGE_START));
+        }
+
+        @Override
+        public int edgeId(int nodeId, int edgeIndex) {
+            assert 0 <= edgeIndex && edgeIndex < outDegree(nodeId);
+            int block = nodeId >>> blockShift;
+            int i = nodeId & (1 << blockShift) - 1;
+            return blockFirstEdges[block] + (int) field(block, i, FIELD_EDGE_START) + edgeIndex;
+        }
+    }
+
+    /* Arêtes, lues dans leur bloc, et profils, lus dans la section des échantillons */
+    private final class Edges implements GraphStorage.Edges {
+        @Override
+        public int count() {
+            return edgeCount;
+        }
+
+        @Override
+        public boolean isInverted(int edgeId) {
+            return (edgeField(edgeId, FIELD_TARGET) & 1) != 0;
+        }
+
+        @Override
+        public int targetNodeId(int edgeId) {
+            int block = blockOfEdge(edgeId);
+            long target = field(block, edgeId - blockFirstEdges[block], FIELD_TARGET);
+            return (int) ((block << blockShift) + unzigzag(target >>> 1));
+        }
+
+        @Override
+        public double length(int edgeId) {
+            return Q28_4.asDouble((int) edgeField(edgeId, FIELD_LENGTH));
+        }
+
+        @Override
+        public double elevationGain(int edgeId) {
+            return Q28_4.asDouble((int) edgeField(edgeId, FIELD_ELEVATION_GAIN));
+        }
+
+        @Override
+        public int attributesIndex(int edgeId) {
+            return (int) edgeField(edgeId, FIELD_ATTRIBUTES);
+        }
+
+        @Override
+        public boolean hasProfile(int edgeId) {
+            return edgeField(edgeId, FIELD_PROFILE) != 0;
+        }
+
+        @Override
+        public float[] profileSamples(int edgeId) {
+            int block = blockOfEdge(edgeId);
+            int i = edgeId - blockFirstEdges[block];
+            long profile = field(block, i, FIELD_PROFILE);
+            if (profile == 0) return new float[]{};
+            int type = (int) (profile & (1 << PROFILE_TYPE_BITS) - 1);
+            long index = adjacency.getLong(blockPositions[block] + OFFSET_BLOCK_SAMPLE)
+                    + unzigzag(profile >>> PROFILE_TYPE_BITS);
+            boolean inverted = (field(block, i, FIELD_TARGET) & 1) != 0;
+            int length = (int) field(block, i, FIELD_LENGTH);
+            float[] samples = new float[1 + Math2.ceilDiv(length, SAMPLE_SPACING_Q28_4)];
+
+            samples[0] = Q28_4.asFloat(Short.toUnsignedInt(sample(index)));
+            if (type == 1) {
+                for (int s = 1; s < samples.length; s++)
+                    samples[s] = Q28_4.asFloat(Short.toUnsignedInt(sample(index + s)));
+            } else {
+                /* différences de 8 (type 2) ou 4 bits (type 3), les premières dans les bits de poids fort */
+                int bits = type == 2 ? Byte.SIZE : Byte.SIZE / 2;
+                int perShort = Short.SIZE / bits;
+                for (int s = 1; s < samples.length; s++) {
+                    short packed = sample(index + 1 + (s - 1) / perShort);
+                    int start = bits * (perShort - 1 - (s - 1) % perShort);
+                    samples[s] = samples[s - 1] + Q28_4.asFloat(Bits.extractSigned(packed, start, bits));
+                }
+            }
+
+            if (inverted) {
+                for (int s = 0; s < samples.length / 2; s++) {
+                    float tmp = samples[s];
+                    samples[s] = samples[samples.length - 1 - s];
+                    samples[samples.length - 1 - s] = tmp;
+                }
+            }
+            return samples;
+        }
+
+        private short sample(long index) {
+            return elevations.getShort(index * Short.BYTES);
+        }
+    }
+
+    /* Champ donné de l'arête donnée */
+    private long edgeField(int edgeId, int field) {
+        int block = blockOfEdge(edgeId);
+        return field(block, edgeId - blockFirstEdges[block], field);
+    }
+
+    /* Index du bloc contenant l'arête donnée : le dernier dont la première arête la précède (ou est elle) */
+    private int blockOfEdge(int edgeId) {
+        int block = chunkBlocks[edgeId >>> EDGE_CHUNK_SHIFT];
+        while (blockFirstEdges[block + 1] <= edgeId) block++;
+        return block;
+    }
+
+    /* Champ donné de l'enregistrement d'index donné du bloc donné : la première arête d'un nœud du bloc pour
+       FIELD_EDGE_START, un champ d'une arête du bloc sinon */
+    private long field(int block, int index, int field) {
+        long position = blockPositions[block];
+        /* les nombres de bits des champs, un par octet, le premier dans l'octet de poids fort */
+        long widths = adjacency.getLong(position + OFFSET_BLOCK_WIDTHS);
+        int startBits = width(widths, FIELD_EDGE_START);
+        long bit;
+        if (field == FIELD_EDGE_START) {
+            bit = (long) index * startBits;
+        } else {
+            int recordBits = 0;
+            int offset = 0;
+            for (int f = FIELD_TARGET; f < FIELD_COUNT; f++) {
+                if (f == field) offset = recordBits;
+                recordBits += width(widths, f);
+            }
+            bit = (long) ((1 << blockShift) + 1) * startBits + (long) index * recordBits + offset;
+        }
+        long word = adjacency.getLong(position + BLOCK_HEADER_BYTES + (bit >>> 3));
+        return word << (bit & 7) >>> Long.SIZE - width(widths, field);
+    }
+
+    private static int width(long widths, int field) {
+        return (int) (widths >>> Long.SIZE - Byte.SIZE * (field + 1)) & 0xFF;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /* Section du fichier, chargée par tranches de 2^30 octets */
+    private static final class Section {
+        private final ByteBuffer[] segments;
+
+        private Section(FileChannel channel, BufferLoader loader, long start, long end) throws IOException {
+            segments = new ByteBuffer[(int) Math.max(1, (end - start + SEGMENT_BYTES - 1) >>> SEGMENT_SHIFT)];
+            for (int s = 0; s < segments.length; s++) {
+                long segmentStart = start + ((long) s << SEGMENT_SHIFT);
+                segments[s] = loader.bytes(channel, segmentStart, Math.min(SEGMENT_BYTES, end - segmentStart));
+            }
+        }
+
+        private ByteBuffer segment(long position) {
+            return segments[(int) (position >>> SEGMENT_SHIFT)];
+        }
+
+        private int getInt(long position) {
+            return segment(position).getInt((int) (position & SEGMENT_MASK));
+        }
+
+        private long getLong(long position) {
+            return segment(position).getLong((int) (position & SEGMENT_MASK));
+        }
+
+        private short getShort(long position) {
+            return segment(position).getShort((int) (position & SEGMENT_MASK));
+        }
+    }
+}
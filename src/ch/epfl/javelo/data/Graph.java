@@ -4,11 +4,18 @@ import ch.epfl.javelo.Functions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.*;
-import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.DoubleUnaryOperator;
 
 
@@ -18,10 +25,17 @@ import java.util.function.DoubleUnaryOperator;
  */
 public final class Graph {
 
-    private final GraphNodes graphNodes;
-    private final GraphSectors graphSectors;
-    private final GraphEdges graphEdges;
-    private final List<AttributeSet> attributeSets;
+    private final GraphStorage.Nodes graphNodes;
+    private final GraphStorage.Sectors graphSectors;
+    private final GraphStorage.Edges graphEdges;
+    /* contenu (AttributeSet.bits) de chaque ensemble d'attributs, et instances de ces ensembles, créées à leur
+       première demande; AttributeSet étant immuable, un fil qui lit null crée au pire une instance de trop */
+    private final long[] attributeSetBits;
+    private final AttributeSet[] attributeSets;
+    private final GraphInEdges graphInEdges;
+    /* empreinte du graphe, calculée à sa première demande (0 tant qu'elle ne l'a pas été); deux fils qui la
+       demandent en même temps la calculent au pire deux fois */
+    private volatile long fingerprint;
 
     private final static String PATH_NODES = "nodes.bin";
     private final static String PATH_SECTORS = "sectors.bin";
@@ -29,6 +43,10 @@ public final class Graph {
     private final static String PATH_PROFILE_IDS = "profile_ids.bin";
     private final static String PATH_ELEVATIONS = "elevations.bin";
     private final static String PATH_ATTRIBUTES = "attributes.bin";
+    private final static String PATH_IN_EDGES = "in_edges.bin";
+
+    /* empêche le compilateur JIT d'éliminer les lectures de prefetchRegion */
+    private static double prefetchSink;
 
     /**
      * Constructeur retournant le graphe avec les nœuds, secteurs, arêtes et ensembles d'attributs donnés.
@@ -38,41 +56,126 @@ public final class Graph {
      * @param attributeSets Ensemble d'attributs du Graph
      */
     public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets){
+        this(nodes, sectors, edges, attributeSets, null);
+    }
+
+    /**
+     * Constructeur retournant le graphe avec les nœuds, secteurs, arêtes, ensembles d'attributs et
+     * index inverse des arêtes donnés.
+     * @param nodes Ensemble de noeuds du Graph
+     * @param sectors Ensemble de secteurs du Graph
+     * @param edges Ensemble de arêtes du Graph
+     * @param attributeSets Ensemble d'attributs du Graph
+     * @param inEdges Index inverse des arêtes du Graph, ou null s'il n'est pas disponible
+     */
+    public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets,
+                 GraphInEdges inEdges){
+        this(nodes, sectors, edges, bitsOf(attributeSets), inEdges);
+    }
+
+    private Graph(GraphStorage.Nodes nodes, GraphStorage.Sectors sectors, GraphStorage.Edges edges,
+                  long[] attributeSetBits, GraphInEdges inEdges){
         this.graphNodes = nodes;
         this.graphSectors = sectors;
         this.graphEdges = edges;
-        this.attributeSets = List.copyOf(attributeSets);
+        this.attributeSetBits = attributeSetBits;
+        this.attributeSets = new AttributeSet[attributeSetBits.length];
+        this.graphInEdges = inEdges;
     }
 
     /**
      * retourne le graphe JaVelo obtenu à partir des fichiers se trouvant
-     * dans le répertoire dont le chemin d'accès est basePath
+     * dans le répertoire dont le chemin d'accès est basePath : les fichiers du format d'origine s'ils s'y trouvent,
+     * le fichier au format 2 (graph_v2.bin, voir GraphFormatV2) sinon; l'index inverse des arêtes (in_edges.bin)
+     * n'est chargé que s'il s'y trouve. Les fichiers sont projetés en mémoire.
      * @param basePath chemin d'accès
      * @return le graphe JaVelo
-     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si l'un des fichiers attendu n'existe pas
+     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si l'un des fichiers attendu n'existe pas, ou si
+     * l'index inverse des arêtes n'a pas été construit pour un graphe de même taille
      */
     public static Graph loadFrom(Path basePath) throws IOException {
-        /*contient les nœuds du graphe JaVelo*/
-        IntBuffer nodesBuffer = mapIntBuffer(basePath.resolve(PATH_NODES));
-        GraphNodes graphNodes = new GraphNodes(nodesBuffer);
-        /*contient les secteurs*/
-        ByteBuffer sectorBuffer = mapByteBuffer(basePath.resolve(PATH_SECTORS));
-        GraphSectors graphSectors = new GraphSectors(sectorBuffer);
-        /*contient les arêtes du graphe JaVelo (premier ensemble d'attributs)*/
-        ByteBuffer edgesBuffer = mapByteBuffer(basePath.resolve(PATH_EDGES));
-        /*contient les types et index de premier échantillon des profils des arêtes*/
-        IntBuffer profilesBuffer = mapIntBuffer(basePath.resolve(PATH_PROFILE_IDS));
-        /*contient les échantillons des profils*/
-        ShortBuffer elevationsBuffer = mapShortBuffer(basePath.resolve(PATH_ELEVATIONS));
-        GraphEdges graphEdges = new GraphEdges(edgesBuffer, profilesBuffer, elevationsBuffer);
-        /*contient les ensembles d'attributs OSM des arêtes*/
-        LongBuffer attributesBuffer = mapLongBuffer(basePath.resolve(PATH_ATTRIBUTES));
-        List<AttributeSet> attributeSets = new ArrayList<>() ;
-        /* On ajoute un attributeSet pour chaque entrée du buffer*/
-        for (int i = 0; i < attributesBuffer.capacity(); i++){
-            attributeSets.add(new AttributeSet(attributesBuffer.get(i)));   //
+        return loadFrom(basePath, LoadMode.MAPPED);
+    }
+
+    /**
+     * retourne le graphe JaVelo obtenu à partir des fichiers se trouvant dans le répertoire dont le chemin
+     * d'accès est basePath, comme loadFrom(basePath), en chargeant les fichiers en parallèle selon le mode donné
+     * @param basePath chemin d'accès
+     * @param mode mode de chargement des fichiers
+     * @return le graphe JaVelo
+     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si l'un des fichiers attendu n'existe pas, ou si
+     * l'index inverse des arêtes n'a pas été construit pour un graphe de même taille
+     */
+    public static Graph loadFrom(Path basePath, LoadMode mode) throws IOException {
+        GraphFormat format = Files.exists(basePath.resolve(PATH_NODES)) ? GraphFormat.ORIGINAL : GraphFormat.V2;
+        return loadFrom(basePath, mode, format);
+    }
+
+    /**
+     * retourne le graphe JaVelo obtenu à partir des fichiers du format donné se trouvant dans le répertoire dont
+     * le chemin d'accès est basePath, en chargeant les fichiers en parallèle selon le mode donné. Le format 2 étant
+     * plus compact mais plus lent (voir GraphFormat), il n'est chargé à la place du format d'origine que sur
+     * demande.
+     * @param basePath chemin d'accès
+     * @param mode mode de chargement des fichiers
+     * @param format format des fichiers à charger
+     * @return le graphe JaVelo
+     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si l'un des fichiers attendu n'existe pas, si le
+     * fichier au format 2 n'a pas les mêmes nombres de nœuds et d'arêtes que les fichiers du format d'origine
+     * présents à côté de lui, ou si l'index inverse des arêtes n'a pas été construit pour un graphe de même taille
+     */
+    public static Graph loadFrom(Path basePath, LoadMode mode, GraphFormat format) throws IOException {
+        BufferLoader loader = new BufferLoader(mode);
+        Path inEdgesPath = basePath.resolve(PATH_IN_EDGES);
+        Path compactPath = GraphFormatV2.fileIn(basePath);
+        /* les fichiers sont chargés en parallèle, chacun par un fil d'exécution virtuel */
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            /*contient l'index inverse des arêtes, s'il a été construit*/
+            Future<IntBuffer> inEdgesBuffer = Files.exists(inEdgesPath)
+                    ? executor.submit(() -> loader.ints(inEdgesPath))
+                    : CompletableFuture.completedFuture(null);
+
+            if (format == GraphFormat.V2) {
+                CompactGraph compact = join(executor.submit(() -> CompactGraph.open(compactPath, loader)));
+                GraphFormatV2.checkOriginal(basePath, compact.nodes().count(), compact.edges().count());
+                long[] attributeSetBits = new long[compact.attributeSetCount()];
+                for (int i = 0; i < attributeSetBits.length; i++){
+                    attributeSetBits[i] = compact.attributeSetBits(i);
+                }
+                GraphInEdges graphInEdges = inEdgesOf(join(inEdgesBuffer));
+                loader.preload();
+                return checkInEdges(new Graph(compact.nodes(), compact.sectors(), compact.edges(), attributeSetBits,
+                        graphInEdges), inEdgesPath);
+            }
+
+            /*contient les nœuds du graphe JaVelo*/
+            Future<IntBuffer> nodesBuffer = executor.submit(() -> loader.ints(basePath.resolve(PATH_NODES)));
+            /*contient les secteurs*/
+            Future<ByteBuffer> sectorBuffer = executor.submit(() -> loader.bytes(basePath.resolve(PATH_SECTORS)));
+            /*contient les arêtes du graphe JaVelo (premier ensemble d'attributs)*/
+            Future<ByteBuffer> edgesBuffer = executor.submit(() -> loader.bytes(basePath.resolve(PATH_EDGES)));
+            /*contient les types et index de premier échantillon des profils des arêtes*/
+            Future<IntBuffer> profilesBuffer =
+                    executor.submit(() -> loader.ints(basePath.resolve(PATH_PROFILE_IDS)));
+            /*contient les échantillons des profils*/
+            Future<ShortBuffer> elevationsBuffer =
+                    executor.submit(() -> loader.shorts(basePath.resolve(PATH_ELEVATIONS)));
+            /*contient les ensembles d'attributs OSM des arêtes*/
+            Future<LongBuffer> attributesBuffer =
+                    executor.submit(() -> loader.longs(basePath.resolve(PATH_ATTRIBUTES)));
+
+            GraphNodes graphNodes = new GraphNodes(join(nodesBuffer));
+            GraphSectors graphSectors = new GraphSectors(join(sectorBuffer));
+            GraphEdges graphEdges = new GraphEdges(join(edgesBuffer), join(profilesBuffer), join(elevationsBuffer));
+            LongBuffer attributes = join(attributesBuffer);
+            long[] attributeSetBits = new long[attributes.capacity()];
+            attributes.get(0, attributeSetBits);
+            GraphInEdges graphInEdges = inEdgesOf(join(inEdgesBuffer));
+            /*lit d'un coup les fichiers projetés, en mode PRELOADED*/
+            loader.preload();
+            return checkInEdges(new Graph(graphNodes,graphSectors,graphEdges,attributeSetBits,graphInEdges),
+                    inEdgesPath);
         }
-        return new Graph(graphNodes,graphSectors,graphEdges,attributeSets );
     }
 
     /**
@@ -84,6 +187,40 @@ public final class Graph {
                 .count();
     }
 
+    /**
+     * retourne le nombre total d'arêtes dans le graphe
+     * @return le nombre total d'arêtes dans le graphe
+     */
+    public int edgeCount(){
+        return this.graphEdges
+                .count();
+    }
+
+    /**
+     * retourne l'empreinte du graphe, une valeur de hachage des arêtes sortant de chacun de ses nœuds (identité,
+     * nœud d'arrivée et longueur), qui permet de vérifier qu'un fichier dérivé du graphe (hiérarchie de
+     * contraction, points de repère, etc.) a bien été construit pour lui et non pour un graphe de même taille,
+     * p. ex. le même graphe avant sa renumérotation
+     * @return l'empreinte du graphe
+     */
+    public long fingerprint(){
+        long fingerprint = this.fingerprint;
+        if (fingerprint == 0) {
+            for (int nodeId = 0; nodeId < nodeCount(); nodeId++) {
+                int degree = nodeOutDegree(nodeId);
+                fingerprint = mix(fingerprint, degree);
+                for (int i = 0; i < degree; i++) {
+                    int edgeId = nodeOutEdgeId(nodeId, i);
+                    fingerprint = mix(fingerprint, edgeId);
+                    fingerprint = mix(fingerprint, edgeTargetNodeId(edgeId));
+                    fingerprint = mix(fingerprint, Double.doubleToLongBits(edgeLength(edgeId)));
+                }
+            }
+            this.fingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
     /**
      *  retourne la position du nœud d'identité donnée,
      * @param nodeId Identité du noeud
@@ -93,6 +230,39 @@ public final class Graph {
         return new PointCh(this.graphNodes.nodeE(nodeId), this.graphNodes.nodeN(nodeId));
     }
 
+    /**
+     * retourne la coordonnée E du nœud d'identité donnée, sans créer d'instance de PointCh
+     * @param nodeId Identité du noeud
+     * @return la coordonnée E du nœud d'identité donnée
+     */
+    public double nodeE(int nodeId){
+        return this.graphNodes
+                .nodeE(nodeId);
+    }
+
+    /**
+     * retourne la coordonnée N du nœud d'identité donnée, sans créer d'instance de PointCh
+     * @param nodeId Identité du noeud
+     * @return la coordonnée N du nœud d'identité donnée
+     */
+    public double nodeN(int nodeId){
+        return this.graphNodes
+                .nodeN(nodeId);
+    }
+
+    /**
+     * retourne le carré de la distance, en mètres, séparant le nœud d'identité donnée du point de coordonnées
+     * données, sans créer d'instance de PointCh
+     * @param nodeId Identité du noeud
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return le carré de la distance séparant le nœud du point
+     */
+    public double nodeSquaredDistanceTo(int nodeId, double e, double n){
+        return this.graphNodes
+                .squaredDistanceTo(nodeId, e, n);
+    }
+
     /**
      * retourne le nombre d'arêtes sortant du nœud d'identité donnée,
      * @param nodeId Identité du noeud
@@ -114,6 +284,47 @@ public final class Graph {
                 .edgeId(nodeId,edgeIndex);
     }
 
+    /**
+     * retourne vrai ssi l'index inverse des arêtes est disponible, c.-à-d. si les méthodes nodeInDegree,
+     * nodeInEdgeId et nodeInEdgeSourceId peuvent être utilisées
+     * @return vrai ssi l'index inverse des arêtes est disponible
+     */
+    public boolean hasInEdges(){
+        return graphInEdges != null;
+    }
+
+    /**
+     * retourne le nombre d'arêtes arrivant au nœud d'identité donnée,
+     * @param nodeId Identité du noeud
+     * @return le nombre d'arêtes arrivant au nœud d'identité donnée
+     */
+    public int nodeInDegree(int nodeId){
+        return this.graphInEdges
+                .inDegree(nodeId);
+    }
+
+    /**
+     * retourne l'identité de la edgeIndex-ième arête arrivant au nœud d'identité nodeId,
+     * @param nodeId Identité du noeud
+     * @param edgeIndex index de l'arête
+     * @return l'identité de la edgeIndex-ième arête arrivant au nœud d'identité nodeId
+     */
+    public int nodeInEdgeId(int nodeId, int edgeIndex){
+        return this.graphInEdges
+                .edgeId(nodeId,edgeIndex);
+    }
+
+    /**
+     * retourne l'identité du nœud de départ de la edgeIndex-ième arête arrivant au nœud d'identité nodeId,
+     * @param nodeId Identité du noeud
+     * @param edgeIndex index de l'arête
+     * @return l'identité du nœud de départ de la edgeIndex-ième arête arrivant au nœud d'identité nodeId
+     */
+    public int nodeInEdgeSourceId(int nodeId, int edgeIndex){
+        return this.graphInEdges
+                .sourceNodeId(nodeId,edgeIndex);
+    }
+
     /**
      * retourne l'identité du nœud se trouvant le plus proche du point donné, à la distance maximale donnée
      * (en mètres), ou -1 si aucun nœud ne correspond à ces critères,
@@ -125,14 +336,16 @@ public final class Graph {
 
         int node = -1;
         double squaredDistance = searchDistance * searchDistance;
+        double e = point.e();
+        double n = point.n();
 
         List<GraphSectors.Sector> sectors = graphSectors.sectorsInArea(point,searchDistance);
         for (GraphSectors.Sector s : sectors) {
             for (int id = s.startNodeId(); id < s.endNodeId(); id++){
-                PointCh p = nodePoint(id); //new PointCh(graphNodes.nodeE(id), graphNodes.nodeN(id));
-                if (point.squaredDistanceTo(p) <= squaredDistance){
+                double d = graphNodes.squaredDistanceTo(id, e, n);
+                if (d <= squaredDistance){
                     node = id;
-                    squaredDistance = point.squaredDistanceTo(p);
+                    squaredDistance = d;
                 }
             }
         }
@@ -165,8 +378,50 @@ public final class Graph {
      * @return l'ensemble des attributs OSM attachés à l'arête d'identité donnée
      */
     public AttributeSet edgeAttributes(int edgeId){
-        return attributeSets
-                .get(this.graphEdges.attributesIndex(edgeId));
+        return attributeSet(this.graphEdges.attributesIndex(edgeId));
+    }
+
+    /**
+     * retourne le contenu de l'ensemble des attributs OSM attachés à l'arête d'identité donnée, c.-à-d. la valeur
+     * de bits de edgeAttributes(edgeId), sans créer d'instance de AttributeSet
+     * @param edgeId Identité de l'arête
+     * @return le contenu de l'ensemble des attributs OSM attachés à l'arête d'identité donnée
+     */
+    public long edgeAttributeBits(int edgeId){
+        return attributeSetBits[this.graphEdges.attributesIndex(edgeId)];
+    }
+
+    /**
+     * retourne l'index, dans la liste des ensembles d'attributs du graphe, de l'ensemble attaché à l'arête
+     * d'identité donnée
+     * @param edgeId Identité de l'arête
+     * @return l'index de l'ensemble des attributs OSM attachés à l'arête d'identité donnée
+     */
+    public int edgeAttributesIndex(int edgeId){
+        return this.graphEdges
+                .attributesIndex(edgeId);
+    }
+
+    /**
+     * retourne le nombre d'ensembles d'attributs distincts du graphe
+     * @return le nombre d'ensembles d'attributs du graphe
+     */
+    public int attributeSetCount(){
+        return attributeSetBits.length;
+    }
+
+    /**
+     * retourne l'ensemble d'attributs d'index donné
+     * @param index index de l'ensemble, compris entre 0 et attributeSetCount() (exclus)
+     * @return l'ensemble d'attributs d'index donné
+     */
+    public AttributeSet attributeSet(int index){
+        AttributeSet attributeSet = attributeSets[index];
+        if (attributeSet == null) {
+            attributeSet = new AttributeSet(attributeSetBits[index]);
+            attributeSets[index] = attributeSet;
+        }
+        return attributeSet;
     }
 
     /**
@@ -201,42 +456,78 @@ public final class Graph {
                 Functions.constant(Double.NaN) ;
     }
 
-    //==================================//
-    private static IntBuffer mapIntBuffer(Path path) throws IOException{
-        IntBuffer buffer;
-        try (FileChannel channel = FileChannel.open(path)) {
-            buffer = channel
-                    .map(FileChannel.MapMode.READ_ONLY, 0 , channel.size())
-                    .asIntBuffer();
+    /**
+     * lit les données des nœuds et des arêtes (sortantes et entrantes) des secteurs entourant les points donnés,
+     * pour que les recherches dans cette région n'attendent pas la lecture des pages des fichiers projetés en
+     * mémoire, p. ex. autour des points de passage d'un itinéraire sur le point d'être calculé
+     * @param points les points autour desquels lire les données
+     * @param distance la distance, en mètres, autour de chaque point
+     * @return le nombre de nœuds dont les données ont été lues
+     */
+    public int prefetchRegion(List<PointCh> points, double distance){
+        Set<GraphSectors.Sector> sectors = new HashSet<>();
+        for (PointCh point : points) sectors.addAll(graphSectors.sectorsInArea(point, distance));
+
+        int nodes = 0;
+        double sum = 0;
+        for (GraphSectors.Sector s : sectors) {
+            for (int id = s.startNodeId(); id < s.endNodeId(); id++){
+                nodes++;
+                sum += graphNodes.nodeE(id) + graphNodes.nodeN(id);
+                for (int i = 0; i < graphNodes.outDegree(id); i++){
+                    int edgeId = graphNodes.edgeId(id, i);
+                    sum += graphEdges.targetNodeId(edgeId) + graphEdges.length(edgeId)
+                            + graphEdges.elevationGain(edgeId) + graphEdges.attributesIndex(edgeId)
+                            + (graphEdges.hasProfile(edgeId) ? 1 : 0);
+                }
+                if (graphInEdges == null) continue;
+                for (int i = 0; i < graphInEdges.inDegree(id); i++){
+                    sum += graphInEdges.edgeId(id, i) + graphInEdges.sourceNodeId(id, i);
+                }
+            }
         }
-        return buffer;
+        prefetchSink += sum;
+        return nodes;
     }
-    private static ByteBuffer mapByteBuffer(Path path) throws IOException{
-        ByteBuffer buffer;
-        try (FileChannel channel = FileChannel.open(path)) {
-            buffer = channel
-                    .map(FileChannel.MapMode.READ_ONLY, 0 , channel.size()); //La méthode map retourne un MappedByteBuffer qui est une sous-classe de ByteBuffer, donc il n’y a pas besoin d’utiliser de méthodes de conversion dans ce cas.
-        }
-        return buffer;
-    }
-    private static ShortBuffer mapShortBuffer(Path path) throws IOException{
-        ShortBuffer buffer;
-        try (FileChannel channel = FileChannel.open(path)) {
-            buffer = channel
-                    .map(FileChannel.MapMode.READ_ONLY, 0 , channel.size())
-                    .asShortBuffer();
-        }
-        return buffer;
-    }
-    private static LongBuffer mapLongBuffer(Path path) throws IOException{
-        LongBuffer buffer;
-        try (FileChannel channel = FileChannel.open(path)) {
-            buffer = channel
-                    .map(FileChannel.MapMode.READ_ONLY, 0 , channel.size())
-                    .asLongBuffer();
-        }
-        return buffer;
+
+    //==================================//
+
+    /* Contenu de chacun des ensembles d'attributs donnés */
+    private static long[] bitsOf(List<AttributeSet> attributeSets){
+        long[] bits = new long[attributeSets.size()];
+        for (int i = 0; i < bits.length; i++) bits[i] = attributeSets.get(i).bits();
+        return bits;
     }
 
+    private static GraphInEdges inEdgesOf(IntBuffer buffer){
+        return buffer == null ? null : new GraphInEdges(buffer);
+    }
+
+    /* Mélange la valeur donnée à l'empreinte partielle donnée */
+    private static long mix(long fingerprint, long value){
+        long mixed = (fingerprint ^ value) * 0x9E3779B97F4A7C15L;
+        return mixed ^ (mixed >>> 32);
+    }
 
+    /* Vérifie que l'index inverse éventuel du graphe a été construit pour un graphe de même taille */
+    private static Graph checkInEdges(Graph graph, Path inEdgesPath) throws IOException {
+        if (graph.graphInEdges != null && !graph.graphInEdges.matches(graph))
+            throw new IOException("index inverse des arêtes invalide : " + inEdgesPath);
+        return graph;
+    }
+
+    /* Attend la fin d'un chargement et retourne son résultat, en levant l'exception qu'il a levée */
+    private static <T> T join(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("chargement du graphe interrompu");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) throw ioException;
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            if (e.getCause() instanceof Error error) throw error;
+            throw new IOException(e.getCause());
+        }
+    }
 }
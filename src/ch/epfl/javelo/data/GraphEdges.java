@@ -20,7 +20,8 @@ import java.nio.ShortBuffer;
  *                   (type du profil et index du premier échantillon).
  * @param elevations  la mémoire tampon contenant la totalité des échantillons des profils, compressés ou non
  */
-public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations) {
+public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuffer elevations)
+        implements GraphStorage.Edges {
 
     private final static int OFFSET_ID = 0;
     private final static int OFFSET_LENGTH = OFFSET_ID + Integer.BYTES;
@@ -32,6 +33,14 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     private final static int SIZE_Q44 = 8;
     private final static int SIZE_Q04 = 4;
 
+    /**
+     * retourne le nombre total d'arêtes
+     * @return le nombre total d'arêtes
+     */
+    public int count(){
+        return edgesBuffer.capacity() / OFFSET_EDGE_SIZE;
+    }
+
     /**
      * retourne vrai ssi l'arête d'identité donnée va dans le sens inverse de la voie OSM dont elle provient,
      * @param edgeId L'identifiant de l'edge
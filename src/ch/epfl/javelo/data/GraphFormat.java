@@ -0,0 +1,17 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Format des fichiers depuis lesquels charger le graphe JaVelo (voir Graph.loadFrom).
+ */
+public enum GraphFormat {
+    /**
+     * Les fichiers du format d'origine : nodes.bin, sectors.bin, edges.bin, profile_ids.bin, elevations.bin et
+     * attributes.bin
+     */
+    ORIGINAL,
+    /**
+     * Le fichier graph_v2.bin (voir GraphFormatV2), deux fois plus compact et sans les limites du format
+     * d'origine; le décodage de ses blocs rend toutefois les recherches environ 1,5 fois plus lentes
+     */
+    V2
+}
@@ -0,0 +1,394 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Format 2 des fichiers du graphe JaVelo, et conversion depuis le format d'origine.
+ * <p>
+ * Le format d'origine limite l'identité de la première arête d'un nœud à 28 bits, son degré sortant à 4 bits,
+ * l'index d'un ensemble d'attributs à 16 bits, la longueur et le dénivelé d'une arête à 4095 m, l'index du
+ * premier échantillon d'un profil à 30 bits et le nombre de nœuds d'un secteur à 65535. Le format 2 n'a d'autres
+ * limites que celles des entiers de type int.
+ * <p>
+ * L'adjacence y est stockée par blocs de 16 nœuds consécutifs. Dans un bloc, la destination de chaque arête est
+ * donnée par sa différence avec le premier nœud du bloc, le premier échantillon de son profil par sa différence
+ * avec celui du bloc, et chaque champ est écrit sur le nombre de bits nécessaire à sa plus grande valeur dans le
+ * bloc. Les champs d'une arête occupant ainsi une position fixe dans son bloc, ils sont lus directement, sans
+ * décoder les arêtes qui les précèdent, et un index des blocs permet d'accéder au bloc d'un nœud ou d'une arête.
+ * Une arête y occupe ainsi 7 à 8 octets, contre 15 environ dans le format d'origine (edges.bin, profile_ids.bin
+ * et la part de nodes.bin).
+ * <p>
+ * Le graphe est stocké dans un seul fichier, graph_v2.bin, dont les valeurs sont big-endian :
+ * <ul>
+ *     <li>un en-tête de 80 octets : le nombre magique JVG2, la version (2), le nombre de nœuds, le nombre
+ *     d'arêtes, le nombre d'ensembles d'attributs et le logarithme en base 2 du nombre de nœuds par bloc (int),
+ *     puis la position dans le fichier de chacune des six sections et celle de sa fin (long);</li>
+ *     <li>les secteurs : pour chacun des 128 × 128 secteurs, l'identité de son premier nœud et son nombre de
+ *     nœuds (int);</li>
+ *     <li>les ensembles d'attributs (long);</li>
+ *     <li>les nœuds : les coordonnées E et N de chacun (int, Q28.4);</li>
+ *     <li>l'adjacence : pour chaque bloc, l'index du premier échantillon de profil du bloc (long), le nombre de
+ *     bits de chacun des six champs du bloc (un octet chacun, suivis de deux octets nuls), puis les champs,
+ *     bit après bit, le bit de poids fort en tête : pour chaque nœud du bloc, et un de plus, l'index de sa
+ *     première arête dans le bloc, puis pour chaque arête la différence entre sa destination et le premier nœud
+ *     du bloc (en zigzag, suivie d'un bit valant 1 si l'arête est inversée), sa longueur et son dénivelé
+ *     (Q28.4), l'index de son ensemble d'attributs, et son profil : 0 si l'arête n'en a pas, sinon son type
+ *     (2 bits de poids faible) précédé de la différence, en zigzag, entre l'index de son premier échantillon et
+ *     celui du bloc. La section se termine par 8 octets nuls, et aucun bloc ne s'approche à moins de 8 octets
+ *     d'une frontière de 2<sup>30</sup> octets, pour que la lecture d'un champ puisse toujours lire 8 octets;</li>
+ *     <li>l'index des blocs : pour chaque bloc, et un de plus, la position du bloc dans la section d'adjacence
+ *     (long) et l'identité de sa première arête (int);</li>
+ *     <li>les échantillons des profils, encodés comme dans elevations.bin (short).</li>
+ * </ul>
+ * Les arêtes d'un nœud y sont consécutives et rangées dans l'ordre des nœuds, ce qui est le cas des fichiers
+ * produits par le prétraitement de JaVelo et par HilbertRenumbering. Les identités des nœuds et des arêtes sont
+ * celles du format d'origine, de sorte que les fichiers dérivés (index inverse, hiérarchie de contraction, etc.)
+ * restent valables. Les recherches y étant plus lentes, Graph.loadFrom ne charge graph_v2.bin à la place des
+ * fichiers du format d'origine que sur demande (voir GraphFormat), ou en leur absence; il vérifie alors que les
+ * nombres de nœuds et d'arêtes de son en-tête correspondent à la taille de nodes.bin et edges.bin, s'ils sont
+ * présents.
+ */
+public final class GraphFormatV2 {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static String PATH_GRAPH = "graph_v2.bin";
+    private final static String PATH_NODES = "nodes.bin";
+    private final static String PATH_SECTORS = "sectors.bin";
+    private final static String PATH_EDGES = "edges.bin";
+    private final static String PATH_PROFILE_IDS = "profile_ids.bin";
+    private final static String PATH_ELEVATIONS = "elevations.bin";
+    private final static String PATH_ATTRIBUTES = "attributes.bin";
+
+    /* en-tête */
+    final static int MAGIC = 0x4A564732;
+    final static int VERSION = 2;
+    final static int OFFSET_MAGIC = 0;
+    final static int OFFSET_VERSION = OFFSET_MAGIC + Integer.BYTES;
+    final static int OFFSET_NODE_COUNT = OFFSET_VERSION + Integer.BYTES;
+    final static int OFFSET_EDGE_COUNT = OFFSET_NODE_COUNT + Integer.BYTES;
+    final static int OFFSET_ATTRIBUTE_SET_COUNT = OFFSET_EDGE_COUNT + Integer.BYTES;
+    final static int OFFSET_BLOCK_SHIFT = OFFSET_ATTRIBUTE_SET_COUNT + Integer.BYTES;
+    final static int OFFSET_SECTIONS = OFFSET_BLOCK_SHIFT + Integer.BYTES;
+
+    /* sections, dans l'ordre du fichier */
+    final static int SECTION_SECTORS = 0;
+    final static int SECTION_ATTRIBUTES = 1;
+    final static int SECTION_NODES = 2;
+    final static int SECTION_ADJACENCY = 3;
+    final static int SECTION_BLOCK_INDEX = 4;
+    final static int SECTION_ELEVATIONS = 5;
+    final static int SECTION_COUNT = 6;
+    final static int HEADER_BYTES = OFFSET_SECTIONS + (SECTION_COUNT + 1) * Long.BYTES;
+
+    final static int SECTOR_COUNT = 128 * 128;
+    final static int SECTOR_BYTES = 2 * Integer.BYTES;
+    final static int NODE_BYTES = 2 * Integer.BYTES;
+    final static int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    final static int BLOCK_SHIFT = 4;
+    /* taille des tranches dans lesquelles les sections sont projetées en mémoire, une projection étant limitée
+       à 2 Go */
+    final static int SEGMENT_SHIFT = 30;
+    final static long SEGMENT_BYTES = 1L << SEGMENT_SHIFT;
+
+    /* en-tête d'un bloc d'adjacence, et ordre de ses champs */
+    final static int OFFSET_BLOCK_SAMPLE = 0;
+    final static int OFFSET_BLOCK_WIDTHS = OFFSET_BLOCK_SAMPLE + Long.BYTES;
+    final static int BLOCK_HEADER_BYTES = OFFSET_BLOCK_WIDTHS + Long.BYTES;
+    final static int FIELD_EDGE_START = 0;
+    final static int FIELD_TARGET = FIELD_EDGE_START + 1;
+    final static int FIELD_LENGTH = FIELD_TARGET + 1;
+    final static int FIELD_ELEVATION_GAIN = FIELD_LENGTH + 1;
+    final static int FIELD_ATTRIBUTES = FIELD_ELEVATION_GAIN + 1;
+    final static int FIELD_PROFILE = FIELD_ATTRIBUTES + 1;
+    final static int FIELD_COUNT = FIELD_PROFILE + 1;
+    /* nombre maximal de bits d'un champ, pour qu'il tienne dans les 8 octets lus à partir de son premier octet */
+    final static int MAX_FIELD_BITS = Long.SIZE - Byte.SIZE + 1;
+    final static int PROFILE_TYPE_BITS = 2;
+    final static int SAMPLE_SPACING_Q28_4 = 2 << 4;
+
+    /* format d'origine */
+    private final static int V1_NODE_INTS = 3;
+    private final static int V1_OFFSET_OUT_EDGES = 2;
+    private final static int V1_DEGREE_SHIFT = 28;
+    private final static int V1_FIRST_EDGE_MASK = (1 << V1_DEGREE_SHIFT) - 1;
+    private final static int V1_SECTOR_BYTES = Integer.BYTES + Short.BYTES;
+    private final static int V1_EDGE_BYTES = 10;
+    private final static int V1_OFFSET_LENGTH = Integer.BYTES;
+    private final static int V1_OFFSET_ELEVATION_GAIN = V1_OFFSET_LENGTH + Short.BYTES;
+    private final static int V1_OFFSET_ATTRIBUTES = V1_OFFSET_ELEVATION_GAIN + Short.BYTES;
+    private final static int V1_PROFILE_INDEX_BITS = 30;
+    private final static int V1_PROFILE_INDEX_MASK = (1 << V1_PROFILE_INDEX_BITS) - 1;
+
+    private GraphFormatV2() {}
+
+    /**
+     * Retourne le chemin du fichier du graphe au format 2 dans le répertoire donné
+     * @param basePath le répertoire des données
+     * @return le chemin de graph_v2.bin dans ce répertoire
+     */
+    public static Path fileIn(Path basePath) {
+        return basePath.resolve(PATH_GRAPH);
+    }
+
+    /**
+     * Convertit le graphe stocké au format d'origine dans le répertoire source en un fichier graph_v2.bin écrit
+     * dans le répertoire destination, créé au besoin et qui peut être le répertoire source
+     * @param source le répertoire du graphe au format d'origine
+     * @param destination le répertoire du fichier au format 2
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si les arêtes ne sont pas rangées dans l'ordre de leur nœud de départ
+     */
+    public static void convert(Path source, Path destination) throws IOException {
+        IntBuffer nodes = map(source.resolve(PATH_NODES)).asIntBuffer();
+        ByteBuffer sectors = map(source.resolve(PATH_SECTORS));
+        ByteBuffer edges = map(source.resolve(PATH_EDGES));
+        IntBuffer profileIds = map(source.resolve(PATH_PROFILE_IDS)).asIntBuffer();
+        ShortBuffer elevations = map(source.resolve(PATH_ELEVATIONS)).asShortBuffer();
+        LongBuffer attributes = map(source.resolve(PATH_ATTRIBUTES)).asLongBuffer();
+        int nodeCount = nodes.capacity() / V1_NODE_INTS;
+        int edgeCount = edges.capacity() / V1_EDGE_BYTES;
+        int blockCount = Math2.ceilDiv(nodeCount, 1 << BLOCK_SHIFT);
+
+        Files.createDirectories(destination);
+        long[] sections = new long[SECTION_COUNT + 1];
+        try (FileChannel channel = FileChannel.open(fileIn(destination), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(Channels.newOutputStream(channel.position(HEADER_BYTES))))) {
+            sections[SECTION_SECTORS] = HEADER_BYTES;
+            for (int sector = 0; sector < SECTOR_COUNT; sector++) {
+                out.writeInt(sectors.getInt(sector * V1_SECTOR_BYTES));
+                out.writeInt(Short.toUnsignedInt(sectors.getShort(sector * V1_SECTOR_BYTES + Integer.BYTES)));
+            }
+            sections[SECTION_ATTRIBUTES] = position(out, channel);
+            for (int i = 0; i < attributes.capacity(); i++) out.writeLong(attributes.get(i));
+            sections[SECTION_NODES] = position(out, channel);
+            for (int node = 0; node < nodeCount; node++) {
+                out.writeInt(nodes.get(node * V1_NODE_INTS));
+                out.writeInt(nodes.get(node * V1_NODE_INTS + 1));
+            }
+
+            sections[SECTION_ADJACENCY] = position(out, channel);
+            long[] blockOffsets = new long[blockCount + 1];
+            int[] blockFirstEdges = new int[blockCount + 1];
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            long adjacencyLength = 0;
+            int edgeId = 0;
+            for (int b = 0; b < blockCount; b++) {
+                int firstNode = b << BLOCK_SHIFT;
+                int endNode = Math.min(nodeCount, firstNode + (1 << BLOCK_SHIFT));
+                blockFirstEdges[b] = edgeId;
+                block.reset();
+                edgeId = encodeBlock(block, nodes, edges, profileIds, firstNode, endNode, edgeId);
+                /* un bloc doit laisser 8 octets avant la fin de sa tranche : il commence au besoin la suivante */
+                long room = SEGMENT_BYTES - adjacencyLength % SEGMENT_BYTES;
+                if (block.size() + Long.BYTES > room) {
+                    out.write(new byte[(int) room]);
+                    adjacencyLength += room;
+                }
+                blockOffsets[b] = adjacencyLength;
+                block.writeTo(out);
+                adjacencyLength += block.size();
+            }
+            if (edgeId != edgeCount)
+                throw new IllegalArgumentException("des arêtes n'appartiennent à aucun nœud");
+            blockOffsets[blockCount] = adjacencyLength;
+            blockFirstEdges[blockCount] = edgeCount;
+            out.writeLong(0);
+
+            sections[SECTION_BLOCK_INDEX] = position(out, channel);
+            for (int b = 0; b <= blockCount; b++) {
+                out.writeLong(blockOffsets[b]);
+                out.writeInt(blockFirstEdges[b]);
+            }
+            sections[SECTION_ELEVATIONS] = position(out, channel);
+            for (int i = 0; i < elevations.capacity(); i++) out.writeShort(elevations.get(i));
+            sections[SECTION_COUNT] = position(out, channel);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(OFFSET_MAGIC, MAGIC)
+                    .putInt(OFFSET_VERSION, VERSION)
+                    .putInt(OFFSET_NODE_COUNT, nodeCount)
+                    .putInt(OFFSET_EDGE_COUNT, edgeCount)
+                    .putInt(OFFSET_ATTRIBUTE_SET_COUNT, attributes.capacity())
+                    .putInt(OFFSET_BLOCK_SHIFT, BLOCK_SHIFT);
+            for (int s = 0; s <= SECTION_COUNT; s++) header.putLong(OFFSET_SECTIONS + s * Long.BYTES, sections[s]);
+            channel.write(header, 0);
+        }
+    }
+
+    /**
+     * Vérifie que les nombres de nœuds et d'arêtes donnés, ceux d'un fichier au format 2 du répertoire donné,
+     * correspondent à la taille des fichiers nodes.bin et edges.bin qui s'y trouvent éventuellement : sinon, le
+     * fichier au format 2 a été converti depuis un autre graphe
+     * @param basePath le répertoire des données
+     * @param nodeCount le nombre de nœuds du fichier au format 2
+     * @param edgeCount le nombre d'arêtes du fichier au format 2
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si les nombres ne correspondent pas
+     */
+    static void checkOriginal(Path basePath, int nodeCount, int edgeCount) throws IOException {
+        Path nodes = basePath.resolve(PATH_NODES);
+        Path edges = basePath.resolve(PATH_EDGES);
+        if (Files.exists(nodes) && Files.size(nodes) != (long) nodeCount * V1_NODE_INTS * Integer.BYTES
+                || Files.exists(edges) && Files.size(edges) != (long) edgeCount * V1_EDGE_BYTES)
+            throw new IOException(fileIn(basePath) + " ne correspond pas aux fichiers " + PATH_NODES + " et "
+                    + PATH_EDGES + " : il doit être reconstruit ou supprimé");
+    }
+
+    /**
+     * Convertit le graphe JaVelo au format 2 et compare la taille des fichiers des deux formats
+     * @param args le répertoire du graphe au format d'origine (javelo-data par défaut), puis celui du fichier
+     *             au format 2 (le même par défaut)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path source = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Path destination = args.length > 1 ? Path.of(args[1]) : source;
+        long start = System.nanoTime();
+        convert(source, destination);
+        long before = 0;
+        for (String file : new String[]{PATH_NODES, PATH_SECTORS, PATH_EDGES, PATH_PROFILE_IDS, PATH_ELEVATIONS,
+                PATH_ATTRIBUTES}) {
+            before += Files.size(source.resolve(file));
+        }
+        System.out.printf("%s écrit en %.1f s : %d octets, contre %d au format d'origine%n", fileIn(destination),
+                (System.nanoTime() - start) / 1e9, Files.size(fileIn(destination)), before);
+    }
+
+    /**
+     * Retourne le nombre de valeurs de type short occupées par un profil du type et du nombre d'échantillons donnés
+     * @param type le type du profil (1 à 3)
+     * @param sampleCount le nombre d'échantillons du profil
+     * @return le nombre de valeurs de type short occupées par le profil
+     */
+    static int profileSize(int type, int sampleCount) {
+        return switch (type) {
+            case 1 -> sampleCount;
+            case 2 -> 1 + Math2.ceilDiv(sampleCount - 1, 2);
+            default -> 1 + Math2.ceilDiv(sampleCount - 1, 4);
+        };
+    }
+
+    //==================================//
+
+    /* Encode les nœuds de firstNode (inclus) à endNode (exclus), dont la première arête est edgeId, et retourne
+       l'identité de la première arête du bloc suivant */
+    private static int encodeBlock(ByteArrayOutputStream block, IntBuffer nodes, ByteBuffer edges,
+                                   IntBuffer profileIds, int firstNode, int endNode, int edgeId) {
+        /* le dernier bloc, incomplet, a autant d'index de première arête que les autres */
+        long[] edgeStarts = new long[(1 << BLOCK_SHIFT) + 1];
+        int endEdge = edgeId;
+        for (int node = firstNode; node < endNode; node++) {
+            int outEdges = nodes.get(node * V1_NODE_INTS + V1_OFFSET_OUT_EDGES);
+            int degree = outEdges >>> V1_DEGREE_SHIFT;
+            if (degree > 0 && (outEdges & V1_FIRST_EDGE_MASK) != endEdge)
+                throw new IllegalArgumentException(
+                        "les arêtes doivent être rangées dans l'ordre de leur nœud de départ (nœud " + node + ")");
+            endEdge += degree;
+            edgeStarts[node + 1 - firstNode] = endEdge - edgeId;
+        }
+        for (int i = endNode + 1 - firstNode; i < edgeStarts.length; i++) edgeStarts[i] = endEdge - edgeId;
+
+        int edgeCount = endEdge - edgeId;
+        long[][] fields = new long[FIELD_COUNT][];
+        fields[FIELD_EDGE_START] = edgeStarts;
+        for (int f = FIELD_TARGET; f < FIELD_COUNT; f++) fields[f] = new long[edgeCount];
+        long blockSample = -1;
+        for (int i = 0; i < edgeCount; i++) {
+            int offset = (edgeId + i) * V1_EDGE_BYTES;
+            int target = edges.getInt(offset);
+            fields[FIELD_TARGET][i] = zigzag((long) (target < 0 ? ~target : target) - firstNode) << 1
+                    | (target < 0 ? 1 : 0);
+            fields[FIELD_LENGTH][i] = Short.toUnsignedInt(edges.getShort(offset + V1_OFFSET_LENGTH));
+            fields[FIELD_ELEVATION_GAIN][i] = Short.toUnsignedInt(edges.getShort(offset + V1_OFFSET_ELEVATION_GAIN));
+            fields[FIELD_ATTRIBUTES][i] = Short.toUnsignedInt(edges.getShort(offset + V1_OFFSET_ATTRIBUTES));
+            int profileId = profileIds.get(edgeId + i);
+            int type = profileId >>> V1_PROFILE_INDEX_BITS;
+            if (type != 0) {
+                long index = profileId & V1_PROFILE_INDEX_MASK;
+                if (blockSample < 0) blockSample = index;
+                fields[FIELD_PROFILE][i] = zigzag(index - blockSample) << PROFILE_TYPE_BITS | type;
+            }
+        }
+
+        int[] widths = new int[FIELD_COUNT];
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            long all = 0;
+            for (long value : fields[f]) all |= value;
+            /* un champ occupe au moins un bit, pour que sa lecture n'ait pas de cas particulier */
+            widths[f] = Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(all));
+            if (widths[f] > MAX_FIELD_BITS)
+                throw new IllegalArgumentException("valeur trop grande dans le bloc du nœud " + firstNode);
+        }
+
+        BitOutput bits = new BitOutput(block);
+        bits.write(Math.max(blockSample, 0), Long.SIZE);
+        for (int f = 0; f < Long.BYTES; f++) bits.write(f < FIELD_COUNT ? widths[f] : 0, Byte.SIZE);
+        for (long start : edgeStarts) bits.write(start, widths[FIELD_EDGE_START]);
+        for (int i = 0; i < edgeCount; i++) {
+            for (int f = FIELD_TARGET; f < FIELD_COUNT; f++) bits.write(fields[f][i], widths[f]);
+        }
+        bits.flush();
+        return endEdge;
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> Long.SIZE - 1;
+    }
+
+    /* Position dans le fichier de la prochaine valeur écrite */
+    private static long position(DataOutputStream out, FileChannel channel) throws IOException {
+        out.flush();
+        return channel.position();
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /* Écriture de valeurs sur un nombre de bits donné, le bit de poids fort en tête */
+    private static final class BitOutput {
+        private final ByteArrayOutputStream out;
+        private int pending;
+        private int pendingBits;
+
+        private BitOutput(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        private void write(long value, int width) {
+            while (width > 0) {
+                int count = Math.min(width, Byte.SIZE - pendingBits);
+                width -= count;
+                pending = pending << count | (int) (value >>> width) & (1 << count) - 1;
+                pendingBits += count;
+                if (pendingBits == Byte.SIZE) {
+                    out.write(pending);
+                    pending = 0;
+                    pendingBits = 0;
+                }
+            }
+        }
+
+        /* Complète le dernier octet par des bits nuls */
+        private void flush() {
+            if (pendingBits > 0) write(0, Byte.SIZE - pendingBits);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ch.epfl.javelo.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Représente l'index inverse des arêtes du graphe JaVelo : pour chaque nœud, la liste des arêtes qui y arrivent
+ * et de leurs nœuds de départ. Il est construit à partir des fichiers nodes.bin et edges.bin, qui ne contiennent
+ * que les arêtes sortantes, et permet d'effectuer des recherches en sens inverse.
+ *
+ * @param buffer la mémoire tampon contenant le nombre de nœuds, puis pour chaque nœud (et un de plus) l'index de
+ *               sa première arête entrante, puis l'identité de chaque arête entrante, puis celle de son nœud de départ
+ */
+public record GraphInEdges(IntBuffer buffer) {
+
+    private final static int OFFSET_NODE_COUNT = 0;
+    private final static int OFFSET_FIRST_EDGE = OFFSET_NODE_COUNT + 1;
+    private final static String PATH_IN_EDGES = "in_edges.bin";
+    private final static String DATA_REP = "javelo-data";
+
+    /**
+     * Construit l'index inverse des arêtes du graphe donné
+     * @param graph le graphe
+     * @return l'index inverse des arêtes du graphe donné
+     */
+    public static GraphInEdges of(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        int[] first = new int[nodeCount + 1];
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < graph.nodeOutDegree(u); i++) {
+                first[graph.edgeTargetNodeId(graph.nodeOutEdgeId(u, i)) + 1]++;
+            }
+        }
+        for (int v = 0; v < nodeCount; v++) first[v + 1] += first[v];
+
+        int edgeCount = first[nodeCount];
+        int edgesStart = OFFSET_FIRST_EDGE + nodeCount + 1;
+        int sourcesStart = edgesStart + edgeCount;
+        int[] ints = new int[sourcesStart + edgeCount];
+        ints[OFFSET_NODE_COUNT] = nodeCount;
+        System.arraycopy(first, 0, ints, OFFSET_FIRST_EDGE, nodeCount + 1);
+
+        int[] filled = new int[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < graph.nodeOutDegree(u); i++) {
+                int edgeId = graph.nodeOutEdgeId(u, i);
+                int v = graph.edgeTargetNodeId(edgeId);
+                int index = first[v] + filled[v]++;
+                ints[edgesStart + index] = edgeId;
+                ints[sourcesStart + index] = u;
+            }
+        }
+        return new GraphInEdges(IntBuffer.wrap(ints));
+    }
+
+    /**
+     * Retourne le nombre d'arêtes arrivant au nœud d'identité donnée
+     * @param nodeId identité du nœud
+     * @return le nombre d'arêtes arrivant au nœud d'identité donnée
+     */
+    public int inDegree(int nodeId) {
+        return firstEdge(nodeId + 1) - firstEdge(nodeId);
+    }
+
+    /**
+     * Retourne l'identité de la edgeIndex-ième arête arrivant au nœud d'identité nodeId
+     * @param nodeId identité du nœud
+     * @param edgeIndex index de l'arête
+     * @return l'identité de la edgeIndex-ième arête arrivant au nœud d'identité nodeId
+     */
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return buffer.get(edgesStart() + firstEdge(nodeId) + edgeIndex);
+    }
+
+    /**
+     * Retourne l'identité du nœud de départ de la edgeIndex-ième arête arrivant au nœud d'identité nodeId
+     * @param nodeId identité du nœud
+     * @param edgeIndex index de l'arête
+     * @return l'identité du nœud de départ de cette arête
+     */
+    public int sourceNodeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return buffer.get(edgesStart() + edgeCount() + firstEdge(nodeId) + edgeIndex);
+    }
+
+    /**
+     * Retourne vrai ssi l'index a été construit pour un graphe ayant le même nombre de nœuds et d'arêtes que le
+     * graphe donné
+     * @param graph le graphe
+     * @return vrai ssi l'index a été construit pour un graphe de même taille que le graphe donné
+     */
+    public boolean matches(Graph graph) {
+        if (buffer.capacity() <= OFFSET_FIRST_EDGE) return false;
+        int nodeCount = buffer.get(OFFSET_NODE_COUNT);
+        return nodeCount == graph.nodeCount()
+                && buffer.capacity() == OFFSET_FIRST_EDGE + nodeCount + 1 + 2L * graph.edgeCount()
+                && firstEdge(0) == 0
+                && edgeCount() == graph.edgeCount();
+    }
+
+    /**
+     * Écrit l'index dans le fichier in_edges.bin du répertoire donné
+     * @param basePath chemin d'accès
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(PATH_IN_EDGES))))) {
+            for (int i = 0; i < buffer.capacity(); i++) s.writeInt(buffer.get(i));
+        }
+    }
+
+    /**
+     * Construit l'index inverse du graphe stocké dans le répertoire donné et l'écrit à côté de ses fichiers
+     * @param args le répertoire des données (javelo-data par défaut)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        of(Graph.loadFrom(basePath)).writeTo(basePath);
+    }
+
+    //==================================//
+
+    private int firstEdge(int nodeId) {
+        return buffer.get(OFFSET_FIRST_EDGE + nodeId);
+    }
+
+    private int edgesStart() {
+        return OFFSET_FIRST_EDGE + buffer.get(OFFSET_NODE_COUNT) + 1;
+    }
+
+    private int edgeCount() {
+        return firstEdge(buffer.get(OFFSET_NODE_COUNT));
+    }
+}
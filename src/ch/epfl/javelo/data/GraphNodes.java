@@ -10,7 +10,7 @@ import static ch.epfl.javelo.Q28_4.asDouble;
  *
  * @param buffer la mémoire tampon contenant la valeur des attributs de la totalité des nœuds du graphe
  */
-public record GraphNodes(IntBuffer buffer) {
+public record GraphNodes(IntBuffer buffer) implements GraphStorage.Nodes {
 
     private static final int OFFSET_E = 0;
     private static final int OFFSET_N = OFFSET_E + 1;
@@ -50,6 +50,20 @@ public record GraphNodes(IntBuffer buffer) {
                 .get(nodeId * NODE_INTS + OFFSET_N));
     }
 
+    /**
+     * Retourne le carré de la distance, en mètres, séparant le nœud d'identité donnée du point de coordonnées
+     * données, sans créer d'instance de PointCh
+     * @param nodeId Identifiant du noeud
+     * @param e coordonnée E du point
+     * @param n coordonnée N du point
+     * @return le carré de la distance séparant le nœud du point
+     */
+    public double squaredDistanceTo(int nodeId, double e, double n){
+        double dE = nodeE(nodeId) - e;
+        double dN = nodeN(nodeId) - n;
+        return dE * dE + dN * dN;
+    }
+
     /**
      * Retourne les 4  bits de poids fort de la 3e valeure (de 32 bits) de la table c-à-d le nombre
      * d'arêtes sortant du nœud d'identité donné
@@ -7,6 +7,7 @@ import ch.epfl.javelo.projection.SwissBounds;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 
 /**
  * Représente le tableau contenant les 16384 secteurs de JaVelo
@@ -14,7 +15,7 @@ import java.util.List;
  *
  * @param buffer La mémoire tampon contenant la valeur des attributs de la totalité des secteurs
  */
-public record GraphSectors(ByteBuffer buffer) {
+public record GraphSectors(ByteBuffer buffer) implements GraphStorage.Sectors {
 
     private final static int NUMBER_OF_SECTOR_PER_LINE =128;
     private final static double INDIVIDUAL_SECTOR_WIDTH = SwissBounds.WIDTH/ NUMBER_OF_SECTOR_PER_LINE;
@@ -32,6 +33,24 @@ public record GraphSectors(ByteBuffer buffer) {
      *      au point donné et de côté égal au double (!) de la distance donnée.
      */
     public List<Sector> sectorsInArea(PointCh center, double distance){
+        return sectorsInArea(center, distance, index -> {
+            int startNodeId = buffer.getInt(index * OFFSET_SECTOR_SIZE);
+            int nbNodeInSector = Short.toUnsignedInt(buffer
+                    .getShort(index * OFFSET_SECTOR_SIZE + OFFSET_SHORT));
+            return new Sector(startNodeId,startNodeId+nbNodeInSector);
+        });
+    }
+
+    /**
+     * Retourne la liste des secteurs ayant une intersection avec le carré centré au point donné et de côté égal
+     * au double de la distance donnée, chaque secteur étant obtenu à partir de son index (x + 128 * y) au moyen
+     * de la fonction donnée, qui dépend du format des fichiers du graphe
+     * @param center Centre du carré considéré
+     * @param distance Distance de recherche
+     * @param sectorAt Fonction retournant le secteur d'index donné
+     * @return la liste des secteurs ayant une intersection avec le carré
+     */
+    static List<Sector> sectorsInArea(PointCh center, double distance, IntFunction<Sector> sectorAt){
 
         int xMin = Math2.clamp(0,(int)((center.e() - distance - SwissBounds.MIN_E) / INDIVIDUAL_SECTOR_WIDTH),
                 NUMBER_OF_SECTOR_PER_LINE-1);        //On clamp  dans les limites du grand secteur
@@ -46,11 +65,7 @@ public record GraphSectors(ByteBuffer buffer) {
 
         for (int x = xMin; x <= xMax; ++x){
             for (int y =yMin; y <= yMax;++y){
-                int index = x + NUMBER_OF_SECTOR_PER_LINE * y;
-                int startNodeId = buffer.getInt(index * OFFSET_SECTOR_SIZE);
-                int nbNodeInSector = Short.toUnsignedInt(buffer
-                        .getShort(index * OFFSET_SECTOR_SIZE + OFFSET_SHORT));
-                sectors.add(new Sector(startNodeId,startNodeId+nbNodeInSector));
+                sectors.add(sectorAt.apply(x + NUMBER_OF_SECTOR_PER_LINE * y));
             }
         }
         return sectors;
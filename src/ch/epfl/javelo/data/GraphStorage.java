@@ -0,0 +1,58 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.List;
+
+/**
+ * Accès aux nœuds, aux secteurs et aux arêtes du graphe JaVelo, indépendamment du format des fichiers dont ils
+ * proviennent : GraphNodes, GraphSectors et GraphEdges lisent ceux du format d'origine, CompactGraph le fichier
+ * du format 2 (voir GraphFormatV2).
+ */
+interface GraphStorage {
+
+    /**
+     * Les nœuds du graphe
+     */
+    interface Nodes {
+        int count();
+
+        double nodeE(int nodeId);
+
+        double nodeN(int nodeId);
+
+        double squaredDistanceTo(int nodeId, double e, double n);
+
+        int outDegree(int nodeId);
+
+        int edgeId(int nodeId, int edgeIndex);
+    }
+
+    /**
+     * Les secteurs du graphe
+     */
+    interface Sectors {
+        List<GraphSectors.Sector> sectorsInArea(PointCh center, double distance);
+    }
+
+    /**
+     * Les arêtes du graphe
+     */
+    interface Edges {
+        int count();
+
+        boolean isInverted(int edgeId);
+
+        int targetNodeId(int edgeId);
+
+        double length(int edgeId);
+
+        double elevationGain(int edgeId);
+
+        int attributesIndex(int edgeId);
+
+        boolean hasProfile(int edgeId);
+
+        float[] profileSamples(int edgeId);
+    }
+}
@@ -0,0 +1,295 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Q28_4;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Outil renumérotant les nœuds du graphe JaVelo le long d'une courbe de Hilbert, pour que des nœuds proches
+ * dans l'espace, donc explorés ensemble par une recherche, soient aussi proches en mémoire. Les arêtes sont
+ * renumérotées dans l'ordre de leur nœud de départ et les échantillons des profils dans l'ordre de leur
+ * première arête, et tous les fichiers du graphe sont réécrits en conséquence.
+ * <p>
+ * La courbe parcourt une grille de 2<sup>16</sup> × 2<sup>16</sup> cases couvrant la Suisse, dont chaque
+ * secteur occupe un bloc aligné de 2<sup>9</sup> × 2<sup>9</sup> cases. Une courbe de Hilbert parcourant chaque
+ * bloc aligné d'un seul tenant, les nœuds d'un secteur restent consécutifs, comme l'exige sectors.bin, même si
+ * les secteurs ne sont plus numérotés ligne par ligne.
+ * <p>
+ * Le graphe renuméroté est écrit dans un autre répertoire que l'original. L'index inverse des arêtes y est
+ * reconstruit s'il existait; les autres fichiers dérivés (hiérarchie de contraction, points de repère, tables
+ * des coûts, partition), qui dépendent de la numérotation, ne sont pas copiés et doivent être reconstruits.
+ */
+public final class HilbertRenumbering {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static String PATH_NODES = "nodes.bin";
+    private final static String PATH_SECTORS = "sectors.bin";
+    private final static String PATH_EDGES = "edges.bin";
+    private final static String PATH_PROFILE_IDS = "profile_ids.bin";
+    private final static String PATH_ELEVATIONS = "elevations.bin";
+    private final static String PATH_ATTRIBUTES = "attributes.bin";
+    private final static String PATH_IN_EDGES = "in_edges.bin";
+
+    private final static int SECTORS_PER_SIDE = 128;
+    private final static double SECTOR_WIDTH = SwissBounds.WIDTH / SECTORS_PER_SIDE;
+    private final static double SECTOR_HEIGHT = SwissBounds.HEIGHT / SECTORS_PER_SIDE;
+    /* nombre de bits de la position d'un nœud à l'intérieur de son secteur, sur chaque axe */
+    private final static int SUBSECTOR_BITS = 9;
+    private final static int SECTOR_BITS = 7;
+    private final static int CURVE_SIZE = 1 << (SECTOR_BITS + SUBSECTOR_BITS);
+
+    private final static int NODE_INTS = 3;
+    private final static int OFFSET_OUT_EDGES = 2;
+    private final static int DEGREE_SHIFT = 28;
+    private final static int FIRST_EDGE_MASK = (1 << DEGREE_SHIFT) - 1;
+    private final static int EDGE_BYTES = 10;
+    private final static int OFFSET_LENGTH = Integer.BYTES;
+    private final static int OFFSET_ELEVATION_GAIN = OFFSET_LENGTH + Short.BYTES;
+    private final static int OFFSET_ATTRIBUTES = OFFSET_ELEVATION_GAIN + Short.BYTES;
+    private final static int PROFILE_INDEX_BITS = 30;
+    private final static int PROFILE_INDEX_MASK = (1 << PROFILE_INDEX_BITS) - 1;
+    private final static int SAMPLE_SPACING_Q28_4 = 2 << 4;
+    private final static int MAX_SECTOR_NODES = (1 << Short.SIZE) - 1;
+
+    private HilbertRenumbering() {}
+
+    /**
+     * Renumérote le graphe stocké dans le répertoire source et écrit le résultat dans le répertoire destination,
+     * créé au besoin
+     * @param source le répertoire du graphe à renuméroter
+     * @param destination le répertoire du graphe renuméroté, différent de source
+     * @return la table de renumérotation, qui donne pour chaque ancienne identité de nœud sa nouvelle identité
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si les deux répertoires sont identiques
+     * @throws IllegalStateException si un secteur contient plus de nœuds que sectors.bin ne peut en représenter
+     */
+    public static int[] renumber(Path source, Path destination) throws IOException {
+        if (Files.exists(destination) && Files.isSameFile(source, destination))
+            throw new IllegalArgumentException("le graphe renuméroté doit être écrit dans un autre répertoire");
+        Files.createDirectories(destination);
+
+        IntBuffer nodes = map(source.resolve(PATH_NODES)).asIntBuffer();
+        ByteBuffer edges = map(source.resolve(PATH_EDGES));
+        IntBuffer profileIds = map(source.resolve(PATH_PROFILE_IDS)).asIntBuffer();
+        ShortBuffer elevations = map(source.resolve(PATH_ELEVATIONS)).asShortBuffer();
+        int nodeCount = nodes.capacity() / NODE_INTS;
+        int edgeCount = edges.capacity() / EDGE_BYTES;
+
+        /* nouvel ordre des nœuds : tri selon leur position sur la courbe, puis leur ancienne identité */
+        long[] keys = new long[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            long d = hilbertIndex(curveCoordinate(nodeE(nodes, node) - SwissBounds.MIN_E, SECTOR_WIDTH),
+                    curveCoordinate(nodeN(nodes, node) - SwissBounds.MIN_N, SECTOR_HEIGHT));
+            keys[node] = d << Integer.SIZE - 1 | node;
+        }
+        Arrays.sort(keys);
+        int[] oldNode = new int[nodeCount];
+        int[] newNode = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            oldNode[i] = (int) (keys[i] & Integer.MAX_VALUE);
+            newNode[oldNode[i]] = i;
+        }
+
+        writeSectors(destination.resolve(PATH_SECTORS), nodes, oldNode);
+
+        /* nouvel ordre des arêtes : celui de leur nœud de départ */
+        int[] oldEdge = new int[edgeCount];
+        try (DataOutputStream s = output(destination.resolve(PATH_NODES))) {
+            int edgeId = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                int node = oldNode[i];
+                int outEdges = nodes.get(node * NODE_INTS + OFFSET_OUT_EDGES);
+                int degree = outEdges >>> DEGREE_SHIFT;
+                int firstEdge = outEdges & FIRST_EDGE_MASK;
+                s.writeInt(nodes.get(node * NODE_INTS));
+                s.writeInt(nodes.get(node * NODE_INTS + 1));
+                s.writeInt(degree << DEGREE_SHIFT | edgeId);
+                for (int k = 0; k < degree; k++) oldEdge[edgeId++] = firstEdge + k;
+            }
+        }
+
+        try (DataOutputStream s = output(destination.resolve(PATH_EDGES))) {
+            for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+                int offset = oldEdge[edgeId] * EDGE_BYTES;
+                int target = edges.getInt(offset);
+                s.writeInt(target < 0 ? ~newNode[~target] : newNode[target]);
+                s.writeShort(edges.getShort(offset + OFFSET_LENGTH));
+                s.writeShort(edges.getShort(offset + OFFSET_ELEVATION_GAIN));
+                s.writeShort(edges.getShort(offset + OFFSET_ATTRIBUTES));
+            }
+        }
+
+        writeProfiles(destination, edges, profileIds, elevations, oldEdge);
+        Files.copy(source.resolve(PATH_ATTRIBUTES), destination.resolve(PATH_ATTRIBUTES),
+                StandardCopyOption.REPLACE_EXISTING);
+        /* un fichier au format 2 ou un index inverse resté dans la destination ne correspondrait plus au graphe
+           renuméroté, bien qu'ayant autant de nœuds et d'arêtes que lui */
+        Files.deleteIfExists(GraphFormatV2.fileIn(destination));
+        Files.deleteIfExists(destination.resolve(PATH_IN_EDGES));
+        if (Files.exists(source.resolve(PATH_IN_EDGES)))
+            GraphInEdges.of(Graph.loadFrom(destination)).writeTo(destination);
+        return newNode;
+    }
+
+    /**
+     * Renumérote le graphe JaVelo et indique les fichiers dérivés à reconstruire
+     * @param args le répertoire du graphe (javelo-data par défaut), puis celui du graphe renuméroté (le premier
+     *             suivi de -hilbert par défaut)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path source = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Path destination = args.length > 1 ? Path.of(args[1]) : Path.of(source + "-hilbert");
+        long start = System.nanoTime();
+        renumber(source, destination);
+        System.out.printf("graphe renuméroté dans %s en %.1f s%n", destination, (System.nanoTime() - start) / 1e9);
+
+        List<String> derived = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(source)) {
+            for (Path file : files) {
+                if (!Files.exists(destination.resolve(file.getFileName()))) derived.add(file.getFileName().toString());
+            }
+        }
+        if (!derived.isEmpty()) System.out.println("fichiers dérivés à reconstruire : " + String.join(", ", derived));
+    }
+
+    //==================================//
+
+    /* Écrit le fichier des secteurs, les nœuds d'un même secteur étant consécutifs dans le nouvel ordre */
+    private static void writeSectors(Path file, IntBuffer nodes, int[] oldNode) throws IOException {
+        int[] first = new int[SECTORS_PER_SIDE * SECTORS_PER_SIDE];
+        int[] count = new int[SECTORS_PER_SIDE * SECTORS_PER_SIDE];
+        for (int i = 0; i < oldNode.length; i++) {
+            int x = curveCoordinate(nodeE(nodes, oldNode[i]) - SwissBounds.MIN_E, SECTOR_WIDTH) >>> SUBSECTOR_BITS;
+            int y = curveCoordinate(nodeN(nodes, oldNode[i]) - SwissBounds.MIN_N, SECTOR_HEIGHT) >>> SUBSECTOR_BITS;
+            int sector = x + SECTORS_PER_SIDE * y;
+            if (count[sector]++ == 0) first[sector] = i;
+            if (count[sector] > MAX_SECTOR_NODES) throw new IllegalStateException("trop de nœuds par secteur");
+        }
+        try (DataOutputStream s = output(file)) {
+            for (int sector = 0; sector < first.length; sector++) {
+                s.writeInt(first[sector]);
+                s.writeShort(count[sector]);
+            }
+        }
+    }
+
+    /* Écrit les identités des profils et leurs échantillons, chaque profil étant copié une seule fois, à la
+       place de la première arête qui l'utilise (les deux arêtes issues d'une même voie partagent leur profil) */
+    private static void writeProfiles(Path destination, ByteBuffer edges, IntBuffer profileIds,
+                                      ShortBuffer elevations, int[] oldEdge) throws IOException {
+        int edgeCount = oldEdge.length;
+        /* pour chaque arête ayant un profil, la première arête (dans le nouvel ordre) qui partage ce profil */
+        int[] firstUser = new int[edgeCount];
+        long[] users = new long[edgeCount];
+        int userCount = 0;
+        for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+            int profileId = profileIds.get(oldEdge[edgeId]);
+            if (profileId >>> PROFILE_INDEX_BITS != 0)
+                users[userCount++] = (long) (profileId & PROFILE_INDEX_MASK) << Integer.SIZE | edgeId;
+        }
+        Arrays.sort(users, 0, userCount);
+        for (int i = 0; i < userCount; i++) {
+            boolean sameProfile = i > 0 && users[i] >>> Integer.SIZE == users[i - 1] >>> Integer.SIZE;
+            int edgeId = (int) users[i];
+            firstUser[edgeId] = sameProfile ? firstUser[(int) users[i - 1]] : edgeId;
+        }
+
+        int[] newIndex = new int[edgeCount];
+        try (DataOutputStream ids = output(destination.resolve(PATH_PROFILE_IDS));
+             DataOutputStream samples = output(destination.resolve(PATH_ELEVATIONS))) {
+            int sampleIndex = 0;
+            for (int edgeId = 0; edgeId < edgeCount; edgeId++) {
+                int profileId = profileIds.get(oldEdge[edgeId]);
+                int type = profileId >>> PROFILE_INDEX_BITS;
+                if (type == 0) {
+                    ids.writeInt(profileId);
+                    continue;
+                }
+                if (firstUser[edgeId] == edgeId) {
+                    int oldIndex = profileId & PROFILE_INDEX_MASK;
+                    int length = Short.toUnsignedInt(edges.getShort(oldEdge[edgeId] * EDGE_BYTES + OFFSET_LENGTH));
+                    int size = profileSize(type, 1 + Math2.ceilDiv(length, SAMPLE_SPACING_Q28_4));
+                    for (int i = 0; i < size; i++) samples.writeShort(elevations.get(oldIndex + i));
+                    newIndex[edgeId] = sampleIndex;
+                    sampleIndex += size;
+                } else {
+                    newIndex[edgeId] = newIndex[firstUser[edgeId]];
+                }
+                ids.writeInt(type << PROFILE_INDEX_BITS | newIndex[edgeId]);
+            }
+        }
+    }
+
+    /* Nombre de valeurs de type short occupées par un profil du type et du nombre d'échantillons donnés */
+    private static int profileSize(int type, int sampleCount) {
+        return switch (type) {
+            case 1 -> sampleCount;
+            case 2 -> 1 + Math2.ceilDiv(sampleCount - 1, 2);
+            default -> 1 + Math2.ceilDiv(sampleCount - 1, 4);
+        };
+    }
+
+    /* Coordonnée, sur la courbe, du point situé à la distance donnée du bord de la Suisse : les bits de poids fort
+       donnent le secteur, calculé comme le fait GraphSectors, ceux de poids faible la position dans le secteur */
+    private static int curveCoordinate(double offset, double sectorSize) {
+        int sector = Math2.clamp(0, (int) (offset / sectorSize), SECTORS_PER_SIDE - 1);
+        int position = Math2.clamp(0, (int) ((offset - sector * sectorSize) / sectorSize * (1 << SUBSECTOR_BITS)),
+                (1 << SUBSECTOR_BITS) - 1);
+        return sector << SUBSECTOR_BITS | position;
+    }
+
+    /* Position sur la courbe de Hilbert de la case (x, y) */
+    private static long hilbertIndex(int x, int y) {
+        long d = 0;
+        for (int s = CURVE_SIZE / 2; s > 0; s /= 2) {
+            int rx = (x & s) != 0 ? 1 : 0;
+            int ry = (y & s) != 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            /* rotation du quadrant, pour que la courbe y soit parcourue dans le bon sens */
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    private static double nodeE(IntBuffer nodes, int node) {
+        return Q28_4.asDouble(nodes.get(node * NODE_INTS));
+    }
+
+    private static double nodeN(IntBuffer nodes, int node) {
+        return Q28_4.asDouble(nodes.get(node * NODE_INTS + 1));
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static DataOutputStream output(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+    }
+}
@@ -0,0 +1,29 @@
+package ch.epfl.javelo.data;
+
+/**
+ * Mode de chargement des fichiers du graphe JaVelo (voir Graph.loadFrom).
+ * <p>
+ * Un fichier projeté en mémoire n'est lu qu'au premier accès à chacune de ses pages, de sorte que les premières
+ * recherches après le chargement attendent le disque. Les autres modes lisent les fichiers entiers au chargement,
+ * au prix d'un chargement plus long et de la mémoire occupée par tout le graphe.
+ */
+public enum LoadMode {
+    /**
+     * Les fichiers sont projetés en mémoire et leurs pages lues à leur premier accès
+     */
+    MAPPED,
+    /**
+     * Les fichiers sont projetés en mémoire puis lus au chargement, chacun par un fil d'exécution
+     * (MappedByteBuffer.load); le système peut toutefois évincer leurs pages par la suite
+     */
+    PRELOADED,
+    /**
+     * Les fichiers sont copiés dans des tableaux de type primitif du tas
+     */
+    HEAP,
+    /**
+     * Les fichiers sont copiés dans de la mémoire allouée hors du tas (ByteBuffer.allocateDirect), qui n'est pas
+     * parcourue par le ramasse-miettes
+     */
+    OFF_HEAP
+}
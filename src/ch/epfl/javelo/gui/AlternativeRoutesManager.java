@@ -0,0 +1,96 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.Edge;
+import ch.epfl.javelo.routing.Route;
+import javafx.beans.Observable;
+import javafx.beans.property.ObjectProperty;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Polyline;
+
+import java.util.List;
+
+/**
+ * La classe AlternativeRoutesManager gère l'affichage des itinéraires alternatifs proposés par RouteBean, sous
+ * l'itinéraire sélectionné : un clic sur l'un d'eux le sélectionne à son tour.
+ */
+public final class AlternativeRoutesManager {
+    private final static String CSS_ALTERNATIVE = "alternative";
+
+    private final RouteBean routeBean;
+    private final ObjectProperty<MapViewParameters> mapViewParameters;
+    private final Pane pane;
+
+    /**
+     * constructeur public de AlternativeRoutesManager
+     *
+     * @param routeBean         le bean de l'itinéraire
+     * @param mapViewParameters une propriété JavaFX contenant les paramètres de la carte affichée
+     */
+    public AlternativeRoutesManager(RouteBean routeBean, ObjectProperty<MapViewParameters> mapViewParameters) {
+        this.routeBean = routeBean;
+        this.mapViewParameters = mapViewParameters;
+        pane = new Pane();
+        pane.setPickOnBounds(false);
+
+        routeBean.getAlternativeRoutes().addListener((Observable o) -> drawAlternatives());
+        routeBean.selectedAlternativeReadOnlyIntegerProperty().addListener((Observable o) -> drawAlternatives());
+        mapViewParameters.addListener((observable, oldValue, newValue) -> {
+            if (oldValue.zoomLevel() != newValue.zoomLevel()) {
+                drawAlternatives();
+            } else {
+                pane.getChildren().forEach(polyline -> {
+                    polyline.setLayoutX(-newValue.xTop());
+                    polyline.setLayoutY(-newValue.yTop());
+                });
+            }
+        });
+    }
+
+    /**
+     * retourne le panneau JavaFX contenant les lignes représentant les itinéraires alternatifs
+     *
+     * @return le panneau JavaFX contenant les lignes représentant les itinéraires alternatifs
+     */
+    public Pane pane() {
+        return pane;
+    }
+
+    /* ================ p r i v e e ================== */
+
+    /**
+     * dessine une ligne pour chaque itinéraire alternatif autre que celui sélectionné
+     */
+    private void drawAlternatives() {
+        pane.getChildren().clear();
+        List<Route> alternatives = routeBean.getAlternativeRoutes();
+        int selected = routeBean.selectedAlternativeReadOnlyIntegerProperty().get();
+        for (int i = 0; i < alternatives.size(); i++) {
+            if (i == selected) continue;
+            int index = i;
+            Polyline polyline = polyline(alternatives.get(i));
+            polyline.getStyleClass().add(CSS_ALTERNATIVE);
+            polyline.setOnMouseClicked(e -> routeBean.selectAlternative(index));
+            pane.getChildren().add(polyline);
+        }
+    }
+
+    /**
+     * retourne la ligne représentant l'itinéraire donné
+     */
+    private Polyline polyline(Route route) {
+        MapViewParameters map = mapViewParameters.get();
+        Polyline polyline = new Polyline();
+        PointWebMercator firstPoint = PointWebMercator.ofPointCh(route.edges().get(0).fromPoint());
+        polyline.getPoints().addAll(
+                firstPoint.xAtZoomLevel(map.zoomLevel()),
+                firstPoint.yAtZoomLevel(map.zoomLevel()));
+        for (Edge edge : route.edges()) {
+            PointWebMercator point = PointWebMercator.ofPointCh(edge.toPoint());
+            polyline.getPoints().addAll(point.xAtZoomLevel(map.zoomLevel()), point.yAtZoomLevel(map.zoomLevel()));
+        }
+        polyline.setLayoutX(-map.xTop());
+        polyline.setLayoutY(-map.yTop());
+        return polyline;
+    }
+}
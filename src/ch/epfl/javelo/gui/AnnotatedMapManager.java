@@ -4,6 +4,7 @@ import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.IsochroneComputer;
 import ch.epfl.javelo.routing.RoutePoint;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.*;
@@ -29,6 +30,8 @@ public final class AnnotatedMapManager {
     private final static int Y_TOP = 370650;
     private final static int MIN_DISTANCE = 15;
     private final static double NOT_ON_ROUTE = Double.NaN;
+    /* coûts maximaux des isochrones affichées autour d'un point de passage seul */
+    private final static float[] ISOCHRONE_COSTS = {5_000, 10_000, 20_000};
 
     private final StackPane stackPane;
     private final ObjectProperty<RouteBean> routeBeanProperty;
@@ -45,6 +48,21 @@ public final class AnnotatedMapManager {
      * @param errorSignal un «consommateur d'erreurs» permettant de signaler une erreur
      */
     public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean, Consumer<String> errorSignal) {
+        this(graph, tileManager, routeBean, null, errorSignal);
+    }
+
+    /**
+     * le constructeur crée en plus, si isochroneComputer n'est pas null, un IsochroneManager dont les isochrones
+     * sont superposées au fond de carte, sous l'itinéraire
+     *
+     * @param graph             le graphe du réseau routier
+     * @param tileManager       le gestionnaire de tuiles OpenStreetMap
+     * @param routeBean         le bean de l'itinéraire
+     * @param isochroneComputer le calculateur d'isochrones, ou null
+     * @param errorSignal       un «consommateur d'erreurs» permettant de signaler une erreur
+     */
+    public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean routeBean,
+                               IsochroneComputer isochroneComputer, Consumer<String> errorSignal) {
 
         mapViewParametersProperty = new SimpleObjectProperty<>(new MapViewParameters(ZOOM_LEVEL, X_TOP, Y_TOP));
         routeBeanProperty = new SimpleObjectProperty<>(routeBean);
@@ -57,7 +75,15 @@ public final class AnnotatedMapManager {
         BaseMapManager baseMapManager = new BaseMapManager(tileManager, waypointsManager, mapViewParametersProperty);
         mousePositionOnRoute = new SimpleDoubleProperty(NOT_ON_ROUTE);
         mouseProperty = new SimpleObjectProperty<>();
-        stackPane = new StackPane(baseMapManager.pane(), routeManager.pane(), waypointsManager.pane());
+        AlternativeRoutesManager alternativeRoutesManager =
+                new AlternativeRoutesManager(routeBean, mapViewParametersProperty);
+        stackPane = new StackPane(baseMapManager.pane(), alternativeRoutesManager.pane(), routeManager.pane(),
+                waypointsManager.pane());
+        if (isochroneComputer != null) {
+            IsochroneManager isochroneManager = new IsochroneManager(isochroneComputer,
+                    routeBean.getWaypointObservableList(), mapViewParametersProperty, ISOCHRONE_COSTS);
+            stackPane.getChildren().add(1, isochroneManager.pane());
+        }
         stackPane.getStylesheets().setAll(CSS_MAP);
 
         /* Listener et binding */
@@ -0,0 +1,163 @@
+package ch.epfl.javelo.gui;
+
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.CancellationToken;
+import ch.epfl.javelo.routing.Isochrone;
+import ch.epfl.javelo.routing.IsochroneComputer;
+import javafx.application.Platform;
+import javafx.beans.Observable;
+import javafx.beans.property.ObjectProperty;
+import javafx.collections.ObservableList;
+import javafx.scene.layout.Pane;
+import javafx.scene.shape.Polygon;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * La classe IsochroneManager gère l'affichage des isochrones du point de passage, lorsqu'il est seul sur la carte :
+ * la région atteignable depuis ce point pour chacun des coûts maximaux donnés, recalculée à chaque déplacement
+ * du point. Comme l'itinéraire de RouteBean, les isochrones sont calculées en arrière-plan : les isochrones
+ * précédentes restent affichées jusqu'à ce que les nouvelles soient prêtes, et un calcul rendu obsolète par un
+ * nouveau déplacement est annulé.
+ */
+public final class IsochroneManager {
+    private final static String CSS_ISOCHRONE = "isochrone";
+    private final static String CSS_LEVEL = "isochrone-";
+
+    private final IsochroneComputer isochroneComputer;
+    private final ObservableList<Waypoint> waypoints;
+    private final ObjectProperty<MapViewParameters> mapViewParameters;
+    private final float[] maxCosts;
+    private final Pane pane;
+    /* fil d'exécution virtuel unique sur lequel les calculs s'exécutent l'un après l'autre, ce qui permet au
+       calculateur de réutiliser ses tableaux propres à chaque fil */
+    private final Executor isochroneExecutor;
+
+    /* état accédé uniquement depuis le fil JavaFX */
+    private List<Isochrone> isochrones;
+    private CancellationToken currentToken;
+    private boolean updateScheduled;
+
+    /**
+     * constructeur public de IsochroneManager
+     *
+     * @param isochroneComputer le calculateur d'isochrones
+     * @param waypoints         la liste observable des points de passage
+     * @param mapViewParameters une propriété JavaFX contenant les paramètres de la carte affichée
+     * @param maxCosts          les coûts maximaux des isochrones, par ordre croissant
+     */
+    public IsochroneManager(IsochroneComputer isochroneComputer, ObservableList<Waypoint> waypoints,
+                            ObjectProperty<MapViewParameters> mapViewParameters, float... maxCosts) {
+        this.isochroneComputer = isochroneComputer;
+        this.waypoints = waypoints;
+        this.mapViewParameters = mapViewParameters;
+        this.maxCosts = maxCosts.clone();
+        this.isochrones = List.of();
+        this.currentToken = CancellationToken.NONE;
+        this.isochroneExecutor =
+                Executors.newSingleThreadExecutor(Thread.ofVirtual().name("javelo-isochrone").factory());
+        pane = new Pane();
+        pane.setPickOnBounds(false);
+        pane.setMouseTransparent(true);
+
+        waypoints.addListener((Observable o) -> scheduleUpdate());
+        mapViewParameters.addListener((observable, oldValue, newValue) -> {
+            if (oldValue.zoomLevel() != newValue.zoomLevel()) {
+                drawIsochrones();
+            } else {
+                pane.getChildren().forEach(polygon -> {
+                    polygon.setLayoutX(-newValue.xTop());
+                    polygon.setLayoutY(-newValue.yTop());
+                });
+            }
+        });
+    }
+
+    /**
+     * retourne le panneau JavaFX contenant les polygones des isochrones
+     *
+     * @return le panneau JavaFX contenant les polygones des isochrones
+     */
+    public Pane pane() {
+        return pane;
+    }
+
+    /* ================ p r i v e e ================== */
+
+    /**
+     * auditeur des points de passage : les modifications survenant lors d'un même passage de la boucle
+     * d'événements JavaFX sont regroupées en une seule mise à jour des isochrones
+     */
+    private void scheduleUpdate() {
+        if (updateScheduled) return;
+        updateScheduled = true;
+        Platform.runLater(this::updateIsochrones);
+    }
+
+    /**
+     * mise à jour des isochrones, sur le fil JavaFX : le calcul en cours, devenu inutile, est annulé, puis les
+     * isochrones sont effacées s'il n'y a pas exactement un point de passage, et le nouveau calcul confié au fil
+     * de calcul sinon
+     */
+    private void updateIsochrones() {
+        updateScheduled = false;
+        currentToken.cancel();
+        if (waypoints.size() != 1) {
+            currentToken = CancellationToken.NONE;
+            isochrones = List.of();
+            drawIsochrones();
+            return;
+        }
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
+        int originNodeId = waypoints.get(0).closestNodeId();
+        isochroneExecutor.execute(() -> computeIsochrones(originNodeId, token));
+    }
+
+    /**
+     * calcule, sur le fil de calcul, les isochrones du nœud donné et les publie, à moins que le calcul n'ait été
+     * annulé entre-temps
+     */
+    private void computeIsochrones(int originNodeId, CancellationToken token) {
+        /* un calcul annulé avant même d'avoir commencé est ignoré */
+        if (token.isCancelled()) return;
+        List<Isochrone> computed;
+        try {
+            computed = isochroneComputer.isochronesFrom(originNodeId, token, maxCosts);
+        } catch (CancellationException cancelled) {
+            return;
+        }
+        Platform.runLater(() -> {
+            if (token.isCancelled()) return;
+            isochrones = computed;
+            drawIsochrones();
+        });
+    }
+
+    /**
+     * dessine les polygones, de la plus grande isochrone à la plus petite pour que celle-ci reste visible
+     */
+    private void drawIsochrones() {
+        MapViewParameters map = mapViewParameters.get();
+        pane.getChildren().clear();
+        for (int level = isochrones.size() - 1; level >= 0; level--) {
+            for (List<PointCh> points : isochrones.get(level).polygons()) {
+                Polygon polygon = new Polygon();
+                for (PointCh point : points) {
+                    PointWebMercator mercator = PointWebMercator.ofPointCh(point);
+                    polygon.getPoints().addAll(
+                            mercator.xAtZoomLevel(map.zoomLevel()),
+                            mercator.yAtZoomLevel(map.zoomLevel()));
+                }
+                polygon.getStyleClass().addAll(CSS_ISOCHRONE, CSS_LEVEL + level);
+                polygon.setLayoutX(-map.xTop());
+                polygon.setLayoutY(-map.yTop());
+                pane.getChildren().add(polygon);
+            }
+        }
+    }
+}
@@ -2,8 +2,14 @@ package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.ContractionHierarchy;
+import ch.epfl.javelo.routing.CostTable;
 import ch.epfl.javelo.routing.ElevationProfile;
 import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.IsochroneComputer;
+import ch.epfl.javelo.routing.Landmarks;
+import ch.epfl.javelo.routing.MultiLevelPartition;
+import ch.epfl.javelo.routing.OverlayMetric;
 import ch.epfl.javelo.routing.RouteComputer;
 import javafx.application.Application;
 import javafx.beans.binding.Bindings;
@@ -33,6 +39,7 @@ public final class JaVelo extends Application {
     private final static int MINWIDTH = 800;
     private final static int MINHEIGHT = 600;
     private final static String DATA_REP = "javelo-data";
+    private final static String COST_FUNCTION_NAME = "citybike";
     private final static String OSM_CACHE = "osm-cache" ;
     private final static String TILE_SERVER = "tile.openstreetmap.org";
     private final static String TITLE = "SwissCycling";
@@ -47,9 +54,24 @@ public final class JaVelo extends Application {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Graph graph = Graph.loadFrom(Path.of(DATA_REP));
+        Path dataPath = Path.of(DATA_REP);
+        Graph graph = Graph.loadFrom(dataPath);
         CityBikeCF costFunction = new CityBikeCF(graph);
-        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        /* la hiérarchie de contraction, si elle a été construite, accélère le calcul des itinéraires */
+        ContractionHierarchy hierarchy = ContractionHierarchy.existsIn(dataPath)
+                ? ContractionHierarchy.loadFrom(dataPath)
+                : null;
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction, hierarchy);
+        /* à défaut de hiérarchie, les points de repère guident la recherche A* */
+        if (Landmarks.existsIn(dataPath))
+            routeComputer = routeComputer.withLandmarks(Landmarks.loadFrom(dataPath));
+        if (CostTable.existsIn(dataPath, COST_FUNCTION_NAME))
+            routeComputer = routeComputer.withCostTable(CostTable.loadFrom(dataPath, COST_FUNCTION_NAME));
+        /* la partition multiniveau, personnalisée au démarrage en quelques secondes, remplace la hiérarchie */
+        if (hierarchy == null && graph.hasInEdges() && MultiLevelPartition.existsIn(dataPath)) {
+            MultiLevelPartition partition = MultiLevelPartition.loadFrom(dataPath, graph);
+            routeComputer = routeComputer.withOverlay(OverlayMetric.customize(partition, graph, costFunction));
+        }
         RouteBean routeBean = new RouteBean(routeComputer);
 
         Path cacheBasePath = Path.of(OSM_CACHE);
@@ -58,7 +80,9 @@ public final class JaVelo extends Application {
 
         ErrorManager errorManager = new ErrorManager();
         Consumer<String> errorSignal = errorManager::displayError;
-        AnnotatedMapManager annotatedMapManager = new AnnotatedMapManager(graph, tileManager, routeBean, errorSignal);
+        IsochroneComputer isochroneComputer = new IsochroneComputer(graph, costFunction, hierarchy);
+        AnnotatedMapManager annotatedMapManager =
+                new AnnotatedMapManager(graph, tileManager, routeBean, isochroneComputer, errorSignal);
 
         BorderPane borderPane = new BorderPane();
         SplitPane splitPane = new SplitPane(annotatedMapManager.pane());
@@ -92,6 +116,8 @@ public final class JaVelo extends Application {
         });
 
         menu.setOnAction(event -> {
+            /* le profil de l'itinéraire est publié peu après celui-ci */
+            if (elevationProfile.get() == null) return;
             try {
                 GpxGenerator.writeGpx("javelo.gpx", routeBean.getRoute(), elevationProfile.get());
             } catch (UncheckedIOException | IOException ignored) {
@@ -1,13 +1,19 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.routing.*;
+import javafx.application.Platform;
 import javafx.beans.Observable;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Représente un bean JavaFX regroupant les propriétés relatives aux points de passage et à l'itinéraire correspondant.
@@ -18,20 +24,46 @@ public final class RouteBean {
     private final static int CACHE_CAPACITY = 50 ;
     private final static double STEP_LENGTH = 5;
     private final static double NO_HIGHLIGHT = Double.NaN;
+    private final static int MAX_ALTERNATIVES = 3;
+    /* sous-optimalité tolérée pour le premier itinéraire et budget de la recherche de l'itinéraire approximatif
+       affiché en attendant l'itinéraire optimal */
+    private final static double APPROXIMATION_EPSILON = 0.1;
+    private final static SearchBudget APPROXIMATION_BUDGET = SearchBudget.ofMillis(5);
 
     private final RouteComputer routeComputer;
     private final ObjectProperty<Route> route;
     private final ObjectProperty<ElevationProfile> elevationProfile;
     private final DoubleProperty highlightedPosition;
     private final ObservableList<Waypoint> waypointObservableList;
+    private final ObservableList<Route> alternativeRoutes;
+    private final ObservableList<Route> alternativeRoutesView;
+    private final IntegerProperty selectedAlternative;
+    /* fil d'exécution virtuel unique sur lequel les calculs s'exécutent l'un après l'autre : les contextes de
+       recherche du calculateur, propres à chaque fil, sont ainsi réutilisés, et l'état ci-dessous n'est
+       accédé que par ce fil */
+    private final Executor routeExecutor;
     private final Map<WaypointPair, Route> memoryCache;
+    /* points de passage lors du dernier calcul, pour détecter le déplacement d'un seul d'entre eux */
+    private List<Waypoint> previousWaypoints;
+    /* arbres de recherche des extrémités fixes des deux segments adjacents au point de passage déplacé, réenracinés
+       plutôt que recréés lorsque cette extrémité change */
+    private SearchTree forwardTree;
+    private SearchTree backwardTree;
+
+    /* état accédé uniquement depuis le fil JavaFX */
+    private CancellationToken currentToken;
+    private boolean updateScheduled;
+    /* points de passage de l'itinéraire publié, qui peut être en retard sur waypointObservableList */
+    private List<Waypoint> routeWaypoints;
 
     private final record WaypointPair(int startNode, int endNode){}
 
     /**
      * Constructeur de RouteBean. Lors d'un changement de la liste de waypoints, le meilleur itinéraire (simple)
      * reliant chaque point de passage à son successeur est déterminé
-     * et ces itinéraires sont combinés en un unique itinéraire multiple.
+     * et ces itinéraires sont combinés en un unique itinéraire multiple. Ce calcul s'effectue en arrière-plan :
+     * l'itinéraire est publié dès qu'il est prêt, puis son profil, et un calcul rendu obsolète par une nouvelle
+     * modification de la liste est annulé.
      *
      * @param routeComputer calculateur d'itinéraire, de type RouteComputer,
      *                      utilisé pour déterminer le meilleur itinéraire reliant deux points de passage.
@@ -42,6 +74,13 @@ public final class RouteBean {
         elevationProfile = new SimpleObjectProperty<>();
         route = new SimpleObjectProperty<>();
         highlightedPosition = new SimpleDoubleProperty(NO_HIGHLIGHT);
+        alternativeRoutes = FXCollections.observableArrayList();
+        alternativeRoutesView = FXCollections.unmodifiableObservableList(alternativeRoutes);
+        selectedAlternative = new SimpleIntegerProperty(0);
+        previousWaypoints = List.of();
+        routeWaypoints = List.of();
+        currentToken = CancellationToken.NONE;
+        routeExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("javelo-route").factory());
         memoryCache = new LinkedHashMap<>(CACHE_CAPACITY) {
             /* On défini le comportement des methods put() et putall() dans le cas où le cache est plein.*/
             @Override
@@ -49,7 +88,7 @@ public final class RouteBean {
                 return memoryCache.size() > CACHE_CAPACITY;
             }
         };
-        this.waypointObservableList.addListener((Observable o) -> updateRoute());
+        this.waypointObservableList.addListener((Observable o) -> scheduleUpdate());
     }
 
     /**
@@ -60,66 +99,242 @@ public final class RouteBean {
     public int indexOfNonEmptySegmentAt(double position) {
         int index = route.get().indexOfSegmentAt(position);
         for (int i = 0; i <= index; i += 1) {
-            int n1 = waypointObservableList.get(i).closestNodeId();
-            int n2 = waypointObservableList.get(i + 1).closestNodeId();
+            int n1 = routeWaypoints.get(i).closestNodeId();
+            int n2 = routeWaypoints.get(i + 1).closestNodeId();
             if (n1 == n2) index += 1;
         }
         return index;
     }
 
+    /**
+     * Remplace l'itinéraire par l'itinéraire alternatif d'index donné, dont le profil est calculé en arrière-plan
+     * @param index l'index de l'itinéraire dans la liste des itinéraires alternatifs
+     * @throws IndexOutOfBoundsException si l'index est invalide
+     */
+    public void selectAlternative(int index) {
+        Objects.checkIndex(index, alternativeRoutes.size());
+        currentToken.cancel();
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
+        selectedAlternative.set(index);
+        MultiRoute multiRoute = new MultiRoute(List.of(alternativeRoutes.get(index)));
+        elevationProfile.set(null);
+        route.set(multiRoute);
+        routeExecutor.execute(() -> {
+            ElevationProfile profile = ElevationProfileComputer.elevationProfile(multiRoute, STEP_LENGTH);
+            publish(token, () -> elevationProfile.set(profile));
+        });
+    }
+
     //================ P r i v é e ============================//
 
-    /** Mise à jour de l'itinéraire pour l'auditeur de waypointObservableList */
+    /**
+     * Auditeur de waypointObservableList : les modifications de la liste survenant lors d'un même passage de la
+     * boucle d'événements JavaFX sont regroupées en une seule mise à jour de l'itinéraire
+     */
+    private void scheduleUpdate() {
+        if (updateScheduled) return;
+        updateScheduled = true;
+        Platform.runLater(this::updateRoute);
+    }
+
+    /**
+     * Mise à jour de l'itinéraire, sur le fil JavaFX : le calcul en cours, devenu inutile, est annulé et le nouveau
+     * est confié au fil de calcul
+     */
     private void updateRoute(){
+        updateScheduled = false;
+        currentToken.cancel();
+        alternativeRoutes.clear();
+        List<Waypoint> waypoints = List.copyOf(waypointObservableList);
         /* si waypointList ne contient pas au moins 2 elements  */
-        if (waypointObservableList.size() < 2 ) {
+        if (waypoints.size() < 2) {
+            routeWaypoints = waypoints;
             setAttributesOfInvalidRoute();
             return;
         }
+        CancellationToken token = new CancellationToken();
+        currentToken = token;
+        routeExecutor.execute(() -> computeRoute(waypoints, token));
+    }
+
+    /**
+     * Calcule, sur le fil de calcul, l'itinéraire passant par les points de passage donnés puis son profil, et
+     * publie chacun d'eux dès qu'il est prêt, à moins que le calcul n'ait été annulé entre-temps
+     */
+    private void computeRoute(List<Waypoint> waypoints, CancellationToken token) {
+        /* un calcul annulé avant même d'avoir commencé est ignoré */
+        if (token.isCancelled()) return;
+        /* sans hiérarchie de contraction, un itinéraire approximatif est affiché en attendant l'itinéraire optimal */
+        if (!routeComputer.usesHierarchy()) {
+            MultiRoute approximation;
+            try {
+                approximation = approximateMultiRouteThrough(waypoints, token);
+            } catch (CancellationException cancelled) {
+                return;
+            }
+            if (approximation != null) publish(token, () -> {
+                routeWaypoints = waypoints;
+                elevationProfile.set(null);
+                route.set(approximation);
+            });
+        }
+        MultiRoute multiRoute;
+        try {
+            multiRoute = multiRouteThrough(waypoints, token);
+        } catch (CancellationException cancelled) {
+            return;
+        }
+        if (multiRoute == null) {
+            publish(token, () -> {
+                routeWaypoints = waypoints;
+                setAttributesOfInvalidRoute();
+            });
+            return;
+        }
+        /* l'itinéraire est affiché sans attendre son profil, qui est calculé ensuite */
+        publish(token, () -> {
+            routeWaypoints = waypoints;
+            elevationProfile.set(null);
+            route.set(multiRoute);
+        });
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(multiRoute, STEP_LENGTH);
+        publish(token, () -> elevationProfile.set(profile));
+        /* les itinéraires alternatifs, plus coûteux, ne sont proposés que pour un itinéraire d'un seul segment */
+        if (waypoints.size() == 2 && routeComputer.supportsBackwardSearch()) computeAlternatives(waypoints, token);
+    }
+
+    /** calcule puis publie les itinéraires alternatifs reliant les deux points de passage donnés */
+    private void computeAlternatives(List<Waypoint> waypoints, CancellationToken token) {
+        List<Route> alternatives;
+        try {
+            alternatives = routeComputer.alternativeRoutesBetween(
+                    waypoints.get(0).closestNodeId(), waypoints.get(1).closestNodeId(), MAX_ALTERNATIVES, token);
+        } catch (CancellationException cancelled) {
+            return;
+        }
+        if (alternatives.size() < 2) return;
+        publish(token, () -> {
+            selectedAlternative.set(0);
+            alternativeRoutes.setAll(alternatives);
+        });
+    }
+
+    /** exécute l'action donnée sur le fil JavaFX, à moins que le calcul du jeton donné n'ait été annulé */
+    private static void publish(CancellationToken token, Runnable action) {
+        Platform.runLater(() -> {
+            if (!token.isCancelled()) action.run();
+        });
+    }
+
+    /**
+     * Retourne un itinéraire multiple reliant chaque point de passage au suivant, dont les segments absents du cache
+     * sont calculés par une recherche anytime à budget limité, ou null si aucun segment n'a dû être approximé ou si
+     * l'un d'eux n'a pu être calculé. Un segment dont l'extrémité fixe dispose déjà d'un arbre de recherche est
+     * plutôt obtenu, de façon exacte, à partir de cet arbre. Seuls les segments prouvés optimaux sont ajoutés au
+     * cache.
+     * @throws CancellationException si le jeton donné est annulé pendant le calcul
+     */
+    private MultiRoute approximateMultiRouteThrough(List<Waypoint> waypoints, CancellationToken token) {
+        int movedIndex = movedWaypointIndex(waypoints);
+        ArrayList<Route> routeList = new ArrayList<>();
+        boolean approximated = false;
+        for (int i = 1; i < waypoints.size(); i++) {
+            WaypointPair waypointPair =
+                    new WaypointPair(waypoints.get(i - 1).closestNodeId(), waypoints.get(i).closestNodeId());
+            if (waypointPair.startNode == waypointPair.endNode) continue;
+            Route route = memoryCache.get(waypointPair);
+            if (route == null && hasReusableTree(waypointPair, i - 1, movedIndex)) {
+                route = computeRoute(waypointPair, i - 1, movedIndex, token);
+                if (route == null) return null;
+                memoryCache.put(waypointPair, route);
+            }
+            if (route == null) {
+                BoundedRoute bounded = routeComputer.boundedRouteBetween(waypointPair.startNode,
+                        waypointPair.endNode, APPROXIMATION_EPSILON, APPROXIMATION_BUDGET, token);
+                if (bounded == null || bounded.route() == null) return null;
+                route = bounded.route();
+                if (bounded.isOptimal()) memoryCache.put(waypointPair, route);
+                else approximated = true;
+            }
+            routeList.add(route);
+        }
+        return approximated ? new MultiRoute(routeList) : null;
+    }
+
+    /**
+     * Retourne l'itinéraire multiple reliant chaque point de passage au suivant, ou null si l'un des segments
+     * n'existe pas
+     * @throws CancellationException si le jeton donné est annulé pendant le calcul
+     */
+    private MultiRoute multiRouteThrough(List<Waypoint> waypoints, CancellationToken token) {
+        int movedIndex = movedWaypointIndex(waypoints);
+        previousWaypoints = waypoints;
         /* Début construction multiroute */
         ArrayList<Route> routeList = new ArrayList<>();
-        for (int i = 1; i < waypointObservableList.size(); i++) {
+        for (int i = 1; i < waypoints.size(); i++) {
             /* calcule du WaypointPair */
-            Waypoint first = waypointObservableList.get(i - 1);
-            Waypoint last = waypointObservableList.get(i);
+            Waypoint first = waypoints.get(i - 1);
+            Waypoint last = waypoints.get(i);
             WaypointPair waypointPair = new WaypointPair(first.closestNodeId(), last.closestNodeId());
+            /* un segment vide (deux points de passage sur le même nœud) est ignoré */
+            if (waypointPair.startNode == waypointPair.endNode) continue;
             /* calcule de la route */
-            Route route;
-            if (!memoryCache.containsKey(waypointPair)) {
-                route = routeComputer
-                        .bestRouteBetween(waypointPair.startNode, waypointPair.endNode);
-                if (route == null) {
-                    /* un segment de route invalide rend toute la route invalide*/
-                    routeList.clear();
-                    break;
-                }
-            } else {
-                route = memoryCache.get(waypointPair);
+            Route route = memoryCache.get(waypointPair);
+            if (route == null) {
+                route = computeRoute(waypointPair, i - 1, movedIndex, token);
+                /* un segment de route invalide rend toute la route invalide*/
+                if (route == null) return null;
+                /* ajout dans le cache */
+                memoryCache.put(waypointPair, route);
             }
-            /* ajout dans le cache et dans la liste de route */
-            memoryCache.putIfAbsent(waypointPair, route);
             routeList.add(route);
         }
-        /* on crée la multiroute (erreur si la liste est vide) et on set la propriété */
-        if (routeList.isEmpty()){
-            setAttributesOfInvalidRoute();
-            return;
+        /* on crée la multiroute (erreur si la liste est vide) */
+        return routeList.isEmpty() ? null : new MultiRoute(routeList);
+    }
+
+    /**
+     * Calcule l'itinéraire du segment dont les extrémités ont les index donnés. Si l'une d'elles est le point de
+     * passage déplacé, l'arbre de recherche de l'autre extrémité, fixe, est réutilisé d'un déplacement à l'autre.
+     */
+    private Route computeRoute(WaypointPair pair, int startIndex, int movedIndex, CancellationToken token) {
+        if (movedIndex >= 0 && !routeComputer.usesHierarchy()) {
+            if (startIndex + 1 == movedIndex) {
+                if (forwardTree == null) forwardTree = routeComputer.searchTreeFrom(pair.startNode);
+                else if (forwardTree.rootNodeId() != pair.startNode) forwardTree.reroot(pair.startNode);
+                return forwardTree.routeTo(pair.endNode, token);
+            }
+            if (startIndex == movedIndex && routeComputer.supportsBackwardSearch()) {
+                if (backwardTree == null) backwardTree = routeComputer.searchTreeTo(pair.endNode);
+                else if (backwardTree.rootNodeId() != pair.endNode) backwardTree.reroot(pair.endNode);
+                return backwardTree.routeTo(pair.startNode, token);
+            }
+        }
+        return routeComputer.bestRouteBetween(pair.startNode, pair.endNode, token);
+    }
+
+    /**
+     * Retourne vrai ssi l'extrémité fixe du segment dont les extrémités ont les index donnés dispose déjà d'un arbre
+     * de recherche, à partir duquel computeRoute calcule alors l'itinéraire du segment
+     */
+    private boolean hasReusableTree(WaypointPair pair, int startIndex, int movedIndex) {
+        if (movedIndex < 0 || routeComputer.usesHierarchy()) return false;
+        if (startIndex + 1 == movedIndex) return forwardTree != null && forwardTree.rootNodeId() == pair.startNode;
+        if (startIndex == movedIndex) return backwardTree != null && backwardTree.rootNodeId() == pair.endNode;
+        return false;
+    }
+
+    /** retourne l'index du seul point de passage modifié depuis le dernier calcul, ou -1 */
+    private int movedWaypointIndex(List<Waypoint> waypoints) {
+        if (previousWaypoints.size() != waypoints.size()) return -1;
+        int movedIndex = -1;
+        for (int i = 0; i < waypoints.size(); i++) {
+            if (previousWaypoints.get(i).equals(waypoints.get(i))) continue;
+            if (movedIndex >= 0) return -1;
+            movedIndex = i;
         }
-        /* Calcule de la route et du profile */
-        MultiRoute multiRoute = new MultiRoute(routeList);
-        this.route.set(multiRoute);
-        setElevationProfile(multiRoute);
-//        try {
-//            /* Calcule de la route et du profile */
-//            MultiRoute multiRoute = new MultiRoute(routeList);
-//            this.route.set(multiRoute);
-//            setElevationProfile(multiRoute);
-//            /* si la Multiroute est créée avec une liste vide on reçoit une IllegalArgument Exception*/
-//        } catch (IllegalArgumentException noRouteError) {
-//            /* dans ce cas on set les attributs à null/NaN */
-//            setAttributesOfInvalidRoute();
-//        }
-//    }
+        return movedIndex;
     }
 
     /** pour set elevationProfile et route à null */
@@ -172,6 +387,22 @@ public final class RouteBean {
     public Route getRoute() {
         return route.get();
     }
+    /**
+     * Retourne la liste, non modifiable, des itinéraires alternatifs triés par coût croissant (le premier étant
+     * l'itinéraire de coût minimal), vide si aucun itinéraire alternatif n'est proposé
+     * @return la liste des itinéraires alternatifs
+     */
+    public ObservableList<Route> getAlternativeRoutes() {
+        return alternativeRoutesView;
+    }
+    /**
+     * Retourne l'index, dans la liste des itinéraires alternatifs, de l'itinéraire sélectionné, sous la forme
+     * d'une valeur de type ReadOnlyIntegerProperty
+     * @return l'index de l'itinéraire alternatif sélectionné
+     */
+    public ReadOnlyIntegerProperty selectedAlternativeReadOnlyIntegerProperty() {
+        return selectedAlternative;
+    }
     /**
      * Retourne le profile sous la forme d'une valeur de type ReadOnlyObjectProperty<…>
      * @return le profile sous la forme d'une valeur de type ReadOnlyObjectProperty<…>
@@ -186,11 +417,4 @@ public final class RouteBean {
     public ElevationProfile getElevationProfile() {
         return elevationProfile.get();
     }
-
-    /** pour définir le profile à partir de la route en argument */
-    private void setElevationProfile(Route route){
-        this.elevationProfile
-                .set(ElevationProfileComputer
-                        .elevationProfile(route, RouteBean.STEP_LENGTH));
-    }
 }
\ No newline at end of file
@@ -53,7 +53,8 @@ public final class RouteManager {
             drawCircle();
         });
 
-        this.routeBean.getWaypointObservableList().addListener((Observable o) -> {
+        /* l'itinéraire est publié par RouteBean une fois calculé, après la modification des points de passage */
+        this.routeBean.routeReadOnlyObjectProperty().addListener((Observable o) -> {
             setCircleVisibility();
             setPolylineVisibility();
             drawCircle();
@@ -0,0 +1,248 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Recherche d'itinéraires alternatifs par la méthode des plateaux : une recherche de Dijkstra part du nœud de
+ * départ, une autre (sur l'index inverse du graphe) part du nœud d'arrivée, et chacune s'arrête une fois
+ * explorés tous les nœuds dont le coût ne dépasse pas (1 + MAX_STRETCH) fois celui de l'itinéraire optimal.
+ * <p>
+ * Un plateau est une suite d'arêtes appartenant aux deux arbres de recherche. Tous les nœuds d'un plateau
+ * définissent le même itinéraire « via » : le chemin optimal du départ au plateau, le plateau, puis le chemin
+ * optimal du plateau à l'arrivée. Un tel itinéraire est localement optimal sur toute portion plus courte que
+ * son plateau, d'où le critère d'optimalité locale : le coût du plateau doit atteindre MIN_PLATEAU fois celui de
+ * l'itinéraire optimal. Les candidats restants sont examinés du plus prometteur au moins prometteur, et
+ * retenus s'ils ne partagent pas plus de MAX_SHARING fois le coût optimal avec un itinéraire déjà retenu.
+ */
+final class AlternativeRouteSearch {
+
+    /* allongement maximal, relatif, du coût d'un itinéraire alternatif par rapport à l'itinéraire optimal */
+    private final static float MAX_STRETCH = 0.25f;
+    /* coût partagé maximal avec un itinéraire déjà retenu, relatif au coût optimal */
+    private final static double MAX_SHARING = 0.8;
+    /* coût minimal d'un plateau, relatif au coût optimal */
+    private final static double MIN_PLATEAU = 0.25;
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final RouteComputer routeComputer;
+    private final Graph graph;
+    private final int startNodeId;
+    private final int endNodeId;
+    private final SearchContext forward;
+    private final SearchContext backward;
+    private final CancellationToken token;
+    /* vrai si la recherche arrière doit s'arrêter, le fil appelant ayant été interrompu */
+    private volatile boolean stopped;
+    /* nœuds explorés par la recherche avant, dans l'ordre */
+    private int[] settled = new int[INITIAL_CAPACITY];
+    private int settledCount;
+
+    /* un candidat : le premier nœud d'un plateau, le coût de l'itinéraire passant par lui et celui du plateau */
+    private record Candidate(int viaNodeId, float cost, float plateauCost) {
+        private double score() {
+            return 2 * cost - plateauCost;
+        }
+    }
+
+    /**
+     * Prépare une recherche entre les deux nœuds donnés, utilisant les contextes donnés
+     * @param sparse vrai si les recherches doivent commencer en mode creux
+     */
+    AlternativeRouteSearch(RouteComputer routeComputer, Graph graph, int startNodeId, int endNodeId,
+                           SearchContext forward, SearchContext backward, boolean sparse,
+                           CancellationToken token) {
+        this.routeComputer = routeComputer;
+        this.graph = graph;
+        this.startNodeId = startNodeId;
+        this.endNodeId = endNodeId;
+        this.forward = forward;
+        this.backward = backward;
+        this.token = token;
+        forward.reset(sparse);
+        backward.reset(sparse);
+    }
+
+    /**
+     * Effectue les deux recherches, la recherche arrière sur un fil d'exécution de l'exécuteur donné, et retourne
+     * au plus maxCount itinéraires, l'optimal en premier, triés par coût croissant
+     * @param maxCount le nombre maximal d'itinéraires
+     * @param executor l'exécuteur
+     * @return les itinéraires triés par coût croissant, vide si aucun itinéraire n'existe
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé ou si le fil appelant est
+     * interrompu pendant les recherches
+     */
+    List<Route> search(int maxCount, ExecutorService executor) {
+        Future<?> backwardSearch = executor.submit(() -> explore(false));
+        try {
+            explore(true);
+        } finally {
+            /* la recherche arrière doit être terminée avant que les contextes ne soient réutilisés */
+            RouteComputer.awaitSearch(backwardSearch, () -> stopped = true);
+        }
+
+        float optimalCost = forward.distance(endNodeId);
+        if (optimalCost == Float.POSITIVE_INFINITY) return List.of();
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (int i = 0; i < settledCount; i++) {
+            int node = settled[i];
+            if (!isPlateauStart(node)) continue;
+            float cost = forward.distance(node) + backward.distance(node);
+            if (cost > (1 + MAX_STRETCH) * optimalCost) continue;
+            int plateauEnd = plateauEnd(node);
+            /* le plateau allant du départ à l'arrivée est l'itinéraire optimal lui-même */
+            if (node == startNodeId && plateauEnd == endNodeId) continue;
+            float plateauCost = forward.distance(plateauEnd) - forward.distance(node);
+            if (plateauCost < MIN_PLATEAU * optimalCost) continue;
+            candidates.add(new Candidate(node, cost, plateauCost));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score));
+
+        int[] optimalPath = RouteComputer.pathTo(forward, startNodeId, endNodeId);
+        List<int[]> accepted = new ArrayList<>();
+        accepted.add(sorted(optimalPath));
+        List<Candidate> alternatives = new ArrayList<>();
+        List<int[]> alternativePaths = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (accepted.size() >= maxCount) break;
+            int[] path = pathVia(candidate.viaNodeId());
+            if (!isSimple(path) || sharesTooMuch(path, accepted, optimalCost)) continue;
+            accepted.add(sorted(path));
+            alternatives.add(candidate);
+            alternativePaths.add(path);
+        }
+
+        /* les candidats ayant été examinés par score, les itinéraires retenus sont triés par coût */
+        Integer[] order = new Integer[alternatives.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> alternatives.get(i).cost()));
+        List<Route> routes = new ArrayList<>(order.length + 1);
+        routes.add(new CompactRoute(graph, startNodeId, optimalPath));
+        for (int i : order) routes.add(new CompactRoute(graph, startNodeId, alternativePaths.get(i)));
+        return routes;
+    }
+
+    //==================================//
+
+    /**
+     * Recherche de Dijkstra dans le sens donné, poursuivie après l'exploration de l'autre extrémité jusqu'au coût
+     * maximal d'un itinéraire alternatif
+     */
+    private void explore(boolean isForward) {
+        SearchContext context = isForward ? forward : backward;
+        int root = isForward ? startNodeId : endNodeId;
+        int target = isForward ? endNodeId : startNodeId;
+        NodeHeap exploring = context.heap();
+        context.setDistance(root, 0f);
+        exploring.insertOrDecrease(root, 0);
+
+        float limit = Float.POSITIVE_INFINITY;
+        for (int iteration = 0; !exploring.isEmpty() && exploring.minPriority() <= limit; iteration++) {
+            if ((iteration & (RouteComputer.CANCELLATION_CHECK_PERIOD - 1)) == 0) {
+                token.throwIfCancelled();
+                if (stopped) return;
+            }
+            int node = exploring.removeMin();
+            float distance = context.distance(node);
+            if (isForward) addSettled(node);
+            if (node == target) limit = (1 + MAX_STRETCH) * distance;
+
+            int degree = isForward ? graph.nodeOutDegree(node) : graph.nodeInDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = isForward ? graph.nodeOutEdgeId(node, i) : graph.nodeInEdgeId(node, i);
+                int next = isForward ? graph.edgeTargetNodeId(edgeId) : graph.nodeInEdgeSourceId(node, i);
+                double cost = routeComputer.edgeCost(isForward ? node : next, edgeId);
+                if (cost == Double.POSITIVE_INFINITY) continue;
+                float dist = (float) (distance + cost);
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, node, edgeId);
+                    exploring.insertOrDecrease(next, dist);
+                }
+            }
+        }
+    }
+
+    private void addSettled(int nodeId) {
+        if (settledCount == settled.length) settled = Arrays.copyOf(settled, 2 * settledCount);
+        settled[settledCount++] = nodeId;
+    }
+
+    /* Un nœud est exploré par une recherche s'il a été atteint et ne se trouve plus dans sa file */
+    private static boolean isSettled(SearchContext context, int nodeId) {
+        return context.distance(nodeId) != Float.POSITIVE_INFINITY && !context.heap().contains(nodeId);
+    }
+
+    /* Vrai ssi l'arête reliant le nœud donné à son successeur dans l'arbre arrière appartient aussi à l'arbre avant */
+    private boolean hasPlateauEdge(int nodeId) {
+        if (nodeId == endNodeId || !isSettled(backward, nodeId)) return false;
+        int next = backward.predecessorNode(nodeId);
+        return isSettled(forward, next) && forward.predecessorEdge(next) == backward.predecessorEdge(nodeId);
+    }
+
+    /* Vrai ssi le nœud donné, exploré par la recherche avant, est le premier nœud d'un plateau */
+    private boolean isPlateauStart(int nodeId) {
+        if (!hasPlateauEdge(nodeId)) return false;
+        if (nodeId == startNodeId) return true;
+        int previous = forward.predecessorNode(nodeId);
+        return !isSettled(backward, previous) || backward.predecessorEdge(previous) != forward.predecessorEdge(nodeId);
+    }
+
+    private int plateauEnd(int plateauStart) {
+        int node = plateauStart;
+        while (hasPlateauEdge(node)) node = backward.predecessorNode(node);
+        return node;
+    }
+
+    /* Identités des arêtes de l'itinéraire passant par le nœud donné */
+    private int[] pathVia(int viaNodeId) {
+        int[] forwardPath = RouteComputer.pathTo(forward, startNodeId, viaNodeId);
+        int count = forwardPath.length;
+        for (int node = viaNodeId; node != endNodeId; node = backward.predecessorNode(node)) count++;
+
+        int[] edgeIds = Arrays.copyOf(forwardPath, count);
+        int index = forwardPath.length;
+        for (int node = viaNodeId; node != endNodeId; node = backward.predecessorNode(node)) {
+            edgeIds[index++] = backward.predecessorEdge(node);
+        }
+        return edgeIds;
+    }
+
+    /* Vrai ssi l'itinéraire formé des arêtes données ne passe pas deux fois par le même nœud */
+    private boolean isSimple(int[] edgeIds) {
+        int[] nodeIds = new int[edgeIds.length + 1];
+        nodeIds[0] = startNodeId;
+        for (int i = 0; i < edgeIds.length; i++) nodeIds[i + 1] = graph.edgeTargetNodeId(edgeIds[i]);
+        Arrays.sort(nodeIds);
+        for (int i = 1; i < nodeIds.length; i++) {
+            if (nodeIds[i] == nodeIds[i - 1]) return false;
+        }
+        return true;
+    }
+
+    /* Vrai ssi l'itinéraire partage plus de MAX_SHARING fois le coût optimal avec l'un des itinéraires retenus */
+    private boolean sharesTooMuch(int[] edgeIds, List<int[]> accepted, float optimalCost) {
+        for (int[] sortedEdgeIds : accepted) {
+            double shared = 0;
+            int node = startNodeId;
+            for (int edgeId : edgeIds) {
+                if (Arrays.binarySearch(sortedEdgeIds, edgeId) >= 0) shared += routeComputer.edgeCost(node, edgeId);
+                node = graph.edgeTargetNodeId(edgeId);
+            }
+            if (shared > MAX_SHARING * optimalCost) return true;
+        }
+        return false;
+    }
+
+    private static int[] sorted(int[] edgeIds) {
+        int[] copy = edgeIds.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,203 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Recherche A* bidirectionnelle d'un itinéraire de coût minimal : une recherche part du nœud de départ en suivant
+ * les arêtes sortantes, l'autre part du nœud d'arrivée en suivant les arêtes entrantes (au moyen de l'index
+ * inverse du graphe), chaque arête étant évaluée dans son sens de parcours réel.
+ * <p>
+ * Les deux recherches utilisent des potentiels moyennés, p(v) = (d(v, arrivée) - d(départ, v)) / 2 pour la
+ * recherche avant et -p(v) pour la recherche arrière, où d est la distance à vol d'oiseau. Les coûts réduits
+ * sont alors les mêmes dans les deux sens et positifs, ce qui permet d'arrêter la recherche dès que la somme
+ * des priorités minimales des deux files dépasse le coût du meilleur chemin trouvé.
+ */
+final class BidirectionalSearch {
+
+    private final static int NO_NODE = -1;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final CostTable costTable;
+    private final int startNodeId;
+    private final int endNodeId;
+    private final double startE;
+    private final double startN;
+    private final double endE;
+    private final double endN;
+    private final SearchContext forward;
+    private final SearchContext backward;
+    private final boolean shared;
+
+    /* priorité minimale de chaque file, publiée une fois les arêtes du dernier nœud retiré relâchées */
+    private volatile float forwardTop;
+    private volatile float backwardTop;
+    private volatile boolean done;
+    /* coût du meilleur chemin trouvé et nœud où les deux recherches se rejoignent, modifiés sous verrou */
+    private volatile float best = Float.POSITIVE_INFINITY;
+    private int meetingNode = NO_NODE;
+
+    /**
+     * Prépare une recherche entre les deux nœuds donnés, utilisant les contextes donnés et, si costTable n'est
+     * pas null, les coûts précalculés des arêtes
+     * @param shared vrai si les deux recherches s'exécutent sur deux fils d'exécution différents
+     */
+    BidirectionalSearch(Graph graph, CostFunction costFunction, CostTable costTable, int startNodeId,
+                        int endNodeId, SearchContext forward, SearchContext backward, boolean shared) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.costTable = costTable;
+        this.startNodeId = startNodeId;
+        this.endNodeId = endNodeId;
+        this.startE = graph.nodeE(startNodeId);
+        this.startN = graph.nodeN(startNodeId);
+        this.endE = graph.nodeE(endNodeId);
+        this.endN = graph.nodeN(endNodeId);
+        this.forward = forward;
+        this.backward = backward;
+        this.shared = shared;
+
+        /* les contextes partagés entre deux fils doivent être en mode dense */
+        forward.reset(!shared);
+        backward.reset(!shared);
+        forward.setDistance(startNodeId, 0f);
+        backward.setDistance(endNodeId, 0f);
+        forwardTop = potential(startNodeId);
+        backwardTop = -potential(endNodeId);
+        forward.heap().insertOrDecrease(startNodeId, forwardTop);
+        backward.heap().insertOrDecrease(endNodeId, backwardTop);
+    }
+
+    /**
+     * Effectue la recherche en alternant entre les deux sens, et retourne les identités des arêtes de
+     * l'itinéraire trouvé ou null si aucun itinéraire n'existe
+     * @return les identités des arêtes de l'itinéraire de coût minimal, ou null
+     */
+    int[] search() {
+        while (top(forward) + top(backward) < best) {
+            boolean isForward = top(forward) <= top(backward);
+            step(isForward);
+        }
+        return edges();
+    }
+
+    /**
+     * Effectue la recherche arrière sur un fil d'exécution de l'exécuteur donné et la recherche avant sur le fil
+     * appelant, et retourne les identités des arêtes de l'itinéraire trouvé ou null si aucun itinéraire n'existe
+     * @param executor l'exécuteur
+     * @return les identités des arêtes de l'itinéraire de coût minimal, ou null
+     * @throws java.util.concurrent.CancellationException si le fil appelant est interrompu pendant la recherche
+     */
+    int[] searchInParallel(ExecutorService executor) {
+        assert shared;
+        Future<?> backwardSearch = executor.submit(() -> run(false));
+        try {
+            run(true);
+        } finally {
+            /* la recherche arrière écrit dans un contexte du fil appelant : elle doit être terminée avant qu'il ne
+               soit réutilisé, même si la recherche avant a échoué */
+            RouteComputer.awaitSearch(backwardSearch, () -> done = true);
+        }
+        return edges();
+    }
+
+    //==================================//
+
+    /* Boucle d'une des deux recherches lorsqu'elles s'exécutent en parallèle */
+    private void run(boolean isForward) {
+        SearchContext context = isForward ? forward : backward;
+        try {
+            while (!done) {
+                float top = top(context);
+                float otherTop = isForward ? backwardTop : forwardTop;
+                if (top + otherTop >= best) break;
+                step(isForward);
+                if (isForward) forwardTop = top(context);
+                else backwardTop = top(context);
+            }
+        } finally {
+            done = true;
+        }
+    }
+
+    /* Retire le nœud de priorité minimale de la file du sens donné et relâche ses arêtes */
+    private void step(boolean isForward) {
+        SearchContext context = isForward ? forward : backward;
+        SearchContext other = isForward ? backward : forward;
+        int node = context.heap().removeMin();
+        float distance = context.distance(node);
+
+        int degree = isForward ? graph.nodeOutDegree(node) : graph.nodeInDegree(node);
+        for (int i = 0; i < degree; i++) {
+            int edgeId;
+            int next;
+            double cost;
+            if (isForward) {
+                edgeId = graph.nodeOutEdgeId(node, i);
+                next = graph.edgeTargetNodeId(edgeId);
+                cost = edgeCost(node, edgeId);
+            } else {
+                edgeId = graph.nodeInEdgeId(node, i);
+                next = graph.nodeInEdgeSourceId(node, i);
+                cost = edgeCost(next, edgeId);
+            }
+            if (cost == Double.POSITIVE_INFINITY) continue;
+
+            float dist = (float) (distance + cost);
+            if (dist >= context.distance(next)) continue;
+
+            if (shared) context.setShared(next, dist, node, edgeId);
+            else context.set(next, dist, node, edgeId);
+            float p = potential(next);
+            context.heap().insertOrDecrease(next, isForward ? dist + p : dist - p);
+
+            float otherDistance = shared ? other.sharedDistance(next) : other.distance(next);
+            if (dist + otherDistance < best) meet(next, dist + otherDistance);
+        }
+    }
+
+    /* Coût de l'arête donnée partant du nœud donné, lu dans la table des coûts s'il y en a une */
+    private double edgeCost(int sourceNodeId, int edgeId) {
+        return costTable != null
+                ? costTable.cost(edgeId)
+                : costFunction.costFactor(sourceNodeId, edgeId) * graph.edgeLength(edgeId);
+    }
+
+    private synchronized void meet(int node, float cost) {
+        if (cost < best) {
+            best = cost;
+            meetingNode = node;
+        }
+    }
+
+    /* Priorité minimale de la file du contexte donné, infinie si elle est vide */
+    private static float top(SearchContext context) {
+        return context.heap().isEmpty() ? Float.POSITIVE_INFINITY : context.heap().minPriority();
+    }
+
+    /* Potentiel avant du nœud donné */
+    private float potential(int nodeId) {
+        return (float) (Math.sqrt(graph.nodeSquaredDistanceTo(nodeId, endE, endN))
+                - Math.sqrt(graph.nodeSquaredDistanceTo(nodeId, startE, startN))) / 2;
+    }
+
+    /* Reconstruit l'itinéraire passant par le nœud de rencontre */
+    private synchronized int[] edges() {
+        if (meetingNode == NO_NODE) return null;
+
+        int[] forwardPath = RouteComputer.pathTo(forward, startNodeId, meetingNode);
+        int count = forwardPath.length;
+        for (int node = meetingNode; node != endNodeId; node = backward.predecessorNode(node)) count++;
+
+        int[] edgeIds = Arrays.copyOf(forwardPath, count);
+        int index = forwardPath.length;
+        for (int node = meetingNode; node != endNodeId; node = backward.predecessorNode(node)) {
+            edgeIds[index++] = backward.predecessorEdge(node);
+        }
+        return edgeIds;
+    }
+}
@@ -0,0 +1,21 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Représente le résultat d'une recherche d'itinéraire sous-optimale : l'itinéraire trouvé, son coût, et une borne
+ * prouvée de sa sous-optimalité, c.-à-d. un facteur b tel que son coût ne dépasse pas b fois le coût minimal.
+ *
+ * @param route l'itinéraire trouvé, ou null si le budget de la recherche a été épuisé avant qu'un itinéraire ne
+ *              soit trouvé
+ * @param cost le coût de l'itinéraire, infini s'il n'y en a pas
+ * @param suboptimality la borne de sous-optimalité, supérieure ou égale à 1, infinie s'il n'y a pas d'itinéraire
+ */
+public record BoundedRoute(Route route, double cost, double suboptimality) {
+
+    /**
+     * Retourne vrai ssi l'itinéraire est prouvé optimal
+     * @return vrai ssi l'itinéraire est prouvé optimal
+     */
+    public boolean isOptimal() {
+        return suboptimality == 1;
+    }
+}
@@ -0,0 +1,39 @@
+package ch.epfl.javelo.routing;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Jeton d'annulation d'un calcul d'itinéraire : le fil d'exécution qui lance le calcul peut l'annuler à tout
+ * moment, et le calcul, qui consulte régulièrement le jeton, s'interrompt alors en levant une
+ * CancellationException.
+ */
+public final class CancellationToken {
+
+    /* un jeton qui n'est jamais annulé */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private volatile boolean cancelled;
+
+    /**
+     * Annule le calcul associé au jeton; sans effet sur le jeton NONE
+     */
+    public void cancel() {
+        if (this != NONE) cancelled = true;
+    }
+
+    /**
+     * Retourne vrai ssi le jeton a été annulé
+     * @return vrai ssi le jeton a été annulé
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Lève une CancellationException si le jeton a été annulé
+     * @throws CancellationException si le jeton a été annulé
+     */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException();
+    }
+}
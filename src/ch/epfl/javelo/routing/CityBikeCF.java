@@ -62,6 +62,11 @@ public record CityBikeCF(Graph graph) implements CostFunction {
     private static final Optional<Boolean> FALSE = Optional.of(Boolean.FALSE);
     private static final Optional<Boolean> UNKNOWN = Optional.empty();
 
+    @Override
+    public String name() {
+        return "citybike";
+    }
+
     @Override
     public double costFactor(int nodeId, int edgeId) {
         var edgeAttributes = graph.edgeAttributes(edgeId);
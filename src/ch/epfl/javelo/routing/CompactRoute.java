@@ -0,0 +1,215 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static java.util.Arrays.binarySearch;
+
+/**
+ * Représente un itinéraire simple stocké de manière compacte : identités des arêtes et des nœuds, coordonnées
+ * des nœuds et position de chacun d'eux le long de l'itinéraire, dans des tableaux de types primitifs.
+ * <p>
+ * Contrairement à SingleRoute, aucune instance de Edge n'est créée tant que la liste des arêtes n'est pas
+ * demandée, et le profil d'une arête n'est décodé que lorsqu'une altitude y est demandée.
+ */
+public final class CompactRoute implements Route {
+
+    private final Graph graph;
+    private final int[] edgeIds;
+    private final int[] nodeIds;
+    private final double[] nodeE;
+    private final double[] nodeN;
+    /* position de chaque nœud le long de l'itinéraire, la dernière étant la longueur de l'itinéraire */
+    private final double[] positions;
+    /* profils décodés à la demande; deux fils peuvent décoder le même, sans conséquence */
+    private final DoubleUnaryOperator[] profiles;
+    private volatile List<Edge> edges;
+
+    /**
+     * Construit l'itinéraire partant du nœud donné et suivant les arêtes données
+     * @param graph le graphe
+     * @param startNodeId l'identité du nœud de départ
+     * @param edgeIds les identités des arêtes, dans l'ordre de parcours
+     * @throws IllegalArgumentException si la liste des arêtes est vide
+     */
+    public CompactRoute(Graph graph, int startNodeId, int[] edgeIds) {
+        Preconditions.checkArgument(edgeIds.length > 0);
+        this.graph = graph;
+        this.edgeIds = edgeIds.clone();
+        int count = edgeIds.length + 1;
+        this.nodeIds = new int[count];
+        this.nodeE = new double[count];
+        this.nodeN = new double[count];
+        this.positions = new double[count];
+        this.profiles = new DoubleUnaryOperator[edgeIds.length];
+
+        nodeIds[0] = startNodeId;
+        for (int i = 0; i < edgeIds.length; i++) {
+            nodeIds[i + 1] = graph.edgeTargetNodeId(edgeIds[i]);
+            positions[i + 1] = positions[i] + graph.edgeLength(edgeIds[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            nodeE[i] = graph.nodeE(nodeIds[i]);
+            nodeN[i] = graph.nodeN(nodeIds[i]);
+        }
+    }
+
+    /**
+     * Retourne l'index du segment de l'itinéraire contenant la position donnée, qui vaut 0 pour un itinéraire simple
+     * @param position la position de recherche
+     * @return 0
+     */
+    @Override
+    public int indexOfSegmentAt(double position) {
+        return 0;
+    }
+
+    /**
+     * Retourne la longueur de l'itinéraire, en mètres
+     * @return la longueur de l'itinéraire, en mètres
+     */
+    @Override
+    public double length() {
+        return positions[edgeIds.length];
+    }
+
+    /**
+     * Retourne le nombre d'arêtes de l'itinéraire
+     * @return le nombre d'arêtes de l'itinéraire
+     */
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    /**
+     * Retourne l'identité de la index-ième arête de l'itinéraire
+     * @param index index de l'arête
+     * @return l'identité de la index-ième arête de l'itinéraire
+     */
+    public int edgeId(int index) {
+        return edgeIds[index];
+    }
+
+    /**
+     * Retourne la totalité des arêtes de l'itinéraire, construites lors du premier appel
+     * @return la totalité des arêtes de l'itinéraire
+     */
+    @Override
+    public List<Edge> edges() {
+        List<Edge> result = edges;
+        if (result == null) {
+            List<Edge> list = new ArrayList<>(edgeIds.length);
+            for (int i = 0; i < edgeIds.length; i++) {
+                list.add(new Edge(nodeIds[i], nodeIds[i + 1], point(i), point(i + 1),
+                        positions[i + 1] - positions[i], profile(i)));
+            }
+            edges = result = List.copyOf(list);
+        }
+        return result;
+    }
+
+    /**
+     * Retourne la totalité des points situés aux extrémités des arêtes de l'itinéraire
+     * @return la totalité des points situés aux extrémités des arêtes de l'itinéraire
+     */
+    @Override
+    public List<PointCh> points() {
+        List<PointCh> points = new ArrayList<>(nodeIds.length);
+        for (int i = 0; i < nodeIds.length; i++) points.add(point(i));
+        return points;
+    }
+
+    /**
+     * Retourne le point se trouvant à la position donnée le long de l'itinéraire
+     * @param position la position de recherche
+     * @return le point se trouvant à la position donnée le long de l'itinéraire
+     */
+    @Override
+    public PointCh pointAt(double position) {
+        int index = index(position);
+        double percent = fraction(index, Math2.clamp(0, position, length()) - positions[index]);
+        return new PointCh(
+                Math2.interpolate(nodeE[index], nodeE[index + 1], percent),
+                Math2.interpolate(nodeN[index], nodeN[index + 1], percent));
+    }
+
+    /**
+     * Retourne l'altitude à la position donnée le long de l'itinéraire
+     * (ou NaN si l'arête contenant cette position n'a pas de profil)
+     * @param position la position de recherche
+     * @return l'altitude à la position donnée le long de l'itinéraire
+     */
+    @Override
+    public double elevationAt(double position) {
+        int index = index(position);
+        return profile(index).applyAsDouble(Math2.clamp(0, position, length()) - positions[index]);
+    }
+
+    /**
+     * Retourne l'identité du nœud appartenant à l'itinéraire et se trouvant le plus proche de la position donnée
+     * @param position la position de recherche
+     * @return l'identité du nœud le plus proche de la position donnée
+     */
+    @Override
+    public int nodeClosestTo(double position) {
+        int index = index(position);
+        double edgeLength = positions[index + 1] - positions[index];
+        return position - positions[index] <= edgeLength / 2.0 ? nodeIds[index] : nodeIds[index + 1];
+    }
+
+    /**
+     * Retourne le point de l'itinéraire se trouvant le plus proche du point de référence donné
+     * @param point le point de référence
+     * @return le point de l'itinéraire se trouvant le plus proche du point de référence donné
+     */
+    @Override
+    public RoutePoint pointClosestTo(PointCh point) {
+        RoutePoint closest = RoutePoint.NONE;
+        for (int i = 0; i < edgeIds.length; i++) {
+            double edgeLength = positions[i + 1] - positions[i];
+            double position = Math2.clamp(0, Math2.projectionLength(
+                    nodeE[i], nodeN[i], nodeE[i + 1], nodeN[i + 1], point.e(), point.n()), edgeLength);
+            double percent = fraction(i, position);
+            double e = Math2.interpolate(nodeE[i], nodeE[i + 1], percent);
+            double n = Math2.interpolate(nodeN[i], nodeN[i + 1], percent);
+            double distance = Math2.norm(point.e() - e, point.n() - n);
+            /* le point n'est créé que s'il est plus proche que le meilleur trouvé jusqu'ici */
+            if (distance < closest.distanceToReference())
+                closest = new RoutePoint(new PointCh(e, n), positions[i] + position, distance);
+        }
+        return closest;
+    }
+
+    //==================================//
+
+    private PointCh point(int nodeIndex) {
+        return new PointCh(nodeE[nodeIndex], nodeN[nodeIndex]);
+    }
+
+    private DoubleUnaryOperator profile(int edgeIndex) {
+        DoubleUnaryOperator profile = profiles[edgeIndex];
+        if (profile == null) profiles[edgeIndex] = profile = graph.edgeProfile(edgeIds[edgeIndex]);
+        return profile;
+    }
+
+    /* Fraction de la longueur de l'arête d'index donné correspondant à la position donnée sur celle-ci */
+    private double fraction(int edgeIndex, double position) {
+        double edgeLength = positions[edgeIndex + 1] - positions[edgeIndex];
+        return edgeLength == 0 ? 0 : position / edgeLength;
+    }
+
+    /* Index de l'arête contenant la position donnée */
+    private int index(double position) {
+        int x = binarySearch(positions, Math2.clamp(0, position, length()));
+        if (x >= positions.length - 1)
+            return x - 1;
+        else
+            return x >= 0 ? x : -x - 2;
+    }
+}
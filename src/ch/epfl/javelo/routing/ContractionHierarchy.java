@@ -0,0 +1,479 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Représente une hiérarchie de contraction (Contraction Hierarchies) du graphe JaVelo pour une fonction de coût
+ * donnée. Chaque nœud possède un rang, et l'ensemble des arcs est constitué des arêtes du graphe (de coût fini)
+ * et des raccourcis ajoutés lors de la contraction. Un raccourci u→w remplace le chemin u→v→w passant par
+ * le nœud v, contracté avant u et w, et se souvient des deux arcs qu'il remplace.
+ * <p>
+ * Une requête n'explore que les arcs « montants » depuis le départ et « descendants » vers l'arrivée,
+ * ce qui réduit l'espace de recherche à quelques centaines de nœuds.
+ * <p>
+ * Le fichier des rangs commence par un en-tête (signature du format, version, signature du graphe et de la
+ * fonction de coût, voir GraphSignature, et nombre d'arcs), qui permet de vérifier au chargement que les deux
+ * fichiers vont ensemble et, au moyen de matches, que la hiérarchie a été construite pour le graphe et la
+ * fonction de coût utilisés.
+ */
+public final class ContractionHierarchy {
+
+    /* Valeur de arcSecond indiquant que l'arc est une arête du graphe (et non un raccourci) */
+    private final static int ORIGINAL_ARC = -1;
+    private final static int ARC_INTS = 5;
+
+    private final static int MAGIC = 0x4A564348; // "JVCH"
+    private final static int VERSION = 2;
+    private final static int OFFSET_MAGIC = 0;
+    private final static int OFFSET_VERSION = OFFSET_MAGIC + 1;
+    private final static int OFFSET_SIGNATURE = OFFSET_VERSION + 1;
+    private final static int OFFSET_ARC_COUNT = OFFSET_SIGNATURE + GraphSignature.INTS;
+    private final static int HEADER_INTS = OFFSET_ARC_COUNT + 1;
+
+    private final static String PATH_RANKS = "ch_ranks.bin";
+    private final static String PATH_ARCS = "ch_arcs.bin";
+    private final static String DATA_REP = "javelo-data";
+
+    private final GraphSignature signature;
+    private final int[] rank;
+    private final int[] arcFrom;
+    private final int[] arcTo;
+    private final float[] arcWeight;
+    private final int[] arcFirst;
+    private final int[] arcSecond;
+    /* arcs montants (vers un nœud de rang supérieur) sortant de chaque nœud, au format CSR */
+    private final int[] upFirst;
+    private final int[] upArcs;
+    /* arcs descendants (depuis un nœud de rang supérieur) arrivant à chaque nœud, au format CSR */
+    private final int[] downFirst;
+    private final int[] downArcs;
+    /* nœuds par rang croissant, pour le balayage PHAST */
+    private final int[] nodesByRank;
+
+    /**
+     * Construit une hiérarchie à partir des rangs des nœuds et des arcs donnés. Un arc d'index i va du nœud
+     * arcFrom[i] au nœud arcTo[i] pour un coût arcWeight[i]; s'il s'agit d'une arête du graphe, arcFirst[i] est
+     * son identité et arcSecond[i] vaut -1, sinon arcFirst[i] et arcSecond[i] sont les index des deux arcs
+     * remplacés par ce raccourci.
+     * @param signature la signature du graphe et de la fonction de coût pour lesquels la hiérarchie a été construite
+     * @param rank le rang de chaque nœud
+     * @param arcFrom le nœud de départ de chaque arc
+     * @param arcTo le nœud d'arrivée de chaque arc
+     * @param arcWeight le coût de chaque arc
+     * @param arcFirst l'arête ou le premier arc remplacé
+     * @param arcSecond le second arc remplacé, ou -1
+     * @throws IllegalArgumentException si les tableaux des arcs n'ont pas tous la même taille, ou si celui des
+     * rangs n'a pas la taille donnée par la signature
+     */
+    public ContractionHierarchy(GraphSignature signature, int[] rank, int[] arcFrom, int[] arcTo,
+                                float[] arcWeight, int[] arcFirst, int[] arcSecond) {
+        int arcCount = arcFrom.length;
+        Preconditions.checkArgument(arcTo.length == arcCount && arcWeight.length == arcCount
+                && arcFirst.length == arcCount && arcSecond.length == arcCount
+                && rank.length == signature.nodeCount());
+        this.signature = signature;
+        this.rank = rank;
+        this.arcFrom = arcFrom;
+        this.arcTo = arcTo;
+        this.arcWeight = arcWeight;
+        this.arcFirst = arcFirst;
+        this.arcSecond = arcSecond;
+
+        int nodeCount = rank.length;
+        upFirst = new int[nodeCount + 1];
+        downFirst = new int[nodeCount + 1];
+        for (int a = 0; a < arcCount; a++) {
+            if (isUpward(a)) upFirst[arcFrom[a] + 1]++;
+            else downFirst[arcTo[a] + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            upFirst[v + 1] += upFirst[v];
+            downFirst[v + 1] += downFirst[v];
+        }
+        upArcs = new int[upFirst[nodeCount]];
+        downArcs = new int[downFirst[nodeCount]];
+        int[] upFill = new int[nodeCount];
+        int[] downFill = new int[nodeCount];
+        for (int a = 0; a < arcCount; a++) {
+            if (isUpward(a)) upArcs[upFirst[arcFrom[a]] + upFill[arcFrom[a]]++] = a;
+            else downArcs[downFirst[arcTo[a]] + downFill[arcTo[a]]++] = a;
+        }
+        nodesByRank = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) nodesByRank[rank[v]] = v;
+    }
+
+    /**
+     * Contracte tous les nœuds du graphe donné pour la fonction de coût donnée.
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return la hiérarchie de contraction du graphe
+     */
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new HierarchyBuilder(graph, costFunction).build();
+    }
+
+    /**
+     * Contracte tous les nœuds du graphe donné pour la fonction de coût donnée, par rondes : chaque ronde contracte
+     * en parallèle, sur le ForkJoinPool donné, un ensemble de nœuds deux à deux non adjacents, de priorité
+     * minimale parmi leurs voisins. La hiérarchie obtenue ne dépend pas du nombre de fils du ForkJoinPool.
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @param pool le ForkJoinPool
+     * @param roundListener reçoit les statistiques de chaque ronde, une fois celle-ci terminée
+     * @return la hiérarchie de contraction du graphe
+     */
+    public static ContractionHierarchy buildInParallel(Graph graph, CostFunction costFunction, ForkJoinPool pool,
+                                                       Consumer<ContractionRound> roundListener) {
+        return new HierarchyBuilder(graph, costFunction).buildInParallel(pool, roundListener);
+    }
+
+    /**
+     * Retourne vrai ssi les fichiers d'une hiérarchie se trouvent dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @return vrai ssi les fichiers d'une hiérarchie se trouvent dans le répertoire donné
+     */
+    public static boolean existsIn(Path basePath) {
+        return Files.exists(basePath.resolve(PATH_RANKS)) && Files.exists(basePath.resolve(PATH_ARCS));
+    }
+
+    /**
+     * Retourne la hiérarchie stockée dans le répertoire donné par writeTo
+     * @param basePath chemin d'accès
+     * @return la hiérarchie stockée dans le répertoire donné
+     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si l'un des fichiers attendu n'existe pas, ou si
+     * les fichiers ne forment pas une hiérarchie de version connue
+     */
+    public static ContractionHierarchy loadFrom(Path basePath) throws IOException {
+        IntBuffer ranksBuffer = mapIntBuffer(basePath.resolve(PATH_RANKS));
+        IntBuffer arcsBuffer = mapIntBuffer(basePath.resolve(PATH_ARCS));
+        if (ranksBuffer.capacity() < HEADER_INTS || ranksBuffer.get(OFFSET_MAGIC) != MAGIC
+                || ranksBuffer.get(OFFSET_VERSION) != VERSION)
+            throw new IOException("hiérarchie de contraction invalide : " + PATH_RANKS);
+        GraphSignature signature = GraphSignature.readFrom(ranksBuffer, OFFSET_SIGNATURE);
+        int nodeCount = signature.nodeCount();
+        int arcCount = ranksBuffer.get(OFFSET_ARC_COUNT);
+        if (ranksBuffer.capacity() != HEADER_INTS + (long) nodeCount
+                || arcsBuffer.capacity() != (long) arcCount * ARC_INTS)
+            throw new IOException("fichiers de la hiérarchie de contraction incohérents : " + PATH_RANKS + ", "
+                    + PATH_ARCS);
+
+        int[] rank = new int[nodeCount];
+        ranksBuffer.get(HEADER_INTS, rank);
+        int[] from = new int[arcCount];
+        int[] to = new int[arcCount];
+        float[] weight = new float[arcCount];
+        int[] first = new int[arcCount];
+        int[] second = new int[arcCount];
+        for (int a = 0; a < arcCount; a++) {
+            int base = a * ARC_INTS;
+            from[a] = arcsBuffer.get(base);
+            to[a] = arcsBuffer.get(base + 1);
+            weight[a] = Float.intBitsToFloat(arcsBuffer.get(base + 2));
+            first[a] = arcsBuffer.get(base + 3);
+            second[a] = arcsBuffer.get(base + 4);
+        }
+        return new ContractionHierarchy(signature, rank, from, to, weight, first, second);
+    }
+
+    /**
+     * Écrit les rangs et les arcs de la hiérarchie dans le répertoire donné, à côté des fichiers du graphe
+     * @param basePath chemin d'accès
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = dataStream(basePath.resolve(PATH_RANKS))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            signature.writeTo(s);
+            s.writeInt(arcCount());
+            for (int r : rank) s.writeInt(r);
+        }
+        try (DataOutputStream s = dataStream(basePath.resolve(PATH_ARCS))) {
+            for (int a = 0; a < arcCount(); a++) {
+                s.writeInt(arcFrom[a]);
+                s.writeInt(arcTo[a]);
+                s.writeInt(Float.floatToRawIntBits(arcWeight[a]));
+                s.writeInt(arcFirst[a]);
+                s.writeInt(arcSecond[a]);
+            }
+        }
+    }
+
+    /**
+     * Retourne vrai ssi la hiérarchie a été construite pour le graphe et la fonction de coût donnés, c.-à-d. pour
+     * un graphe ayant le même nombre de nœuds et d'arêtes et la même empreinte, et une fonction de coût de même nom
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return vrai ssi la hiérarchie correspond au graphe et à la fonction de coût donnés
+     */
+    public boolean matches(Graph graph, CostFunction costFunction) {
+        return signature.equals(GraphSignature.of(graph, costFunction));
+    }
+
+    /**
+     * Retourne le nombre de nœuds de la hiérarchie
+     * @return le nombre de nœuds de la hiérarchie
+     */
+    public int nodeCount() {
+        return rank.length;
+    }
+
+    /**
+     * Retourne le nombre d'arcs (arêtes et raccourcis) de la hiérarchie
+     * @return le nombre d'arcs de la hiérarchie
+     */
+    public int arcCount() {
+        return arcFrom.length;
+    }
+
+    /**
+     * Retourne le rang du nœud d'identité donnée, 0 étant le premier nœud contracté
+     * @param nodeId identité du nœud
+     * @return le rang du nœud d'identité donnée
+     */
+    public int rank(int nodeId) {
+        return rank[nodeId];
+    }
+
+    /**
+     * Retourne les identités des arêtes du graphe formant le chemin de coût minimal allant de startNodeId à
+     * endNodeId, dans l'ordre, ou null si aucun chemin n'existe
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivée
+     * @param forward le contexte de la recherche partant de startNodeId
+     * @param backward le contexte de la recherche partant de endNodeId
+     * @return les arêtes du chemin de coût minimal, ou null si aucun chemin n'existe
+     */
+    public int[] bestPathBetween(int startNodeId, int endNodeId, SearchContext forward, SearchContext backward) {
+        return bestPathBetween(startNodeId, endNodeId, forward, backward, null);
+    }
+
+    /**
+     * Fait comme bestPathBetween, en ajoutant à stats, s'il n'est pas null, les statistiques de la requête; la
+     * taille maximale de la file est celle des deux files réunies
+     */
+    int[] bestPathBetween(int startNodeId, int endNodeId, SearchContext forward, SearchContext backward,
+                          QueryStats stats) {
+        long startTime = System.nanoTime();
+        /* l'espace de recherche d'une hiérarchie est petit : les contextes commencent en mode creux */
+        forward.reset(true);
+        backward.reset(true);
+        forward.setDistance(startNodeId, 0f);
+        backward.setDistance(endNodeId, 0f);
+        forward.heap().insertOrDecrease(startNodeId, 0);
+        backward.heap().insertOrDecrease(endNodeId, 0);
+
+        float best = Float.POSITIVE_INFINITY;
+        int meetingNode = -1;
+        int relaxed = 0, pushes = 2, pops = 0, peakSize = 2;
+        while (true) {
+            boolean forwardDone = forward.heap().isEmpty() || forward.heap().minPriority() >= best;
+            boolean backwardDone = backward.heap().isEmpty() || backward.heap().minPriority() >= best;
+            if (forwardDone && backwardDone) break;
+
+            boolean isForward = !forwardDone
+                    && (backwardDone || forward.heap().minPriority() <= backward.heap().minPriority());
+            SearchContext context = isForward ? forward : backward;
+            SearchContext other = isForward ? backward : forward;
+
+            int node = context.heap().removeMin();
+            pops++;
+            float distance = context.distance(node);
+            if (distance + other.distance(node) < best) {
+                best = distance + other.distance(node);
+                meetingNode = node;
+            }
+
+            int[] first = isForward ? upFirst : downFirst;
+            int[] arcs = isForward ? upArcs : downArcs;
+            for (int i = first[node]; i < first[node + 1]; i++) {
+                int arc = arcs[i];
+                int next = isForward ? arcTo[arc] : arcFrom[arc];
+                float dist = distance + arcWeight[arc];
+                relaxed++;
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, node, arc);
+                    context.heap().insertOrDecrease(next, dist);
+                    pushes++;
+                }
+            }
+            peakSize = Math.max(peakSize, forward.heap().size() + backward.heap().size());
+        }
+        long searchEnd = System.nanoTime();
+        int[] edgeIds = meetingNode < 0 ? null : path(startNodeId, endNodeId, meetingNode, forward, backward);
+        /* chaque nœud retiré de la file est exploré, la file diminuant la priorité des nœuds en place */
+        if (stats != null) stats.add(new QueryStats(pops, relaxed, pushes, pops, 0, peakSize, 0, 0,
+                searchEnd - startTime, System.nanoTime() - searchEnd));
+        return edgeIds;
+    }
+
+    /**
+     * Calcule le coût minimal allant du nœud donné à chacun des nœuds du graphe par un balayage PHAST : une
+     * recherche montante depuis l'origine, puis un unique parcours des nœuds par rang décroissant, qui relâche
+     * les arcs descendants arrivant à chacun d'eux
+     * @param originNodeId le nœud d'origine
+     * @param context le contexte de la recherche montante
+     * @param distance tableau de taille nodeCount(), réutilisé d'un appel à l'autre, qui reçoit le coût minimal
+     *                 de chaque nœud (infini s'il n'est pas atteignable)
+     * @throws IllegalArgumentException si la taille du tableau ne correspond pas au nombre de nœuds
+     */
+    public void sweepFrom(int originNodeId, SearchContext context, float[] distance) {
+        Preconditions.checkArgument(distance.length == nodeCount());
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+
+        context.reset(true);
+        context.setDistance(originNodeId, 0f);
+        context.heap().insertOrDecrease(originNodeId, 0);
+        while (!context.heap().isEmpty()) {
+            int node = context.heap().removeMin();
+            float d = context.distance(node);
+            distance[node] = d;
+            for (int i = upFirst[node]; i < upFirst[node + 1]; i++) {
+                int arc = upArcs[i];
+                float dist = d + arcWeight[arc];
+                if (dist < context.distance(arcTo[arc])) {
+                    context.set(arcTo[arc], dist, node, arc);
+                    context.heap().insertOrDecrease(arcTo[arc], dist);
+                }
+            }
+        }
+
+        /* les nœuds de rang supérieur étant traités avant, leur coût est définitif lorsqu'on les lit */
+        for (int r = nodesByRank.length - 1; r >= 0; r--) {
+            int node = nodesByRank[r];
+            float d = distance[node];
+            for (int i = downFirst[node]; i < downFirst[node + 1]; i++) {
+                int arc = downArcs[i];
+                d = Math.min(d, distance[arcFrom[arc]] + arcWeight[arc]);
+            }
+            distance[node] = d;
+        }
+    }
+
+    /**
+     * Retourne l'itinéraire de coût minimal allant de startNodeId à endNodeId, les raccourcis étant
+     * remplacés par les arêtes du graphe qu'ils représentent, ou null si aucun itinéraire n'existe
+     * @param graph le graphe à partir duquel la hiérarchie a été construite
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivée
+     * @param forward le contexte de la recherche partant de startNodeId
+     * @param backward le contexte de la recherche partant de endNodeId
+     * @return l'itinéraire de coût minimal, ou null si aucun itinéraire n'existe
+     */
+    public Route bestRouteBetween(Graph graph, int startNodeId, int endNodeId,
+                                  SearchContext forward, SearchContext backward) {
+        return bestRouteBetween(graph, startNodeId, endNodeId, forward, backward, null);
+    }
+
+    /**
+     * Fait comme bestRouteBetween, en ajoutant à stats, s'il n'est pas null, les statistiques de la requête
+     */
+    Route bestRouteBetween(Graph graph, int startNodeId, int endNodeId, SearchContext forward,
+                           SearchContext backward, QueryStats stats) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        int[] edgeIds = bestPathBetween(startNodeId, endNodeId, forward, backward, stats);
+        return edgeIds == null ? null : new CompactRoute(graph, startNodeId, edgeIds);
+    }
+
+    /**
+     * Contracte le graphe JaVelo pour la fonction de coût CityBikeCF, par rondes parallèles dont la durée est
+     * affichée, et écrit la hiérarchie à côté de ses fichiers
+     * @param args le répertoire des données (javelo-data par défaut) et le nombre de fils d'exécution (par défaut
+     *             le nombre de processeurs)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ContractionHierarchy hierarchy = buildInParallel(graph, new CityBikeCF(graph), pool, round ->
+                System.out.printf("ronde %d : %d nœuds contractés, %d restants, %d raccourcis en %.1f ms%n",
+                        round.index(), round.contractedCount(), round.remainingCount(), round.shortcutCount(),
+                        round.nanos() / 1e6));
+        pool.shutdown();
+        System.out.printf("%d nœuds contractés, %d arcs (dont %d raccourcis) en %.1f s%n",
+                hierarchy.nodeCount(), hierarchy.arcCount(), hierarchy.shortcutCount(),
+                (System.nanoTime() - start) / 1e9);
+        hierarchy.writeTo(basePath);
+    }
+
+    //==================================//
+
+    /* Arêtes du graphe formant le chemin passant par le nœud de rencontre des deux recherches */
+    private int[] path(int startNodeId, int endNodeId, int meetingNode, SearchContext forward,
+                       SearchContext backward) {
+        /* arcs du départ jusqu'au nœud de rencontre, puis du nœud de rencontre jusqu'à l'arrivée */
+        List<Integer> path = new ArrayList<>();
+        for (int node = meetingNode; node != startNodeId; node = forward.predecessorNode(node)) {
+            path.add(forward.predecessorEdge(node));
+        }
+        Collections.reverse(path);
+        for (int node = meetingNode; node != endNodeId; node = backward.predecessorNode(node)) {
+            path.add(backward.predecessorEdge(node));
+        }
+
+        List<Integer> edges = new ArrayList<>();
+        for (int arc : path) unpack(arc, edges);
+        return edges.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private boolean isUpward(int arc) {
+        return rank[arcFrom[arc]] < rank[arcTo[arc]];
+    }
+
+    private int shortcutCount() {
+        int count = 0;
+        for (int second : arcSecond) {
+            if (second != ORIGINAL_ARC) count++;
+        }
+        return count;
+    }
+
+    /* Ajoute à edges les arêtes du graphe représentées par l'arc donné, dans l'ordre */
+    private void unpack(int arc, List<Integer> edges) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(arc);
+        while (!stack.isEmpty()) {
+            int a = stack.pop();
+            if (arcSecond[a] == ORIGINAL_ARC) {
+                edges.add(arcFirst[a]);
+            } else {
+                stack.push(arcSecond[a]);
+                stack.push(arcFirst[a]);
+            }
+        }
+    }
+
+    private static DataOutputStream dataStream(Path path) throws IOException {
+        OutputStream s = Files.newOutputStream(path);
+        return new DataOutputStream(new BufferedOutputStream(s));
+    }
+
+    private static IntBuffer mapIntBuffer(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            return channel
+                    .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .asIntBuffer();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ch.epfl.javelo.routing;
+
+/**
+ * Représente les statistiques d'une ronde de la contraction parallèle d'un graphe (voir
+ * ContractionHierarchy.buildInParallel).
+ *
+ * @param index l'index de la ronde, à partir de 0
+ * @param contractedCount le nombre de nœuds contractés lors de la ronde
+ * @param remainingCount le nombre de nœuds restant à contracter après la ronde
+ * @param shortcutCount le nombre de raccourcis ajoutés lors de la ronde
+ * @param nanos la durée de la ronde, en nanosecondes
+ */
+public record ContractionRound(int index, int contractedCount, int remainingCount, int shortcutCount, long nanos) {
+}
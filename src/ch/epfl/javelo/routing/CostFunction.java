@@ -14,4 +14,14 @@ public interface CostFunction {
      * @return  le facteur par lequel la longueur de l'arête d'identité edgeId
      */
     double costFactor(int nodeId, int edgeId);
+
+    /**
+     *  retourne le nom de la fonction de coût, enregistré dans les fichiers construits pour elle (hiérarchie de
+     *  contraction, points de repère, table des coûts) pour vérifier à leur chargement qu'ils lui correspondent;
+     *  par défaut, le nom de sa classe
+     * @return le nom de la fonction de coût
+     */
+    default String name() {
+        return getClass().getName();
+    }
 }
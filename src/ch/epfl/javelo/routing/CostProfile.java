@@ -0,0 +1,417 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.data.Attribute;
+import ch.epfl.javelo.data.AttributeSet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Représente un profil de coût écrit dans un petit langage inspiré de celui des profils de brouter. Un profil est
+ * une suite d'affectations, évaluées dans l'ordre, dont la dernière valeur de la variable costfactor est le
+ * facteur de coût d'une arête :
+ * <pre>
+ * # vélo de ville
+ * assign cycleroute = icn=yes or ncn=yes or rcn=yes or lcn=yes
+ * assign costfactor = if highway=motorway then infinity
+ *                     else if cycleroute then 1
+ *                     else 1.5 * (if slope &lt; 0.05 then 1 else 2)
+ * </pre>
+ * Les expressions sont formées de nombres, des constantes true, false et infinity, des variables déjà affectées,
+ * des opérateurs + - * / &lt; &lt;= &gt; &gt;= and or not, des fonctions min(a, b) et max(a, b) et de
+ * l'expression conditionnelle if ... then ... else. Un attribut s'écrit clé=valeur, sans espace, et vaut vrai
+ * ssi l'arête le porte; clé=v1|v2 vaut vrai ssi elle porte l'un des attributs de cette clé. Deux variables
+ * décrivent l'arête elle-même : reversed, vraie ssi elle va dans le sens contraire de sa voie OSM, et slope, sa
+ * pente montante moyenne, arrondie au pourcent inférieur (de 0 à 0.15). Les valeurs booléennes sont les nombres
+ * 1 et 0, et toute valeur non nulle est vraie. Un commentaire va de # à la fin de la ligne.
+ * <p>
+ * Un profil ne dépendant que de l'ensemble d'attributs, de la pente arrondie et du sens de l'arête, il est
+ * destiné à être évalué une fois pour toutes ces combinaisons par ProfileCF.
+ */
+public final class CostProfile {
+
+    /* nombre de classes de pente, larges d'un pourcent, la dernière regroupant les pentes plus fortes */
+    public static final int SLOPE_BUCKET_COUNT = 16;
+    private final static double PERCENT = 100;
+
+    private final static String COST_FACTOR = "costfactor";
+    private final static String EXTENSION = ".profile";
+    private final static Map<String, Attribute> ATTRIBUTES = new HashMap<>();
+    static {
+        for (Attribute attribute : Attribute.ALL) ATTRIBUTES.put(attribute.keyValue(), attribute);
+    }
+
+    private final String name;
+    private final Expression[] assignments;
+    private final int[] targets;
+    private final int variableCount;
+    private final int costFactorVariable;
+
+    /* une expression, évaluée pour une arête décrite par ses attributs, son sens et sa pente */
+    @FunctionalInterface
+    private interface Expression {
+        double evaluate(AttributeSet attributes, boolean reversed, double slope, double[] variables);
+    }
+
+    private CostProfile(String name, List<Expression> assignments, List<Integer> targets, int variableCount,
+                        int costFactorVariable) {
+        this.name = name;
+        this.assignments = assignments.toArray(new Expression[0]);
+        this.targets = targets.stream().mapToInt(Integer::intValue).toArray();
+        this.variableCount = variableCount;
+        this.costFactorVariable = costFactorVariable;
+    }
+
+    /**
+     * Analyse le texte d'un profil
+     * @param name le nom du profil, p. ex. citybike
+     * @param source le texte du profil
+     * @return le profil
+     * @throws IllegalArgumentException si le texte n'est pas un profil valide ou n'affecte pas costfactor; le
+     * message indique la ligne de l'erreur
+     */
+    public static CostProfile parse(String name, String source) {
+        return new Parser(name, source).parseProfile();
+    }
+
+    /**
+     * Lit et analyse le profil contenu dans le fichier donné, dont le nom, privé de l'extension .profile, est
+     * celui du profil
+     * @param file le chemin d'accès au fichier
+     * @return le profil
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si le fichier ne contient pas un profil valide
+     */
+    public static CostProfile loadFrom(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String name = fileName.endsWith(EXTENSION)
+                ? fileName.substring(0, fileName.length() - EXTENSION.length())
+                : fileName;
+        return parse(name, Files.readString(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Retourne le nom du profil
+     * @return le nom du profil
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Évalue le facteur de coût d'une arête
+     * @param attributes les attributs de l'arête
+     * @param reversed vrai ssi l'arête va dans le sens contraire de sa voie OSM
+     * @param slopeBucket la classe de pente de l'arête, entre 0 et SLOPE_BUCKET_COUNT (exclus)
+     * @return le facteur de coût de l'arête, éventuellement infini
+     */
+    public double costFactor(AttributeSet attributes, boolean reversed, int slopeBucket) {
+        double slope = slopeBucket / PERCENT;
+        double[] variables = new double[variableCount];
+        for (int i = 0; i < assignments.length; i++)
+            variables[targets[i]] = assignments[i].evaluate(attributes, reversed, slope, variables);
+        return variables[costFactorVariable];
+    }
+
+    /**
+     * Retourne la classe de la pente donnée : le nombre de pourcents entiers qu'elle atteint, au plus
+     * SLOPE_BUCKET_COUNT - 1; une pente indéfinie (NaN) est rangée dans la dernière classe
+     * @param slope la pente montante moyenne
+     * @return la classe de la pente
+     */
+    public static int slopeBucket(double slope) {
+        if (Double.isNaN(slope)) return SLOPE_BUCKET_COUNT - 1;
+        /* k / 100.0 est le double le plus proche de k pourcents, p. ex. 0.03 : les seuils écrits dans un profil
+           coïncident donc exactement avec les bornes des classes. Le produit slope * 100 pouvant être arrondi de
+           l'autre côté d'une borne, la classe qu'il donne est corrigée, d'une classe au plus, en l'y comparant */
+        int bucket = (int) Math2.clamp(0, Math.floor(slope * PERCENT), SLOPE_BUCKET_COUNT - 1);
+        if (bucket > 0 && slope < bucket / PERCENT) bucket--;
+        else if (bucket < SLOPE_BUCKET_COUNT - 1 && slope >= (bucket + 1) / PERCENT) bucket++;
+        return bucket;
+    }
+
+    //==================================//
+
+    private enum Kind {NUMBER, WORD, TAG, SYMBOL, END}
+
+    private record Token(Kind kind, String text, int line) {}
+
+    /* Analyseur par descente récursive, dont chaque méthode correspond à un niveau de priorité */
+    private static final class Parser {
+        private final String name;
+        private final List<Token> tokens;
+        private final Map<String, Integer> variables = new HashMap<>();
+        private int position;
+
+        private Parser(String name, String source) {
+            this.name = name;
+            this.tokens = tokenize(source);
+        }
+
+        private CostProfile parseProfile() {
+            List<Expression> assignments = new ArrayList<>();
+            List<Integer> targets = new ArrayList<>();
+            while (peek().kind() != Kind.END) {
+                expectWord("assign");
+                Token target = next();
+                if (target.kind() != Kind.WORD || isKeyword(target.text()))
+                    throw error(target, "nom de variable attendu");
+                if (isSymbol("=")) next();
+                /* l'expression est analysée avant que la variable ne soit définie, à moins qu'elle ne le soit déjà */
+                Expression expression = parseExpression();
+                assignments.add(expression);
+                targets.add(variables.computeIfAbsent(target.text(), v -> variables.size()));
+            }
+            Integer costFactor = variables.get(COST_FACTOR);
+            if (costFactor == null) throw error(peek(), "la variable " + COST_FACTOR + " n'est pas affectée");
+            return new CostProfile(name, assignments, targets, variables.size(), costFactor);
+        }
+
+        private Expression parseExpression() {
+            if (!isWord("if")) return parseOr();
+            next();
+            Expression condition = parseExpression();
+            expectWord("then");
+            Expression then = parseExpression();
+            expectWord("else");
+            Expression otherwise = parseExpression();
+            return (a, r, s, v) -> condition.evaluate(a, r, s, v) != 0
+                    ? then.evaluate(a, r, s, v)
+                    : otherwise.evaluate(a, r, s, v);
+        }
+
+        private Expression parseOr() {
+            Expression left = parseAnd();
+            while (isWord("or")) {
+                next();
+                Expression l = left, right = parseAnd();
+                left = (a, r, s, v) -> l.evaluate(a, r, s, v) != 0 || right.evaluate(a, r, s, v) != 0 ? 1 : 0;
+            }
+            return left;
+        }
+
+        private Expression parseAnd() {
+            Expression left = parseNot();
+            while (isWord("and")) {
+                next();
+                Expression l = left, right = parseNot();
+                left = (a, r, s, v) -> l.evaluate(a, r, s, v) != 0 && right.evaluate(a, r, s, v) != 0 ? 1 : 0;
+            }
+            return left;
+        }
+
+        private Expression parseNot() {
+            if (!isWord("not")) return parseComparison();
+            next();
+            Expression operand = parseNot();
+            return (a, r, s, v) -> operand.evaluate(a, r, s, v) == 0 ? 1 : 0;
+        }
+
+        private Expression parseComparison() {
+            Expression left = parseSum();
+            if (!(isSymbol("<") || isSymbol("<=") || isSymbol(">") || isSymbol(">="))) return left;
+            String operator = next().text();
+            Expression right = parseSum();
+            return switch (operator) {
+                case "<" -> (a, r, s, v) -> left.evaluate(a, r, s, v) < right.evaluate(a, r, s, v) ? 1 : 0;
+                case "<=" -> (a, r, s, v) -> left.evaluate(a, r, s, v) <= right.evaluate(a, r, s, v) ? 1 : 0;
+                case ">" -> (a, r, s, v) -> left.evaluate(a, r, s, v) > right.evaluate(a, r, s, v) ? 1 : 0;
+                default -> (a, r, s, v) -> left.evaluate(a, r, s, v) >= right.evaluate(a, r, s, v) ? 1 : 0;
+            };
+        }
+
+        private Expression parseSum() {
+            Expression left = parseProduct();
+            while (isSymbol("+") || isSymbol("-")) {
+                boolean plus = next().text().equals("+");
+                Expression l = left, right = parseProduct();
+                left = plus
+                        ? (a, r, s, v) -> l.evaluate(a, r, s, v) + right.evaluate(a, r, s, v)
+                        : (a, r, s, v) -> l.evaluate(a, r, s, v) - right.evaluate(a, r, s, v);
+            }
+            return left;
+        }
+
+        private Expression parseProduct() {
+            Expression left = parsePrimary();
+            while (isSymbol("*") || isSymbol("/")) {
+                boolean times = next().text().equals("*");
+                Expression l = left, right = parsePrimary();
+                left = times
+                        ? (a, r, s, v) -> l.evaluate(a, r, s, v) * right.evaluate(a, r, s, v)
+                        : (a, r, s, v) -> l.evaluate(a, r, s, v) / right.evaluate(a, r, s, v);
+            }
+            return left;
+        }
+
+        private Expression parsePrimary() {
+            Token token = next();
+            switch (token.kind()) {
+                case NUMBER -> {
+                    double value = Double.parseDouble(token.text());
+                    return (a, r, s, v) -> value;
+                }
+                case TAG -> {
+                    AttributeSet set = tagSet(token);
+                    return (a, r, s, v) -> a.intersects(set) ? 1 : 0;
+                }
+                case SYMBOL -> {
+                    if (token.text().equals("(")) {
+                        Expression expression = parseExpression();
+                        expectSymbol(")");
+                        return expression;
+                    }
+                    if (token.text().equals("-")) {
+                        Expression operand = parsePrimary();
+                        return (a, r, s, v) -> -operand.evaluate(a, r, s, v);
+                    }
+                }
+                case WORD -> {
+                    switch (token.text()) {
+                        case "true": return (a, r, s, v) -> 1;
+                        case "false": return (a, r, s, v) -> 0;
+                        case "infinity": return (a, r, s, v) -> Double.POSITIVE_INFINITY;
+                        case "reversed": return (a, r, s, v) -> r ? 1 : 0;
+                        case "slope": return (a, r, s, v) -> s;
+                        case "min", "max": {
+                            boolean min = token.text().equals("min");
+                            expectSymbol("(");
+                            Expression first = parseExpression();
+                            expectSymbol(",");
+                            Expression second = parseExpression();
+                            expectSymbol(")");
+                            return min
+                                    ? (a, r, s, v) -> Math.min(first.evaluate(a, r, s, v), second.evaluate(a, r, s, v))
+                                    : (a, r, s, v) -> Math.max(first.evaluate(a, r, s, v), second.evaluate(a, r, s, v));
+                        }
+                        default: {
+                            Integer index = variables.get(token.text());
+                            if (index == null || isKeyword(token.text()))
+                                throw error(token, "variable inconnue : " + token.text());
+                            int i = index;
+                            return (a, r, s, v) -> v[i];
+                        }
+                    }
+                }
+                default -> { }
+            }
+            throw error(token, "expression attendue");
+        }
+
+        /* Ensemble des attributs désignés par un jeton clé=v1|v2|... */
+        private AttributeSet tagSet(Token token) {
+            String text = token.text();
+            int equals = text.indexOf('=');
+            String key = text.substring(0, equals);
+            long bits = 0;
+            for (String value : text.substring(equals + 1).split("\\|")) {
+                Attribute attribute = ATTRIBUTES.get(key + "=" + value);
+                if (attribute == null) throw error(token, "attribut inconnu : " + key + "=" + value);
+                bits |= AttributeSet.of(attribute).bits();
+            }
+            return new AttributeSet(bits);
+        }
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token next() {
+            Token token = tokens.get(position);
+            if (token.kind() != Kind.END) position++;
+            return token;
+        }
+
+        private boolean isWord(String word) {
+            return peek().kind() == Kind.WORD && peek().text().equals(word);
+        }
+
+        private boolean isSymbol(String symbol) {
+            return peek().kind() == Kind.SYMBOL && peek().text().equals(symbol);
+        }
+
+        private void expectWord(String word) {
+            if (!isWord(word)) throw error(peek(), "« " + word + " » attendu");
+            next();
+        }
+
+        private void expectSymbol(String symbol) {
+            if (!isSymbol(symbol)) throw error(peek(), "« " + symbol + " » attendu");
+            next();
+        }
+
+        private IllegalArgumentException error(Token token, String message) {
+            String found = token.kind() == Kind.END ? "fin du profil" : "« " + token.text() + " »";
+            return new IllegalArgumentException(
+                    "profil " + name + ", ligne " + token.line() + " : " + message + " (trouvé " + found + ")");
+        }
+
+        private static boolean isKeyword(String word) {
+            return switch (word) {
+                case "assign", "if", "then", "else", "and", "or", "not", "true", "false", "infinity",
+                     "reversed", "slope", "min", "max" -> true;
+                default -> false;
+            };
+        }
+
+        private List<Token> tokenize(String source) {
+            List<Token> tokens = new ArrayList<>();
+            int line = 1;
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (c == '\n') {
+                    line++;
+                    i++;
+                } else if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '#') {
+                    while (i < source.length() && source.charAt(i) != '\n') i++;
+                } else if (Character.isDigit(c) || c == '.') {
+                    int start = i;
+                    while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.'))
+                        i++;
+                    tokens.add(new Token(Kind.NUMBER, source.substring(start, i), line));
+                } else if (Character.isLetter(c) || c == '_') {
+                    int start = i;
+                    while (i < source.length() && isKeyChar(source.charAt(i))) i++;
+                    /* un mot immédiatement suivi de = et d'une valeur est un attribut */
+                    if (i + 1 < source.length() && source.charAt(i) == '=' && isValueChar(source.charAt(i + 1))) {
+                        i++;
+                        while (i < source.length() && (isValueChar(source.charAt(i)) || source.charAt(i) == '|'))
+                            i++;
+                        tokens.add(new Token(Kind.TAG, source.substring(start, i), line));
+                    } else {
+                        tokens.add(new Token(Kind.WORD, source.substring(start, i), line));
+                    }
+                } else if ((c == '<' || c == '>') && i + 1 < source.length() && source.charAt(i + 1) == '=') {
+                    tokens.add(new Token(Kind.SYMBOL, source.substring(i, i + 2), line));
+                    i += 2;
+                } else if ("()+-*/<>=,".indexOf(c) >= 0) {
+                    tokens.add(new Token(Kind.SYMBOL, String.valueOf(c), line));
+                    i++;
+                } else {
+                    throw new IllegalArgumentException(
+                            "profil " + name + ", ligne " + line + " : caractère inattendu « " + c + " »");
+                }
+            }
+            tokens.add(new Token(Kind.END, "", line));
+            return tokens;
+        }
+
+        private static boolean isKeyChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == ':';
+        }
+
+        private static boolean isValueChar(char c) {
+            return isKeyChar(c) || c == '-' || c == '.';
+        }
+    }
+}
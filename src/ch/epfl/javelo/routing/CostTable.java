@@ -0,0 +1,190 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Représente la table des coûts des arêtes du graphe pour une fonction de coût donnée : le coût de chaque arête,
+ * c.-à-d. sa longueur multipliée par son facteur de coût, y est calculé une fois pour toutes, ce qui évite
+ * d'évaluer la fonction de coût (ensembles d'attributs, pente, etc.) à chaque relâchement d'arête.
+ * <p>
+ * Le fichier d'une table contient un en-tête (signature du format, version, signature du graphe et de la fonction
+ * de coût, voir GraphSignature), puis le coût de chaque arête; une arête est praticable ssi son coût est fini.
+ */
+public final class CostTable {
+
+    private final static int MAGIC = 0x4A564354; // "JVCT"
+    private final static int VERSION = 2;
+    private final static int OFFSET_MAGIC = 0;
+    private final static int OFFSET_VERSION = OFFSET_MAGIC + 1;
+    private final static int OFFSET_SIGNATURE = OFFSET_VERSION + 1;
+    private final static int HEADER_INTS = OFFSET_SIGNATURE + GraphSignature.INTS;
+    private final static String DATA_REP = "javelo-data";
+    private final static String DEFAULT_NAME = "citybike";
+
+    private final GraphSignature signature;
+    private final FloatBuffer costs;
+
+    /**
+     * Construit une table à partir des coûts donnés
+     * @param signature la signature du graphe et de la fonction de coût pour lesquels la table a été construite
+     * @param costs le coût de chaque arête, infini si elle n'est pas praticable
+     * @throws IllegalArgumentException si le nombre de coûts ne correspond pas au nombre d'arêtes donné par la
+     * signature
+     */
+    public CostTable(GraphSignature signature, FloatBuffer costs) {
+        Preconditions.checkArgument(costs.capacity() == signature.edgeCount());
+        this.signature = signature;
+        this.costs = costs;
+    }
+
+    /**
+     * Évalue la fonction de coût donnée une fois pour chaque arête du graphe, en parallèle sur tous les cœurs
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return la table des coûts
+     */
+    public static CostTable build(Graph graph, CostFunction costFunction) {
+        float[] costs = new float[graph.edgeCount()];
+        /* les arêtes sortant d'un nœud étant disjointes de celles des autres, chaque tâche écrit ses propres cases */
+        IntStream.range(0, graph.nodeCount()).parallel().forEach(nodeId -> {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i++) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                costs[edgeId] = (float) (costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+            }
+        });
+        return new CostTable(GraphSignature.of(graph, costFunction), FloatBuffer.wrap(costs));
+    }
+
+    /**
+     * Retourne vrai ssi la table de nom donné se trouve dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @param name nom de la fonction de coût, p. ex. citybike
+     * @return vrai ssi la table de nom donné se trouve dans le répertoire donné
+     */
+    public static boolean existsIn(Path basePath, String name) {
+        return Files.exists(basePath.resolve(fileName(name)));
+    }
+
+    /**
+     * Retourne la table de nom donné stockée dans le répertoire donné; les coûts restent dans le fichier,
+     * projeté en mémoire et partagé par toutes les requêtes
+     * @param basePath chemin d'accès
+     * @param name nom de la fonction de coût, p. ex. citybike
+     * @return la table stockée dans le répertoire donné
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas une table de version connue,
+     * construite pour la fonction de coût de nom donné et de taille correspondant à son en-tête
+     */
+    public static CostTable loadFrom(Path basePath, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(fileName(name)))) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer header = buffer.asIntBuffer();
+            if (header.capacity() < HEADER_INTS || header.get(OFFSET_MAGIC) != MAGIC
+                    || header.get(OFFSET_VERSION) != VERSION)
+                throw new IOException("table des coûts invalide : " + fileName(name));
+            GraphSignature signature = GraphSignature.readFrom(header, OFFSET_SIGNATURE);
+            if (signature.costFunction() != name.hashCode()
+                    || header.capacity() != HEADER_INTS + (long) signature.edgeCount())
+                throw new IOException("table des coûts invalide : " + fileName(name));
+
+            int costsStart = HEADER_INTS * Integer.BYTES;
+            FloatBuffer costs = buffer.slice(costsStart, signature.edgeCount() * Float.BYTES).asFloatBuffer();
+            return new CostTable(signature, costs);
+        }
+    }
+
+    /**
+     * Écrit la table dans le fichier costs_name.bin du répertoire donné
+     * @param basePath chemin d'accès
+     * @param name nom de la fonction de coût, p. ex. citybike
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path basePath, String name) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(fileName(name)))))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            signature.writeTo(s);
+            for (int i = 0; i < costs.capacity(); i++) s.writeFloat(costs.get(i));
+        }
+    }
+
+    /**
+     * Retourne vrai ssi la table a été construite pour le graphe donné, c.-à-d. pour un graphe ayant le même
+     * nombre de nœuds et d'arêtes et la même empreinte, quelle que soit la fonction de coût
+     * @param graph le graphe
+     * @return vrai ssi la table correspond au graphe donné
+     */
+    public boolean matches(Graph graph) {
+        return signature.isOf(graph);
+    }
+
+    /**
+     * Retourne vrai ssi la table a été construite pour le graphe donné et pour une fonction de coût de même nom
+     * que la fonction donnée
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return vrai ssi la table correspond au graphe et à la fonction de coût donnés
+     */
+    public boolean matches(Graph graph, CostFunction costFunction) {
+        return signature.equals(GraphSignature.of(graph, costFunction));
+    }
+
+    /**
+     * Retourne le nombre d'arêtes
+     * @return le nombre d'arêtes
+     */
+    public int edgeCount() {
+        return costs.capacity();
+    }
+
+    /**
+     * Retourne vrai ssi l'arête d'identité donnée est praticable, c.-à-d. que son coût est fini
+     * @param edgeId identité de l'arête
+     * @return vrai ssi l'arête d'identité donnée est praticable
+     */
+    public boolean isTraversable(int edgeId) {
+        return cost(edgeId) != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Retourne le coût de l'arête d'identité donnée, infini si elle n'est pas praticable
+     * @param edgeId identité de l'arête
+     * @return le coût de l'arête d'identité donnée
+     */
+    public float cost(int edgeId) {
+        return costs.get(edgeId);
+    }
+
+    /**
+     * Construit la table de la fonction de coût CityBikeCF et l'écrit à côté des fichiers du graphe
+     * @param args le répertoire des données (javelo-data par défaut)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        CostTable table = build(graph, new CityBikeCF(graph));
+        System.out.printf("coûts de %d arêtes calculés en %.1f s%n",
+                table.edgeCount(), (System.nanoTime() - start) / 1e9);
+        table.writeTo(basePath, DEFAULT_NAME);
+    }
+
+    //==================================//
+
+    private static String fileName(String name) {
+        return "costs_" + name + ".bin";
+    }
+}
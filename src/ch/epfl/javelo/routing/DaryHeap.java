@@ -0,0 +1,247 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * File de priorité de nœuds implémentée par un tas d-aire stocké dans des tableaux de types primitifs.
+ * La position de chaque nœud dans le tas est mémorisée, ce qui permet de diminuer sa priorité en place
+ * plutôt que d'ajouter une nouvelle entrée; aucune opération n'alloue de mémoire une fois le tas dimensionné.
+ * <p>
+ * Tant que le tas n'a contenu que peu de nœuds depuis qu'il a été vidé, ces positions sont stockées dans une
+ * table de hachage à adressage ouvert, de sorte qu'un tas utilisé pour de courtes recherches occupe une place
+ * proportionnelle à celles-ci et non à la taille du graphe. Au-delà, comme les tableaux denses de SearchContext,
+ * un tableau indexé par l'identité du nœud est alloué, puis conservé jusqu'à la fin de l'existence du tas.
+ */
+public final class DaryHeap implements NodeHeap {
+
+    private final static int ABSENT = -1;
+    private final static int NO_NODE = -1;
+    private final static int INITIAL_CAPACITY = 1 << 8;
+    private final static int INDEX_INITIAL_CAPACITY = 1 << 9;
+    /* fraction (en puissance de deux) du nombre de nœuds au-delà de laquelle la table de hachage n'est plus
+       rentable */
+    private final static int SPARSE_LIMIT_SHIFT = 4;
+
+    private final int nodeCount;
+    private final int arity;
+    private int[] nodes;
+    private float[] priorities;
+    private int size;
+
+    /* index dans le tas de chaque nœud, ou -1 s'il n'y est pas; alloué lorsque la table de hachage est abandonnée */
+    private int[] position;
+
+    /* table de hachage associant à chaque nœud ajouté depuis que le tas a été vidé son index dans le tas, ou -1
+       s'il n'y est plus; null une fois position alloué */
+    private int[] indexKeys;
+    private int[] indexValues;
+    private int indexSize;
+
+    /**
+     * Construit un tas d-aire vide pouvant contenir des nœuds d'identité comprise entre 0 et nodeCount (exclus)
+     * @param nodeCount le nombre de nœuds du graphe
+     * @param arity le nombre d'enfants de chaque nœud du tas
+     * @throws IllegalArgumentException si l'arité est inférieure à 2
+     */
+    public DaryHeap(int nodeCount, int arity) {
+        Preconditions.checkArgument(arity >= 2);
+        this.nodeCount = nodeCount;
+        this.arity = arity;
+        this.nodes = new int[INITIAL_CAPACITY];
+        this.priorities = new float[INITIAL_CAPACITY];
+        this.indexKeys = newKeys(INDEX_INITIAL_CAPACITY);
+        this.indexValues = new int[INDEX_INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /* seules les positions des nœuds encore dans le tas doivent être effacées */
+    @Override
+    public void clear() {
+        if (position != null) {
+            for (int i = 0; i < size; i++) position[nodes[i]] = ABSENT;
+        } else if (indexKeys.length > INDEX_INITIAL_CAPACITY && 8 * indexSize < indexKeys.length) {
+            /* une table agrandie par une grande recherche ne doit pas ralentir l'effacement des suivantes */
+            indexKeys = newKeys(INDEX_INITIAL_CAPACITY);
+            indexValues = new int[INDEX_INITIAL_CAPACITY];
+        } else if (indexSize > 0) {
+            Arrays.fill(indexKeys, NO_NODE);
+        }
+        indexSize = 0;
+        size = 0;
+    }
+
+    @Override
+    public boolean contains(int nodeId) {
+        return positionOf(nodeId) != ABSENT;
+    }
+
+    @Override
+    public void insertOrDecrease(int nodeId, float priority) {
+        int i = positionOf(nodeId);
+        if (i == ABSENT) {
+            if (position == null) reserve(nodeId);
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, 2 * size);
+                priorities = Arrays.copyOf(priorities, 2 * size);
+            }
+            siftUp(size++, nodeId, priority);
+        } else if (priority < priorities[i]) {
+            siftUp(i, nodeId, priority);
+        }
+    }
+
+    @Override
+    public float minPriority() {
+        return priorities[0];
+    }
+
+    @Override
+    public int removeMin() {
+        int min = nodes[0];
+        setPosition(min, ABSENT);
+        size--;
+        if (size > 0) siftDown(0, nodes[size], priorities[size]);
+        return min;
+    }
+
+    /* les priorités sont toutes remplacées, puis le tas est reconstruit de bas en haut, en temps linéaire */
+    @Override
+    public void reprioritize(IntToDoubleFunction priority) {
+        for (int i = 0; i < size; i++) priorities[i] = (float) priority.applyAsDouble(nodes[i]);
+        for (int i = (size - 2) / arity; i >= 0 && size > 1; i--) siftDown(i, nodes[i], priorities[i]);
+    }
+
+    @Override
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) action.accept(nodes[i]);
+    }
+
+    //==================================//
+
+    /* Place le nœud donné à l'index i ou plus haut, en faisant descendre les parents de priorité supérieure */
+    private void siftUp(int i, int nodeId, float priority) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            if (priorities[parent] <= priority) break;
+            move(parent, i);
+            i = parent;
+        }
+        place(i, nodeId, priority);
+    }
+
+    /* Place le nœud donné à l'index i ou plus bas, en faisant monter le plus petit enfant */
+    private void siftDown(int i, int nodeId, float priority) {
+        while (true) {
+            int firstChild = arity * i + 1;
+            if (firstChild >= size) break;
+            int lastChild = Math.min(firstChild + arity, size);
+            int min = firstChild;
+            for (int c = firstChild + 1; c < lastChild; c++) {
+                if (priorities[c] < priorities[min]) min = c;
+            }
+            if (priorities[min] >= priority) break;
+            move(min, i);
+            i = min;
+        }
+        place(i, nodeId, priority);
+    }
+
+    private void move(int from, int to) {
+        nodes[to] = nodes[from];
+        priorities[to] = priorities[from];
+        setPosition(nodes[to], to);
+    }
+
+    private void place(int i, int nodeId, float priority) {
+        nodes[i] = nodeId;
+        priorities[i] = priority;
+        setPosition(nodeId, i);
+    }
+
+    private int positionOf(int nodeId) {
+        if (position != null) return position[nodeId];
+        int slot = slotOf(nodeId);
+        return indexKeys[slot] == nodeId ? indexValues[slot] : ABSENT;
+    }
+
+    /* Le nœud doit avoir une case dans la table (voir reserve) si celle-ci est utilisée */
+    private void setPosition(int nodeId, int i) {
+        if (position != null) {
+            position[nodeId] = i;
+            return;
+        }
+        int slot = slotOf(nodeId);
+        if (indexKeys[slot] != nodeId) {
+            indexKeys[slot] = nodeId;
+            indexSize++;
+        }
+        indexValues[slot] = i;
+    }
+
+    /* Garantit, avant son insertion, que le nœud donné a une case dans la table de hachage, en agrandissant
+       celle-ci ou en passant au tableau position; ne doit pas être appelée pendant un réarrangement du tas */
+    private void reserve(int nodeId) {
+        if (indexKeys[slotOf(nodeId)] == nodeId) return;
+        if (indexSize + 1 > (nodeCount >> SPARSE_LIMIT_SHIFT)) {
+            toDense();
+        } else if (2 * (indexSize + 1) > indexKeys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = indexKeys;
+        int[] oldValues = indexValues;
+        indexKeys = newKeys(2 * oldKeys.length);
+        indexValues = new int[2 * oldKeys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == NO_NODE) continue;
+            int slot = slotOf(oldKeys[i]);
+            indexKeys[slot] = oldKeys[i];
+            indexValues[slot] = oldValues[i];
+        }
+    }
+
+    /* Alloue le tableau position, y reporte les positions des nœuds du tas et abandonne la table de hachage */
+    private void toDense() {
+        position = new int[nodeCount];
+        Arrays.fill(position, ABSENT);
+        for (int i = 0; i < size; i++) position[nodes[i]] = i;
+        indexKeys = null;
+        indexValues = null;
+        indexSize = 0;
+    }
+
+    /* Retourne la case de la table contenant nodeId, ou la case vide où il devrait se trouver */
+    private int slotOf(int nodeId) {
+        int mask = indexKeys.length - 1;
+        int slot = mix(nodeId) & mask;
+        while (indexKeys[slot] != nodeId && indexKeys[slot] != NO_NODE) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, NO_NODE);
+        return keys;
+    }
+
+    /* Disperse les identités de nœuds consécutives dans la table */
+    private static int mix(int nodeId) {
+        int h = nodeId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,75 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.IntBuffer;
+
+/**
+ * Représente la signature du graphe, et de la fonction de coût, pour lesquels une structure dérivée (hiérarchie de
+ * contraction, points de repère, partition, table des coûts) a été construite. Enregistrée dans l'en-tête du
+ * fichier de la structure, elle permet de refuser au chargement un fichier construit pour un autre graphe de même
+ * taille, p. ex. le même graphe avant sa renumérotation, ou pour une autre fonction de coût.
+ *
+ * @param nodeCount le nombre de nœuds du graphe
+ * @param edgeCount le nombre d'arêtes du graphe
+ * @param fingerprint l'empreinte du graphe (voir Graph.fingerprint)
+ * @param costFunction le code de hachage du nom de la fonction de coût (voir CostFunction.name), ou 0 si la
+ *                     structure n'en dépend pas
+ */
+public record GraphSignature(int nodeCount, int edgeCount, long fingerprint, int costFunction) {
+
+    /* nombre d'entiers occupés par une signature dans l'en-tête d'un fichier */
+    final static int INTS = 5;
+    private final static int NO_COST_FUNCTION = 0;
+
+    /**
+     * Retourne la signature du graphe et de la fonction de coût donnés
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return la signature du graphe et de la fonction de coût donnés
+     */
+    public static GraphSignature of(Graph graph, CostFunction costFunction) {
+        return new GraphSignature(graph.nodeCount(), graph.edgeCount(), graph.fingerprint(),
+                costFunction.name().hashCode());
+    }
+
+    /**
+     * Retourne la signature du graphe donné, pour une structure indépendante de la fonction de coût
+     * @param graph le graphe
+     * @return la signature du graphe donné
+     */
+    public static GraphSignature of(Graph graph) {
+        return new GraphSignature(graph.nodeCount(), graph.edgeCount(), graph.fingerprint(), NO_COST_FUNCTION);
+    }
+
+    /**
+     * Retourne vrai ssi la signature est celle du graphe donné, quelle que soit la fonction de coût
+     * @param graph le graphe
+     * @return vrai ssi la signature est celle du graphe donné
+     */
+    public boolean isOf(Graph graph) {
+        return nodeCount == graph.nodeCount() && edgeCount == graph.edgeCount()
+                && fingerprint == graph.fingerprint();
+    }
+
+    /**
+     * Lit la signature occupant les INTS entiers de la mémoire tampon donnée à partir de l'index donné
+     */
+    static GraphSignature readFrom(IntBuffer buffer, int index) {
+        long fingerprint = ((long) buffer.get(index + 2) << Integer.SIZE)
+                | Integer.toUnsignedLong(buffer.get(index + 3));
+        return new GraphSignature(buffer.get(index), buffer.get(index + 1), fingerprint, buffer.get(index + 4));
+    }
+
+    /**
+     * Écrit la signature, sous la forme de INTS entiers, dans le flot donné
+     */
+    void writeTo(DataOutput s) throws IOException {
+        s.writeInt(nodeCount);
+        s.writeInt(edgeCount);
+        s.writeLong(fingerprint);
+        s.writeInt(costFunction);
+    }
+}
@@ -0,0 +1,131 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Calcule l'enveloppe concave d'un nuage de points : les points sont rastérisés sur une grille de cellules carrées
+ * (chaque point marquant sa cellule et ses huit voisines, ce qui comble les trous entre routes voisines), puis
+ * le contour de chaque composante de cellules marquées est suivi le long des côtés des cellules.
+ */
+final class GridOutline {
+
+    /* directions des côtés de cellules : est, nord, ouest, sud */
+    private final static int[] DIRECTION_X = {1, 0, -1, 0};
+    private final static int[] DIRECTION_Y = {0, 1, 0, -1};
+    private final static int DIRECTIONS = 4;
+    /* virages essayés dans l'ordre : à gauche, tout droit, à droite */
+    private final static int[] TURNS = {1, 0, 3};
+    private final static int MARGIN = 2;
+
+    private GridOutline() {}
+
+    /**
+     * Retourne le contour extérieur de chaque composante des cellules contenant les points donnés
+     * @param e la coordonnée E de chaque point
+     * @param n la coordonnée N de chaque point
+     * @param count le nombre de points à prendre en compte, au début des tableaux
+     * @param cellSize la taille des cellules, en mètres
+     * @return les polygones, chacun donné par la liste de ses sommets dans le sens trigonométrique
+     */
+    static List<List<PointCh>> outline(double[] e, double[] n, int count, double cellSize) {
+        if (count == 0) return List.of();
+
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            minE = Math.min(minE, e[i]);
+            maxE = Math.max(maxE, e[i]);
+            minN = Math.min(minN, n[i]);
+            maxN = Math.max(maxN, n[i]);
+        }
+        double originE = minE - MARGIN * cellSize;
+        double originN = minN - MARGIN * cellSize;
+        int width = (int) ((maxE - minE) / cellSize) + 2 * MARGIN + 1;
+        int height = (int) ((maxN - minN) / cellSize) + 2 * MARGIN + 1;
+
+        boolean[] cells = new boolean[width * height];
+        for (int i = 0; i < count; i++) {
+            int x = (int) ((e[i] - originE) / cellSize);
+            int y = (int) ((n[i] - originN) / cellSize);
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) cells[(y + dy) * width + x + dx] = true;
+            }
+        }
+
+        /* côtés orientés séparant une cellule marquée (à gauche) d'une cellule vide, indexés par sommet */
+        int vertexWidth = width + 1;
+        byte[] outgoing = new byte[vertexWidth * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!cells[y * width + x]) continue;
+                if (!isMarked(cells, width, height, x, y - 1)) outgoing[y * vertexWidth + x] |= 1 << 0;
+                if (!isMarked(cells, width, height, x + 1, y)) outgoing[y * vertexWidth + x + 1] |= 1 << 1;
+                if (!isMarked(cells, width, height, x, y + 1)) outgoing[(y + 1) * vertexWidth + x + 1] |= 1 << 2;
+                if (!isMarked(cells, width, height, x - 1, y)) outgoing[(y + 1) * vertexWidth + x] |= 1 << 3;
+            }
+        }
+
+        List<List<PointCh>> polygons = new ArrayList<>();
+        for (int start = 0; start < outgoing.length; start++) {
+            while (outgoing[start] != 0) {
+                List<PointCh> polygon = trace(outgoing, vertexWidth, start, originE, originN, cellSize);
+                if (polygon != null) polygons.add(polygon);
+            }
+        }
+        return polygons;
+    }
+
+    //==================================//
+
+    private static boolean isMarked(boolean[] cells, int width, int height, int x, int y) {
+        return 0 <= x && x < width && 0 <= y && y < height && cells[y * width + x];
+    }
+
+    /**
+     * Suit un contour depuis le sommet donné en consommant ses côtés, et le retourne s'il s'agit d'un contour
+     * extérieur (sens trigonométrique), ou null s'il s'agit du bord d'un trou
+     */
+    private static List<PointCh> trace(byte[] outgoing, int vertexWidth, int start,
+                                       double originE, double originN, double cellSize) {
+        List<PointCh> polygon = new ArrayList<>();
+        double area = 0;
+        int vertex = start;
+        int direction = -1;
+        do {
+            int next = nextDirection(outgoing[vertex], direction);
+            outgoing[vertex] &= (byte) ~(1 << next);
+            int x = vertex % vertexWidth;
+            int y = vertex / vertexWidth;
+            /* seuls les sommets où le contour tourne sont conservés */
+            if (next != direction) polygon.add(point(originE + x * cellSize, originN + y * cellSize));
+            int nextX = x + DIRECTION_X[next];
+            int nextY = y + DIRECTION_Y[next];
+            area += (double) x * nextY - (double) nextX * y;
+            vertex = nextY * vertexWidth + nextX;
+            direction = next;
+        } while (vertex != start);
+        return area > 0 ? polygon : null;
+    }
+
+    /* Direction suivante parmi celles disponibles, en tournant de préférence à gauche, ce qui sépare les
+       composantes ne se touchant que par un coin */
+    private static int nextDirection(byte available, int direction) {
+        if (direction < 0) return Integer.numberOfTrailingZeros(available);
+        for (int turn : TURNS) {
+            int candidate = (direction + turn) % DIRECTIONS;
+            if ((available & (1 << candidate)) != 0) return candidate;
+        }
+        return Integer.numberOfTrailingZeros(available);
+    }
+
+    private static PointCh point(double e, double n) {
+        return new PointCh(
+                Math2.clamp(SwissBounds.MIN_E, e, SwissBounds.MAX_E),
+                Math2.clamp(SwissBounds.MIN_N, n, SwissBounds.MAX_N));
+    }
+}
@@ -0,0 +1,431 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Construit une hiérarchie de contraction, soit en contractant les nœuds du graphe un à un, dans l'ordre de leur
+ * priorité (différence d'arcs et nombre de voisins déjà contractés), mise à jour paresseusement, soit par rondes
+ * parallèles.
+ * <p>
+ * Lors d'une ronde, les nœuds dont la priorité est minimale parmi leurs voisins forment un ensemble indépendant :
+ * deux d'entre eux ne sont jamais reliés par un arc, et leurs contractions peuvent donc être simulées en
+ * parallèle sur le graphe restant, figé, chaque fil utilisant sa propre recherche de témoins. Deux nœuds de la
+ * ronde pouvant toutefois avoir des voisins communs, les recherches de témoins évitent tous les nœuds de la
+ * ronde : sans cela, de deux chemins de même coût passant chacun par l'un d'eux, chacun servirait de témoin à
+ * l'autre, et aucun raccourci ne remplacerait ces chemins une fois les deux nœuds retirés. Les raccourcis
+ * sont ensuite ajoutés et les nœuds retirés séquentiellement, dans l'ordre de leurs identités, puis seules les
+ * priorités de leurs voisins sont recalculées. Le résultat ne dépend ainsi ni du nombre de fils ni de
+ * l'ordonnancement.
+ */
+final class HierarchyBuilder {
+
+    private final static int NO_ARC = -1;
+    private final static int WITNESS_SETTLED_LIMIT = 500;
+    private final static int INITIAL_DEGREE = 4;
+    private final static int WITNESS_HEAP_ARITY = 4;
+    /* nombre maximal d'arcs des chemins témoins lors de la contraction parallèle */
+    private final static int PARALLEL_WITNESS_HOP_LIMIT = 8;
+    /* nombre d'entiers décrivant un raccourci à ajouter : départ, arrivée, coût, arcs remplacés */
+    private final static int SHORTCUT_INTS = 5;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final int nodeCount;
+
+    /* arcs de la hiérarchie (arêtes puis raccourcis), voir ContractionHierarchy */
+    private int arcCount;
+    private int[] arcFrom;
+    private int[] arcTo;
+    private float[] arcWeight;
+    private int[] arcFirst;
+    private int[] arcSecond;
+
+    /* arcs reliant des nœuds non encore contractés */
+    private final int[][] outArcs;
+    private final int[] outSize;
+    private final int[][] inArcs;
+    private final int[] inSize;
+
+    private final int[] rank;
+    private final int[] contractedNeighbours;
+    /* nœuds de la ronde de contraction parallèle en cours, que les recherches de témoins évitent */
+    private final boolean[] contracting;
+
+    /* recherche de témoins de la contraction séquentielle */
+    private final WitnessSearch witness;
+
+    /* contient à la fois l'identité d'un nœud et sa priorité de contraction. */
+    private record NodePriority(int nodeId, int priority) implements Comparable<NodePriority> {
+        @Override
+        public int compareTo(NodePriority that) {
+            int c = Integer.compare(this.priority, that.priority);
+            return c != 0 ? c : Integer.compare(this.nodeId, that.nodeId);
+        }
+    }
+
+    HierarchyBuilder(Graph graph, CostFunction costFunction) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.nodeCount = graph.nodeCount();
+
+        int capacity = 2 * nodeCount + 16;
+        arcFrom = new int[capacity];
+        arcTo = new int[capacity];
+        arcWeight = new float[capacity];
+        arcFirst = new int[capacity];
+        arcSecond = new int[capacity];
+
+        outArcs = new int[nodeCount][];
+        inArcs = new int[nodeCount][];
+        outSize = new int[nodeCount];
+        inSize = new int[nodeCount];
+        rank = new int[nodeCount];
+        Arrays.fill(rank, -1);
+        contractedNeighbours = new int[nodeCount];
+        contracting = new boolean[nodeCount];
+
+        witness = new WitnessSearch(Integer.MAX_VALUE);
+    }
+
+    ContractionHierarchy build() {
+        addGraphEdges();
+
+        PriorityQueue<NodePriority> queue = new PriorityQueue<>();
+        int[] priority = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            priority[v] = priority(v);
+            queue.add(new NodePriority(v, priority[v]));
+        }
+
+        int nextRank = 0;
+        while (!queue.isEmpty()) {
+            NodePriority p = queue.remove();
+            int v = p.nodeId();
+            if (rank[v] >= 0 || p.priority() != priority[v]) continue;
+
+            /* mise à jour paresseuse : on recalcule la priorité avant de contracter */
+            int current = priority(v);
+            if (!queue.isEmpty() && current > queue.peek().priority()) {
+                priority[v] = current;
+                queue.add(new NodePriority(v, current));
+                continue;
+            }
+
+            addShortcuts(v, witness);
+            rank[v] = nextRank++;
+            int[] neighbours = removeFromGraph(v);
+            for (int n : neighbours) {
+                contractedNeighbours[n]++;
+                priority[n] = priority(n);
+                queue.add(new NodePriority(n, priority[n]));
+            }
+        }
+
+        return new ContractionHierarchy(GraphSignature.of(graph, costFunction), rank,
+                Arrays.copyOf(arcFrom, arcCount), Arrays.copyOf(arcTo, arcCount),
+                Arrays.copyOf(arcWeight, arcCount),
+                Arrays.copyOf(arcFirst, arcCount), Arrays.copyOf(arcSecond, arcCount));
+    }
+
+    /**
+     * Contracte tous les nœuds par rondes, en parallèle sur le ForkJoinPool donné
+     * @param pool le ForkJoinPool sur lequel les contractions d'une ronde sont simulées
+     * @param roundListener reçoit les statistiques de chaque ronde, une fois celle-ci terminée
+     * @return la hiérarchie de contraction du graphe
+     */
+    ContractionHierarchy buildInParallel(ForkJoinPool pool, Consumer<ContractionRound> roundListener) {
+        addGraphEdges();
+        ThreadLocal<WitnessSearch> witnesses =
+                ThreadLocal.withInitial(() -> new WitnessSearch(PARALLEL_WITNESS_HOP_LIMIT));
+
+        int[] remaining = IntStream.range(0, nodeCount).toArray();
+        int[] priority = new int[nodeCount];
+        boolean[] dirty = new boolean[nodeCount];
+        Arrays.fill(dirty, true);
+        int nextRank = 0;
+
+        for (int round = 0; remaining.length > 0; round++) {
+            long start = System.nanoTime();
+            int[] current = remaining;
+            int arcsBefore = arcCount;
+
+            /* priorités des nœuds dont le voisinage a changé depuis la ronde précédente */
+            pool.submit(() -> IntStream.of(current).parallel()
+                    .filter(v -> dirty[v])
+                    .forEach(v -> priority[v] = priority(v, witnesses.get()))).join();
+            for (int v : current) dirty[v] = false;
+
+            int[] selected = IntStream.of(current).filter(v -> isLocalMinimum(v, priority)).toArray();
+            for (int v : selected) contracting[v] = true;
+            int[][] shortcuts = pool.submit(() -> IntStream.of(selected).parallel()
+                    .mapToObj(v -> shortcuts(v, witnesses.get()))
+                    .toArray(int[][]::new)).join();
+
+            for (int i = 0; i < selected.length; i++) {
+                int v = selected[i];
+                addShortcuts(shortcuts[i]);
+                contracting[v] = false;
+                rank[v] = nextRank++;
+                for (int n : removeFromGraph(v)) {
+                    contractedNeighbours[n]++;
+                    dirty[n] = true;
+                }
+            }
+            remaining = IntStream.of(current).filter(v -> rank[v] < 0).toArray();
+            roundListener.accept(new ContractionRound(round, selected.length, remaining.length,
+                    arcCount - arcsBefore, System.nanoTime() - start));
+        }
+
+        return new ContractionHierarchy(GraphSignature.of(graph, costFunction), rank,
+                Arrays.copyOf(arcFrom, arcCount), Arrays.copyOf(arcTo, arcCount),
+                Arrays.copyOf(arcWeight, arcCount),
+                Arrays.copyOf(arcFirst, arcCount), Arrays.copyOf(arcSecond, arcCount));
+    }
+
+    //==================================//
+
+    /* Ajoute un arc par arête de coût fini, en ne gardant que la moins chère de plusieurs arêtes parallèles */
+    private void addGraphEdges() {
+        for (int u = 0; u < nodeCount; u++) {
+            int outDegree = graph.nodeOutDegree(u);
+            for (int i = 0; i < outDegree; i++) {
+                int edgeId = graph.nodeOutEdgeId(u, i);
+                int v = graph.edgeTargetNodeId(edgeId);
+                float weight = (float) (costFunction.costFactor(u, edgeId) * graph.edgeLength(edgeId));
+                if (u == v || weight == Float.POSITIVE_INFINITY) continue;
+
+                int existing = findArc(u, v);
+                if (existing == NO_ARC) {
+                    addArc(u, v, weight, edgeId, NO_ARC);
+                } else if (weight < arcWeight[existing]) {
+                    arcWeight[existing] = weight;
+                    arcFirst[existing] = edgeId;
+                }
+            }
+        }
+    }
+
+    private int findArc(int u, int v) {
+        for (int i = 0; i < outSize[u]; i++) {
+            if (arcTo[outArcs[u][i]] == v) return outArcs[u][i];
+        }
+        return NO_ARC;
+    }
+
+    /* Priorité de contraction du nœud : plus elle est basse, plus il est contracté tôt */
+    private int priority(int v) {
+        return priority(v, witness);
+    }
+
+    private int priority(int v, WitnessSearch witness) {
+        int shortcuts = contract(v, witness, null);
+        return shortcuts - inSize[v] - outSize[v] + contractedNeighbours[v];
+    }
+
+    /* Vrai ssi le nœud donné précède tous ses voisins restants dans l'ordre des priorités */
+    private boolean isLocalMinimum(int v, int[] priority) {
+        for (int i = 0; i < inSize[v]; i++) {
+            if (precedes(arcFrom[inArcs[v][i]], v, priority)) return false;
+        }
+        for (int j = 0; j < outSize[v]; j++) {
+            if (precedes(arcTo[outArcs[v][j]], v, priority)) return false;
+        }
+        return true;
+    }
+
+    /* Ordre total des nœuds par priorité, les égalités étant départagées par un mélange des identités, pour que
+       les ensembles indépendants ne suivent pas la numérotation des nœuds */
+    private static boolean precedes(int u, int v, int[] priority) {
+        if (priority[u] != priority[v]) return priority[u] < priority[v];
+        int hu = u * 0x9E3779B9;
+        int hv = v * 0x9E3779B9;
+        return hu != hv ? hu < hv : u < v;
+    }
+
+    /* Retourne les raccourcis nécessaires à la contraction du nœud v, à raison de SHORTCUT_INTS entiers chacun */
+    private int[] shortcuts(int v, WitnessSearch witness) {
+        int[] buffer = new int[SHORTCUT_INTS * (inSize[v] * outSize[v] + 1)];
+        int count = contract(v, witness, buffer);
+        return Arrays.copyOf(buffer, SHORTCUT_INTS * count);
+    }
+
+    private void addShortcuts(int v, WitnessSearch witness) {
+        addShortcuts(shortcuts(v, witness));
+    }
+
+    private void addShortcuts(int[] shortcuts) {
+        for (int i = 0; i < shortcuts.length; i += SHORTCUT_INTS) {
+            addArc(shortcuts[i], shortcuts[i + 1], Float.intBitsToFloat(shortcuts[i + 2]),
+                    shortcuts[i + 3], shortcuts[i + 4]);
+        }
+    }
+
+    /**
+     * Détermine les raccourcis nécessaires à la contraction du nœud v, sans modifier le graphe restant, et les
+     * écrit dans le tableau donné s'il n'est pas null
+     * @return le nombre de raccourcis nécessaires
+     */
+    private int contract(int v, WitnessSearch witness, int[] shortcuts) {
+        int count = 0;
+        float maxOut = 0;
+        for (int j = 0; j < outSize[v]; j++) {
+            maxOut = Math.max(maxOut, arcWeight[outArcs[v][j]]);
+        }
+
+        for (int i = 0; i < inSize[v]; i++) {
+            int inArc = inArcs[v][i];
+            int u = arcFrom[inArc];
+            float inWeight = arcWeight[inArc];
+            witness.run(u, v, inWeight + maxOut);
+
+            for (int j = 0; j < outSize[v]; j++) {
+                int outArc = outArcs[v][j];
+                int w = arcTo[outArc];
+                if (w == u) continue;
+                float via = inWeight + arcWeight[outArc];
+                if (witness.distance(w) > via) {
+                    if (shortcuts != null) {
+                        int k = SHORTCUT_INTS * count;
+                        shortcuts[k] = u;
+                        shortcuts[k + 1] = w;
+                        shortcuts[k + 2] = Float.floatToRawIntBits(via);
+                        shortcuts[k + 3] = inArc;
+                        shortcuts[k + 4] = outArc;
+                    }
+                    count++;
+                }
+            }
+            witness.reset();
+        }
+        return count;
+    }
+
+    /**
+     * Recherche des plus courts chemins partant d'un nœud et évitant un autre, ainsi que les nœuds de la ronde de
+     * contraction parallèle en cours, bornée en coût, en nombre de nœuds explorés et en nombre d'arcs. Chaque fil
+     * d'exécution utilise sa propre instance.
+     */
+    private final class WitnessSearch {
+        private final int hopLimit;
+        private final float[] distance;
+        private final int[] hops;
+        private final int[] touched;
+        private int touchedCount;
+        private final NodeHeap heap;
+
+        private WitnessSearch(int hopLimit) {
+            this.hopLimit = hopLimit;
+            distance = new float[nodeCount];
+            Arrays.fill(distance, Float.POSITIVE_INFINITY);
+            hops = new int[nodeCount];
+            touched = new int[nodeCount];
+            heap = new DaryHeap(nodeCount, WITNESS_HEAP_ARITY);
+        }
+
+        private void run(int source, int excluded, float maxCost) {
+            touch(source, 0, 0);
+            heap.insertOrDecrease(source, 0);
+            int settled = 0;
+
+            while (!heap.isEmpty() && settled < WITNESS_SETTLED_LIMIT) {
+                if (heap.minPriority() > maxCost) break;
+                int node = heap.removeMin();
+                float nodeDistance = distance[node];
+                settled++;
+                if (hops[node] >= hopLimit) continue;
+
+                for (int i = 0; i < outSize[node]; i++) {
+                    int arc = outArcs[node][i];
+                    int next = arcTo[arc];
+                    if (next == excluded || contracting[next]) continue;
+                    float dist = nodeDistance + arcWeight[arc];
+                    if (dist < distance[next]) {
+                        touch(next, dist, hops[node] + 1);
+                        heap.insertOrDecrease(next, dist);
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+        private float distance(int node) {
+            return distance[node];
+        }
+
+        private void touch(int node, float nodeDistance, int nodeHops) {
+            if (distance[node] == Float.POSITIVE_INFINITY) touched[touchedCount++] = node;
+            distance[node] = nodeDistance;
+            hops[node] = nodeHops;
+        }
+
+        private void reset() {
+            for (int i = 0; i < touchedCount; i++) distance[touched[i]] = Float.POSITIVE_INFINITY;
+            touchedCount = 0;
+        }
+    }
+
+    /* Retire le nœud v du graphe restant et retourne ses voisins (avec d'éventuels doublons) */
+    private int[] removeFromGraph(int v) {
+        int[] neighbours = new int[inSize[v] + outSize[v]];
+        int count = 0;
+        for (int i = 0; i < inSize[v]; i++) {
+            int arc = inArcs[v][i];
+            int u = arcFrom[arc];
+            remove(outArcs[u], outSize, u, arc);
+            neighbours[count++] = u;
+        }
+        for (int j = 0; j < outSize[v]; j++) {
+            int arc = outArcs[v][j];
+            int w = arcTo[arc];
+            remove(inArcs[w], inSize, w, arc);
+            neighbours[count++] = w;
+        }
+        outArcs[v] = null;
+        inArcs[v] = null;
+        outSize[v] = 0;
+        inSize[v] = 0;
+        return neighbours;
+    }
+
+    private static void remove(int[] arcs, int[] size, int node, int arc) {
+        for (int i = 0; i < size[node]; i++) {
+            if (arcs[i] == arc) {
+                arcs[i] = arcs[--size[node]];
+                return;
+            }
+        }
+    }
+
+    private void addArc(int from, int to, float weight, int first, int second) {
+        if (arcCount == arcFrom.length) {
+            int capacity = arcCount + (arcCount >> 1);
+            arcFrom = Arrays.copyOf(arcFrom, capacity);
+            arcTo = Arrays.copyOf(arcTo, capacity);
+            arcWeight = Arrays.copyOf(arcWeight, capacity);
+            arcFirst = Arrays.copyOf(arcFirst, capacity);
+            arcSecond = Arrays.copyOf(arcSecond, capacity);
+        }
+        int arc = arcCount++;
+        arcFrom[arc] = from;
+        arcTo[arc] = to;
+        arcWeight[arc] = weight;
+        arcFirst[arc] = first;
+        arcSecond[arc] = second;
+
+        outArcs[from] = append(outArcs[from], outSize, from, arc);
+        inArcs[to] = append(inArcs[to], inSize, to, arc);
+    }
+
+    private static int[] append(int[] arcs, int[] size, int node, int arc) {
+        if (arcs == null) arcs = new int[INITIAL_DEGREE];
+        else if (size[node] == arcs.length) arcs = Arrays.copyOf(arcs, 2 * arcs.length);
+        arcs[size[node]++] = arc;
+        return arcs;
+    }
+}
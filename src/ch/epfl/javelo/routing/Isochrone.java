@@ -0,0 +1,22 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.List;
+
+/**
+ * Représente une isochrone, c.-à-d. la région atteignable depuis une origine pour un coût maximal donné, sous la
+ * forme d'un ou plusieurs polygones (un par composante connexe de la région).
+ *
+ * @param maxCost le coût maximal
+ * @param polygons les polygones, chacun donné par la liste de ses sommets dans le sens trigonométrique
+ */
+public record Isochrone(float maxCost, List<List<PointCh>> polygons) {
+
+    /**
+     * Copie la liste des polygones pour garantir l'immuabilité de l'isochrone
+     */
+    public Isochrone {
+        polygons = polygons.stream().map(List::copyOf).toList();
+    }
+}
@@ -0,0 +1,181 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Calcule l'ensemble des nœuds atteignables depuis une origine pour un coût maximal donné, et les isochrones
+ * correspondantes.
+ * <p>
+ * Pour les coûts maximaux modestes, une recherche de Dijkstra bornée n'explore que la région atteignable. Pour
+ * les coûts élevés, si une hiérarchie de contraction est disponible, un balayage PHAST calcule le coût de tous les
+ * nœuds en un seul parcours linéaire. Dans les deux cas, les tableaux de taille proportionnelle au graphe sont
+ * réutilisés par chaque fil d'exécution d'un calcul à l'autre, ce qui permet de recalculer les isochrones à
+ * chaque déplacement de l'origine.
+ */
+public final class IsochroneComputer {
+
+    /* coût maximal à partir duquel le balayage PHAST est préféré à la recherche bornée */
+    private final static float SWEEP_MIN_COST = 50_000;
+    /* coût maximal en dessous duquel la recherche bornée commence en mode creux */
+    private final static float SPARSE_MAX_COST = 10_000;
+    /* taille, en mètres, des cellules de la grille utilisée pour calculer le contour des isochrones */
+    private final static double OUTLINE_CELL_SIZE = 200;
+    private final static int INITIAL_CAPACITY = 1024;
+
+    private final Graph graph;
+    private final CostFunction costFunction;
+    private final ContractionHierarchy hierarchy;
+    private final ThreadLocal<SearchContext> contexts;
+    private final ThreadLocal<Buffers> buffers;
+
+    /* tableaux réutilisés par un fil d'exécution, agrandis au besoin */
+    private static final class Buffers {
+        private int[] nodeIds = new int[INITIAL_CAPACITY];
+        private float[] costs = new float[INITIAL_CAPACITY];
+        private double[] e = new double[INITIAL_CAPACITY];
+        private double[] n = new double[INITIAL_CAPACITY];
+        private float[] sweepDistance;
+        private int count;
+
+        private void add(int nodeId, float cost) {
+            if (count == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+                costs = Arrays.copyOf(costs, 2 * count);
+                e = new double[2 * count];
+                n = new double[2 * count];
+            }
+            nodeIds[count] = nodeId;
+            costs[count++] = cost;
+        }
+    }
+
+    public IsochroneComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, null);
+    }
+
+    /**
+     * Construit un calculateur d'isochrones qui, si hierarchy n'est pas null, l'utilise pour les coûts élevés
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @param hierarchy la hiérarchie de contraction construite pour graph et costFunction, ou null
+     */
+    public IsochroneComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy) {
+        this.graph = graph;
+        this.costFunction = costFunction;
+        this.hierarchy = hierarchy;
+        int nodeCount = graph.nodeCount();
+        this.contexts = ThreadLocal.withInitial(() -> new SearchContext(nodeCount));
+        this.buffers = ThreadLocal.withInitial(Buffers::new);
+    }
+
+    /**
+     * Retourne les nœuds atteignables depuis le nœud donné pour un coût d'au plus maxCost
+     * @param originNodeId le nœud d'origine
+     * @param maxCost le coût maximal
+     * @return les nœuds atteignables et leur coût minimal
+     * @throws IllegalArgumentException si le coût maximal est négatif
+     */
+    public Reachability reachableFrom(int originNodeId, float maxCost) {
+        Preconditions.checkArgument(maxCost >= 0);
+        return reachableFrom(originNodeId, maxCost, CancellationToken.NONE);
+    }
+
+    /**
+     * Retourne les isochrones du nœud donné pour chacun des coûts maximaux donnés, calculées à partir d'une
+     * seule exploration pour le plus grand d'entre eux
+     * @param originNodeId le nœud d'origine
+     * @param maxCosts les coûts maximaux
+     * @return les isochrones, dans l'ordre des coûts maximaux donnés
+     * @throws IllegalArgumentException si aucun coût maximal n'est donné ou si l'un d'eux est négatif
+     */
+    public List<Isochrone> isochronesFrom(int originNodeId, float... maxCosts) {
+        return isochronesFrom(originNodeId, CancellationToken.NONE, maxCosts);
+    }
+
+    /**
+     * Retourne les isochrones du nœud donné pour chacun des coûts maximaux donnés, comme
+     * isochronesFrom(originNodeId, maxCosts), en consultant régulièrement le jeton d'annulation donné
+     * @param originNodeId le nœud d'origine
+     * @param token le jeton d'annulation du calcul
+     * @param maxCosts les coûts maximaux
+     * @return les isochrones, dans l'ordre des coûts maximaux donnés
+     * @throws IllegalArgumentException si aucun coût maximal n'est donné ou si l'un d'eux est négatif
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé pendant le calcul
+     */
+    public List<Isochrone> isochronesFrom(int originNodeId, CancellationToken token, float... maxCosts) {
+        Preconditions.checkArgument(maxCosts.length > 0);
+        float largest = 0;
+        for (float maxCost : maxCosts) {
+            Preconditions.checkArgument(maxCost >= 0);
+            largest = Math.max(largest, maxCost);
+        }
+        Reachability reachability = reachableFrom(originNodeId, largest, token);
+
+        Buffers b = buffers.get();
+        List<Isochrone> isochrones = new ArrayList<>(maxCosts.length);
+        for (float maxCost : maxCosts) {
+            token.throwIfCancelled();
+            int count = 0;
+            for (int i = 0; i < reachability.count(); i++) {
+                if (reachability.costs()[i] > maxCost) continue;
+                int nodeId = reachability.nodeIds()[i];
+                b.e[count] = graph.nodeE(nodeId);
+                b.n[count++] = graph.nodeN(nodeId);
+            }
+            isochrones.add(new Isochrone(maxCost, GridOutline.outline(b.e, b.n, count, OUTLINE_CELL_SIZE)));
+        }
+        return isochrones;
+    }
+
+    //==================================//
+
+    private Reachability reachableFrom(int originNodeId, float maxCost, CancellationToken token) {
+        Buffers b = buffers.get();
+        b.count = 0;
+        if (hierarchy != null && maxCost >= SWEEP_MIN_COST) sweep(originNodeId, maxCost, b);
+        else search(originNodeId, maxCost, b, token);
+        token.throwIfCancelled();
+        return new Reachability(originNodeId, maxCost,
+                Arrays.copyOf(b.nodeIds, b.count), Arrays.copyOf(b.costs, b.count));
+    }
+
+    /* Recherche de Dijkstra arrêtée dès que le coût minimal des nœuds restants dépasse maxCost */
+    private void search(int originNodeId, float maxCost, Buffers b, CancellationToken token) {
+        SearchContext context = contexts.get();
+        context.reset(maxCost < SPARSE_MAX_COST);
+        NodeHeap exploring = context.heap();
+        context.setDistance(originNodeId, 0f);
+        exploring.insertOrDecrease(originNodeId, 0);
+
+        for (int iteration = 0; !exploring.isEmpty() && exploring.minPriority() <= maxCost; iteration++) {
+            if ((iteration & (RouteComputer.CANCELLATION_CHECK_PERIOD - 1)) == 0) token.throwIfCancelled();
+            int node = exploring.removeMin();
+            float distance = context.distance(node);
+            b.add(node, distance);
+            for (int i = 0; i < graph.nodeOutDegree(node); i++) {
+                int edgeId = graph.nodeOutEdgeId(node, i);
+                int next = graph.edgeTargetNodeId(edgeId);
+                float dist = (float) (distance + costFunction.costFactor(node, edgeId) * graph.edgeLength(edgeId));
+                if (dist <= maxCost && dist < context.distance(next)) {
+                    context.set(next, dist, node, edgeId);
+                    exploring.insertOrDecrease(next, dist);
+                }
+            }
+        }
+    }
+
+    /* Balayage PHAST de la totalité du graphe, dont seuls les nœuds de coût d'au plus maxCost sont gardés */
+    private void sweep(int originNodeId, float maxCost, Buffers b) {
+        if (b.sweepDistance == null) b.sweepDistance = new float[graph.nodeCount()];
+        float[] distance = b.sweepDistance;
+        hierarchy.sweepFrom(originNodeId, contexts.get(), distance);
+        for (int nodeId = 0; nodeId < distance.length; nodeId++) {
+            if (distance[nodeId] <= maxCost) b.add(nodeId, distance[nodeId]);
+        }
+    }
+}
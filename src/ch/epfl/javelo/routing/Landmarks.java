@@ -0,0 +1,362 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphInEdges;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Représente les tables de distances aux points de repère (landmarks) utilisées par l'heuristique ALT
+ * (A*, Landmarks, Triangle inequality). Pour chaque nœud v et chaque point de repère L, la table contient
+ * le coût minimal de L à v et celui de v à L, pour une fonction de coût donnée.
+ * <p>
+ * Par l'inégalité triangulaire, le coût de v à t est au moins d(L, t) - d(L, v) et d(v, L) - d(t, L) pour tout
+ * point de repère L, ce qui donne une borne inférieure bien meilleure que la distance à vol d'oiseau lorsque
+ * le réseau oblige à de grands détours, p. ex. dans les vallées alpines.
+ * <p>
+ * Le fichier des tables commence par un en-tête (signature du format, version, signature du graphe et de la
+ * fonction de coût, voir GraphSignature, et nombre de points de repère), qui permet de vérifier au chargement que
+ * le fichier est complet et, au moyen de matches, que les tables ont été calculées pour le graphe et la fonction
+ * de coût utilisés.
+ */
+public final class Landmarks {
+
+    private final static String PATH_LANDMARKS = "landmarks.bin";
+    private final static String DATA_REP = "javelo-data";
+    private final static int DEFAULT_COUNT = 16;
+    private final static int MAGIC = 0x4A564C4D; // "JVLM"
+    private final static int VERSION = 2;
+    private final static int OFFSET_MAGIC = 0;
+    private final static int OFFSET_VERSION = OFFSET_MAGIC + 1;
+    private final static int OFFSET_SIGNATURE = OFFSET_VERSION + 1;
+    private final static int OFFSET_COUNT = OFFSET_SIGNATURE + GraphSignature.INTS;
+    private final static int OFFSET_NODES = OFFSET_COUNT + 1;
+    /* nombre de points de repère utilisés par une requête, choisis parmi les plus utiles pour elle */
+    private final static int ACTIVE_COUNT = 4;
+
+    private final GraphSignature signature;
+    private final int[] landmarkNodes;
+    /* pour chaque nœud, les distances depuis puis vers chaque point de repère */
+    private final FloatBuffer distances;
+
+    /**
+     * Construit les tables à partir des points de repère et des distances donnés
+     * @param signature la signature du graphe et de la fonction de coût pour lesquels les tables ont été calculées
+     * @param landmarkNodes les identités des nœuds servant de points de repère
+     * @param distances pour chaque nœud v, d(L, v) pour chaque point de repère L, puis d(v, L) pour chacun
+     * @throws IllegalArgumentException s'il n'y a aucun point de repère, ou si la taille des tables ne correspond
+     * pas au nombre de nœuds donné par la signature
+     */
+    public Landmarks(GraphSignature signature, int[] landmarkNodes, FloatBuffer distances) {
+        Preconditions.checkArgument(landmarkNodes.length > 0
+                && distances.capacity() == 2L * landmarkNodes.length * signature.nodeCount());
+        this.signature = signature;
+        this.landmarkNodes = landmarkNodes.clone();
+        this.distances = distances;
+    }
+
+    /**
+     * Choisit count points de repère et calcule les tables de distances pour la fonction de coût donnée.
+     * Chaque nouveau point de repère est le nœud le plus éloigné (au sens du coût) de ceux déjà choisis.
+     * Le graphe doit disposer de son index inverse des arêtes.
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @param count le nombre de points de repère
+     * @return les tables de distances
+     * @throws IllegalArgumentException si count n'est pas strictement positif ou si l'index inverse manque
+     */
+    public static Landmarks build(Graph graph, CostFunction costFunction, int count) {
+        Preconditions.checkArgument(count > 0 && graph.hasInEdges());
+        int nodeCount = graph.nodeCount();
+
+        /* sélection : les distances depuis chaque point de repère servent à choisir le suivant */
+        int[] landmarks = new int[count];
+        float[][] from = new float[count][];
+        float[] closest = new float[nodeCount];
+        Arrays.fill(closest, Float.POSITIVE_INFINITY);
+        int next = farthestFrom(dijkstra(graph, costFunction, 0, true));
+        for (int i = 0; i < count; i++) {
+            landmarks[i] = next;
+            from[i] = dijkstra(graph, costFunction, next, true);
+            for (int v = 0; v < nodeCount; v++) closest[v] = Math.min(closest[v], from[i][v]);
+            next = farthestFrom(closest);
+        }
+        float[][] to = IntStream.range(0, count)
+                .parallel()
+                .mapToObj(i -> dijkstra(graph, costFunction, landmarks[i], false))
+                .toArray(float[][]::new);
+
+        float[] table = new float[2 * count * nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            for (int i = 0; i < count; i++) {
+                table[2 * count * v + i] = from[i][v];
+                table[2 * count * v + count + i] = to[i][v];
+            }
+        }
+        return new Landmarks(GraphSignature.of(graph, costFunction), landmarks, FloatBuffer.wrap(table));
+    }
+
+    /**
+     * Retourne vrai ssi le fichier des points de repère se trouve dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @return vrai ssi le fichier des points de repère se trouve dans le répertoire donné
+     */
+    public static boolean existsIn(Path basePath) {
+        return Files.exists(basePath.resolve(PATH_LANDMARKS));
+    }
+
+    /**
+     * Retourne les tables stockées dans le répertoire donné par writeTo; les distances restent dans le fichier,
+     * projeté en mémoire
+     * @param basePath chemin d'accès
+     * @return les tables stockées dans le répertoire donné
+     * @throws IOException en cas d'erreur d'entrée/sortie, p. ex. si le fichier n'existe pas, ou si son en-tête
+     * est invalide ou ne correspond pas à sa taille
+     */
+    public static Landmarks loadFrom(Path basePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(PATH_LANDMARKS))) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer header = buffer.asIntBuffer();
+            if (header.capacity() < OFFSET_NODES || header.get(OFFSET_MAGIC) != MAGIC
+                    || header.get(OFFSET_VERSION) != VERSION)
+                throw new IOException("points de repère invalides : " + PATH_LANDMARKS);
+            GraphSignature signature = GraphSignature.readFrom(header, OFFSET_SIGNATURE);
+            int count = header.get(OFFSET_COUNT);
+            int nodeCount = signature.nodeCount();
+            if (count <= 0 || nodeCount < 0
+                    || header.capacity() != OFFSET_NODES + count + 2L * count * nodeCount)
+                throw new IOException("taille du fichier des points de repère incohérente avec son en-tête : "
+                        + PATH_LANDMARKS);
+            int[] landmarks = new int[count];
+            header.get(OFFSET_NODES, landmarks);
+            FloatBuffer distances = buffer
+                    .position((OFFSET_NODES + count) * Integer.BYTES)
+                    .slice()
+                    .asFloatBuffer();
+            return new Landmarks(signature, landmarks, distances);
+        }
+    }
+
+    /**
+     * Écrit les tables dans le fichier landmarks.bin du répertoire donné
+     * @param basePath chemin d'accès
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(PATH_LANDMARKS))))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            signature.writeTo(s);
+            s.writeInt(count());
+            for (int landmark : landmarkNodes) s.writeInt(landmark);
+            for (int i = 0; i < distances.capacity(); i++) s.writeFloat(distances.get(i));
+        }
+    }
+
+    /**
+     * Retourne vrai ssi les tables ont été calculées pour le graphe et la fonction de coût donnés, c.-à-d. pour un
+     * graphe ayant le même nombre de nœuds et d'arêtes et la même empreinte, et une fonction de coût de même nom
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return vrai ssi les tables correspondent au graphe et à la fonction de coût donnés
+     */
+    public boolean matches(Graph graph, CostFunction costFunction) {
+        return signature.equals(GraphSignature.of(graph, costFunction));
+    }
+
+    /**
+     * Retourne le nombre de points de repère
+     * @return le nombre de points de repère
+     */
+    public int count() {
+        return landmarkNodes.length;
+    }
+
+    /**
+     * Retourne l'identité du nœud servant de index-ième point de repère
+     * @param index index du point de repère
+     * @return l'identité du nœud servant de index-ième point de repère
+     */
+    public int landmarkNodeId(int index) {
+        return landmarkNodes[index];
+    }
+
+    /**
+     * Retourne le coût minimal du index-ième point de repère au nœud donné, infini s'il n'est pas atteignable
+     * @param index index du point de repère
+     * @param nodeId identité du nœud
+     * @return le coût minimal du point de repère au nœud donné
+     */
+    public float distanceFrom(int index, int nodeId) {
+        return distances.get(2 * count() * nodeId + index);
+    }
+
+    /**
+     * Retourne le coût minimal du nœud donné au index-ième point de repère, infini s'il n'est pas atteignable
+     * @param index index du point de repère
+     * @param nodeId identité du nœud
+     * @return le coût minimal du nœud donné au point de repère
+     */
+    public float distanceTo(int index, int nodeId) {
+        return distances.get(2 * count() * nodeId + count() + index);
+    }
+
+    /**
+     * Retourne la meilleure borne inférieure, sur l'ensemble des points de repère, du coût minimal allant de
+     * fromNodeId à toNodeId
+     * @param fromNodeId identité du nœud de départ
+     * @param toNodeId identité du nœud d'arrivée
+     * @return une borne inférieure du coût minimal allant de fromNodeId à toNodeId
+     */
+    public float lowerBound(int fromNodeId, int toNodeId) {
+        float bound = 0;
+        for (int i = 0; i < count(); i++) bound = Math.max(bound, lowerBound(i, fromNodeId, toNodeId));
+        return bound;
+    }
+
+    /**
+     * Retourne l'heuristique d'une requête allant vers targetNodeId, qui n'utilise que les quelques points de
+     * repère donnant la meilleure borne entre sourceNodeId et targetNodeId
+     * @param sourceNodeId identité du nœud de départ de la requête
+     * @param targetNodeId identité du nœud d'arrivée de la requête
+     * @return l'heuristique de la requête
+     */
+    Heuristic towards(int sourceNodeId, int targetNodeId) {
+        Integer[] order = new Integer[count()];
+        for (int i = 0; i < count(); i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Float.compare(
+                lowerBound(b, sourceNodeId, targetNodeId), lowerBound(a, sourceNodeId, targetNodeId)));
+
+        int active = Math.min(ACTIVE_COUNT, count());
+        int[] indices = new int[active];
+        float[] targetFrom = new float[active];
+        float[] targetTo = new float[active];
+        for (int i = 0; i < active; i++) {
+            indices[i] = order[i];
+            targetFrom[i] = distanceFrom(order[i], targetNodeId);
+            targetTo[i] = distanceTo(order[i], targetNodeId);
+        }
+        return new Heuristic(indices, targetFrom, targetTo);
+    }
+
+    /**
+     * Heuristique ALT d'une requête, dont les distances des points de repère actifs à l'arrivée sont
+     * calculées une fois pour toutes
+     */
+    final class Heuristic {
+        private final int[] indices;
+        private final float[] targetFrom;
+        private final float[] targetTo;
+
+        private Heuristic(int[] indices, float[] targetFrom, float[] targetTo) {
+            this.indices = indices;
+            this.targetFrom = targetFrom;
+            this.targetTo = targetTo;
+        }
+
+        /**
+         * Retourne une borne inférieure du coût minimal allant du nœud donné à l'arrivée de la requête
+         * @param nodeId identité du nœud
+         * @return une borne inférieure du coût minimal allant du nœud donné à l'arrivée
+         */
+        float lowerBound(int nodeId) {
+            float bound = 0;
+            for (int i = 0; i < indices.length; i++) {
+                bound = Math.max(bound, Landmarks.bound(
+                        distanceFrom(indices[i], nodeId), targetFrom[i],
+                        distanceTo(indices[i], nodeId), targetTo[i]));
+            }
+            return bound;
+        }
+    }
+
+    /**
+     * Construit les tables de 16 points de repère pour la fonction de coût CityBikeCF et les écrit à côté des
+     * fichiers du graphe, en construisant au besoin l'index inverse des arêtes
+     * @param args le répertoire des données (javelo-data par défaut), puis éventuellement le nombre de points
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_COUNT;
+        Graph graph = Graph.loadFrom(basePath);
+        if (!graph.hasInEdges()) {
+            GraphInEdges.of(graph).writeTo(basePath);
+            graph = Graph.loadFrom(basePath);
+        }
+        long start = System.nanoTime();
+        Landmarks landmarks = build(graph, new CityBikeCF(graph), count);
+        System.out.printf("%d points de repère calculés en %.1f s%n",
+                landmarks.count(), (System.nanoTime() - start) / 1e9);
+        landmarks.writeTo(basePath);
+    }
+
+    //==================================//
+
+    private float lowerBound(int index, int fromNodeId, int toNodeId) {
+        return bound(distanceFrom(index, fromNodeId), distanceFrom(index, toNodeId),
+                distanceTo(index, fromNodeId), distanceTo(index, toNodeId));
+    }
+
+    /* Borne donnée par un point de repère L pour le coût de v à t; les distances infinies ne bornent rien */
+    private static float bound(float fromLToV, float fromLToT, float toLFromV, float toLFromT) {
+        float bound = 0;
+        if (fromLToT != Float.POSITIVE_INFINITY && fromLToV != Float.POSITIVE_INFINITY)
+            bound = fromLToT - fromLToV;
+        if (toLFromV != Float.POSITIVE_INFINITY && toLFromT != Float.POSITIVE_INFINITY)
+            bound = Math.max(bound, toLFromV - toLFromT);
+        return bound;
+    }
+
+    /* Nœud atteignable le plus éloigné selon les distances données (nulles aux points de repère déjà choisis) */
+    private static int farthestFrom(float[] distance) {
+        int farthest = 0;
+        float max = -1;
+        for (int v = 0; v < distance.length; v++) {
+            if (distance[v] != Float.POSITIVE_INFINITY && distance[v] > max) {
+                farthest = v;
+                max = distance[v];
+            }
+        }
+        return farthest;
+    }
+
+    /* Coûts minimaux depuis (forward) ou vers (sinon) le nœud donné, pour la totalité des nœuds */
+    private static float[] dijkstra(Graph graph, CostFunction costFunction, int root, boolean forward) {
+        int nodeCount = graph.nodeCount();
+        float[] distance = new float[nodeCount];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        NodeHeap heap = new DaryHeap(nodeCount, 4);
+        distance[root] = 0;
+        heap.insertOrDecrease(root, 0);
+
+        while (!heap.isEmpty()) {
+            int node = heap.removeMin();
+            int degree = forward ? graph.nodeOutDegree(node) : graph.nodeInDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = forward ? graph.nodeOutEdgeId(node, i) : graph.nodeInEdgeId(node, i);
+                int next = forward ? graph.edgeTargetNodeId(edgeId) : graph.nodeInEdgeSourceId(node, i);
+                int source = forward ? node : next;
+                float dist = (float) (distance[node]
+                        + costFunction.costFactor(source, edgeId) * graph.edgeLength(edgeId));
+                if (dist < distance[next]) {
+                    distance[next] = dist;
+                    heap.insertOrDecrease(next, dist);
+                }
+            }
+        }
+        return distance;
+    }
+}
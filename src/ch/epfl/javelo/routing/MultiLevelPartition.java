@@ -0,0 +1,340 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Représente une partition multiniveau des nœuds du graphe, indépendante de toute fonction de coût, sur laquelle
+ * repose le routage par recouvrement (voir OverlayMetric).
+ * <p>
+ * La partition est obtenue par bissections géométriques récursives : chaque ensemble de nœuds est coupé en deux
+ * moitiés de même taille selon la médiane de sa coordonnée (E ou N) la plus étendue, jusqu'à ce que les cellules
+ * ne contiennent plus qu'un nombre donné de nœuds. Les cellules du niveau 1 sont les feuilles de cet arbre, et
+ * chaque cellule du niveau l + 1 regroupe 2^FANOUT_BITS cellules du niveau l; l'identité de la cellule d'un nœud
+ * au niveau l est donc celle de sa feuille, décalée de FANOUT_BITS * (l - 1) bits.
+ * <p>
+ * Un nœud est un nœud frontière d'une cellule de niveau l s'il est l'extrémité d'une arête reliant deux cellules
+ * différentes de ce niveau. Les nœuds frontières d'un niveau sont aussi ceux de tous les niveaux inférieurs.
+ * <p>
+ * Le fichier d'une partition contient un en-tête (signature du format, version, signature du graphe, voir
+ * GraphSignature, nombre de niveaux et profondeur des feuilles), puis la feuille de chaque nœud.
+ */
+public final class MultiLevelPartition {
+
+    /* nombre de bits de l'index d'une cellule dans sa cellule parente : chaque cellule en regroupe 8 */
+    final static int FANOUT_BITS = 3;
+
+    private final static int MAGIC = 0x4A564D50; // "JVMP"
+    private final static int VERSION = 2;
+    private final static int OFFSET_MAGIC = 0;
+    private final static int OFFSET_VERSION = OFFSET_MAGIC + 1;
+    private final static int OFFSET_SIGNATURE = OFFSET_VERSION + 1;
+    private final static int OFFSET_LEVEL_COUNT = OFFSET_SIGNATURE + GraphSignature.INTS;
+    private final static int OFFSET_LEAF_DEPTH = OFFSET_LEVEL_COUNT + 1;
+    private final static int HEADER_INTS = OFFSET_LEAF_DEPTH + 1;
+    private final static String FILE_NAME = "overlay_partition.bin";
+    private final static String DATA_REP = "javelo-data";
+    private final static int DEFAULT_LEVEL_COUNT = 4;
+    private final static int DEFAULT_CELL_SIZE = 256;
+    private final static int NOT_BOUNDARY = -1;
+
+    private final GraphSignature signature;
+    private final int levelCount;
+    private final int leafDepth;
+    private final int[] leaf;
+    /* pour chaque niveau (à l'index niveau - 1) : nœuds frontières de chaque cellule au format CSR, index de
+       chaque nœud parmi ceux de sa cellule (ou -1), et index du début de la matrice de chaque cellule */
+    private final int[][] boundaryFirst;
+    private final int[][] boundaryNodes;
+    private final int[][] boundaryIndex;
+    private final int[][] matrixFirst;
+
+    /**
+     * Construit une partition à partir de la feuille de chaque nœud et calcule les nœuds frontières de chaque
+     * cellule de chaque niveau
+     * @param graph le graphe
+     * @param levelCount le nombre de niveaux
+     * @param leafDepth la profondeur des feuilles de l'arbre de bissection
+     * @param leaf la feuille de chaque nœud, comprise entre 0 et 2^leafDepth (exclus)
+     * @throws IllegalArgumentException si le nombre de niveaux n'est pas strictement positif, ou si le nombre de
+     * feuilles ne correspond pas au nombre de nœuds du graphe
+     */
+    public MultiLevelPartition(Graph graph, int levelCount, int leafDepth, int[] leaf) {
+        Preconditions.checkArgument(levelCount > 0 && leafDepth >= 0 && leafDepth < Integer.SIZE - 1
+                && leaf.length == graph.nodeCount());
+        this.signature = GraphSignature.of(graph);
+        this.levelCount = levelCount;
+        this.leafDepth = leafDepth;
+        this.leaf = leaf;
+        boundaryFirst = new int[levelCount][];
+        boundaryNodes = new int[levelCount][];
+        boundaryIndex = new int[levelCount][];
+        matrixFirst = new int[levelCount][];
+        for (int level = 1; level <= levelCount; level++) computeBoundary(graph, level);
+    }
+
+    /**
+     * Partitionne le graphe donné par bissections géométriques récursives
+     * @param graph le graphe
+     * @param levelCount le nombre de niveaux
+     * @param finestCellSize le nombre maximal de nœuds des cellules du niveau 1
+     * @return la partition du graphe
+     * @throws IllegalArgumentException si le nombre de niveaux ou la taille des cellules n'est pas strictement
+     * positif
+     */
+    public static MultiLevelPartition build(Graph graph, int levelCount, int finestCellSize) {
+        Preconditions.checkArgument(levelCount > 0 && finestCellSize > 0);
+        int nodeCount = graph.nodeCount();
+        int leafDepth = 0;
+        while ((long) finestCellSize << leafDepth < nodeCount) leafDepth++;
+
+        int[] nodes = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) nodes[i] = i;
+        int[] leaf = new int[nodeCount];
+        bisect(graph, nodes, 0, nodeCount, 0, leafDepth, 0, leaf);
+        return new MultiLevelPartition(graph, levelCount, leafDepth, leaf);
+    }
+
+    /**
+     * Retourne vrai ssi le fichier d'une partition se trouve dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @return vrai ssi le fichier d'une partition se trouve dans le répertoire donné
+     */
+    public static boolean existsIn(Path basePath) {
+        return Files.exists(basePath.resolve(FILE_NAME));
+    }
+
+    /**
+     * Retourne la partition du graphe donné stockée dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @param graph le graphe partitionné
+     * @return la partition stockée dans le répertoire donné
+     * @throws IOException en cas d'erreur d'entrée/sortie, ou si le fichier n'est pas une partition de version
+     * connue du graphe donné, c.-à-d. d'un graphe ayant le même nombre de nœuds et d'arêtes et la même empreinte
+     */
+    public static MultiLevelPartition loadFrom(Path basePath, Graph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(basePath.resolve(FILE_NAME))) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            IntBuffer ints = buffer.asIntBuffer();
+            if (ints.capacity() < HEADER_INTS || ints.get(OFFSET_MAGIC) != MAGIC
+                    || ints.get(OFFSET_VERSION) != VERSION
+                    || !GraphSignature.readFrom(ints, OFFSET_SIGNATURE).equals(GraphSignature.of(graph))
+                    || ints.capacity() != HEADER_INTS + graph.nodeCount())
+                throw new IOException("partition invalide : " + FILE_NAME);
+
+            int[] leaf = new int[graph.nodeCount()];
+            ints.get(HEADER_INTS, leaf);
+            return new MultiLevelPartition(graph, ints.get(OFFSET_LEVEL_COUNT), ints.get(OFFSET_LEAF_DEPTH), leaf);
+        }
+    }
+
+    /**
+     * Écrit la partition dans le répertoire donné
+     * @param basePath chemin d'accès
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public void writeTo(Path basePath) throws IOException {
+        try (DataOutputStream s = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(basePath.resolve(FILE_NAME))))) {
+            s.writeInt(MAGIC);
+            s.writeInt(VERSION);
+            signature.writeTo(s);
+            s.writeInt(levelCount);
+            s.writeInt(leafDepth);
+            for (int l : leaf) s.writeInt(l);
+        }
+    }
+
+    /**
+     * Retourne le nombre de nœuds partitionnés
+     * @return le nombre de nœuds partitionnés
+     */
+    public int nodeCount() {
+        return leaf.length;
+    }
+
+    /**
+     * Retourne le nombre de niveaux de la partition
+     * @return le nombre de niveaux de la partition
+     */
+    public int levelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Retourne le nombre de cellules du niveau donné
+     * @param level le niveau, entre 1 et levelCount()
+     * @return le nombre de cellules du niveau donné
+     */
+    public int cellCount(int level) {
+        return boundaryFirst[level - 1].length - 1;
+    }
+
+    /**
+     * Retourne l'identité de la cellule du niveau donné contenant le nœud donné
+     * @param level le niveau, entre 1 et levelCount()
+     * @param nodeId l'identité du nœud
+     * @return l'identité de la cellule contenant le nœud
+     */
+    public int cell(int level, int nodeId) {
+        return leaf[nodeId] >>> shift(level);
+    }
+
+    /**
+     * Retourne le nombre total de nœuds frontières des cellules du niveau donné
+     * @param level le niveau, entre 1 et levelCount()
+     * @return le nombre de nœuds frontières du niveau donné
+     */
+    public int boundaryNodeCount(int level) {
+        return boundaryNodes[level - 1].length;
+    }
+
+    /**
+     * Retourne vrai ssi la partition a été construite pour le graphe donné, c.-à-d. pour un graphe ayant le même
+     * nombre de nœuds et d'arêtes et la même empreinte
+     * @param graph le graphe
+     * @return vrai ssi la partition correspond au graphe donné
+     */
+    public boolean matches(Graph graph) {
+        return signature.equals(GraphSignature.of(graph));
+    }
+
+    /**
+     * Partitionne le graphe JaVelo, écrit la partition à côté de ses fichiers et mesure la durée de la
+     * personnalisation pour la fonction de coût CityBikeCF
+     * @param args le répertoire des données (javelo-data par défaut)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        MultiLevelPartition partition = build(graph, DEFAULT_LEVEL_COUNT, DEFAULT_CELL_SIZE);
+        System.out.printf("partition en %.1f s%n", (System.nanoTime() - start) / 1e9);
+        for (int level = 1; level <= partition.levelCount(); level++) {
+            System.out.printf("niveau %d : %d cellules, %d nœuds frontières, matrices de %d coûts%n", level,
+                    partition.cellCount(level), partition.boundaryNodeCount(level), partition.matrixSize(level));
+        }
+        partition.writeTo(basePath);
+
+        start = System.nanoTime();
+        OverlayMetric.customize(partition, graph, new CityBikeCF(graph));
+        System.out.printf("personnalisation CityBikeCF en %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /* Nombre de nœuds frontières de la cellule donnée */
+    int boundaryCount(int level, int cell) {
+        return boundaryFirst[level - 1][cell + 1] - boundaryFirst[level - 1][cell];
+    }
+
+    /* i-ème nœud frontière de la cellule donnée */
+    int boundaryNode(int level, int cell, int i) {
+        return boundaryNodes[level - 1][boundaryFirst[level - 1][cell] + i];
+    }
+
+    /* Index du nœud donné parmi les nœuds frontières de sa cellule, ou -1 s'il n'en est pas un */
+    int boundaryIndex(int level, int nodeId) {
+        return boundaryIndex[level - 1][nodeId];
+    }
+
+    /* Index du début de la matrice des coûts entre nœuds frontières de la cellule donnée */
+    int matrixOffset(int level, int cell) {
+        return matrixFirst[level - 1][cell];
+    }
+
+    /* Nombre total de coûts des matrices du niveau donné */
+    int matrixSize(int level) {
+        int[] first = matrixFirst[level - 1];
+        return first[first.length - 1];
+    }
+
+    //==================================//
+
+    private int shift(int level) {
+        return Math.min(FANOUT_BITS * (level - 1), leafDepth);
+    }
+
+    /* Calcule les nœuds frontières de chaque cellule du niveau donné */
+    private void computeBoundary(Graph graph, int level) {
+        int nodeCount = leaf.length;
+        int cellCount = ((1 << leafDepth) - 1 >>> shift(level)) + 1;
+        boolean[] isBoundary = new boolean[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < graph.nodeOutDegree(u); i++) {
+                int v = graph.edgeTargetNodeId(graph.nodeOutEdgeId(u, i));
+                if (cell(level, u) != cell(level, v)) {
+                    isBoundary[u] = true;
+                    isBoundary[v] = true;
+                }
+            }
+        }
+
+        int[] first = new int[cellCount + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            if (isBoundary[v]) first[cell(level, v) + 1]++;
+        }
+        for (int c = 0; c < cellCount; c++) first[c + 1] += first[c];
+        int[] nodes = new int[first[cellCount]];
+        int[] index = new int[nodeCount];
+        Arrays.fill(index, NOT_BOUNDARY);
+        int[] fill = new int[cellCount];
+        for (int v = 0; v < nodeCount; v++) {
+            if (!isBoundary[v]) continue;
+            int c = cell(level, v);
+            index[v] = fill[c]++;
+            nodes[first[c] + index[v]] = v;
+        }
+
+        int[] matrix = new int[cellCount + 1];
+        for (int c = 0; c < cellCount; c++) {
+            int size = first[c + 1] - first[c];
+            matrix[c + 1] = Math.addExact(matrix[c], Math.multiplyExact(size, size));
+        }
+        boundaryFirst[level - 1] = first;
+        boundaryNodes[level - 1] = nodes;
+        boundaryIndex[level - 1] = index;
+        matrixFirst[level - 1] = matrix;
+    }
+
+    /* Coupe les nœuds nodes[from..to[ en deux selon la médiane de leur coordonnée la plus étendue */
+    private static void bisect(Graph graph, int[] nodes, int from, int to, int depth, int leafDepth, int prefix,
+                               int[] leaf) {
+        if (depth == leafDepth || to - from <= 1) {
+            for (int i = from; i < to; i++) leaf[nodes[i]] = prefix << (leafDepth - depth);
+            return;
+        }
+
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            minE = Math.min(minE, graph.nodeE(nodes[i]));
+            maxE = Math.max(maxE, graph.nodeE(nodes[i]));
+            minN = Math.min(minN, graph.nodeN(nodes[i]));
+            maxN = Math.max(maxN, graph.nodeN(nodes[i]));
+        }
+        boolean alongE = maxE - minE >= maxN - minN;
+
+        /* tri par coordonnée (positive, donc ordonnée comme ses bits), les égalités étant départagées par identité */
+        long[] keys = new long[to - from];
+        for (int i = from; i < to; i++) {
+            float coordinate = (float) (alongE ? graph.nodeE(nodes[i]) : graph.nodeN(nodes[i]));
+            keys[i - from] = (long) Float.floatToIntBits(coordinate) << Integer.SIZE | nodes[i];
+        }
+        Arrays.sort(keys);
+        for (int i = from; i < to; i++) nodes[i] = (int) keys[i - from];
+
+        int middle = (from + to) >>> 1;
+        bisect(graph, nodes, from, middle, depth + 1, leafDepth, 2 * prefix, leaf);
+        bisect(graph, nodes, middle, to, depth + 1, leafDepth, 2 * prefix + 1, leaf);
+    }
+}
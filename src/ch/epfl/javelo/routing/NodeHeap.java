@@ -0,0 +1,69 @@
+package ch.epfl.javelo.routing;
+
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Représente une file de priorité de nœuds, identifiés par un entier, ordonnés par une priorité de type float.
+ * Un nœud apparaît au plus une fois dans la file : l'insérer à nouveau avec une priorité inférieure diminue
+ * sa priorité au lieu d'ajouter une seconde entrée.
+ */
+public interface NodeHeap {
+
+    /**
+     * Retourne vrai ssi la file est vide
+     * @return vrai ssi la file est vide
+     */
+    boolean isEmpty();
+
+    /**
+     * Retourne le nombre de nœuds dans la file
+     * @return le nombre de nœuds dans la file
+     */
+    int size();
+
+    /**
+     * Vide la file
+     */
+    void clear();
+
+    /**
+     * Retourne vrai ssi le nœud donné se trouve dans la file
+     * @param nodeId identité du nœud
+     * @return vrai ssi le nœud donné se trouve dans la file
+     */
+    boolean contains(int nodeId);
+
+    /**
+     * Ajoute le nœud donné avec la priorité donnée, ou diminue sa priorité s'il se trouve déjà dans la file
+     * avec une priorité supérieure; ne fait rien sinon
+     * @param nodeId identité du nœud
+     * @param priority la priorité
+     */
+    void insertOrDecrease(int nodeId, float priority);
+
+    /**
+     * Retourne la plus petite priorité de la file, qui ne doit pas être vide
+     * @return la plus petite priorité de la file
+     */
+    float minPriority();
+
+    /**
+     * Retire de la file le nœud de plus petite priorité et retourne son identité; la file ne doit pas être vide
+     * @return l'identité du nœud de plus petite priorité
+     */
+    int removeMin();
+
+    /**
+     * Remplace la priorité de chaque nœud de la file par celle donnée par la fonction, qui peut être supérieure
+     * ou inférieure à l'ancienne, p. ex. lorsque l'heuristique d'une recherche A* change
+     * @param priority la fonction donnant la nouvelle priorité d'un nœud à partir de son identité
+     */
+    void reprioritize(IntToDoubleFunction priority);
+
+    /**
+     * Applique l'action donnée à chaque nœud de la file, dans un ordre quelconque
+     * @param action l'action à appliquer à l'identité de chaque nœud
+     */
+    void forEach(IntConsumer action);
+}
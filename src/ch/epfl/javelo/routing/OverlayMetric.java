@@ -0,0 +1,365 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.stream.IntStream;
+
+/**
+ * Représente la personnalisation d'une partition multiniveau pour une fonction de coût : pour chaque cellule de
+ * chaque niveau, la matrice (ou clique) des coûts minimaux entre ses nœuds frontières, le chemin correspondant
+ * restant à l'intérieur de la cellule.
+ * <p>
+ * La partition ne dépendant pas de la fonction de coût, changer de fonction ne demande que de recalculer ces
+ * matrices, niveau par niveau : au niveau 1, par des recherches de Dijkstra limitées aux arêtes intérieures à la
+ * cellule; aux niveaux supérieurs, par des recherches limitées au graphe, bien plus petit, formé des cliques du
+ * niveau inférieur et des arêtes reliant deux sous-cellules. Les cellules d'un niveau sont traitées en parallèle.
+ * <p>
+ * Une requête est une recherche de Dijkstra bidirectionnelle dans le graphe de recouvrement propre à ses deux
+ * extrémités : un nœud qui partage sa cellule du niveau 1 avec l'une d'elles est exploré au moyen de toutes ses
+ * arêtes; les autres le sont au moyen de la clique et des arêtes sortant de leur cellule du plus haut niveau ne
+ * contenant aucune des extrémités. Les arcs de clique de l'itinéraire trouvé sont ensuite dépliés, récursivement,
+ * en arêtes du graphe.
+ */
+public final class OverlayMetric {
+
+    /* arête prédécesseur marquant, dans un contexte de recherche, un nœud atteint par un arc de clique */
+    private final static int CLIQUE_ARC = -2;
+    private final static int NO_NODE = -1;
+
+    private final MultiLevelPartition partition;
+    private final Graph graph;
+    private final CostTable costs;
+    /* matrices des cellules de chaque niveau (à l'index niveau - 1), mises bout à bout, ligne par ligne */
+    private final float[][] cliques;
+
+    private OverlayMetric(MultiLevelPartition partition, Graph graph, CostTable costs) {
+        this.partition = partition;
+        this.graph = graph;
+        this.costs = costs;
+        this.cliques = new float[partition.levelCount()][];
+    }
+
+    /**
+     * Personnalise la partition donnée pour la fonction de coût donnée
+     * @param partition la partition du graphe
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return la partition personnalisée
+     * @throws IllegalArgumentException si la partition n'a pas été construite pour le graphe donné
+     */
+    public static OverlayMetric customize(MultiLevelPartition partition, Graph graph, CostFunction costFunction) {
+        return customize(partition, graph, CostTable.build(graph, costFunction));
+    }
+
+    /**
+     * Personnalise la partition donnée pour les coûts d'arêtes de la table donnée, p. ex. chargée depuis le disque
+     * @param partition la partition du graphe
+     * @param graph le graphe
+     * @param costs la table des coûts des arêtes du graphe
+     * @return la partition personnalisée
+     * @throws IllegalArgumentException si la partition ou la table n'a pas été construite pour le graphe donné
+     */
+    public static OverlayMetric customize(MultiLevelPartition partition, Graph graph, CostTable costs) {
+        Preconditions.checkArgument(partition.matches(graph) && costs.matches(graph));
+        OverlayMetric metric = new OverlayMetric(partition, graph, costs);
+        int nodeCount = graph.nodeCount();
+        /* en mode creux, un contexte ne coûte qu'en proportion de la taille des cellules explorées */
+        ThreadLocal<SearchContext> contexts = ThreadLocal.withInitial(() -> new SearchContext(nodeCount));
+        for (int level = 1; level <= partition.levelCount(); level++) {
+            int currentLevel = level;
+            metric.cliques[level - 1] = new float[partition.matrixSize(level)];
+            /* chaque cellule n'écrit que dans sa propre matrice et ne lit que celles du niveau précédent */
+            IntStream.range(0, partition.cellCount(level)).parallel()
+                    .forEach(cell -> metric.fillClique(currentLevel, cell, contexts.get()));
+        }
+        return metric;
+    }
+
+    /**
+     * Retourne vrai ssi la personnalisation a été faite pour le graphe et la fonction de coût donnés, c.-à-d. que
+     * sa partition a été construite pour ce graphe et sa table des coûts pour ce graphe et cette fonction
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @return vrai ssi la personnalisation correspond au graphe et à la fonction de coût donnés
+     */
+    public boolean matches(Graph graph, CostFunction costFunction) {
+        return partition.matches(graph) && costs.matches(graph, costFunction);
+    }
+
+    /**
+     * Retourne la partition personnalisée
+     * @return la partition personnalisée
+     */
+    public MultiLevelPartition partition() {
+        return partition;
+    }
+
+    /**
+     * Retourne un itinéraire de coût total minimal allant de startNodeId à endNodeId, calculé par une recherche
+     * bidirectionnelle dans le graphe de recouvrement; le graphe doit disposer de son index inverse des arêtes
+     * @param startNodeId le nœud de départ
+     * @param endNodeId le nœud d'arrivée
+     * @param forward le contexte de la recherche avant
+     * @param backward le contexte de la recherche arrière
+     * @return un itinéraire de coût total minimal, ou null si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, SearchContext forward, SearchContext backward) {
+        return bestRouteBetween(startNodeId, endNodeId, forward, backward, null);
+    }
+
+    /**
+     * Fait comme bestRouteBetween, en ajoutant à stats, s'il n'est pas null, les statistiques de la requête; la
+     * taille maximale de la file est celle des deux files réunies, et le dépliage des arcs de clique est compté
+     * dans la reconstruction de l'itinéraire
+     */
+    Route bestRouteBetween(int startNodeId, int endNodeId, SearchContext forward, SearchContext backward,
+                           QueryStats stats) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        long startTime = System.nanoTime();
+        Query query = new Query(startNodeId, endNodeId, forward, backward);
+        int meeting = query.run();
+        long searchEnd = System.nanoTime();
+        Route route = meeting == NO_NODE ? null : route(startNodeId, endNodeId, meeting, forward, backward);
+        if (stats != null) stats.add(query.stats(searchEnd - startTime, System.nanoTime() - searchEnd));
+        return route;
+    }
+
+    //==================================//
+
+    /* Itinéraire passant par le point de rencontre des deux recherches, dont les arcs de clique sont dépliés */
+    private Route route(int startNodeId, int endNodeId, int meeting, SearchContext forward, SearchContext backward) {
+        /* les arcs du chemin sont extraits avant que le dépliage ne réutilise le contexte avant */
+        int forwardCount = 0;
+        for (int node = meeting; node != startNodeId; node = forward.predecessorNode(node)) forwardCount++;
+        int backwardCount = 0;
+        for (int node = meeting; node != endNodeId; node = backward.predecessorNode(node)) backwardCount++;
+        int[] arcFrom = new int[forwardCount + backwardCount];
+        int[] arcTo = new int[arcFrom.length];
+        int[] arcEdge = new int[arcFrom.length];
+        int index = forwardCount;
+        for (int node = meeting; node != startNodeId; node = forward.predecessorNode(node)) {
+            index--;
+            arcFrom[index] = forward.predecessorNode(node);
+            arcTo[index] = node;
+            arcEdge[index] = forward.predecessorEdge(node);
+        }
+        index = forwardCount;
+        for (int node = meeting; node != endNodeId; node = backward.predecessorNode(node)) {
+            arcFrom[index] = node;
+            arcTo[index] = backward.predecessorNode(node);
+            arcEdge[index] = backward.predecessorEdge(node);
+            index++;
+        }
+
+        IntStream.Builder edgeIds = IntStream.builder();
+        for (int i = 0; i < arcFrom.length; i++) {
+            if (arcEdge[i] != CLIQUE_ARC) {
+                edgeIds.add(arcEdge[i]);
+            } else {
+                int level = queryLevel(arcFrom[i], startNodeId, endNodeId);
+                unpack(level, arcFrom[i], arcTo[i], forward, edgeIds);
+            }
+        }
+        return new CompactRoute(graph, startNodeId, edgeIds.build().toArray());
+    }
+
+    /* Requête bidirectionnelle, qui retient le meilleur point de rencontre des deux recherches */
+    private final class Query {
+        private final int startNodeId;
+        private final int endNodeId;
+        private final SearchContext forward;
+        private final SearchContext backward;
+        private float best = Float.POSITIVE_INFINITY;
+        private int meeting = NO_NODE;
+        /* compteurs de la requête */
+        private int relaxed, pushes, pops, peakSize;
+
+        private Query(int startNodeId, int endNodeId, SearchContext forward, SearchContext backward) {
+            this.startNodeId = startNodeId;
+            this.endNodeId = endNodeId;
+            this.forward = forward;
+            this.backward = backward;
+        }
+
+        /* Effectue la recherche et retourne le point de rencontre du meilleur chemin, ou -1 */
+        private int run() {
+            forward.reset(true);
+            backward.reset(true);
+            forward.setDistance(startNodeId, 0f);
+            forward.heap().insertOrDecrease(startNodeId, 0);
+            backward.setDistance(endNodeId, 0f);
+            backward.heap().insertOrDecrease(endNodeId, 0);
+
+            NodeHeap forwardHeap = forward.heap();
+            NodeHeap backwardHeap = backward.heap();
+            pushes = peakSize = 2;
+            while (!forwardHeap.isEmpty() || !backwardHeap.isEmpty()) {
+                float forwardMin = forwardHeap.isEmpty() ? Float.POSITIVE_INFINITY : forwardHeap.minPriority();
+                float backwardMin = backwardHeap.isEmpty() ? Float.POSITIVE_INFINITY : backwardHeap.minPriority();
+                /* tout chemin non encore trouvé coûte au moins la somme des deux plus petites priorités */
+                if (forwardMin + backwardMin >= best) break;
+
+                if (forwardMin <= backwardMin) {
+                    int node = forwardHeap.removeMin();
+                    relax(node, true);
+                } else {
+                    int node = backwardHeap.removeMin();
+                    relax(node, false);
+                }
+                pops++;
+                peakSize = Math.max(peakSize, forwardHeap.size() + backwardHeap.size());
+            }
+            return meeting;
+        }
+
+        /* Statistiques de la requête, chaque nœud retiré de la file étant exploré */
+        private QueryStats stats(long searchNanos, long reconstructionNanos) {
+            return new QueryStats(pops, relaxed, pushes, pops, 0, peakSize, 0, 0, searchNanos, reconstructionNanos);
+        }
+
+        /* Relâche les arcs (sortants ou entrants) du nœud donné dans le graphe de recouvrement de la requête */
+        private void relax(int node, boolean isForward) {
+            SearchContext context = isForward ? forward : backward;
+            float distance = context.distance(node);
+            int level = queryLevel(node, startNodeId, endNodeId);
+            if (level > 0) {
+                int cell = partition.cell(level, node);
+                int i = partition.boundaryIndex(level, node);
+                int size = partition.boundaryCount(level, cell);
+                int offset = partition.matrixOffset(level, cell);
+                float[] clique = cliques[level - 1];
+                for (int j = 0; j < size; j++) {
+                    float cost = clique[isForward ? offset + i * size + j : offset + j * size + i];
+                    if (j == i || cost == Float.POSITIVE_INFINITY) continue;
+                    update(context, isForward, partition.boundaryNode(level, cell, j), distance + cost, node,
+                            CLIQUE_ARC);
+                }
+            }
+
+            int degree = isForward ? graph.nodeOutDegree(node) : graph.nodeInDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = isForward ? graph.nodeOutEdgeId(node, i) : graph.nodeInEdgeId(node, i);
+                int next = isForward ? graph.edgeTargetNodeId(edgeId) : graph.nodeInEdgeSourceId(node, i);
+                /* au-dessus du niveau 0, les arêtes intérieures à la cellule sont remplacées par sa clique */
+                if (level > 0 && partition.cell(level, next) == partition.cell(level, node)) continue;
+                float cost = costs.cost(edgeId);
+                if (cost == Float.POSITIVE_INFINITY) continue;
+                update(context, isForward, next, distance + cost, node, edgeId);
+            }
+        }
+
+        private void update(SearchContext context, boolean isForward, int next, float distance, int node, int arc) {
+            relaxed++;
+            if (distance >= context.distance(next)) return;
+            context.set(next, distance, node, arc);
+            context.heap().insertOrDecrease(next, distance);
+            pushes++;
+            float total = distance + (isForward ? backward : forward).distance(next);
+            if (total < best) {
+                best = total;
+                meeting = next;
+            }
+        }
+    }
+
+    /**
+     * Retourne le niveau du graphe de recouvrement auquel le nœud donné est exploré lors d'une requête entre les
+     * deux nœuds donnés : le plus haut niveau auquel sa cellule ne contient aucun d'eux, ou 0
+     */
+    private int queryLevel(int nodeId, int startNodeId, int endNodeId) {
+        int level = 0;
+        /* une cellule ne contenant pas une extrémité ne contient aucune cellule plus fine la contenant */
+        while (level < partition.levelCount()
+                && partition.cell(level + 1, nodeId) != partition.cell(level + 1, startNodeId)
+                && partition.cell(level + 1, nodeId) != partition.cell(level + 1, endNodeId)) {
+            level++;
+        }
+        return level;
+    }
+
+    /* Calcule la matrice de la cellule donnée, par une recherche depuis chacun de ses nœuds frontières */
+    private void fillClique(int level, int cell, SearchContext context) {
+        int size = partition.boundaryCount(level, cell);
+        int offset = partition.matrixOffset(level, cell);
+        float[] clique = cliques[level - 1];
+        for (int i = 0; i < size; i++) {
+            cellSearch(level, cell, partition.boundaryNode(level, cell, i), NO_NODE, context);
+            for (int j = 0; j < size; j++)
+                clique[offset + i * size + j] = context.distance(partition.boundaryNode(level, cell, j));
+        }
+    }
+
+    /**
+     * Recherche de Dijkstra depuis source restreinte à la cellule donnée, arrêtée à l'exploration de target s'il
+     * ne vaut pas -1. Au niveau 1, elle emprunte les arêtes intérieures à la cellule; aux niveaux supérieurs, les
+     * cliques de ses sous-cellules et les arêtes reliant deux d'entre elles.
+     */
+    private void cellSearch(int level, int cell, int source, int target, SearchContext context) {
+        context.reset(true);
+        NodeHeap exploring = context.heap();
+        context.setDistance(source, 0f);
+        exploring.insertOrDecrease(source, 0);
+        int subLevel = level - 1;
+
+        while (!exploring.isEmpty()) {
+            int node = exploring.removeMin();
+            if (node == target) return;
+            float distance = context.distance(node);
+
+            int subCell = subLevel > 0 ? partition.cell(subLevel, node) : -1;
+            if (subLevel > 0) {
+                int i = partition.boundaryIndex(subLevel, node);
+                int size = partition.boundaryCount(subLevel, subCell);
+                int offset = partition.matrixOffset(subLevel, subCell);
+                float[] clique = cliques[subLevel - 1];
+                for (int j = 0; j < size; j++) {
+                    float cost = clique[offset + i * size + j];
+                    if (j == i || cost == Float.POSITIVE_INFINITY) continue;
+                    int next = partition.boundaryNode(subLevel, subCell, j);
+                    if (distance + cost < context.distance(next)) {
+                        context.set(next, distance + cost, node, CLIQUE_ARC);
+                        exploring.insertOrDecrease(next, distance + cost);
+                    }
+                }
+            }
+
+            for (int i = 0; i < graph.nodeOutDegree(node); i++) {
+                int edgeId = graph.nodeOutEdgeId(node, i);
+                int next = graph.edgeTargetNodeId(edgeId);
+                if (partition.cell(level, next) != cell) continue;
+                if (subLevel > 0 && partition.cell(subLevel, next) == subCell) continue;
+                float dist = distance + costs.cost(edgeId);
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, node, edgeId);
+                    exploring.insertOrDecrease(next, dist);
+                }
+            }
+        }
+    }
+
+    /* Ajoute aux arêtes données celles du chemin que représente l'arc de clique du niveau donné allant de from à to */
+    private void unpack(int level, int from, int to, SearchContext context, IntStream.Builder edgeIds) {
+        cellSearch(level, partition.cell(level, from), from, to, context);
+        int count = 0;
+        for (int node = to; node != from; node = context.predecessorNode(node)) count++;
+        int[] arcFrom = new int[count];
+        int[] arcEdge = new int[count];
+        for (int node = to; node != from; node = context.predecessorNode(node)) {
+            count--;
+            arcFrom[count] = context.predecessorNode(node);
+            arcEdge[count] = context.predecessorEdge(node);
+        }
+
+        /* le dépliage récursif réutilisant le contexte, les arrivées des arcs sont déduites de leurs départs */
+        for (int i = 0; i < arcFrom.length; i++) {
+            if (arcEdge[i] != CLIQUE_ARC) {
+                edgeIds.add(arcEdge[i]);
+            } else {
+                int arcTo = i + 1 < arcFrom.length ? arcFrom[i + 1] : to;
+                unpack(level - 1, arcFrom[i], arcTo, context, edgeIds);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * Fonction de coût définie par un profil (voir CostProfile), compilé pour un graphe donné en une table indexée
+ * par l'ensemble d'attributs, la classe de pente et le sens de l'arête. L'index de chaque arête dans cette table
+ * est calculé à la compilation : évaluer le facteur de coût d'une arête ne demande alors que la lecture de son
+ * index puis celle de la table, quelle que soit la complexité du profil.
+ * <p>
+ * Le graphe ne comptant que quelques milliers d'ensembles d'attributs distincts (au plus 65 536), la table reste
+ * petite et se construit en quelques millisecondes; les index occupent 4 octets par arête.
+ */
+public final class ProfileCF implements CostFunction {
+
+    private final static String DATA_REP = "javelo-data";
+
+    private final String name;
+    private final double[] factors;
+    /* index du facteur de coût de chaque arête dans factors */
+    private final int[] edgeIndices;
+
+    /**
+     * Compile le profil donné pour le graphe donné
+     * @param graph le graphe
+     * @param profile le profil
+     * @throws IllegalArgumentException si le profil donne à une combinaison d'attributs, de pente et de sens un
+     * facteur de coût inférieur à 1 ou indéfini
+     */
+    public ProfileCF(Graph graph, CostProfile profile) {
+        this.name = profile.name();
+        this.factors = new double[graph.attributeSetCount() * CostProfile.SLOPE_BUCKET_COUNT * 2];
+        for (int attributes = 0; attributes < graph.attributeSetCount(); attributes++) {
+            for (int bucket = 0; bucket < CostProfile.SLOPE_BUCKET_COUNT; bucket++) {
+                for (int reversed = 0; reversed < 2; reversed++) {
+                    double factor = profile.costFactor(graph.attributeSet(attributes), reversed == 1, bucket);
+                    if (!(factor >= 1))
+                        throw new IllegalArgumentException("profil " + name + " : facteur de coût " + factor
+                                + " pour " + graph.attributeSet(attributes) + ", pente " + bucket + " %");
+                    factors[index(attributes, bucket, reversed == 1)] = factor;
+                }
+            }
+        }
+        this.edgeIndices = new int[graph.edgeCount()];
+        IntStream.range(0, edgeIndices.length).parallel().forEach(edgeId -> {
+            double slope = graph.edgeElevationGain(edgeId) / graph.edgeLength(edgeId);
+            edgeIndices[edgeId] = index(graph.edgeAttributesIndex(edgeId), CostProfile.slopeBucket(slope),
+                    graph.edgeIsInverted(edgeId));
+        });
+    }
+
+    /**
+     * Lit le profil contenu dans le fichier donné et le compile pour le graphe donné
+     * @param graph le graphe
+     * @param file le chemin d'accès au fichier du profil
+     * @return la fonction de coût définie par le profil
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     * @throws IllegalArgumentException si le fichier ne contient pas un profil valide
+     */
+    public static ProfileCF loadFrom(Graph graph, Path file) throws IOException {
+        return new ProfileCF(graph, CostProfile.loadFrom(file));
+    }
+
+    /**
+     * Retourne le nom du profil, p. ex. pour nommer sa table des coûts
+     * @return le nom du profil
+     */
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return factors[edgeIndices[edgeId]];
+    }
+
+    /**
+     * Compile les profils donnés pour le graphe JaVelo et écrit la table des coûts de chacun, sous son nom, à côté
+     * des fichiers du graphe
+     * @param args le répertoire des données, puis les fichiers des profils
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path basePath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        Graph graph = Graph.loadFrom(basePath);
+        for (int i = 1; i < args.length; i++) {
+            long start = System.nanoTime();
+            ProfileCF costFunction = loadFrom(graph, Path.of(args[i]));
+            long compiled = System.nanoTime();
+            CostTable.build(graph, costFunction).writeTo(basePath, costFunction.name());
+            System.out.printf("%s : compilé en %.1f ms, table des coûts en %.1f s%n", costFunction.name(),
+                    (compiled - start) / 1e6, (System.nanoTime() - compiled) / 1e9);
+        }
+    }
+
+    //==================================//
+
+    private static int index(int attributes, int slopeBucket, boolean reversed) {
+        return (attributes * CostProfile.SLOPE_BUCKET_COUNT + slopeBucket) * 2 + (reversed ? 1 : 0);
+    }
+}
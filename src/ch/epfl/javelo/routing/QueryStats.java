@@ -0,0 +1,211 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'une ou de plusieurs recherches d'itinéraire : nombre de nœuds explorés, d'arêtes relâchées,
+ * d'opérations sur la file de priorité, d'évaluations de l'heuristique et de la fonction de coût, ainsi que la
+ * durée de la recherche proprement dite et celle de la reconstruction de l'itinéraire. La taille maximale de la
+ * file est le maximum sur toutes les recherches, les autres valeurs en sont la somme.
+ * <p>
+ * Une instance n'est pas destinée à être modifiée par plusieurs fils d'exécution. Les statistiques cumulées par
+ * RouteComputer pour tous les fils le sont dans un Accumulator.
+ */
+public final class QueryStats {
+
+    private final static int QUERIES = 0;
+    private final static int SETTLED_NODES = QUERIES + 1;
+    private final static int RELAXED_EDGES = SETTLED_NODES + 1;
+    private final static int HEAP_PUSHES = RELAXED_EDGES + 1;
+    private final static int HEAP_POPS = HEAP_PUSHES + 1;
+    private final static int STALE_POPS = HEAP_POPS + 1;
+    private final static int PEAK_HEAP_SIZE = STALE_POPS + 1;
+    private final static int HEURISTIC_EVALUATIONS = PEAK_HEAP_SIZE + 1;
+    private final static int COST_FUNCTION_CALLS = HEURISTIC_EVALUATIONS + 1;
+    private final static int SEARCH_NANOS = COST_FUNCTION_CALLS + 1;
+    private final static int RECONSTRUCTION_NANOS = SEARCH_NANOS + 1;
+    private final static int COUNT = RECONSTRUCTION_NANOS + 1;
+
+    private final long[] values = new long[COUNT];
+
+    /**
+     * Construit des statistiques vides, auxquelles des recherches peuvent être ajoutées
+     */
+    public QueryStats() {}
+
+    /**
+     * Construit les statistiques d'une seule recherche
+     */
+    QueryStats(int settledNodes, int relaxedEdges, int heapPushes, int heapPops, int stalePops, int peakHeapSize,
+               int heuristicEvaluations, int costFunctionCalls, long searchNanos, long reconstructionNanos) {
+        values[QUERIES] = 1;
+        values[SETTLED_NODES] = settledNodes;
+        values[RELAXED_EDGES] = relaxedEdges;
+        values[HEAP_PUSHES] = heapPushes;
+        values[HEAP_POPS] = heapPops;
+        values[STALE_POPS] = stalePops;
+        values[PEAK_HEAP_SIZE] = peakHeapSize;
+        values[HEURISTIC_EVALUATIONS] = heuristicEvaluations;
+        values[COST_FUNCTION_CALLS] = costFunctionCalls;
+        values[SEARCH_NANOS] = searchNanos;
+        values[RECONSTRUCTION_NANOS] = reconstructionNanos;
+    }
+
+    /**
+     * Ajoute les statistiques données à celles-ci
+     * @param that les statistiques à ajouter
+     */
+    public void add(QueryStats that) {
+        for (int i = 0; i < COUNT; i++) values[i] = combine(i, values[i], that.values[i]);
+    }
+
+    /**
+     * Retourne le nombre de recherches
+     * @return le nombre de recherches
+     */
+    public long queries() {
+        return values[QUERIES];
+    }
+
+    /**
+     * Retourne le nombre de nœuds explorés, c.-à-d. retirés de la file et dont les arêtes ont été relâchées
+     * @return le nombre de nœuds explorés
+     */
+    public long settledNodes() {
+        return values[SETTLED_NODES];
+    }
+
+    /**
+     * Retourne le nombre d'arêtes relâchées, c.-à-d. dont le coût a été évalué
+     * @return le nombre d'arêtes relâchées
+     */
+    public long relaxedEdges() {
+        return values[RELAXED_EDGES];
+    }
+
+    /**
+     * Retourne le nombre d'insertions dans la file de priorité, diminutions de priorité comprises
+     * @return le nombre d'insertions dans la file
+     */
+    public long heapPushes() {
+        return values[HEAP_PUSHES];
+    }
+
+    /**
+     * Retourne le nombre de retraits de la file de priorité
+     * @return le nombre de retraits de la file
+     */
+    public long heapPops() {
+        return values[HEAP_POPS];
+    }
+
+    /**
+     * Retourne le nombre de retraits de la file qui n'ont pas exploré de nouveau nœud, parce que le nœud retiré
+     * l'avait déjà été
+     * @return le nombre de retraits inutiles
+     */
+    public long stalePops() {
+        return values[STALE_POPS];
+    }
+
+    /**
+     * Retourne la plus grande taille atteinte par la file de priorité
+     * @return la taille maximale de la file
+     */
+    public long peakHeapSize() {
+        return values[PEAK_HEAP_SIZE];
+    }
+
+    /**
+     * Retourne le nombre d'évaluations de l'heuristique (distance à vol d'oiseau et points de repère)
+     * @return le nombre d'évaluations de l'heuristique
+     */
+    public long heuristicEvaluations() {
+        return values[HEURISTIC_EVALUATIONS];
+    }
+
+    /**
+     * Retourne le nombre d'appels à la fonction de coût, nul si les coûts sont lus dans une table
+     * @return le nombre d'appels à la fonction de coût
+     */
+    public long costFunctionCalls() {
+        return values[COST_FUNCTION_CALLS];
+    }
+
+    /**
+     * Retourne la durée de la recherche, en nanosecondes
+     * @return la durée de la recherche
+     */
+    public long searchNanos() {
+        return values[SEARCH_NANOS];
+    }
+
+    /**
+     * Retourne la durée de la reconstruction des itinéraires, en nanosecondes
+     * @return la durée de la reconstruction des itinéraires
+     */
+    public long reconstructionNanos() {
+        return values[RECONSTRUCTION_NANOS];
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%d requêtes : %d nœuds explorés, %d arêtes relâchées, %d insertions, %d retraits (%d inutiles), "
+                        + "file de %d nœuds au plus, %d évaluations de l'heuristique, %d appels à la fonction "
+                        + "de coût, recherche %.3f ms, reconstruction %.3f ms",
+                queries(), settledNodes(), relaxedEdges(), heapPushes(), heapPops(), stalePops(), peakHeapSize(),
+                heuristicEvaluations(), costFunctionCalls(), searchNanos() / 1e6, reconstructionNanos() / 1e6);
+    }
+
+    /**
+     * Statistiques cumulées auxquelles plusieurs fils d'exécution ajoutent les leurs sans se synchroniser : chaque
+     * valeur est tenue par un LongAdder (ou un LongAccumulator pour la taille maximale de la file), dont les
+     * cellules sont réparties entre les fils selon la contention et non selon leur identité, de sorte que la
+     * mémoire occupée ne croît pas avec le nombre de fils ayant effectué des requêtes.
+     * <p>
+     * Les valeurs d'une recherche étant ajoutées une à une, une copie faite pendant un ajout peut n'en contenir
+     * qu'une partie, p. ex. compter la requête mais pas encore les nœuds qu'elle a explorés. Chaque valeur de la
+     * copie reste néanmoins exacte pour les ajouts qu'elle a vus.
+     */
+    static final class Accumulator {
+        private final LongAdder[] sums = new LongAdder[COUNT];
+        private final LongAccumulator peakHeapSize = new LongAccumulator(Math::max, 0);
+
+        Accumulator() {
+            for (int i = 0; i < COUNT; i++) {
+                if (i != PEAK_HEAP_SIZE) sums[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Ajoute les statistiques données à celles-ci
+         * @param that les statistiques à ajouter
+         */
+        void add(QueryStats that) {
+            for (int i = 0; i < COUNT; i++) {
+                if (i == PEAK_HEAP_SIZE) peakHeapSize.accumulate(that.values[i]);
+                else if (that.values[i] != 0) sums[i].add(that.values[i]);
+            }
+        }
+
+        /**
+         * Retourne une copie des statistiques cumulées
+         * @return une copie des statistiques cumulées
+         */
+        QueryStats snapshot() {
+            QueryStats snapshot = new QueryStats();
+            for (int i = 0; i < COUNT; i++)
+                snapshot.values[i] = i == PEAK_HEAP_SIZE ? peakHeapSize.get() : sums[i].sum();
+            return snapshot;
+        }
+    }
+
+    //==================================//
+
+    private static long combine(int index, long a, long b) {
+        return index == PEAK_HEAP_SIZE ? Math.max(a, b) : a + b;
+    }
+}
@@ -0,0 +1,31 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Représente l'ensemble des nœuds atteignables depuis un nœud d'origine pour un coût maximal donné, avec le coût
+ * minimal permettant d'atteindre chacun d'eux.
+ *
+ * @param originNodeId l'identité du nœud d'origine
+ * @param maxCost le coût maximal
+ * @param nodeIds l'identité de chaque nœud atteignable
+ * @param costs le coût minimal permettant d'atteindre chacun de ces nœuds, dans le même ordre
+ */
+public record Reachability(int originNodeId, float maxCost, int[] nodeIds, float[] costs) {
+
+    /**
+     * Vérifie que les deux tableaux ont la même taille
+     * @throws IllegalArgumentException si les deux tableaux n'ont pas la même taille
+     */
+    public Reachability {
+        Preconditions.checkArgument(nodeIds.length == costs.length);
+    }
+
+    /**
+     * Retourne le nombre de nœuds atteignables
+     * @return le nombre de nœuds atteignables
+     */
+    public int count() {
+        return nodeIds.length;
+    }
+}
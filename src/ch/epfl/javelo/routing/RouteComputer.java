@@ -3,10 +3,16 @@ package ch.epfl.javelo.routing;
 import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.data.Graph;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.PriorityQueue;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 /** Calcule l'itinéraire d'un ségment
  * @author valentin dupraz (315995)
@@ -14,12 +20,158 @@ import java.util.PriorityQueue;
  */
 public final class RouteComputer {
     private final static float UNREACHABLE = Float.NEGATIVE_INFINITY;
+    /* distance à vol d'oiseau (en m) en dessous de laquelle une requête est considérée comme courte */
+    private final static double SPARSE_QUERY_DISTANCE = 10_000;
+    private final static int HEAP_ARITY = 4;
+    /* nombre d'itérations de la recherche entre deux consultations du jeton d'annulation (puissance de deux) */
+    final static int CANCELLATION_CHECK_PERIOD = 256;
+    /* nombre de nœuds explorés entre deux lectures de l'horloge par une recherche à budget (puissance de deux) */
+    private final static int BUDGET_CHECK_PERIOD = 64;
+    /* sous-optimalité en dessous de laquelle une recherche anytime passe directement au poids 1 */
+    private final static float MIN_ANYTIME_EPSILON = 0.01f;
+    /* exécute les recherches arrière des requêtes bidirectionnelles parallèles */
+    private final static ExecutorService BACKWARD_SEARCH_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "javelo-backward-search");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final Graph graph;
     private final CostFunction costFunction;
+    private final ContractionHierarchy hierarchy;
+    private final OverlayMetric overlay;
+    private final Landmarks landmarks;
+    private final CostTable costTable;
+    private final IntFunction<NodeHeap> heapFactory;
+    /* contextes de recherche réutilisés par chaque fil d'exécution d'une requête à l'autre */
+    private final ThreadLocal<SearchContext> contexts;
+    private final ThreadLocal<SearchContext> backwardContexts;
+    private final ThreadLocal<AnytimeState> anytimeStates;
+    /* statistiques cumulées des requêtes de tous les fils d'exécution */
+    private final QueryStats.Accumulator totalStats;
+
+    /* état d'une recherche anytime, propre à un fil d'exécution : les nœuds explorés pendant l'étape courante,
+       marqués du numéro de celle-ci pour ne pas avoir à effacer le tableau, et ceux dont le coût a diminué
+       après leur exploration */
+    private static final class AnytimeState {
+        private final int[] closedStep;
+        private int step;
+        private int[] inconsistent = new int[CANCELLATION_CHECK_PERIOD];
+        private int inconsistentCount;
+
+        private AnytimeState(int nodeCount) {
+            closedStep = new int[nodeCount];
+        }
+
+        private void nextStep() {
+            if (++step == Integer.MAX_VALUE) {
+                Arrays.fill(closedStep, 0);
+                step = 1;
+            }
+            inconsistentCount = 0;
+        }
+
+        private void close(int nodeId) {
+            closedStep[nodeId] = step;
+        }
+
+        private boolean isClosed(int nodeId) {
+            return closedStep[nodeId] == step;
+        }
+
+        private void addInconsistent(int nodeId) {
+            if (inconsistentCount == inconsistent.length)
+                inconsistent = Arrays.copyOf(inconsistent, 2 * inconsistentCount);
+            inconsistent[inconsistentCount++] = nodeId;
+        }
+    }
 
     public RouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, null);
+    }
+
+    /**
+     * Construit un calculateur d'itinéraire qui, si hierarchy n'est pas null, répond aux requêtes au moyen de
+     * cette hiérarchie de contraction plutôt que par une recherche A* sur la totalité du graphe
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @param hierarchy la hiérarchie de contraction construite pour graph et costFunction, ou null
+     * @throws IllegalArgumentException si la hiérarchie n'a pas été construite pour ce graphe et cette fonction de
+     * coût
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy) {
+        this(graph, costFunction, hierarchy, nodeCount -> new DaryHeap(nodeCount, HEAP_ARITY));
+    }
+
+    /**
+     * Construit un calculateur d'itinéraire dont les files de priorité sont créées par heapFactory, ce qui
+     * permet de comparer différentes implémentations de NodeHeap
+     * @param graph le graphe
+     * @param costFunction la fonction de coût
+     * @param hierarchy la hiérarchie de contraction construite pour graph et costFunction, ou null
+     * @param heapFactory fonction retournant une file de priorité vide pour le nombre de nœuds donné
+     * @throws IllegalArgumentException si la hiérarchie n'a pas été construite pour ce graphe et cette fonction de
+     * coût
+     */
+    public RouteComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy,
+                         IntFunction<NodeHeap> heapFactory) {
+        this(graph, costFunction, hierarchy, null, null, null, heapFactory);
+    }
+
+    private RouteComputer(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy,
+                          OverlayMetric overlay, Landmarks landmarks, CostTable costTable,
+                          IntFunction<NodeHeap> heapFactory) {
+        Preconditions.checkArgument(hierarchy == null || hierarchy.matches(graph, costFunction));
         this.graph = graph;
         this.costFunction = costFunction;
+        this.hierarchy = hierarchy;
+        this.overlay = overlay;
+        this.landmarks = landmarks;
+        this.costTable = costTable;
+        this.heapFactory = heapFactory;
+        int nodeCount = graph.nodeCount();
+        this.contexts = ThreadLocal.withInitial(this::newContext);
+        this.backwardContexts = ThreadLocal.withInitial(this::newContext);
+        this.anytimeStates = ThreadLocal.withInitial(() -> new AnytimeState(nodeCount));
+        this.totalStats = new QueryStats.Accumulator();
+    }
+
+    /**
+     * Retourne un calculateur d'itinéraire identique à celui-ci, mais dont la recherche A* utilise, en plus de la
+     * distance à vol d'oiseau, la borne inférieure donnée par les points de repère (heuristique ALT)
+     * @param landmarks les points de repère calculés pour le graphe et la fonction de coût de ce calculateur
+     * @return un calculateur d'itinéraire utilisant les points de repère donnés
+     * @throws IllegalArgumentException si les points de repère n'ont pas été calculés pour ce graphe et cette
+     * fonction de coût
+     */
+    public RouteComputer withLandmarks(Landmarks landmarks) {
+        Preconditions.checkArgument(landmarks.matches(graph, costFunction));
+        return new RouteComputer(graph, costFunction, hierarchy, overlay, landmarks, costTable, heapFactory);
+    }
+
+    /**
+     * Retourne un calculateur d'itinéraire identique à celui-ci, mais qui lit le coût des arêtes dans la table
+     * donnée plutôt que d'évaluer la fonction de coût à chaque relâchement
+     * @param costTable la table des coûts construite pour le graphe et la fonction de coût de ce calculateur
+     * @return un calculateur d'itinéraire utilisant la table donnée
+     * @throws IllegalArgumentException si la table n'a pas été construite pour ce graphe et cette fonction de coût
+     */
+    public RouteComputer withCostTable(CostTable costTable) {
+        Preconditions.checkArgument(costTable.matches(graph, costFunction));
+        return new RouteComputer(graph, costFunction, hierarchy, overlay, landmarks, costTable, heapFactory);
+    }
+
+    /**
+     * Retourne un calculateur d'itinéraire identique à celui-ci, mais qui, en l'absence de hiérarchie de
+     * contraction, répond aux requêtes au moyen du recouvrement multiniveau donné. Contrairement à une hiérarchie,
+     * un recouvrement se personnalise en quelques secondes pour une nouvelle fonction de coût.
+     * @param overlay le recouvrement personnalisé pour le graphe et la fonction de coût de ce calculateur
+     * @return un calculateur d'itinéraire utilisant le recouvrement donné
+     * @throws IllegalArgumentException si le recouvrement n'a pas été construit pour ce graphe et cette fonction de
+     * coût, ou si le graphe ne dispose pas de son index inverse des arêtes
+     */
+    public RouteComputer withOverlay(OverlayMetric overlay) {
+        Preconditions.checkArgument(overlay.matches(graph, costFunction) && graph.hasInEdges());
+        return new RouteComputer(graph, costFunction, hierarchy, overlay, landmarks, costTable, heapFactory);
     }
 
     /**
@@ -30,80 +182,527 @@ public final class RouteComputer {
      * constructeur ou null si aucun itinéraire n'existe
      */
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
-        Preconditions.checkArgument(startNodeId != endNodeId);
+        return bestRouteBetween(startNodeId, endNodeId, CancellationToken.NONE);
+    }
 
-        /* contient à la fois l'identité d'un nœud et sa distance. */
-        record WeightedNode(int nodeId, float distance) implements Comparable<WeightedNode> {
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
-            }
+    /**
+     * Retourne un itinéraire de coût total minimal allant de startNodeId à endNodeId, comme bestRouteBetween,
+     * en interrompant la recherche A* dès que le jeton donné est annulé. Une requête répondue au moyen de la
+     * hiérarchie de contraction ou du recouvrement multiniveau, toujours brève, n'est pas interrompue.
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param token le jeton d'annulation de la recherche
+     * @return un itinéraire de coût total minimal allant de startNodeId à endNodeId, ou null si aucun itinéraire
+     * n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé pendant la recherche
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, CancellationToken token) {
+        return bestRouteBetween(startNodeId, endNodeId, token, null);
+    }
+
+    /**
+     * Retourne un itinéraire de coût total minimal allant de startNodeId à endNodeId, comme bestRouteBetween, et
+     * ajoute les statistiques de la recherche à stats s'il n'est pas null. Ces statistiques sont aussi cumulées,
+     * quel que soit stats, dans les compteurs de ce calculateur (voir statistics). Pour une requête
+     * répondue au moyen de la hiérarchie de contraction ou du recouvrement multiniveau, les nœuds, arcs et
+     * opérations comptés sont ceux de ses deux recherches, et la taille maximale de la file celle des deux files
+     * réunies.
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param token le jeton d'annulation de la recherche
+     * @param stats les statistiques auxquelles ajouter celles de la recherche, ou null
+     * @return un itinéraire de coût total minimal allant de startNodeId à endNodeId, ou null si aucun itinéraire
+     * n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé pendant la recherche
+     */
+    public Route bestRouteBetween(int startNodeId, int endNodeId, CancellationToken token, QueryStats stats) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        if (hierarchy != null || overlay != null) {
+            QueryStats query = new QueryStats();
+            Route route = hierarchy != null
+                    ? hierarchy.bestRouteBetween(graph, startNodeId, endNodeId, contexts.get(),
+                            backwardContexts.get(), query)
+                    : overlay.bestRouteBetween(startNodeId, endNodeId, contexts.get(), backwardContexts.get(), query);
+            record(stats, query);
+            return route;
         }
+        long startTime = System.nanoTime();
 
         /* initialisation des structures de données */
-        PriorityQueue<WeightedNode> exploring = new PriorityQueue<>();
-        exploring.add(new WeightedNode(startNodeId, 0));
-        int nbNodes = graph.nodeCount();
-        float[] distance = new float[nbNodes];
-        Arrays.fill(distance, Float.POSITIVE_INFINITY);
-        distance[startNodeId] = 0f;
-        int[] predecessor = new int[nbNodes];
-        
-        while (!exploring.isEmpty()) {
-            WeightedNode w = exploring.remove();
-            int currentNode = w.nodeId();
-            if (distance[currentNode] != UNREACHABLE) {
-
-                /* si le plus court chemin a été trouvé : reconstruction de l'itinéraire à partir des noeuds */
+        SearchContext context = contexts.get();
+        context.reset(isShortQuery(startNodeId, endNodeId));
+        NodeHeap exploring = context.heap();
+        Landmarks.Heuristic heuristic = landmarks == null ? null : landmarks.towards(startNodeId, endNodeId);
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        exploring.insertOrDecrease(startNodeId, 0);
+        context.setDistance(startNodeId, 0f);
+
+        /* compteurs de la recherche, tenus dans des variables locales et publiés une seule fois, à la fin */
+        int settled = 0, relaxed = 0, pushes = 1, pops = 0, stalePops = 0, peakSize = 1, heuristics = 0;
+        long searchEnd = 0;
+        try {
+            for (int iteration = 0; !exploring.isEmpty(); iteration++) {
+                /* le jeton, volatile, n'est consulté qu'une fois toutes les CANCELLATION_CHECK_PERIOD itérations */
+                if ((iteration & (CANCELLATION_CHECK_PERIOD - 1)) == 0) token.throwIfCancelled();
+                int currentNode = exploring.removeMin();
+                pops++;
+
+                /* si le plus court chemin a été trouvé : reconstruction de l'itinéraire à partir des arêtes */
                 if (currentNode == endNodeId) {
-                    ArrayList<Edge> edges = new ArrayList<>();
-
-                    while (currentNode != startNodeId) {
-                        int predecesseur = predecessor[currentNode];
-                        int outEdges = graph.nodeOutDegree(predecesseur);
-                        for (int i = 0; i < outEdges; i++) {
-                            if (graph.edgeTargetNodeId(graph.nodeOutEdgeId(predecesseur, i)) == currentNode) {
-                                edges
-                                    .add(Edge
-                                        .of(graph, graph.nodeOutEdgeId(predecesseur, i), predecesseur, currentNode));
-                                break;
-                            }
-                        }
-                        currentNode = predecessor[currentNode];
-                    }
-                    Collections.reverse(edges);
-                    return new SingleRoute(edges);
+                    searchEnd = System.nanoTime();
+                    return new CompactRoute(graph, startNodeId, pathTo(context, startNodeId, endNodeId));
                 }
 
+                float currentDistance = context.distance(currentNode);
+                /* nœud déjà exploré, que seule une file sans diminution de priorité peut retourner à nouveau */
+                if (currentDistance == UNREACHABLE) {
+                    stalePops++;
+                    continue;
+                }
+                settled++;
                 /* nombre d'arêtes sortant de node */
                 int outEdges = graph.nodeOutDegree(currentNode);
-                
+
                 for (int i = 0; i < outEdges; i++) {
                     /* l'identitée de l'arrête actuelle */
                     int currentEdge = graph.nodeOutEdgeId(currentNode, i);
                     /* le nœud d'arrivée de l'arrête actuelle */
                     int currentEdgeOut = graph.edgeTargetNodeId(currentEdge);
 
-                    if(distance[currentEdgeOut] == UNREACHABLE){
+                    float previous = context.distance(currentEdgeOut);
+                    if (previous == UNREACHABLE) {
                         continue;
                     }
 
-                    double cost = costFunction.costFactor(currentEdgeOut, currentEdge);
-                    float dist = (float) (distance[currentNode] + cost * graph.edgeLength(currentEdge));
-                    float volOiseau = (float) graph
-                            .nodePoint(currentEdgeOut)
-                            .distanceTo(graph
-                                    .nodePoint(endNodeId));
-
-                    if (dist < distance[currentEdgeOut]) {
-                        distance[currentEdgeOut] = dist;
-                        predecessor[currentEdgeOut] = currentNode;
-                        exploring.add(new WeightedNode(currentEdgeOut, dist + volOiseau));
+                    float dist = (float) (currentDistance + edgeCost(currentNode, currentEdge));
+                    relaxed++;
+
+                    if (dist < previous) {
+                        float volOiseau = (float) Math.sqrt(graph.nodeSquaredDistanceTo(currentEdgeOut, endE, endN));
+                        /* le maximum de deux bornes inférieures cohérentes reste une borne cohérente */
+                        if (heuristic != null)
+                            volOiseau = Math.max(volOiseau, heuristic.lowerBound(currentEdgeOut));
+                        heuristics++;
+                        context.set(currentEdgeOut, dist, currentNode, currentEdge);
+                        /* la distance à vol d'oiseau étant fixe, la priorité ne fait que diminuer */
+                        exploring.insertOrDecrease(currentEdgeOut, dist + volOiseau);
+                        pushes++;
                     }
                 }
-                distance[currentNode] = UNREACHABLE;
+                peakSize = Math.max(peakSize, exploring.size());
+                context.setDistance(currentNode, UNREACHABLE);
             }
-        }
             return null;
+        } finally {
+            /* une recherche interrompue ou infructueuse n'a pas de reconstruction : toute sa durée est comptée
+               comme recherche */
+            long endTime = System.nanoTime();
+            if (searchEnd == 0) searchEnd = endTime;
+            record(stats, new QueryStats(settled, relaxed, pushes, pops, stalePops, peakSize, heuristics,
+                    costTable == null ? relaxed : 0, searchEnd - startTime, endTime - searchEnd));
+        }
+    }
+
+    /**
+     * Retourne un itinéraire allant de startNodeId à endNodeId, comme boundedRouteBetween(startNodeId, endNodeId,
+     * epsilon, budget, token), avec un jeton qui n'est jamais annulé
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param epsilon la sous-optimalité relative tolérée pour le premier itinéraire
+     * @param budget le budget de la recherche
+     * @return le meilleur itinéraire trouvé et sa borne de sous-optimalité, ou null si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques ou si epsilon est négatif
+     */
+    public BoundedRoute boundedRouteBetween(int startNodeId, int endNodeId, double epsilon, SearchBudget budget) {
+        return boundedRouteBetween(startNodeId, endNodeId, epsilon, budget, CancellationToken.NONE);
+    }
+
+    /**
+     * Retourne le meilleur itinéraire allant de startNodeId à endNodeId trouvé dans le budget donné, calculé par
+     * une recherche A* pondérée « anytime » (ARA*) : l'heuristique est d'abord multipliée par 1 + epsilon, ce qui
+     * dirige la recherche vers la destination et donne rapidement un premier itinéraire de coût au plus (1 +
+     * epsilon) fois le coût minimal. Tant que le budget le permet, la recherche se poursuit ensuite par étapes,
+     * avec un poids chaque fois plus faible jusqu'au poids 1, qui donne un itinéraire optimal. Chaque étape
+     * reprend la file de priorité de la précédente, dont les priorités sont recalculées avec le nouveau poids;
+     * un nœud dont le coût diminue après avoir été exploré au cours d'une étape n'est pas exploré à nouveau
+     * pendant celle-ci, mais mis de côté puis remis dans la file au début de l'étape suivante.
+     * <p>
+     * La plus petite somme du coût et de l'heuristique (non pondérée) des nœuds de la file et de ceux mis de côté
+     * minore le coût minimal. La borne de sous-optimalité retournée est le plus petit des deux majorants : le
+     * poids de la dernière étape terminée, et le coût de l'itinéraire divisé par ce minorant. Lorsque le budget
+     * est épuisé, le meilleur itinéraire trouvé jusque-là est retourné avec cette borne, ou un résultat sans
+     * itinéraire si aucun n'a encore été trouvé.
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param epsilon la sous-optimalité relative tolérée pour le premier itinéraire
+     * @param budget le budget de la recherche
+     * @param token le jeton d'annulation de la recherche
+     * @return le meilleur itinéraire trouvé et sa borne de sous-optimalité, ou null si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques ou si epsilon est négatif
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé pendant la recherche
+     */
+    public BoundedRoute boundedRouteBetween(int startNodeId, int endNodeId, double epsilon, SearchBudget budget,
+                                            CancellationToken token) {
+        Preconditions.checkArgument(startNodeId != endNodeId && epsilon >= 0);
+        long startTime = System.nanoTime();
+        float weight = (float) (1 + epsilon);
+        /* borne de sous-optimalité garantie par la dernière étape terminée */
+        float completedWeight = Float.POSITIVE_INFINITY;
+
+        SearchContext context = contexts.get();
+        context.reset(isShortQuery(startNodeId, endNodeId));
+        AnytimeState state = anytimeStates.get();
+        state.nextStep();
+        NodeHeap exploring = context.heap();
+        Landmarks.Heuristic heuristic = landmarks == null ? null : landmarks.towards(startNodeId, endNodeId);
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        exploring.insertOrDecrease(startNodeId, 0);
+        context.setDistance(startNodeId, 0f);
+
+        for (int settled = 0; ; settled++) {
+            if ((settled & (CANCELLATION_CHECK_PERIOD - 1)) == 0) token.throwIfCancelled();
+            boolean checkClock = (settled & (BUDGET_CHECK_PERIOD - 1)) == 0;
+            if (settled >= budget.maxSettledNodes() || checkClock && System.nanoTime() - startTime > budget.maxNanos())
+                return bestRouteSoFar(context, state, startNodeId, endNodeId, completedWeight, heuristic);
+
+            float endDistance = context.distance(endNodeId);
+            if (exploring.isEmpty() || exploring.minPriority() >= endDistance) {
+                /* fin d'une étape : plus aucun nœud ne peut améliorer l'itinéraire pour le poids courant, ou,
+                   si l'arrivée n'a pas été atteinte, seuls les nœuds mis de côté peuvent encore l'atteindre */
+                if (endDistance == Float.POSITIVE_INFINITY) {
+                    if (state.inconsistentCount == 0) return null;
+                } else {
+                    completedWeight = weight;
+                    if (weight == 1 || suboptimality(context, state, endNodeId, completedWeight, heuristic) == 1)
+                        return bestRouteSoFar(context, state, startNodeId, endNodeId, 1, heuristic);
+                    float nextWeight = 1 + (weight - 1) / 2;
+                    weight = nextWeight - 1 < MIN_ANYTIME_EPSILON ? 1 : nextWeight;
+                }
+                float w = weight;
+                exploring.reprioritize(node -> context.distance(node) + w * lowerBound(node, endE, endN, heuristic));
+                for (int i = 0; i < state.inconsistentCount; i++) {
+                    int node = state.inconsistent[i];
+                    exploring.insertOrDecrease(node, context.distance(node) + w * lowerBound(node, endE, endN,
+                            heuristic));
+                }
+                state.nextStep();
+                continue;
+            }
+
+            int currentNode = exploring.removeMin();
+            state.close(currentNode);
+            float currentDistance = context.distance(currentNode);
+            for (int i = 0; i < graph.nodeOutDegree(currentNode); i++) {
+                int edgeId = graph.nodeOutEdgeId(currentNode, i);
+                int next = graph.edgeTargetNodeId(edgeId);
+                float dist = (float) (currentDistance + edgeCost(currentNode, edgeId));
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, currentNode, edgeId);
+                    if (state.isClosed(next)) state.addInconsistent(next);
+                    else exploring.insertOrDecrease(next, dist + weight * lowerBound(next, endE, endN, heuristic));
+                }
+            }
+        }
+    }
+
+    /**
+     * Retourne un itinéraire de coût minimal allant de startNodeId à endNodeId, calculé par une recherche A*
+     * bidirectionnelle, ou null si aucun itinéraire n'existe. Le graphe doit disposer de son index inverse
+     * des arêtes (voir GraphInEdges).
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param parallel vrai si les recherches avant et arrière doivent s'exécuter sur deux fils d'exécution
+     * @return un itinéraire de coût minimal allant de startNodeId à endNodeId, ou null si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques ou si l'index inverse n'est pas disponible
+     * @throws CancellationException si le fil appelant est interrompu pendant une recherche parallèle
+     */
+    public Route bidirectionalRouteBetween(int startNodeId, int endNodeId, boolean parallel) {
+        Preconditions.checkArgument(startNodeId != endNodeId && graph.hasInEdges());
+
+        BidirectionalSearch search = new BidirectionalSearch(graph, costFunction, costTable, startNodeId, endNodeId,
+                contexts.get(), backwardContexts.get(), parallel);
+        int[] edgeIds = parallel ? search.searchInParallel(BACKWARD_SEARCH_EXECUTOR) : search.search();
+        return edgeIds == null ? null : new CompactRoute(graph, startNodeId, edgeIds);
+    }
+
+    /**
+     * Retourne au plus maxCount itinéraires allant de startNodeId à endNodeId, triés par coût croissant :
+     * l'itinéraire de coût minimal, puis des itinéraires alternatifs suffisamment différents de lui et les uns
+     * des autres, de coût raisonnable et localement optimaux (voir AlternativeRouteSearch). Les deux arbres de
+     * recherche nécessaires sont construits une seule fois, en parallèle. Le graphe doit disposer de son index
+     * inverse des arêtes.
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param maxCount le nombre maximal d'itinéraires
+     * @return les itinéraires triés par coût croissant, vide si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques, si maxCount n'est pas strictement
+     * positif ou si l'index inverse n'est pas disponible
+     */
+    public List<Route> alternativeRoutesBetween(int startNodeId, int endNodeId, int maxCount) {
+        return alternativeRoutesBetween(startNodeId, endNodeId, maxCount, CancellationToken.NONE);
+    }
+
+    /**
+     * Retourne au plus maxCount itinéraires allant de startNodeId à endNodeId, comme alternativeRoutesBetween, en
+     * interrompant les recherches dès que le jeton donné est annulé
+     * @param startNodeId le noeud de départ
+     * @param endNodeId le noeud d'arrivé
+     * @param maxCount le nombre maximal d'itinéraires
+     * @param token le jeton d'annulation des recherches
+     * @return les itinéraires triés par coût croissant, vide si aucun itinéraire n'existe
+     * @throws IllegalArgumentException si les deux nœuds sont identiques, si maxCount n'est pas strictement
+     * positif ou si l'index inverse n'est pas disponible
+     * @throws CancellationException si le jeton est annulé ou si le fil appelant est interrompu pendant les
+     * recherches
+     */
+    public List<Route> alternativeRoutesBetween(int startNodeId, int endNodeId, int maxCount,
+                                                CancellationToken token) {
+        Preconditions.checkArgument(startNodeId != endNodeId && maxCount > 0 && graph.hasInEdges());
+        AlternativeRouteSearch search = new AlternativeRouteSearch(this, graph, startNodeId, endNodeId,
+                contexts.get(), backwardContexts.get(), isShortQuery(startNodeId, endNodeId), token);
+        return search.search(maxCount, BACKWARD_SEARCH_EXECUTOR);
+    }
+
+    /**
+     * Retourne un nouvel arbre de recherche contenant les itinéraires partant du nœud donné, qui peut être
+     * réutilisé pour plusieurs destinations successives, puis réenraciné (voir SearchTree.reroot)
+     * @param rootNodeId le nœud de départ des itinéraires
+     * @return un nouvel arbre de recherche avant
+     */
+    public SearchTree searchTreeFrom(int rootNodeId) {
+        return new SearchTree(this, graph, rootNodeId, true, newContext());
+    }
+
+    /**
+     * Retourne un nouvel arbre de recherche contenant les itinéraires arrivant au nœud donné, qui peut être
+     * réutilisé pour plusieurs départs successifs, puis réenraciné (voir SearchTree.reroot). Le graphe doit
+     * disposer de son index inverse des arêtes.
+     * @param rootNodeId le nœud d'arrivée des itinéraires
+     * @return un nouvel arbre de recherche arrière
+     * @throws IllegalArgumentException si l'index inverse n'est pas disponible
+     */
+    public SearchTree searchTreeTo(int rootNodeId) {
+        Preconditions.checkArgument(graph.hasInEdges());
+        return new SearchTree(this, graph, rootNodeId, false, newContext());
+    }
+
+    /**
+     * Retourne vrai ssi les recherches arrière (searchTreeTo, bidirectionalRouteBetween) sont possibles, c.-à-d.
+     * si le graphe dispose de son index inverse des arêtes
+     * @return vrai ssi les recherches arrière sont possibles
+     */
+    public boolean supportsBackwardSearch() {
+        return graph.hasInEdges();
+    }
+
+    /**
+     * Retourne vrai ssi bestRouteBetween répond au moyen d'une hiérarchie de contraction ou d'un recouvrement
+     * multiniveau, auquel cas chaque requête est assez rapide pour qu'il soit inutile de réutiliser des arbres
+     * de recherche
+     * @return vrai ssi ce calculateur utilise une hiérarchie de contraction ou un recouvrement
+     */
+    public boolean usesHierarchy() {
+        return hierarchy != null || overlay != null;
+    }
+
+    /**
+     * Retourne les statistiques cumulées de toutes les requêtes bestRouteBetween adressées à ce calculateur,
+     * par tous les fils d'exécution. Les compteurs étant répartis en cellules (voir QueryStats.Accumulator), les
+     * recherches ne se synchronisent ni entre elles ni avec cette méthode, qui peut donc être appelée à tout
+     * moment, p. ex. par l'interface graphique ou un serveur. Une requête en cours n'est comptée qu'une fois
+     * terminée, et celle qui se termine pendant l'appel peut n'être comptée qu'en partie.
+     * @return une copie des statistiques cumulées
+     */
+    public QueryStats statistics() {
+        return totalStats.snapshot();
+    }
+
+    /**
+     * Retourne la matrice des itinéraires de coût minimal reliant chaque nœud de sourceNodeIds à chaque nœud de
+     * targetNodeIds. Chaque ligne est calculée par une seule recherche de Dijkstra partant du nœud de départ et
+     * arrêtée dès que tous les nœuds d'arrivée sont atteints; les lignes sont calculées en parallèle, sur le
+     * ForkJoinPool commun.
+     * @param sourceNodeIds les nœuds de départ
+     * @param targetNodeIds les nœuds d'arrivée
+     * @param withRoutes vrai si les itinéraires eux-mêmes doivent être construits, en plus de leurs coût,
+     *                   longueur et dénivelé
+     * @return la matrice des itinéraires
+     */
+    public RouteMatrix routeMatrix(int[] sourceNodeIds, int[] targetNodeIds, boolean withRoutes) {
+        int[] sources = sourceNodeIds.clone();
+        int[] targets = targetNodeIds.clone();
+        int size = sources.length * targets.length;
+        float[] costs = new float[size];
+        float[] lengths = new float[size];
+        float[] elevationGains = new float[size];
+        Route[] routes = withRoutes ? new Route[size] : null;
+
+        /* nœuds d'arrivée distincts, triés pour être reconnus par recherche dichotomique */
+        int[] distinctTargets = IntStream.of(targets).sorted().distinct().toArray();
+        IntStream.range(0, sources.length).parallel().forEach(row -> {
+            SearchContext context = contexts.get();
+            searchTargets(context, sources[row], distinctTargets);
+            for (int column = 0; column < targets.length; column++) {
+                int index = row * targets.length + column;
+                fillMatrixCell(context, sources[row], targets[column], index, costs, lengths, elevationGains, routes);
+            }
+        });
+        return new RouteMatrix(sources, targets, costs, lengths, elevationGains, routes);
+    }
+
+    //==================================//
+
+    /* Nouveau contexte de recherche, dont la file de priorité est créée par heapFactory */
+    private SearchContext newContext() {
+        int nodeCount = graph.nodeCount();
+        return new SearchContext(nodeCount, heapFactory.apply(nodeCount));
+    }
+
+    /* Recherche de Dijkstra depuis source, arrêtée lorsque tous les nœuds d'arrivée (triés) ont été atteints */
+    private void searchTargets(SearchContext context, int source, int[] targets) {
+        context.reset(false);
+        NodeHeap exploring = context.heap();
+        exploring.insertOrDecrease(source, 0);
+        context.setDistance(source, 0f);
+        int remaining = targets.length;
+
+        while (!exploring.isEmpty() && remaining > 0) {
+            int node = exploring.removeMin();
+            if (Arrays.binarySearch(targets, node) >= 0) remaining--;
+
+            /* sans heuristique, un nœud retiré de la file ne peut plus être amélioré : sa distance reste valable */
+            float distance = context.distance(node);
+            for (int i = 0; i < graph.nodeOutDegree(node); i++) {
+                int edgeId = graph.nodeOutEdgeId(node, i);
+                int next = graph.edgeTargetNodeId(edgeId);
+                float dist = (float) (distance + edgeCost(node, edgeId));
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, node, edgeId);
+                    exploring.insertOrDecrease(next, dist);
+                }
+            }
+        }
+    }
+
+    /* Remplit la case d'index donné à partir de l'arbre de recherche du contexte */
+    private void fillMatrixCell(SearchContext context, int source, int target, int index,
+                                float[] costs, float[] lengths, float[] elevationGains, Route[] routes) {
+        float cost = context.distance(target);
+        costs[index] = cost;
+        if (cost == Float.POSITIVE_INFINITY) {
+            lengths[index] = Float.POSITIVE_INFINITY;
+            elevationGains[index] = Float.POSITIVE_INFINITY;
+            return;
+        }
+
+        double length = 0;
+        double elevationGain = 0;
+        for (int node = target; node != source; node = context.predecessorNode(node)) {
+            int edgeId = context.predecessorEdge(node);
+            length += graph.edgeLength(edgeId);
+            elevationGain += graph.edgeElevationGain(edgeId);
+        }
+        lengths[index] = (float) length;
+        elevationGains[index] = (float) elevationGain;
+        if (routes != null && source != target)
+            routes[index] = new CompactRoute(graph, source, pathTo(context, source, target));
+    }
+
+
+    /**
+     * Retourne les identités des arêtes du chemin allant de source à target dans l'arbre de recherche du
+     * contexte donné, dans l'ordre de parcours
+     */
+    static int[] pathTo(SearchContext context, int source, int target) {
+        int count = 0;
+        for (int node = target; node != source; node = context.predecessorNode(node)) count++;
+        int[] edgeIds = new int[count];
+        for (int node = target; node != source; node = context.predecessorNode(node))
+            edgeIds[--count] = context.predecessorEdge(node);
+        return edgeIds;
+    }
+
+    /**
+     * Attend la fin d'une recherche exécutée sur un autre fil d'exécution et écrivant dans un contexte du fil
+     * appelant. Si celui-ci est interrompu pendant l'attente, la recherche est arrêtée au moyen de l'action donnée
+     * et sa fin attendue, pour que le contexte puisse être réutilisé, puis une CancellationException est levée,
+     * l'interruption du fil étant rétablie
+     */
+    static void awaitSearch(Future<?> search, Runnable stop) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    search.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    stop.run();
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (interrupted) throw new CancellationException("recherche interrompue");
+    }
+
+    /* Minorant cohérent du coût du nœud donné à la destination : le plus grand de la distance à vol d'oiseau et,
+       si des points de repère sont disponibles, du minorant qu'ils fournissent */
+    private float lowerBound(int nodeId, double endE, double endN, Landmarks.Heuristic heuristic) {
+        float lowerBound = (float) Math.sqrt(graph.nodeSquaredDistanceTo(nodeId, endE, endN));
+        return heuristic == null ? lowerBound : Math.max(lowerBound, heuristic.lowerBound(nodeId));
+    }
+
+    /* Meilleur itinéraire trouvé par boundedRouteBetween et sa borne de sous-optimalité */
+    private BoundedRoute bestRouteSoFar(SearchContext context, AnytimeState state, int startNodeId, int endNodeId,
+                                        float completedWeight, Landmarks.Heuristic heuristic) {
+        float cost = context.distance(endNodeId);
+        if (cost == Float.POSITIVE_INFINITY)
+            return new BoundedRoute(null, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+        Route route = new CompactRoute(graph, startNodeId, pathTo(context, startNodeId, endNodeId));
+        return new BoundedRoute(route, cost, suboptimality(context, state, endNodeId, completedWeight, heuristic));
+    }
+
+    /* Borne de sous-optimalité du meilleur itinéraire trouvé par boundedRouteBetween : le poids de la dernière
+       étape terminée ou, si elle est meilleure, le quotient du coût de l'itinéraire par le minorant du coût
+       minimal que donnent les nœuds de la file et ceux mis de côté */
+    private double suboptimality(SearchContext context, AnytimeState state, int endNodeId, float completedWeight,
+                                 Landmarks.Heuristic heuristic) {
+        float cost = context.distance(endNodeId);
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
+        double[] lowerBound = {cost};
+        IntConsumer bound = node -> lowerBound[0] = Math.min(lowerBound[0],
+                context.distance(node) + lowerBound(node, endE, endN, heuristic));
+        context.heap().forEach(bound);
+        for (int i = 0; i < state.inconsistentCount; i++) bound.accept(state.inconsistent[i]);
+        double suboptimality = lowerBound[0] > 0 ? Math.min(completedWeight, cost / lowerBound[0]) : completedWeight;
+        return Math.max(1, suboptimality);
+    }
+
+    /* Ajoute les statistiques d'une requête aux compteurs de ce calculateur et à stats, s'il y en a */
+    private void record(QueryStats stats, QueryStats query) {
+        totalStats.add(query);
+        if (stats != null) stats.add(query);
+    }
+
+    /* Coût de l'arête donnée, lu dans la table des coûts s'il y en a une */
+    double edgeCost(int nodeId, int edgeId) {
+        return costTable != null
+                ? costTable.cost(edgeId)
+                : costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId);
+    }
+
+    /* Vrai si les deux nœuds sont assez proches pour que la recherche commence en mode creux */
+    private boolean isShortQuery(int startNodeId, int endNodeId) {
+        return graph.nodeSquaredDistanceTo(startNodeId, graph.nodeE(endNodeId), graph.nodeN(endNodeId))
+                < SPARSE_QUERY_DISTANCE * SPARSE_QUERY_DISTANCE;
     }
 }
\ No newline at end of file
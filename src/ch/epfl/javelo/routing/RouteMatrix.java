@@ -0,0 +1,124 @@
+package ch.epfl.javelo.routing;
+
+import java.util.Objects;
+
+/**
+ * Représente la matrice des itinéraires de coût minimal reliant chacun des nœuds de départ à chacun des nœuds
+ * d'arrivée : coût, longueur et dénivelé positif de chaque itinéraire, et éventuellement l'itinéraire lui-même.
+ * Les valeurs d'un itinéraire inexistant sont infinies.
+ */
+public final class RouteMatrix {
+
+    private final int[] sourceNodeIds;
+    private final int[] targetNodeIds;
+    private final float[] costs;
+    private final float[] lengths;
+    private final float[] elevationGains;
+    private final Route[] routes;
+
+    RouteMatrix(int[] sourceNodeIds, int[] targetNodeIds, float[] costs, float[] lengths,
+                float[] elevationGains, Route[] routes) {
+        this.sourceNodeIds = sourceNodeIds;
+        this.targetNodeIds = targetNodeIds;
+        this.costs = costs;
+        this.lengths = lengths;
+        this.elevationGains = elevationGains;
+        this.routes = routes;
+    }
+
+    /**
+     * Retourne le nombre de nœuds de départ, c.-à-d. de lignes de la matrice
+     * @return le nombre de nœuds de départ
+     */
+    public int sourceCount() {
+        return sourceNodeIds.length;
+    }
+
+    /**
+     * Retourne le nombre de nœuds d'arrivée, c.-à-d. de colonnes de la matrice
+     * @return le nombre de nœuds d'arrivée
+     */
+    public int targetCount() {
+        return targetNodeIds.length;
+    }
+
+    /**
+     * Retourne l'identité du sourceIndex-ième nœud de départ
+     * @param sourceIndex index du nœud de départ
+     * @return l'identité du sourceIndex-ième nœud de départ
+     */
+    public int sourceNodeId(int sourceIndex) {
+        return sourceNodeIds[sourceIndex];
+    }
+
+    /**
+     * Retourne l'identité du targetIndex-ième nœud d'arrivée
+     * @param targetIndex index du nœud d'arrivée
+     * @return l'identité du targetIndex-ième nœud d'arrivée
+     */
+    public int targetNodeId(int targetIndex) {
+        return targetNodeIds[targetIndex];
+    }
+
+    /**
+     * Retourne le coût de l'itinéraire de coût minimal allant du sourceIndex-ième nœud de départ au
+     * targetIndex-ième nœud d'arrivée, infini s'il n'existe pas
+     * @param sourceIndex index du nœud de départ
+     * @param targetIndex index du nœud d'arrivée
+     * @return le coût de l'itinéraire
+     */
+    public float cost(int sourceIndex, int targetIndex) {
+        return costs[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Retourne la longueur, en mètres, de l'itinéraire de coût minimal allant du sourceIndex-ième nœud de départ
+     * au targetIndex-ième nœud d'arrivée, infinie s'il n'existe pas
+     * @param sourceIndex index du nœud de départ
+     * @param targetIndex index du nœud d'arrivée
+     * @return la longueur de l'itinéraire
+     */
+    public float length(int sourceIndex, int targetIndex) {
+        return lengths[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Retourne le dénivelé positif, en mètres, de l'itinéraire de coût minimal allant du sourceIndex-ième nœud
+     * de départ au targetIndex-ième nœud d'arrivée, infini s'il n'existe pas
+     * @param sourceIndex index du nœud de départ
+     * @param targetIndex index du nœud d'arrivée
+     * @return le dénivelé positif de l'itinéraire
+     */
+    public float elevationGain(int sourceIndex, int targetIndex) {
+        return elevationGains[index(sourceIndex, targetIndex)];
+    }
+
+    /**
+     * Retourne vrai ssi les itinéraires eux-mêmes ont été construits avec la matrice
+     * @return vrai ssi les itinéraires ont été construits
+     */
+    public boolean hasRoutes() {
+        return routes != null;
+    }
+
+    /**
+     * Retourne l'itinéraire de coût minimal allant du sourceIndex-ième nœud de départ au targetIndex-ième nœud
+     * d'arrivée, ou null s'il n'existe pas ou si les deux nœuds sont identiques
+     * @param sourceIndex index du nœud de départ
+     * @param targetIndex index du nœud d'arrivée
+     * @return l'itinéraire, ou null
+     * @throws IllegalStateException si les itinéraires n'ont pas été construits avec la matrice
+     */
+    public Route route(int sourceIndex, int targetIndex) {
+        if (routes == null) throw new IllegalStateException("itinéraires non construits");
+        return routes[index(sourceIndex, targetIndex)];
+    }
+
+    //==================================//
+
+    private int index(int sourceIndex, int targetIndex) {
+        Objects.checkIndex(sourceIndex, sourceNodeIds.length);
+        Objects.checkIndex(targetIndex, targetNodeIds.length);
+        return sourceIndex * targetNodeIds.length + targetIndex;
+    }
+}
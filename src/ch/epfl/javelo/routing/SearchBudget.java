@@ -0,0 +1,44 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * Représente le budget alloué à une recherche d'itinéraire : une durée maximale et un nombre maximal de nœuds
+ * explorés, la recherche s'arrêtant dès que l'une des deux limites est atteinte.
+ *
+ * @param maxNanos la durée maximale de la recherche, en nanosecondes
+ * @param maxSettledNodes le nombre maximal de nœuds explorés
+ */
+public record SearchBudget(long maxNanos, int maxSettledNodes) {
+
+    /* un budget illimité */
+    public static final SearchBudget UNLIMITED = new SearchBudget(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    /**
+     * Vérifie que les deux limites sont strictement positives
+     * @throws IllegalArgumentException si l'une des limites n'est pas strictement positive
+     */
+    public SearchBudget {
+        Preconditions.checkArgument(maxNanos > 0 && maxSettledNodes > 0);
+    }
+
+    /**
+     * Retourne un budget limité uniquement en durée
+     * @param millis la durée maximale, en millisecondes
+     * @return un budget limité uniquement en durée
+     * @throws IllegalArgumentException si la durée n'est pas strictement positive
+     */
+    public static SearchBudget ofMillis(long millis) {
+        return new SearchBudget(millis * 1_000_000, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retourne un budget limité uniquement en nombre de nœuds explorés
+     * @param maxSettledNodes le nombre maximal de nœuds explorés
+     * @return un budget limité uniquement en nombre de nœuds explorés
+     * @throws IllegalArgumentException si le nombre n'est pas strictement positif
+     */
+    public static SearchBudget ofSettledNodes(int maxSettledNodes) {
+        return new SearchBudget(Long.MAX_VALUE, maxSettledNodes);
+    }
+}
@@ -0,0 +1,314 @@
+package ch.epfl.javelo.routing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Représente l'état d'une recherche de plus court chemin : la distance et le prédécesseur (nœud et arête)
+ * de chaque nœud atteint, ainsi que la file de priorité des nœuds en cours d'exploration. Un contexte est
+ * destiné à être réutilisé d'une requête à l'autre par un même fil d'exécution, de sorte que le coût d'une
+ * requête dépende de l'espace de recherche et non de la taille du graphe.
+ * <p>
+ * En mode dense, les tableaux sont indexés par l'identité du nœud et chaque entrée porte un numéro de génération :
+ * une entrée dont la génération n'est pas celle de la requête courante est considérée comme absente, ce qui
+ * évite de réinitialiser les tableaux. En mode creux, les entrées sont stockées dans une table de hachage à
+ * adressage ouvert, qui passe automatiquement en mode dense si l'espace de recherche devient trop grand.
+ */
+public final class SearchContext {
+
+    private final static int NO_NODE = -1;
+    private final static int SPARSE_INITIAL_CAPACITY = 1 << 10;
+    /* fraction (en puissance de deux) du nombre de nœuds au-delà de laquelle le mode creux n'est plus rentable */
+    private final static int SPARSE_LIMIT_SHIFT = 4;
+    private final static int DEFAULT_HEAP_ARITY = 4;
+    private final static VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private final static VarHandle FLOATS = MethodHandles.arrayElementVarHandle(float[].class);
+
+    private final int nodeCount;
+    private final NodeHeap heap;
+    private boolean sparse;
+
+    /* mode dense, alloué à la première utilisation */
+    private int generation;
+    private int[] stamp;
+    private float[] denseDistance;
+    private int[] densePredecessorNode;
+    private int[] densePredecessorEdge;
+
+    /* mode creux */
+    private int[] keys;
+    private float[] sparseDistance;
+    private int[] sparsePredecessorNode;
+    private int[] sparsePredecessorEdge;
+    private int sparseSize;
+
+    /**
+     * Construit un contexte de recherche pour un graphe contenant le nombre de nœuds donné, dont la file
+     * de priorité est un tas 4-aire
+     * @param nodeCount le nombre de nœuds du graphe
+     */
+    public SearchContext(int nodeCount) {
+        this(nodeCount, new DaryHeap(nodeCount, DEFAULT_HEAP_ARITY));
+    }
+
+    /**
+     * Construit un contexte de recherche pour un graphe contenant le nombre de nœuds donné, utilisant la file
+     * de priorité donnée
+     * @param nodeCount le nombre de nœuds du graphe
+     * @param heap la file de priorité, qui doit accepter les identités de tous les nœuds du graphe
+     */
+    public SearchContext(int nodeCount, NodeHeap heap) {
+        this.nodeCount = nodeCount;
+        this.heap = heap;
+        this.keys = newKeys(SPARSE_INITIAL_CAPACITY);
+        this.sparseDistance = new float[SPARSE_INITIAL_CAPACITY];
+        this.sparsePredecessorNode = new int[SPARSE_INITIAL_CAPACITY];
+        this.sparsePredecessorEdge = new int[SPARSE_INITIAL_CAPACITY];
+    }
+
+    /**
+     * Prépare le contexte pour une nouvelle requête, en oubliant toutes les entrées de la précédente
+     * @param sparse vrai si la requête doit commencer en mode creux, ce qui convient aux requêtes courtes
+     */
+    public void reset(boolean sparse) {
+        /* une table agrandie par une grande requête ne doit pas ralentir la réinitialisation des suivantes */
+        if (keys.length > SPARSE_INITIAL_CAPACITY && 8 * sparseSize < keys.length) {
+            keys = newKeys(SPARSE_INITIAL_CAPACITY);
+            sparseDistance = new float[SPARSE_INITIAL_CAPACITY];
+            sparsePredecessorNode = new int[SPARSE_INITIAL_CAPACITY];
+            sparsePredecessorEdge = new int[SPARSE_INITIAL_CAPACITY];
+        } else if (sparseSize > 0) {
+            Arrays.fill(keys, NO_NODE);
+        }
+        sparseSize = 0;
+        this.sparse = sparse;
+        if (!sparse) nextGeneration();
+        heap.clear();
+    }
+
+    /**
+     * Retourne la file de priorité des nœuds en cours d'exploration
+     * @return la file de priorité des nœuds en cours d'exploration
+     */
+    public NodeHeap heap() {
+        return heap;
+    }
+
+    /**
+     * Retourne vrai ssi le contexte est en mode creux
+     * @return vrai ssi le contexte est en mode creux
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Retourne la distance associée au nœud donné, ou Float.POSITIVE_INFINITY s'il n'a pas encore été atteint
+     * @param nodeId identité du nœud
+     * @return la distance associée au nœud donné
+     */
+    public float distance(int nodeId) {
+        if (sparse) {
+            int slot = slotOf(nodeId);
+            return keys[slot] == nodeId ? sparseDistance[slot] : Float.POSITIVE_INFINITY;
+        }
+        return stamp[nodeId] == generation ? denseDistance[nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Retourne l'identité du nœud prédécesseur du nœud donné, ou -1 s'il n'en a pas
+     * @param nodeId identité du nœud
+     * @return l'identité du nœud prédécesseur du nœud donné
+     */
+    public int predecessorNode(int nodeId) {
+        if (sparse) {
+            int slot = slotOf(nodeId);
+            return keys[slot] == nodeId ? sparsePredecessorNode[slot] : NO_NODE;
+        }
+        return stamp[nodeId] == generation ? densePredecessorNode[nodeId] : NO_NODE;
+    }
+
+    /**
+     * Retourne l'identité de l'arête (ou de l'arc) par laquelle le nœud donné a été atteint, ou -1
+     * @param nodeId identité du nœud
+     * @return l'identité de l'arête par laquelle le nœud donné a été atteint
+     */
+    public int predecessorEdge(int nodeId) {
+        if (sparse) {
+            int slot = slotOf(nodeId);
+            return keys[slot] == nodeId ? sparsePredecessorEdge[slot] : NO_NODE;
+        }
+        return stamp[nodeId] == generation ? densePredecessorEdge[nodeId] : NO_NODE;
+    }
+
+    /**
+     * Associe au nœud donné une distance, sans changer son prédécesseur
+     * @param nodeId identité du nœud
+     * @param distance la distance
+     */
+    public void setDistance(int nodeId, float distance) {
+        if (sparse) {
+            int slot = slotFor(nodeId);
+            if (sparse) {
+                sparseDistance[slot] = distance;
+                return;
+            }
+        }
+        denseSlotFor(nodeId);
+        denseDistance[nodeId] = distance;
+    }
+
+    /**
+     * Associe au nœud donné une distance ainsi que le nœud et l'arête par lesquels il a été atteint
+     * @param nodeId identité du nœud
+     * @param distance la distance
+     * @param predecessorNode identité du nœud prédécesseur
+     * @param predecessorEdge identité de l'arête (ou de l'arc) reliant le prédécesseur au nœud
+     */
+    public void set(int nodeId, float distance, int predecessorNode, int predecessorEdge) {
+        if (sparse) {
+            int slot = slotFor(nodeId);
+            if (sparse) {
+                sparseDistance[slot] = distance;
+                sparsePredecessorNode[slot] = predecessorNode;
+                sparsePredecessorEdge[slot] = predecessorEdge;
+                return;
+            }
+        }
+        denseSlotFor(nodeId);
+        denseDistance[nodeId] = distance;
+        densePredecessorNode[nodeId] = predecessorNode;
+        densePredecessorEdge[nodeId] = predecessorEdge;
+    }
+
+    /**
+     * Retourne la distance associée au nœud donné, comme distance(nodeId), mais en garantissant que les écritures
+     * faites par setShared depuis un autre fil d'exécution sont visibles; le contexte doit être en mode dense
+     * @param nodeId identité du nœud
+     * @return la distance associée au nœud donné
+     */
+    public float sharedDistance(int nodeId) {
+        assert !sparse;
+        return (int) INTS.getVolatile(stamp, nodeId) == generation
+                ? (float) FLOATS.getVolatile(denseDistance, nodeId)
+                : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Fait comme set, en rendant la nouvelle distance visible aux autres fils d'exécution qui la lisent au
+     * moyen de sharedDistance; le contexte doit être en mode dense
+     * @param nodeId identité du nœud
+     * @param distance la distance
+     * @param predecessorNode identité du nœud prédécesseur
+     * @param predecessorEdge identité de l'arête (ou de l'arc) reliant le prédécesseur au nœud
+     */
+    public void setShared(int nodeId, float distance, int predecessorNode, int predecessorEdge) {
+        assert !sparse;
+        densePredecessorNode[nodeId] = predecessorNode;
+        densePredecessorEdge[nodeId] = predecessorEdge;
+        FLOATS.setVolatile(denseDistance, nodeId, distance);
+        /* la génération est publiée après la distance, qui est donc visible dès que la génération l'est */
+        INTS.setVolatile(stamp, nodeId, generation);
+    }
+
+    //==================================//
+
+    private void nextGeneration() {
+        if (stamp == null) {
+            stamp = new int[nodeCount];
+            denseDistance = new float[nodeCount];
+            densePredecessorNode = new int[nodeCount];
+            densePredecessorEdge = new int[nodeCount];
+        }
+        generation++;
+        /* après un débordement, les anciennes générations pourraient réapparaître */
+        if (generation == 0) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    private void denseSlotFor(int nodeId) {
+        if (stamp[nodeId] != generation) {
+            stamp[nodeId] = generation;
+            densePredecessorNode[nodeId] = NO_NODE;
+            densePredecessorEdge[nodeId] = NO_NODE;
+        }
+    }
+
+    /* Retourne la case de la table contenant nodeId, ou la case vide où il devrait se trouver */
+    private int slotOf(int nodeId) {
+        int mask = keys.length - 1;
+        int slot = mix(nodeId) & mask;
+        while (keys[slot] != nodeId && keys[slot] != NO_NODE) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /* Retourne la case de nodeId en l'insérant si besoin; peut faire passer le contexte en mode dense */
+    private int slotFor(int nodeId) {
+        int slot = slotOf(nodeId);
+        if (keys[slot] == nodeId) return slot;
+
+        if (sparseSize + 1 > (nodeCount >> SPARSE_LIMIT_SHIFT)) {
+            toDense();
+            return NO_NODE;
+        }
+        if (2 * (sparseSize + 1) > keys.length) {
+            grow();
+            slot = slotOf(nodeId);
+        }
+        keys[slot] = nodeId;
+        sparseDistance[slot] = Float.POSITIVE_INFINITY;
+        sparsePredecessorNode[slot] = NO_NODE;
+        sparsePredecessorEdge[slot] = NO_NODE;
+        sparseSize++;
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        float[] oldDistance = sparseDistance;
+        int[] oldNode = sparsePredecessorNode;
+        int[] oldEdge = sparsePredecessorEdge;
+        int capacity = 2 * oldKeys.length;
+        keys = newKeys(capacity);
+        sparseDistance = new float[capacity];
+        sparsePredecessorNode = new int[capacity];
+        sparsePredecessorEdge = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == NO_NODE) continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            sparseDistance[slot] = oldDistance[i];
+            sparsePredecessorNode[slot] = oldNode[i];
+            sparsePredecessorEdge[slot] = oldEdge[i];
+        }
+    }
+
+    /* Copie les entrées de la table de hachage dans les tableaux denses et continue en mode dense */
+    private void toDense() {
+        nextGeneration();
+        for (int i = 0; i < keys.length; i++) {
+            int nodeId = keys[i];
+            if (nodeId == NO_NODE) continue;
+            stamp[nodeId] = generation;
+            denseDistance[nodeId] = sparseDistance[i];
+            densePredecessorNode[nodeId] = sparsePredecessorNode[i];
+            densePredecessorEdge[nodeId] = sparsePredecessorEdge[i];
+        }
+        sparse = false;
+    }
+
+    private static int[] newKeys(int capacity) {
+        int[] keys = new int[capacity];
+        Arrays.fill(keys, NO_NODE);
+        return keys;
+    }
+
+    /* Disperse les identités de nœuds consécutives dans la table */
+    private static int mix(int nodeId) {
+        int h = nodeId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,163 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+/**
+ * Représente un arbre de recherche A* enraciné en un nœud fixe, conservé d'une requête à l'autre : l'arbre avant
+ * contient les itinéraires partant de sa racine, l'arbre arrière (construit au moyen de l'index inverse des
+ * arêtes) ceux y arrivant.
+ * <p>
+ * L'heuristique (distance à vol d'oiseau) étant cohérente, le coût de chaque nœud déjà exploré est minimal quelle
+ * que soit la destination visée. Lorsque la destination change, seules les priorités des nœuds de la frontière
+ * sont recalculées, et la recherche reprend là où elle s'était arrêtée : une destination déjà explorée est
+ * obtenue immédiatement, une autre au prix de la seule exploration supplémentaire.
+ * <p>
+ * Un arbre peut être réenraciné en un autre nœud (voir reroot), ce qui réutilise la mémoire de sa recherche plutôt
+ * que d'en allouer une nouvelle. Il n'est pas prévu pour être utilisé par plusieurs fils d'exécution à la fois.
+ */
+public final class SearchTree {
+
+    private final static int NO_NODE = -1;
+
+    private final RouteComputer routeComputer;
+    private final Graph graph;
+    private final boolean forward;
+    private final SearchContext context;
+    private int rootNodeId;
+    private int targetNodeId;
+    private double targetE;
+    private double targetN;
+    private int settledCount;
+
+    SearchTree(RouteComputer routeComputer, Graph graph, int rootNodeId, boolean forward, SearchContext context) {
+        this.routeComputer = routeComputer;
+        this.graph = graph;
+        this.forward = forward;
+        this.context = context;
+        reroot(rootNodeId);
+    }
+
+    /**
+     * Oublie les itinéraires explorés et enracine l'arbre au nœud donné, en conservant son sens et la mémoire
+     * allouée à sa recherche
+     * @param rootNodeId l'identité de la nouvelle racine
+     */
+    public void reroot(int rootNodeId) {
+        this.rootNodeId = rootNodeId;
+        targetNodeId = NO_NODE;
+        settledCount = 0;
+        context.reset(true);
+        context.setDistance(rootNodeId, 0f);
+        context.heap().insertOrDecrease(rootNodeId, 0);
+    }
+
+    /**
+     * Retourne l'identité du nœud racine de l'arbre
+     * @return l'identité du nœud racine de l'arbre
+     */
+    public int rootNodeId() {
+        return rootNodeId;
+    }
+
+    /**
+     * Retourne vrai ssi l'arbre contient les itinéraires partant de sa racine, faux s'il contient ceux y arrivant
+     * @return vrai ssi l'arbre est un arbre avant
+     */
+    public boolean isForward() {
+        return forward;
+    }
+
+    /**
+     * Retourne le nombre total de nœuds explorés par l'arbre depuis sa création ou son dernier réenracinement
+     * @return le nombre de nœuds explorés
+     */
+    public int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Retourne l'itinéraire de coût minimal reliant la racine au nœud donné (de la racine au nœud pour un arbre
+     * avant, du nœud à la racine pour un arbre arrière), en poursuivant l'exploration si nécessaire, ou null si
+     * aucun itinéraire n'existe
+     * @param nodeId l'identité de l'autre extrémité de l'itinéraire
+     * @return l'itinéraire de coût minimal, ou null
+     * @throws IllegalArgumentException si le nœud donné est la racine
+     */
+    public Route routeTo(int nodeId) {
+        return routeTo(nodeId, CancellationToken.NONE);
+    }
+
+    /**
+     * Retourne l'itinéraire de coût minimal reliant la racine au nœud donné, comme routeTo, en interrompant
+     * l'exploration dès que le jeton donné est annulé. L'arbre reste alors utilisable, et une nouvelle requête
+     * reprend l'exploration là où elle a été interrompue.
+     * @param nodeId l'identité de l'autre extrémité de l'itinéraire
+     * @param token le jeton d'annulation de l'exploration
+     * @return l'itinéraire de coût minimal, ou null
+     * @throws IllegalArgumentException si le nœud donné est la racine
+     * @throws java.util.concurrent.CancellationException si le jeton est annulé pendant l'exploration
+     */
+    public Route routeTo(int nodeId, CancellationToken token) {
+        Preconditions.checkArgument(nodeId != rootNodeId);
+        if (!isSettled(nodeId)) {
+            if (nodeId != targetNodeId) retarget(nodeId);
+            grow(token);
+            if (!isSettled(nodeId)) return null;
+        }
+
+        if (forward) return new CompactRoute(graph, rootNodeId, RouteComputer.pathTo(context, rootNodeId, nodeId));
+        int count = 0;
+        for (int node = nodeId; node != rootNodeId; node = context.predecessorNode(node)) count++;
+        int[] edgeIds = new int[count];
+        int index = 0;
+        for (int node = nodeId; node != rootNodeId; node = context.predecessorNode(node)) {
+            edgeIds[index++] = context.predecessorEdge(node);
+        }
+        return new CompactRoute(graph, nodeId, edgeIds);
+    }
+
+    //==================================//
+
+    /* Un nœud est exploré s'il a été atteint et ne se trouve plus dans la frontière */
+    private boolean isSettled(int nodeId) {
+        return context.distance(nodeId) != Float.POSITIVE_INFINITY && !context.heap().contains(nodeId);
+    }
+
+    /* Change la destination visée et recalcule les priorités de la frontière pour la nouvelle heuristique */
+    private void retarget(int nodeId) {
+        targetNodeId = nodeId;
+        targetE = graph.nodeE(nodeId);
+        targetN = graph.nodeN(nodeId);
+        context.heap().reprioritize(node -> context.distance(node) + heuristic(node));
+    }
+
+    private float heuristic(int nodeId) {
+        return (float) Math.sqrt(graph.nodeSquaredDistanceTo(nodeId, targetE, targetN));
+    }
+
+    /* Poursuit l'exploration jusqu'à ce que la destination soit explorée ou que la frontière soit vide */
+    private void grow(CancellationToken token) {
+        NodeHeap frontier = context.heap();
+        for (int iteration = 0; !frontier.isEmpty(); iteration++) {
+            if ((iteration & (RouteComputer.CANCELLATION_CHECK_PERIOD - 1)) == 0) token.throwIfCancelled();
+            int node = frontier.removeMin();
+            settledCount++;
+            float distance = context.distance(node);
+
+            /* un nœud exploré doit avoir relâché ses arêtes, y compris la destination */
+            int degree = forward ? graph.nodeOutDegree(node) : graph.nodeInDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int edgeId = forward ? graph.nodeOutEdgeId(node, i) : graph.nodeInEdgeId(node, i);
+                int next = forward ? graph.edgeTargetNodeId(edgeId) : graph.nodeInEdgeSourceId(node, i);
+                if (isSettled(next)) continue;
+                float dist = (float) (distance + routeComputer.edgeCost(forward ? node : next, edgeId));
+                if (dist < context.distance(next)) {
+                    context.set(next, dist, node, edgeId);
+                    frontier.insertOrDecrease(next, dist + heuristic(next));
+                }
+            }
+            if (node == targetNodeId) return;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ch.epfl.javelo.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Lecture et écriture du sous-ensemble de JSON dont le serveur a besoin. Un document lu est représenté par des
+ * Map (objets), des List (tableaux), des Double, des String, des Boolean et null; l'écriture se fait au fil de
+ * l'eau, directement dans le flot de la réponse, de sorte qu'une longue géométrie ne soit jamais construite en
+ * mémoire sous forme de texte.
+ */
+final class Json {
+    private Json() {}
+
+    /**
+     * Analyse le texte JSON donné
+     * @param text le texte
+     * @return la valeur représentée par le texte
+     * @throws IllegalArgumentException si le texte n'est pas du JSON valide
+     */
+    static Object parse(String text) {
+        Parser parser = new Parser(text);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position != text.length()) throw parser.error("fin du document attendue");
+        return value;
+    }
+
+    /**
+     * Retourne le membre de nom donné de l'objet JSON donné, qui doit être un nombre
+     * @param object l'objet
+     * @param name le nom du membre
+     * @return la valeur du membre
+     * @throws IllegalArgumentException si le membre est absent ou n'est pas un nombre
+     */
+    static double number(Map<?, ?> object, String name) {
+        if (object.get(name) instanceof Double value) return value;
+        throw new IllegalArgumentException("nombre attendu : " + name);
+    }
+
+    /**
+     * Retourne le membre de nom donné de l'objet JSON donné s'il s'agit d'un nombre, la valeur par défaut s'il est
+     * absent
+     * @param object l'objet
+     * @param name le nom du membre
+     * @param defaultValue la valeur par défaut
+     * @return la valeur du membre, ou la valeur par défaut
+     * @throws IllegalArgumentException si le membre est présent mais n'est pas un nombre
+     */
+    static double number(Map<?, ?> object, String name, double defaultValue) {
+        return object.containsKey(name) ? number(object, name) : defaultValue;
+    }
+
+    /**
+     * Retourne le membre de nom donné de l'objet JSON donné, qui doit être un tableau
+     * @param object l'objet
+     * @param name le nom du membre
+     * @return les éléments du tableau
+     * @throws IllegalArgumentException si le membre est absent ou n'est pas un tableau
+     */
+    static List<?> array(Map<?, ?> object, String name) {
+        if (object.get(name) instanceof List<?> value) return value;
+        throw new IllegalArgumentException("tableau attendu : " + name);
+    }
+
+    /**
+     * Retourne la valeur donnée, qui doit être un objet JSON
+     * @param value la valeur
+     * @return l'objet
+     * @throws IllegalArgumentException si la valeur n'est pas un objet
+     */
+    static Map<?, ?> object(Object value) {
+        if (value instanceof Map<?, ?> object) return object;
+        throw new IllegalArgumentException("objet attendu");
+    }
+
+    /**
+     * Écrit la chaîne donnée, entre guillemets et échappée
+     * @param writer le flot de sortie
+     * @param string la chaîne
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    static void writeString(Writer writer, String string) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) writer.write(String.format("\\u%04x", (int) c));
+                    else writer.write(c);
+                }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Écrit le nombre donné avec le nombre de décimales donné; un nombre infini ou indéfini, que JSON ne peut
+     * représenter, est écrit null
+     * @param writer le flot de sortie
+     * @param value le nombre
+     * @param decimals le nombre de décimales
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    static void writeNumber(Writer writer, double value, int decimals) throws IOException {
+        if (Double.isFinite(value)) writer.write(String.format(Locale.ROOT, "%." + decimals + "f", value));
+        else writer.write("null");
+    }
+
+    //==================================//
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        private Parser(String text) {
+            this.text = text;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            if (position == text.length()) throw error("valeur attendue");
+            char c = text.charAt(position);
+            return switch (c) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> members = new LinkedHashMap<>();
+            position++;
+            skipWhitespace();
+            if (consume('}')) return members;
+            do {
+                skipWhitespace();
+                if (position == text.length() || text.charAt(position) != '"') throw error("nom de membre attendu");
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                members.put(name, value());
+                skipWhitespace();
+            } while (consume(','));
+            expect('}');
+            return members;
+        }
+
+        private List<Object> array() {
+            List<Object> elements = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (consume(']')) return elements;
+            do {
+                elements.add(value());
+                skipWhitespace();
+            } while (consume(','));
+            expect(']');
+            return elements;
+        }
+
+        private String string() {
+            StringBuilder builder = new StringBuilder();
+            position++;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') return builder.toString();
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position == text.length()) break;
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 't' -> builder.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) throw error("séquence \\u incomplète");
+                        try {
+                            builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("séquence \\u invalide");
+                        }
+                        position += 4;
+                    }
+                    default -> builder.append(escaped);
+                }
+            }
+            throw error("chaîne non terminée");
+        }
+
+        private Double number() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) position++;
+            try {
+                return Double.valueOf(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("nombre invalide");
+            }
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, position)) throw error(word + " attendu");
+            position += word.length();
+            return value;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+        }
+
+        private boolean consume(char c) {
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            if (!consume(c)) throw error("« " + c + " » attendu");
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("JSON invalide à la position " + position + " : " + message);
+        }
+    }
+}
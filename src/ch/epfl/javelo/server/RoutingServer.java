@@ -0,0 +1,401 @@
+package ch.epfl.javelo.server;
+
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphFormat;
+import ch.epfl.javelo.data.LoadMode;
+import ch.epfl.javelo.projection.Ch1903;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.ContractionHierarchy;
+import ch.epfl.javelo.routing.CostTable;
+import ch.epfl.javelo.routing.ElevationProfile;
+import ch.epfl.javelo.routing.ElevationProfileComputer;
+import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.Landmarks;
+import ch.epfl.javelo.routing.MultiRoute;
+import ch.epfl.javelo.routing.QueryStats;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Serial;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serveur HTTP sans interface graphique exposant le calcul d'itinéraire de JaVelo. Chaque requête est un POST dont
+ * le corps est un objet JSON; les points y sont donnés en degrés WGS 84, sous la forme {"lon": 6.57, "lat": 46.52} :
+ * <ul>
+ *     <li>/nearest : {"lon", "lat", "radius"} retourne le nœud le plus proche, à au plus radius mètres (500 par
+ *     défaut);</li>
+ *     <li>/route : {"waypoints": [point, ...], "radius"} retourne la longueur et la géométrie de l'itinéraire
+ *     passant par les nœuds les plus proches des points de passage;</li>
+ *     <li>/profile : même requête, retourne le profil en long de l'itinéraire;</li>
+ *     <li>/gpx : même requête, retourne l'itinéraire au format GPX.</li>
+ * </ul>
+ * Un GET sur /stats retourne en outre les statistiques cumulées des recherches effectuées depuis le démarrage
+ * (voir RouteComputer.statistics), sans ralentir les recherches en cours.
+ * Les réponses, potentiellement longues, sont écrites au fil de l'eau en encodage « chunked ».
+ * <p>
+ * Chaque requête est traitée par son propre fil d'exécution virtuel, mais les recherches sont confiées à un
+ * nombre fixe de fils de plateforme : les contextes de recherche de RouteComputer, propres à chaque fil et dont
+ * la taille est proportionnelle à celle du graphe, sont ainsi réutilisés d'une requête à l'autre au lieu d'être
+ * alloués pour chaque requête. Le graphe et le calculateur d'itinéraire sont partagés par toutes les requêtes.
+ */
+public final class RoutingServer {
+
+    private final static String DATA_REP = "javelo-data";
+    private final static String COST_FUNCTION_NAME = "citybike";
+    private final static int DEFAULT_PORT = 8080;
+    /* distance maximale (en m) par défaut entre un point de passage et le nœud qui le représente */
+    private final static double DEFAULT_SEARCH_DISTANCE = 500;
+    private final static double STEP_LENGTH = 5;
+    private final static int MAX_BODY_LENGTH = 1 << 20;
+    private final static int BAD_REQUEST = 400;
+    private final static int NOT_FOUND = 404;
+    private final static int METHOD_NOT_ALLOWED = 405;
+    private final static int PAYLOAD_TOO_LARGE = 413;
+    private final static int INTERNAL_ERROR = 500;
+    private final static int OK = 200;
+    private final static int STOP_DELAY_SECONDS = 1;
+    private final static String POST = "POST";
+    private final static String GET = "GET";
+    private final static String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+    static {
+        /* sans TCP_NODELAY, l'algorithme de Nagle retarde d'environ 40 ms la fin des réponses « chunked » ; la
+           propriété doit être définie avant la création du premier HttpServer */
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) System.setProperty(NO_DELAY_PROPERTY, "true");
+    }
+
+    private final Graph graph;
+    private final RouteComputer routeComputer;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService searchExecutor;
+
+    /* une erreur à signaler au client, avec son code de statut HTTP */
+    private static final class HttpError extends RuntimeException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /* le traitement d'une requête, qui écrit la réponse à partir du corps de la requête */
+    @FunctionalInterface
+    private interface Handler {
+        void handle(Map<?, ?> request, HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Construit un serveur, qui n'accepte les requêtes qu'une fois démarré
+     * @param graph le graphe
+     * @param routeComputer le calculateur d'itinéraire, partagé par toutes les requêtes
+     * @param address l'adresse et le port d'écoute (port 0 pour un port libre quelconque)
+     * @param searchThreads le nombre de fils d'exécution effectuant les recherches
+     * @throws IOException si le serveur ne peut pas écouter à l'adresse donnée
+     */
+    public RoutingServer(Graph graph, RouteComputer routeComputer, InetSocketAddress address, int searchThreads)
+            throws IOException {
+        this.graph = graph;
+        this.routeComputer = routeComputer;
+        this.requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.searchExecutor = Executors.newFixedThreadPool(searchThreads, runnable -> {
+            Thread thread = new Thread(runnable, "javelo-server-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(requestExecutor);
+        server.createContext("/nearest", exchange -> serve(exchange, POST, this::nearest));
+        server.createContext("/route", exchange -> serve(exchange, POST, this::route));
+        server.createContext("/profile", exchange -> serve(exchange, POST, this::profile));
+        server.createContext("/gpx", exchange -> serve(exchange, POST, this::gpx));
+        server.createContext("/stats", exchange -> serve(exchange, GET, this::stats));
+    }
+
+    /**
+     * Démarre le serveur
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Arrête le serveur, en laissant une seconde aux requêtes en cours pour se terminer
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        requestExecutor.shutdown();
+        searchExecutor.shutdown();
+    }
+
+    /**
+     * Retourne l'adresse à laquelle le serveur écoute
+     * @return l'adresse du serveur
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Charge le graphe JaVelo, ainsi que la hiérarchie de contraction, les points de repère et la table des coûts
+     * s'ils ont été construits, puis démarre le serveur
+     * @param args le répertoire des données (javelo-data par défaut), le port (8080 par défaut), le nombre de
+     *             fils de recherche (par défaut le nombre de processeurs), le mode de chargement du graphe
+     *             (MAPPED par défaut, voir LoadMode) et le format de ses fichiers (par défaut celui d'origine s'ils
+     *             sont présents, voir GraphFormat)
+     * @throws IOException en cas d'erreur d'entrée/sortie
+     */
+    public static void main(String[] args) throws IOException {
+        Path dataPath = Path.of(args.length > 0 ? args[0] : DATA_REP);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        LoadMode loadMode = args.length > 3 ? LoadMode.valueOf(args[3]) : LoadMode.MAPPED;
+
+        Graph graph = args.length > 4
+                ? Graph.loadFrom(dataPath, loadMode, GraphFormat.valueOf(args[4]))
+                : Graph.loadFrom(dataPath, loadMode);
+        ContractionHierarchy hierarchy = ContractionHierarchy.existsIn(dataPath)
+                ? ContractionHierarchy.loadFrom(dataPath)
+                : null;
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph), hierarchy);
+        if (Landmarks.existsIn(dataPath))
+            routeComputer = routeComputer.withLandmarks(Landmarks.loadFrom(dataPath));
+        if (CostTable.existsIn(dataPath, COST_FUNCTION_NAME))
+            routeComputer = routeComputer.withCostTable(CostTable.loadFrom(dataPath, COST_FUNCTION_NAME));
+
+        RoutingServer server = new RoutingServer(graph, routeComputer, new InetSocketAddress(port), threads);
+        server.start();
+        System.out.printf("serveur JaVelo à l'écoute sur le port %d (%d fils de recherche)%n",
+                server.address().getPort(), threads);
+    }
+
+    //==================================//
+
+    private void nearest(Map<?, ?> request, HttpExchange exchange) throws IOException {
+        double radius = Json.number(request, "radius", DEFAULT_SEARCH_DISTANCE);
+        PointCh point = pointCh(request);
+        int nodeId = graph.nodeClosestTo(point, radius);
+        if (nodeId < 0) throw new HttpError(NOT_FOUND, "aucun nœud à moins de " + radius + " m");
+
+        try (Writer writer = startJson(exchange)) {
+            writer.write("{\"node\":" + nodeId + ",");
+            writePoint(writer, graph.nodePoint(nodeId));
+            writer.write(",\"distance\":");
+            Json.writeNumber(writer, graph.nodePoint(nodeId).distanceTo(point), 1);
+            writer.write("}");
+        }
+    }
+
+    private void route(Map<?, ?> request, HttpExchange exchange) throws IOException {
+        Route route = routeFor(request);
+        try (Writer writer = startJson(exchange)) {
+            writer.write("{\"length\":");
+            Json.writeNumber(writer, route.length(), 1);
+            writer.write(",\"points\":[");
+            List<PointCh> points = route.points();
+            for (int i = 0; i < points.size(); i++) {
+                if (i > 0) writer.write(',');
+                writer.write('[');
+                Json.writeNumber(writer, Math.toDegrees(points.get(i).lon()), 6);
+                writer.write(',');
+                Json.writeNumber(writer, Math.toDegrees(points.get(i).lat()), 6);
+                writer.write(']');
+            }
+            writer.write("]}");
+        }
+    }
+
+    private void profile(Map<?, ?> request, HttpExchange exchange) throws IOException {
+        Route route = routeFor(request);
+        ElevationProfile profile = search(() -> ElevationProfileComputer.elevationProfile(route, STEP_LENGTH));
+        try (Writer writer = startJson(exchange)) {
+            writer.write("{\"length\":");
+            Json.writeNumber(writer, profile.length(), 1);
+            writer.write(",\"minElevation\":");
+            Json.writeNumber(writer, profile.minElevation(), 1);
+            writer.write(",\"maxElevation\":");
+            Json.writeNumber(writer, profile.maxElevation(), 1);
+            writer.write(",\"totalAscent\":");
+            Json.writeNumber(writer, profile.totalAscent(), 1);
+            writer.write(",\"totalDescent\":");
+            Json.writeNumber(writer, profile.totalDescent(), 1);
+            writer.write(",\"step\":");
+            Json.writeNumber(writer, STEP_LENGTH, 1);
+            writer.write(",\"elevations\":[");
+            int sampleCount = (int) Math.ceil(profile.length() / STEP_LENGTH) + 1;
+            for (int i = 0; i < sampleCount; i++) {
+                if (i > 0) writer.write(',');
+                Json.writeNumber(writer, profile.elevationAt(Math.min(i * STEP_LENGTH, profile.length())), 1);
+            }
+            writer.write("]}");
+        }
+    }
+
+    private void gpx(Map<?, ?> request, HttpExchange exchange) throws IOException {
+        Route route = routeFor(request);
+        ElevationProfile profile = search(() -> ElevationProfileComputer.elevationProfile(route, STEP_LENGTH));
+        exchange.getResponseHeaders().set("Content-Type", "application/gpx+xml");
+        exchange.sendResponseHeaders(OK, 0);
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            Transformer transformer = TransformerFactory.newDefaultInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.transform(new DOMSource(GpxGenerator.createGpx(route, profile)), new StreamResult(writer));
+        } catch (TransformerException e) {
+            throw new Error(e); // Should never happen
+        }
+    }
+
+    private void stats(Map<?, ?> request, HttpExchange exchange) throws IOException {
+        QueryStats stats = routeComputer.statistics();
+        try (Writer writer = startJson(exchange)) {
+            writer.write("{\"queries\":" + stats.queries()
+                    + ",\"settledNodes\":" + stats.settledNodes()
+                    + ",\"relaxedEdges\":" + stats.relaxedEdges()
+                    + ",\"heapPushes\":" + stats.heapPushes()
+                    + ",\"heapPops\":" + stats.heapPops()
+                    + ",\"stalePops\":" + stats.stalePops()
+                    + ",\"peakHeapSize\":" + stats.peakHeapSize()
+                    + ",\"heuristicEvaluations\":" + stats.heuristicEvaluations()
+                    + ",\"costFunctionCalls\":" + stats.costFunctionCalls()
+                    + ",\"searchMillis\":");
+            Json.writeNumber(writer, stats.searchNanos() / 1e6, 3);
+            writer.write(",\"reconstructionMillis\":");
+            Json.writeNumber(writer, stats.reconstructionNanos() / 1e6, 3);
+            writer.write("}");
+        }
+    }
+
+    /* Traite une requête : vérifie la méthode, lit le corps (d'un POST) et signale les erreurs au client */
+    private void serve(HttpExchange exchange, String method, Handler handler) {
+        try (exchange) {
+            try {
+                if (!exchange.getRequestMethod().equals(method))
+                    throw new HttpError(METHOD_NOT_ALLOWED, "seule la méthode " + method + " est acceptée");
+                Map<?, ?> request = method.equals(POST) ? Json.object(Json.parse(readBody(exchange))) : Map.of();
+                handler.handle(request, exchange);
+            } catch (HttpError e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, BAD_REQUEST, e.getMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, INTERNAL_ERROR, e.toString());
+            }
+        } catch (IOException e) {
+            /* le client a fermé la connexion : il n'y a plus personne à qui répondre */
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readNBytes(MAX_BODY_LENGTH + 1);
+            if (bytes.length > MAX_BODY_LENGTH) throw new HttpError(PAYLOAD_TOO_LARGE, "requête trop longue");
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /* Envoie une réponse d'erreur, si l'en-tête de la réponse n'a pas déjà été envoyé */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) return;
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, 0);
+        try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            writer.write("{\"error\":");
+            Json.writeString(writer, message == null ? "" : message);
+            writer.write("}");
+        }
+    }
+
+    /* Envoie l'en-tête d'une réponse JSON de longueur inconnue et retourne le flot de son corps */
+    private static Writer startJson(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(OK, 0);
+        return new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8));
+    }
+
+    private static void writePoint(Writer writer, PointCh point) throws IOException {
+        writer.write("\"lon\":");
+        Json.writeNumber(writer, Math.toDegrees(point.lon()), 6);
+        writer.write(",\"lat\":");
+        Json.writeNumber(writer, Math.toDegrees(point.lat()), 6);
+    }
+
+    /* Point suisse correspondant aux coordonnées WGS 84 (en degrés) de l'objet JSON donné */
+    private static PointCh pointCh(Map<?, ?> point) {
+        double lon = Math.toRadians(Json.number(point, "lon"));
+        double lat = Math.toRadians(Json.number(point, "lat"));
+        double e = Ch1903.e(lon, lat);
+        double n = Ch1903.n(lon, lat);
+        if (!SwissBounds.containsEN(e, n)) throw new HttpError(NOT_FOUND, "point hors de Suisse");
+        return new PointCh(e, n);
+    }
+
+    /* Itinéraire passant par les nœuds les plus proches des points de passage de la requête */
+    private Route routeFor(Map<?, ?> request) {
+        double radius = Json.number(request, "radius", DEFAULT_SEARCH_DISTANCE);
+        List<?> waypoints = Json.array(request, "waypoints");
+        if (waypoints.size() < 2) throw new IllegalArgumentException("au moins deux points de passage sont requis");
+
+        List<Integer> nodeIds = new ArrayList<>();
+        for (Object waypoint : waypoints) {
+            int nodeId = graph.nodeClosestTo(pointCh(Json.object(waypoint)), radius);
+            if (nodeId < 0) throw new HttpError(NOT_FOUND, "aucun nœud à moins de " + radius + " m d'un point");
+            /* deux points de passage consécutifs représentés par le même nœud ne forment pas de segment */
+            if (nodeIds.isEmpty() || nodeIds.get(nodeIds.size() - 1) != nodeId) nodeIds.add(nodeId);
+        }
+        if (nodeIds.size() < 2) throw new HttpError(NOT_FOUND, "les points de passage sont confondus");
+
+        List<Route> segments = search(() -> {
+            List<Route> routes = new ArrayList<>();
+            for (int i = 0; i + 1 < nodeIds.size(); i++) {
+                Route segment = routeComputer.bestRouteBetween(nodeIds.get(i), nodeIds.get(i + 1));
+                if (segment == null) return null;
+                routes.add(segment);
+            }
+            return routes;
+        });
+        if (segments == null) throw new HttpError(NOT_FOUND, "aucun itinéraire ne relie les points de passage");
+        return new MultiRoute(segments);
+    }
+
+    /* Effectue le calcul donné sur l'un des fils de recherche, le fil virtuel de la requête attendant son résultat */
+    private <T> T search(Callable<T> computation) {
+        try {
+            return searchExecutor.submit(computation).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(INTERNAL_ERROR, "requête interrompue");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}